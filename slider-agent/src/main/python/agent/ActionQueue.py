@@ -62,6 +62,7 @@ class ActionQueue(threading.Thread):
     self.tmpdir = config.getResolvedPath(AgentConfig.APP_TASK_DIR)
     self.customServiceOrchestrator = CustomServiceOrchestrator(config,
                                                                controller)
+    self.executing = False
 
 
   def stop(self):
@@ -81,12 +82,21 @@ class ActionQueue(threading.Thread):
   def empty(self):
     return self.commandQueue.empty()
 
+  def isIdle(self):
+    '''
+    True if no command is queued or executing
+    '''
+    return self.commandQueue.empty() and not self.executing
+
 
   def run(self):
     while not self.stopped():
-      time.sleep(2)
       command = self.commandQueue.get() # Will block if queue is empty
-      self.process_command(command)
+      self.executing = True
+      try:
+        self.process_command(command)
+      finally:
+        self.executing = False
     logger.info("ActionQueue stopped.")
 
 
@@ -197,6 +207,8 @@ class ActionQueue(threading.Thread):
 
       if 'configurations' in component_status:
         result['configurations'] = component_status['configurations']
+      if 'metrics' in component_status:
+        result['metrics'] = component_status['metrics']
       if 'exitcode' in component_status:
         result['status'] = component_status['exitcode']
         logger.debug("Got live status for component " + component + \
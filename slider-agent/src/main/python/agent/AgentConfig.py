@@ -59,6 +59,7 @@ sleep_between_retries=1
 [heartbeat]
 state_interval=6
 log_lines_count=300
+long_poll_timeout=10
 
 """
 s = StringIO.StringIO(content)
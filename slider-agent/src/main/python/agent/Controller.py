@@ -27,7 +27,8 @@ import time
 import threading
 import urllib2
 import pprint
-from random import randint
+import copy
+from random import randint, random
 
 from AgentConfig import AgentConfig
 from Heartbeat import Heartbeat
@@ -62,12 +63,15 @@ class Controller(threading.Thread):
                                   'port')
     self.registerUrl = server_url + '/ws/v1/slider/agents/' + self.hostname + '/register'
     self.heartbeatUrl = server_url + '/ws/v1/slider/agents/' + self.hostname + '/heartbeat'
+    self.longPollUrl = self.heartbeatUrl + '/poll?wait='
     self.netutil = NetUtil()
     self.responseId = -1
     self.repeatRegistration = False
     self.isRegistered = False
     self.cachedconnect = None
     self.range = range
+    # seconds between idle heartbeats; the server may assign another
+    self.heartbeatInterval = self.netutil.HEARTBEAT_IDDLE_INTERVAL_SEC
     self.hasMappedComponents = True
     # Event is used for synchronizing heartbeat iterations (to make possible
     # manual wait() interruption between heartbeats )
@@ -78,6 +82,10 @@ class Controller(threading.Thread):
     self.componentActualState = State.INIT
     self.statusCommand = None
     self.failureCount = 0
+    # the last configurations received, and their hash; the server only
+    # sends the configurations of a command if we do not hold them
+    self.configurations = None
+    self.configurationHash = None
 
 
   def __del__(self):
@@ -109,6 +117,14 @@ class Controller(threading.Thread):
           self.isRegistered = False
           self.repeatRegistration = False
           return ret
+        # retryAfter - millis after which to retry a deferred registration
+        if 'retryAfter' in ret.keys() and int(ret['retryAfter']) > 0:
+          delay = self.jitter(int(ret['retryAfter']) / 1000.0)
+          logger.info("Registration deferred by the server;"
+                      " retrying in %.2f seconds", delay)
+          time.sleep(delay)
+          continue
+        self.updateHeartbeatInterval(ret)
         logger.info("Registered with the server with " + pprint.pformat(ret))
         print("Registered with the server")
         self.responseId = int(ret['responseId'])
@@ -116,6 +132,7 @@ class Controller(threading.Thread):
         if 'statusCommands' in ret.keys():
           logger.info("Got status commands on registration " + pprint.pformat(
             ret['statusCommands']))
+          self.resolveConfigurations(ret['statusCommands'])
           self.addToQueue(ret['statusCommands'])
           pass
         else:
@@ -127,7 +144,7 @@ class Controller(threading.Thread):
         return
       except Exception, err:
         # try a reconnect only after a certain amount of random time
-        delay = randint(0, self.range)
+        delay = self.retryDelay(err)
         logger.info("Unable to connect to: " + self.registerUrl, exc_info=True)
         """ Sleeping for {0} seconds and then retrying again """.format(delay)
         time.sleep(delay)
@@ -182,13 +199,20 @@ class Controller(threading.Thread):
         if not retry:
           data = json.dumps(
             self.heartbeat.build(commandResult, self.responseId,
-                                 self.hasMappedComponents))
+                                 self.hasMappedComponents,
+                                 self.configurationHash))
           self.updateStateBasedOnResult(commandResult)
           logger.debug("Sending request: " + data)
           pass
         else:
           self.DEBUG_HEARTBEAT_RETRIES += 1
-        response = self.sendRequest(self.heartbeatUrl, data)
+        longPoll = not retry and self.canLongPoll()
+        if longPoll:
+          # the server holds the request until it has a command for us
+          url = self.longPollUrl + str(int(self.getLongPollTimeout() * 1000))
+        else:
+          url = self.heartbeatUrl
+        response = self.sendRequest(url, data)
         response = json.loads(response)
 
         logger.debug('Got server response: ' + pprint.pformat(response))
@@ -213,11 +237,15 @@ class Controller(threading.Thread):
         else:
           self.responseId = serverId
 
+        self.updateHeartbeatInterval(response)
+
         if 'executionCommands' in response.keys():
+          self.resolveConfigurations(response['executionCommands'])
           self.updateStateBasedOnCommand(response['executionCommands'])
           self.addToQueue(response['executionCommands'])
           pass
         if 'statusCommands' in response.keys() and len(response['statusCommands']) > 0:
+          self.resolveConfigurations(response['statusCommands'])
           self.addToQueue(response['statusCommands'])
           pass
         if "true" == response['restartAgent']:
@@ -241,13 +269,17 @@ class Controller(threading.Thread):
         self.DEBUG_SUCCESSFULL_HEARTBEATS += 1
         self.DEBUG_HEARTBEAT_RETRIES = 0
         self.heartbeat_wait_event.clear()
+        if longPoll:
+          # the server has already waited, so heartbeat again at once
+          time.sleep(self.netutil.MINIMUM_INTERVAL_BETWEEN_HEARTBEATS)
+          continue
       except ssl.SSLError:
         self.repeatRegistration = False
         self.isRegistered = False
         return
       except Exception, err:
         #randomize the heartbeat
-        delay = randint(0, self.range)
+        delay = self.retryDelay(err)
         time.sleep(delay)
         if "code" in err:
           logger.error(err.code)
@@ -265,7 +297,7 @@ class Controller(threading.Thread):
         self.cachedconnect = None # Previous connection is broken now
         retry = True
         # Sleep for some time
-      timeout = self.netutil.HEARTBEAT_IDDLE_INTERVAL_SEC \
+      timeout = self.heartbeatInterval \
                 - self.netutil.MINIMUM_INTERVAL_BETWEEN_HEARTBEATS
       self.heartbeat_wait_event.wait(timeout=timeout)
       # Sleep a bit more to allow STATUS_COMMAND results to be collected
@@ -274,6 +306,86 @@ class Controller(threading.Thread):
     pass
     logger.info("Controller stopped heart-beating.")
 
+  def updateHeartbeatInterval(self, response):
+    '''
+    Take up the heartbeat interval in millis assigned by the server
+    in a registration or heartbeat response, if there is one
+    '''
+    if 'heartbeatInterval' in response.keys() \
+        and int(response['heartbeatInterval']) > 0:
+      interval = int(response['heartbeatInterval']) / 1000.0
+      if interval != self.heartbeatInterval:
+        self.heartbeatInterval = interval
+        logger.info("Heartbeat interval set to %.2f seconds", interval)
+
+  def jitter(self, delay):
+    '''
+    Spread retries of many agents: the delay plus up to as much again
+    '''
+    return delay * (1 + random())
+
+  def retryDelay(self, err):
+    '''
+    Seconds to wait before retrying a failed request: the jittered
+    Retry-After time of a request deferred by the server (503),
+    else a random time
+    '''
+    if isinstance(err, urllib2.HTTPError) and err.code == 503:
+      retryAfter = err.info().getheader('Retry-After')
+      if retryAfter:
+        try:
+          logger.info("Request deferred by the server for %s seconds",
+                      retryAfter)
+          return self.jitter(float(retryAfter))
+        except ValueError:
+          pass
+    return randint(0, self.range)
+
+  def getLongPollTimeout(self):
+    '''
+    The time in seconds for which the server may hold an idle heartbeat;
+    0 if long-polling is disabled
+    '''
+    try:
+      return float(self.config.get(AgentConfig.HEARTBEAT_SECTION,
+                                   'long_poll_timeout'))
+    except Exception:
+      return 0
+
+  def canLongPoll(self):
+    '''
+    Long-poll only while there is nothing in progress locally,
+    so that command results are never held back by a waiting request
+    '''
+    return self.getLongPollTimeout() > 0 \
+           and self.actionQueue.isIdle() \
+           and self.componentActualState not in (State.INSTALLING,
+                                                 State.STARTING)
+
+  def resolveConfigurations(self, commands):
+    """Fill in the configurations the server left out of commands because
+    we already hold them, and keep any new ones for later commands"""
+    if not commands:
+      return
+    for command in commands:
+      hash = command.get('configurationHash')
+      if not hash:
+        continue
+      if 'configurations' in command and command['configurations'] is not None:
+        self.configurations = copy.deepcopy(command['configurations'])
+        self.configurationHash = hash
+      elif hash == self.configurationHash:
+        command['configurations'] = copy.deepcopy(self.configurations)
+      else:
+        logger.error("No configurations held with hash " + str(hash) +
+                     " for command " + str(command.get('taskId')))
+        command['configurations'] = {}
+        # report no hash, so that the server sends them in full again
+        self.configurations = None
+        self.configurationHash = None
+      pass
+    pass
+
   def updateStateBasedOnCommand(self, commands):
     for command in commands:
       if command["roleCommand"] == "START":
@@ -330,7 +442,8 @@ class Controller(threading.Thread):
     statusCommand["roleCommand"] = "STATUS"
     statusCommand["componentName"] = command["role"]
     statusCommand["configurations"] = {}
-    statusCommand["configurations"]["global"] = command["configurations"]["global"]
+    statusCommand["configurations"]["global"] = \
+      command["configurations"].get("global", {})
     statusCommand["hostLevelParams"] = command["hostLevelParams"]
     statusCommand["serviceName"] = command["serviceName"]
     statusCommand["taskId"] = "status"
@@ -365,7 +478,7 @@ class Controller(threading.Thread):
       # Process callbacks
       for callback in self.registration_listeners:
         callback()
-      time.sleep(self.netutil.HEARTBEAT_IDDLE_INTERVAL_SEC)
+      time.sleep(self.netutil.MINIMUM_INTERVAL_BETWEEN_HEARTBEATS)
       self.heartbeatWithServer()
     logger.info("Controller stopped heartbeating.")
 
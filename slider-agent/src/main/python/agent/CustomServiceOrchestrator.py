@@ -156,12 +156,37 @@ class CustomServiceOrchestrator():
                             override_output_files=override_output_files)
       if res['exitcode'] == 0:
         res['exitcode'] = CustomServiceOrchestrator.LIVE_STATUS
+        metrics = self.extract_metrics(res.get('structuredOut'))
+        if metrics:
+          res['metrics'] = metrics
       else:
         res['exitcode'] = CustomServiceOrchestrator.DEAD_STATUS
 
       return res
     pass
 
+  def extract_metrics(self, structured_out):
+    """
+    Get the metrics a status script reported in its structured output,
+    such as {"metrics": {"load": 0.7}}, where load is the fraction of the
+    component's capacity in use. Values which are not numbers are dropped.
+    """
+    if isinstance(structured_out, basestring):
+      try:
+        structured_out = json.loads(structured_out)
+      except ValueError:
+        return {}
+    if not isinstance(structured_out, dict) or \
+        not isinstance(structured_out.get('metrics'), dict):
+      return {}
+    metrics = {}
+    for name, value in structured_out['metrics'].items():
+      try:
+        metrics[name] = float(value)
+      except (TypeError, ValueError):
+        logger.warn("Ignoring metric " + str(name) + " = " + str(value))
+    return metrics
+
   def dump_command_to_json(self, command, store_config=False):
     """
     Converts command to json file and returns file path
@@ -201,6 +226,10 @@ class CustomServiceOrchestrator():
 
   def finalize_command(self, command, store_config):
 
+    # configurations may be left out when the agent already holds them
+    if command.get('configurations') is None:
+      command['configurations'] = {}
+
     if 'configurations' in command:
       for key in command['configurations']:
         if len(command['configurations'][key]) > 0:
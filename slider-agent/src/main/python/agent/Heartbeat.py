@@ -35,7 +35,8 @@ class Heartbeat:
     self.config = config
     self.reports = []
 
-  def build(self, commandResult, id='-1', componentsMapped=False):
+  def build(self, commandResult, id='-1', componentsMapped=False,
+            configurationHash=None):
     timestamp = int(time.time() * 1000)
     queueResult = self.actionQueue.result()
     logger.info("Queue result: " + pformat(queueResult))
@@ -49,6 +50,10 @@ class Heartbeat:
                  'nodeStatus': nodeStatus
     }
 
+    # the hash of the configurations held, so the server need not resend them
+    if configurationHash:
+      heartbeat['configurationHash'] = configurationHash
+
     commandsInProgress = False
     if not self.actionQueue.commandQueue.empty():
       commandsInProgress = True
@@ -73,6 +78,11 @@ class Heartbeat:
     if queueResult['componentStatus']:
       componentStatuses = []
       for componentStatus in queueResult['componentStatus']:
+        # metrics of the component, such as its load, go to the server
+        # with the heartbeat rather than with the status
+        if 'metrics' in componentStatus:
+          heartbeat['metrics'] = componentStatus['metrics']
+          del componentStatus['metrics']
         if componentStatus['reportResult']:
           del componentStatus['reportResult']
           componentStatuses.append(componentStatus)
@@ -111,6 +111,48 @@ class TestActionQueue(TestCase):
     self.assertTrue(process_command_mock.call_count > 1)
 
 
+  @patch.object(CustomServiceOrchestrator, "__init__")
+  def test_isIdle(self, CustomServiceOrchestrator_mock):
+    CustomServiceOrchestrator_mock.return_value = None
+    actionQueue = ActionQueue(AgentConfig("", ""), MagicMock())
+    self.assertTrue(actionQueue.isIdle())
+
+    actionQueue.put([self.status_command])
+    self.assertFalse(actionQueue.isIdle())
+
+    actionQueue.commandQueue.get()
+    actionQueue.executing = True
+    self.assertFalse(actionQueue.isIdle())
+
+    actionQueue.executing = False
+    self.assertTrue(actionQueue.isIdle())
+
+
+  @patch("time.sleep")
+  @patch.object(ActionQueue, "process_command")
+  @patch.object(CustomServiceOrchestrator, "__init__")
+  def test_run_marks_executing(self, CustomServiceOrchestrator_mock,
+                               process_command_mock, sleep_mock):
+    CustomServiceOrchestrator_mock.return_value = None
+    actionQueue = ActionQueue(AgentConfig("", ""), MagicMock())
+    idle = []
+
+    def process(command):
+      idle.append(actionQueue.isIdle())
+      actionQueue.stop()
+      raise Exception("test")
+
+    process_command_mock.side_effect = process
+    actionQueue.put([self.status_command])
+    self.assertRaises(Exception, actionQueue.run)
+
+    # busy while the command ran, idle again after it failed
+    self.assertEqual([False], idle)
+    self.assertTrue(actionQueue.isIdle())
+    # commands are taken without a delay
+    self.assertFalse(sleep_mock.called)
+
+
   @patch("traceback.print_exc")
   @patch.object(ActionQueue, "execute_command")
   def test_process_command(self,
@@ -176,8 +218,16 @@ class TestActionQueue(TestCase):
     self.assertEqual(report['componentStatus'][0]["componentName"], "ACCUMULO_MASTER")
     self.assertEqual(report['componentStatus'][0]["serviceName"], "ACCUMULO")
     self.assertEqual(report['componentStatus'][0]["clusterName"], "c1")
+    self.assertFalse('metrics' in report['componentStatus'][0])
     self.assertTrue(requestComponentStatus_mock.called)
 
+    # metrics reported by the status script are passed on
+    requestComponentStatus_mock.return_value = {'exitcode': 'dummy report',
+                                                'metrics': {'load': 0.5}}
+    actionQueue.execute_status_command(self.status_command)
+    report = actionQueue.result()
+    self.assertEqual(report['componentStatus'][0]["metrics"], {'load': 0.5})
+
   @patch.object(ActionQueue, "status_update_callback")
   @patch.object(CustomServiceOrchestrator, "runCommand")
   @patch.object(ActionQueue, "execute_command")
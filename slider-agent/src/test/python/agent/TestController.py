@@ -105,6 +105,77 @@ class TestController(unittest.TestCase):
     self.controller.sendRequest = Controller.Controller.sendRequest
 
 
+  @patch("json.dumps")
+  @patch("time.sleep")
+  @patch("pprint.pformat")
+  def test_registerWithServer_noDelay(self, pformatMock, sleepMock,
+                                      dumpsMock):
+    register = MagicMock()
+    self.controller.register = register
+    dumpsMock.return_value = "request"
+    self.controller.sendRequest = MagicMock()
+    self.controller.sendRequest.return_value = '{"responseId":1}'
+    self.controller.isRegistered = False
+
+    self.assertEqual({"responseId":1}, self.controller.registerWithServer())
+    self.controller.sendRequest.assert_called_once_with(
+      self.controller.registerUrl, "request")
+    # a successful registration is not followed by a back-off
+    self.assertFalse(sleepMock.called)
+
+    self.controller.sendRequest = Controller.Controller.sendRequest
+
+
+  @patch("json.dumps")
+  @patch("time.sleep")
+  @patch("pprint.pformat")
+  def test_registerWithServer_deferred(self, pformatMock, sleepMock,
+                                       dumpsMock):
+    register = MagicMock()
+    self.controller.register = register
+    dumpsMock.return_value = "request"
+
+    # deferred once, then admitted with a heartbeat interval
+    self.controller.sendRequest = MagicMock()
+    self.controller.sendRequest.side_effect = [
+      '{"responseId":0, "response":"FAILED", "retryAfter":2000}',
+      '{"responseId":1, "response":"OK", "heartbeatInterval":20000}']
+    self.controller.isRegistered = False
+    self.assertEqual({"responseId":1, "response":"OK",
+                      "heartbeatInterval":20000},
+                     self.controller.registerWithServer())
+    self.assertTrue(self.controller.isRegistered)
+    self.assertEqual(20.0, self.controller.heartbeatInterval)
+    self.assertEqual(2, self.controller.sendRequest.call_count)
+    # the retry waited the time given, plus jitter
+    delay = sleepMock.call_args_list[0][0][0]
+    self.assertTrue(2.0 <= delay <= 4.0)
+
+    self.controller.sendRequest = Controller.Controller.sendRequest
+
+
+  def test_retryDelay(self):
+    err = Controller.urllib2.HTTPError("url", 503, "deferred",
+                                       {"Retry-After": "3"}, None)
+    err.info = MagicMock()
+    err.info.return_value.getheader.return_value = "3"
+    delay = self.controller.retryDelay(err)
+    self.assertTrue(3.0 <= delay <= 6.0)
+
+    self.controller.range = 0
+    self.assertEqual(0, self.controller.retryDelay(Exception("test")))
+
+
+  def test_updateHeartbeatInterval(self):
+    self.controller.heartbeatInterval = 10
+    self.controller.updateHeartbeatInterval({"responseId":1})
+    self.assertEqual(10, self.controller.heartbeatInterval)
+    self.controller.updateHeartbeatInterval({"heartbeatInterval":0})
+    self.assertEqual(10, self.controller.heartbeatInterval)
+    self.controller.updateHeartbeatInterval({"heartbeatInterval":1500})
+    self.assertEqual(1.5, self.controller.heartbeatInterval)
+
+
   @patch("pprint.pformat")
   def test_addToQueue(self, pformatMock):
 
@@ -267,6 +338,102 @@ class TestController(unittest.TestCase):
       {'Content-Type': 'application/json'})
 
 
+  def test_canLongPoll(self):
+    actionQueue = MagicMock()
+    actionQueue.isIdle.return_value = True
+    self.controller.actionQueue = actionQueue
+    self.controller.componentActualState = State.STARTED
+
+    # not configured
+    self.controller.config.get.return_value = "something"
+    self.assertEqual(0, self.controller.getLongPollTimeout())
+    self.assertFalse(self.controller.canLongPoll())
+
+    self.controller.config.get.return_value = "10"
+    self.assertEqual(10.0, self.controller.getLongPollTimeout())
+    self.assertTrue(self.controller.canLongPoll())
+
+    # disabled
+    self.controller.config.get.return_value = "0"
+    self.assertFalse(self.controller.canLongPoll())
+
+    # a command queued or executing
+    self.controller.config.get.return_value = "10"
+    actionQueue.isIdle.return_value = False
+    self.assertFalse(self.controller.canLongPoll())
+
+    # the component is being installed or started
+    actionQueue.isIdle.return_value = True
+    self.controller.componentActualState = State.INSTALLING
+    self.assertFalse(self.controller.canLongPoll())
+    self.controller.componentActualState = State.STARTING
+    self.assertFalse(self.controller.canLongPoll())
+
+
+  @patch.object(threading._Event, "wait")
+  @patch("time.sleep")
+  @patch("json.loads")
+  @patch("json.dumps")
+  def test_heartbeatWithServer_longPoll(self, dumpsMock, loadsMock,
+                                        sleepMock, event_mock):
+    self.controller.heartbeat = MagicMock()
+    dumpsMock.return_value = "data"
+    self.controller.config.get.return_value = "10"
+    actionQueue = MagicMock()
+    actionQueue.isIdle.return_value = True
+    self.controller.actionQueue = actionQueue
+    self.controller.componentActualState = State.STARTED
+
+    urls = []
+    def one_heartbeat(url, data):
+      urls.append(url)
+      self.controller.DEBUG_STOP_HEARTBEATING = True
+      return "data"
+
+    self.controller.sendRequest = MagicMock(side_effect=one_heartbeat)
+
+    # idle: the heartbeat is held by the server, then repeated at once
+    self.controller.responseId = 1
+    loadsMock.return_value = {"responseId":"2", "restartAgent":"false"}
+    self.controller.DEBUG_STOP_HEARTBEATING = False
+    self.controller.heartbeatWithServer()
+
+    self.assertEqual([self.controller.heartbeatUrl + '/poll?wait=10000'], urls)
+    self.assertFalse(event_mock.called)
+    sleepMock.assert_called_once_with(
+      self.controller.netutil.MINIMUM_INTERVAL_BETWEEN_HEARTBEATS)
+
+    # a command in progress: an ordinary heartbeat
+    actionQueue.isIdle.return_value = False
+    self.controller.responseId = 1
+    self.controller.DEBUG_STOP_HEARTBEATING = False
+    self.controller.heartbeatWithServer()
+
+    self.assertEqual(self.controller.heartbeatUrl, urls[-1])
+    self.assertTrue(event_mock.called)
+
+    # a retried heartbeat is never held
+    actionQueue.isIdle.return_value = True
+    calls = []
+    def retry(url, data):
+      urls.append(url)
+      if len(calls) == 0:
+        calls.append(1)
+        raise Exception("test")
+      self.controller.DEBUG_STOP_HEARTBEATING = True
+      return "data"
+
+    self.controller.sendRequest.side_effect = retry
+    self.controller.responseId = 1
+    self.controller.DEBUG_STOP_HEARTBEATING = False
+    self.controller.heartbeatWithServer()
+
+    self.assertEqual([self.controller.heartbeatUrl + '/poll?wait=10000',
+                      self.controller.heartbeatUrl], urls[-2:])
+
+    self.controller.sendRequest = Controller.Controller.sendRequest
+
+
   @patch.object(threading._Event, "wait")
   @patch("time.sleep")
   @patch("json.loads")
@@ -537,6 +704,70 @@ class TestController(unittest.TestCase):
     self.assertEqual(State.STARTING, self.controller.componentActualState)
     self.assertEqual(State.STARTED, self.controller.componentExpectedState)
 
+  def test_resolveConfigurations(self):
+    configs = {"global": {"a": "b"}}
+    first = {"taskId": 1, "configurationHash": "h1",
+             "configurations": configs}
+    second = {"taskId": 2, "configurationHash": "h1"}
+    self.controller.resolveConfigurations([first, second])
+    self.assertEqual("h1", self.controller.configurationHash)
+    self.assertEqual(configs, second["configurations"])
+    # each command gets its own copy, as the orchestrator patches them
+    self.assertFalse(second["configurations"] is first["configurations"])
+
+    # configurations held from an earlier response
+    third = {"taskId": 3, "configurationHash": "h1", "configurations": None}
+    self.controller.resolveConfigurations([third])
+    self.assertEqual(configs, third["configurations"])
+
+    # commands without a hash are left alone
+    plain = {"taskId": 4}
+    self.controller.resolveConfigurations([plain])
+    self.assertFalse("configurations" in plain)
+
+    # unknown configurations: drop what is held, so the server resends them
+    unknown = {"taskId": 5, "configurationHash": "h2"}
+    self.controller.resolveConfigurations([unknown])
+    self.assertEqual({}, unknown["configurations"])
+    self.assertEqual(None, self.controller.configurationHash)
+    self.assertEqual(None, self.controller.configurations)
+
+
+  @patch.object(threading._Event, "wait")
+  @patch("time.sleep")
+  @patch("json.loads")
+  @patch("json.dumps")
+  def test_heartbeatWithServer_configurationHash(self, dumpsMock, loadsMock,
+                                                 sleepMock, event_mock):
+    heartbeat = MagicMock()
+    self.controller.heartbeat = heartbeat
+    dumpsMock.return_value = "data"
+    actionQueue = MagicMock()
+    actionQueue.isIdle.return_value = False
+    self.controller.actionQueue = actionQueue
+
+    def one_heartbeat(url, data):
+      self.controller.DEBUG_STOP_HEARTBEATING = True
+      return "data"
+
+    self.controller.sendRequest = MagicMock(side_effect=one_heartbeat)
+    self.controller.configurationHash = "h1"
+    self.controller.responseId = 1
+    command = {"roleCommand": "INSTALL", "configurationHash": "h2",
+               "configurations": {"global": {"a": "b"}}}
+    loadsMock.return_value = {"responseId": "2", "restartAgent": "false",
+                              "executionCommands": [command]}
+    self.controller.DEBUG_STOP_HEARTBEATING = False
+    self.controller.heartbeatWithServer()
+
+    # the hash held is reported, and the new one kept for the next heartbeat
+    self.assertEqual("h1", heartbeat.build.call_args[0][3])
+    self.assertEqual("h2", self.controller.configurationHash)
+    actionQueue.put.assert_called_once_with([command])
+
+    self.controller.sendRequest = Controller.Controller.sendRequest
+
+
   @patch("pprint.pformat")
   @patch("time.sleep")
   @patch("json.loads")
@@ -266,6 +266,23 @@ class TestCustomServiceOrchestrator(TestCase):
     }
     status = orchestrator.requestComponentStatus(status_command)
     self.assertEqual(CustomServiceOrchestrator.LIVE_STATUS, status['exitcode'])
+    self.assertFalse('metrics' in status)
+
+    # Test alive case with metrics; values which are not numbers are dropped
+    runCommand_mock.return_value = {
+      "exitcode": 0,
+      "structuredOut": {"metrics": {"load": "0.75", "state": "busy"}}
+    }
+    status = orchestrator.requestComponentStatus(status_command)
+    self.assertEqual({"load": 0.75}, status['metrics'])
+
+    # structured output may be read back as a JSON string
+    runCommand_mock.return_value = {
+      "exitcode": 0,
+      "structuredOut": '{"metrics": {"load": 0.25}}'
+    }
+    status = orchestrator.requestComponentStatus(status_command)
+    self.assertEqual({"load": 0.25}, status['metrics'])
 
     # Test dead case
     runCommand_mock.return_value = {
@@ -310,6 +327,14 @@ class TestCustomServiceOrchestrator(TestCase):
     self.assertEqual(command['configurations']['hbase-site']['blog_root'], "/b/" + tempdir + "/log")
     self.assertEqual(orchestrator.applied_configs, command['configurations'])
 
+    # configurations left out by the server
+    command = {'configurations': None}
+    orchestrator.finalize_command(command, False)
+    self.assertEqual(command['configurations'], {})
+    command = {}
+    orchestrator.finalize_command(command, False)
+    self.assertEqual(command['configurations'], {})
+
   def tearDown(self):
     # enable stdout
     sys.stdout = sys.__stdout__
@@ -67,6 +67,32 @@ class TestHeartbeat(TestCase):
     self.assertEquals((len(result) is 4) or (len(result) is 5), True)
     self.assertEquals(not heartbeat.reports, True,
                       "Heartbeat should not contain task in progress")
+    self.assertEquals('configurationHash' not in result, True,
+                      "Heartbeat should not contain a configuration hash")
+
+    result = heartbeat.build({}, 100, True, "abc")
+    self.assertEquals(result['configurationHash'], "abc")
+
+
+  @patch.object(ActionQueue, "result")
+  def test_build_metrics(self, result_mock):
+    config = AgentConfig("", "")
+    config.set('agent', 'prefix', 'tmp')
+    dummy_controller = MagicMock()
+    actionQueue = ActionQueue(config, dummy_controller)
+    result_mock.return_value = {
+      'reports': [],
+      'componentStatus': [
+        {'status': 'STARTED', 'componentName': 'HBASE_MASTER',
+         'reportResult' : False, 'metrics': {'load': 0.5}},
+      ],
+    }
+    heartbeat = Heartbeat(actionQueue, config)
+    commandResult = {}
+    hb = heartbeat.build(commandResult, 10)
+    self.assertEqual({'load': 0.5}, hb['metrics'])
+    self.assertEqual('STARTED', commandResult['healthStatus'])
+    self.assertFalse('componentStatus' in hb)
 
 
   @patch.object(ActionQueue, "result")
@@ -22,4 +22,12 @@ public class Constants {
   public static final int ACCEPT_TIME = 60000;
   public static final int CONNECT_TIMEOUT = 10000;
   public static final int RPC_TIMEOUT = 15000;
+  /**
+   * Time a cached AM proxy may be idle before it is checked: {@value}
+   */
+  public static final int PROXY_LIVENESS_INTERVAL = 30000;
+  /**
+   * Time a cached AM proxy may be unused before it is stopped: {@value}
+   */
+  public static final int PROXY_IDLE_TIMEOUT = 300000;
 }
@@ -84,6 +84,12 @@ public interface HoyaKeys extends HoyaXmlConfKeys {
   String SNAPSHOT_CONF_DIR_NAME = "snapshot";
   String DATA_DIR_NAME = "database";
   String HISTORY_DIR_NAME = "history";
+
+  /**
+   * Directory under the instance directory where providers keep state
+   * to be restored after an AM restart: {@value}
+   */
+  String PROVIDER_STATE_DIR_NAME = "providerstate";
   String HISTORY_FILENAME_SUFFIX = "json";
   String HISTORY_FILENAME_PREFIX = "rolehistory-";
   
@@ -104,6 +110,17 @@ public interface HoyaKeys extends HoyaXmlConfKeys {
    */
   String HISTORY_FILENAME_GLOB_PATTERN = HISTORY_FILENAME_PREFIX +"*."+
                                     HISTORY_FILENAME_SUFFIX;
+
+  /**
+   * Suffix of files holding the entries of the role history changed
+   * since the previous file was written
+   */
+  String HISTORY_DELTA_FILENAME_SUFFIX = "delta";
+  String HISTORY_DELTA_FILENAME_CREATION_PATTERN =
+    HISTORY_FILENAME_PREFIX + "%016x." + HISTORY_DELTA_FILENAME_SUFFIX;
+  String HISTORY_DELTA_FILENAME_GLOB_PATTERN =
+    HISTORY_FILENAME_PREFIX + "*." + HISTORY_DELTA_FILENAME_SUFFIX;
+
   /**
    * XML resource listing the standard Hoya providers
    * {@value}
@@ -62,6 +62,11 @@ public interface HoyaXMLConfKeysForTesting {
   String KEY_TEST_AGENT_HOME = "slider.test.agent.home";
   String KEY_TEST_AGENT_TAR = "slider.test.agent.tar";
 
+  /**
+   * Enable the large scale AM simulation: {@value}
+   */
+  String KEY_TEST_SCALE_ENABLED = "slider.test.scale.enabled";
+
   String KEY_TEST_TEARDOWN_KILLALL = "slider.test.teardown.killall";
   boolean DEFAULT_TEARDOWN_KILLALL = true;
 }
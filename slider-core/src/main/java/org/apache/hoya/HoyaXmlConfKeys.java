@@ -151,4 +151,171 @@ public interface HoyaXmlConfKeys {
 
   String IPC_CLIENT_FALLBACK_TO_SIMPLE_AUTH =
       "ipc.client.fallback-to-simple-auth-allowed";
+
+  /**
+   * Milliseconds between evaluations of the autoscaling policies
+   * of the components: {@value}
+   */
+  String KEY_AUTOSCALE_INTERVAL = "slider.autoscale.interval";
+
+  /**
+   * Default value for the autoscaling interval: {@value}
+   */
+  int DEFAULT_AUTOSCALE_INTERVAL = 30000;
+
+  /**
+   * Milliseconds between checks of the health gate of any rolling
+   * restart in progress: {@value}
+   */
+  String KEY_ROLLING_RESTART_INTERVAL = "slider.rolling.restart.interval";
+
+  /**
+   * Default value for the rolling restart check interval: {@value}
+   */
+  int DEFAULT_ROLLING_RESTART_INTERVAL = 5000;
+
+  /**
+   * Port of the AM's dedicated server for agent requests;
+   * 0 for any free port: {@value}
+   */
+  String KEY_AGENT_WEB_PORT = "slider.agent.web.port";
+
+  /**
+   * Number of threads handling agent requests; 0 to serve agents
+   * from the main web application instead: {@value}
+   */
+  String KEY_AGENT_WEB_THREADS = "slider.agent.web.threads";
+
+  /**
+   * Default number of agent request threads: {@value}
+   */
+  int DEFAULT_AGENT_WEB_THREADS = 16;
+
+  /**
+   * Maximum number of agent requests waiting for a thread: {@value}
+   */
+  String KEY_AGENT_WEB_QUEUE = "slider.agent.web.queue";
+
+  /**
+   * Default limit on waiting agent requests: {@value}
+   */
+  int DEFAULT_AGENT_WEB_QUEUE = 256;
+
+  /**
+   * Agent registrations admitted per second; registrations beyond this
+   * are told to retry later: {@value}
+   */
+  String KEY_AGENT_REGISTRATION_RATE = "slider.agent.registration.rate";
+
+  /**
+   * Default registration rate: {@value}
+   */
+  int DEFAULT_AGENT_REGISTRATION_RATE = 20;
+
+  /**
+   * Largest burst of agent registrations admitted at once: {@value}
+   */
+  String KEY_AGENT_REGISTRATION_BURST = "slider.agent.registration.burst";
+
+  /**
+   * Default registration burst: {@value}
+   */
+  int DEFAULT_AGENT_REGISTRATION_BURST = 50;
+
+  /**
+   * Agent heartbeats admitted per second: {@value}
+   */
+  String KEY_AGENT_HEARTBEAT_RATE = "slider.agent.heartbeat.rate";
+
+  /**
+   * Default heartbeat rate: {@value}
+   */
+  int DEFAULT_AGENT_HEARTBEAT_RATE = 200;
+
+  /**
+   * Largest burst of agent heartbeats admitted at once: {@value}
+   */
+  String KEY_AGENT_HEARTBEAT_BURST = "slider.agent.heartbeat.burst";
+
+  /**
+   * Default heartbeat burst: {@value}
+   */
+  int DEFAULT_AGENT_HEARTBEAT_BURST = 400;
+
+  /**
+   * Shortest heartbeat interval in millis assigned to an agent whose
+   * component is in its target state with nothing pending;
+   * larger instances are given longer intervals to stay within
+   * the heartbeat budget: {@value}
+   */
+  String KEY_AGENT_HEARTBEAT_INTERVAL = "slider.agent.heartbeat.interval";
+
+  /**
+   * Default minimum heartbeat interval: {@value}
+   */
+  int DEFAULT_AGENT_HEARTBEAT_INTERVAL = 10000;
+
+  /**
+   * Shortest heartbeat interval in millis assigned to an agent with
+   * commands pending or a component not yet in its target state: {@value}
+   */
+  String KEY_AGENT_HEARTBEAT_INTERVAL_ACTIVE =
+    "slider.agent.heartbeat.interval.active";
+
+  /**
+   * Default minimum active heartbeat interval: {@value}
+   */
+  int DEFAULT_AGENT_HEARTBEAT_INTERVAL_ACTIVE = 1000;
+
+  /**
+   * Heartbeats per second the assigned intervals should add up to at most;
+   * by default half of {@link #KEY_AGENT_HEARTBEAT_RATE}, leaving the rest
+   * for retries and long polls: {@value}
+   */
+  String KEY_AGENT_HEARTBEAT_BUDGET = "slider.agent.heartbeat.budget";
+
+  /**
+   * Milliseconds between saves of changed agent state to the
+   * instance directory: {@value}
+   */
+  String KEY_AGENT_STATE_SAVE_INTERVAL = "slider.agent.state.save.interval";
+
+  /**
+   * Default agent state save interval: {@value}
+   */
+  int DEFAULT_AGENT_STATE_SAVE_INTERVAL = 1000;
+
+  /**
+   * Milliseconds without changes to the role history after which
+   * the changes are checkpointed: {@value}
+   */
+  String KEY_HISTORY_CHECKPOINT_INTERVAL = "slider.history.checkpoint.interval";
+
+  /**
+   * Default role history checkpoint interval: {@value}
+   */
+  int DEFAULT_HISTORY_CHECKPOINT_INTERVAL = 5000;
+
+  /**
+   * Longest time in milliseconds a change to the role history may wait
+   * for a checkpoint while further changes keep arriving: {@value}
+   */
+  String KEY_HISTORY_CHECKPOINT_MAX_DELAY =
+      "slider.history.checkpoint.max.delay";
+
+  /**
+   * Default maximum checkpoint delay: {@value}
+   */
+  int DEFAULT_HISTORY_CHECKPOINT_MAX_DELAY = 30000;
+
+  /**
+   * Number of delta checkpoints of the role history written after
+   * a full one before the next full one: {@value}
+   */
+  String KEY_HISTORY_CHECKPOINT_DELTAS = "slider.history.checkpoint.deltas";
+
+  /**
+   * Default number of deltas between full checkpoints: {@value}
+   */
+  int DEFAULT_HISTORY_CHECKPOINT_DELTAS = 20;
 }
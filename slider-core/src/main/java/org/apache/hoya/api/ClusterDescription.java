@@ -32,8 +32,9 @@ import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 import org.codehaus.jackson.map.JsonMappingException;
 import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.map.SerializationConfig;
+import org.codehaus.jackson.map.ObjectWriter;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
+import org.codehaus.jackson.util.TokenBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,6 +69,23 @@ public class ClusterDescription implements Cloneable {
   protected static final Logger
     log = LoggerFactory.getLogger(ClusterDescription.class);
 
+  /**
+   * Shared mapper. Mappers and writers are thread safe once configured,
+   * and sharing them retains the serializer caches across calls
+   */
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  /**
+   * Writer for pretty-printed JSON: the format used in files and logs
+   */
+  private static final ObjectWriter PRETTY_WRITER =
+    MAPPER.writerWithDefaultPrettyPrinter();
+
+  /**
+   * Writer for compact JSON, with no whitespace
+   */
+  private static final ObjectWriter COMPACT_WRITER = MAPPER.writer();
+
   private static final String UTF_8 = "UTF-8";
 
   /**
@@ -230,12 +248,13 @@ public class ClusterDescription implements Cloneable {
   }
 
   /**
-   * A deep clone of the spec. This is done inefficiently with a ser/derser
+   * A deep clone of the spec. This is done with a ser/deser through
+   * a token buffer, so no JSON text is generated
    * @return the cluster description
    */
   public ClusterDescription deepClone() {
     try {
-      return fromJson(toJsonString());
+      return copyThroughTokens(this);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -277,9 +296,7 @@ public class ClusterDescription implements Cloneable {
   private void writeJsonAsBytes(DataOutputStream dataOutputStream) throws
                                                                    IOException {
     try {
-      String json = toJsonString();
-      byte[] b = json.getBytes(UTF_8);
-      dataOutputStream.write(b);
+      writeJson(dataOutputStream, false);
     } finally {
       dataOutputStream.close();
     }
@@ -308,10 +325,10 @@ public class ClusterDescription implements Cloneable {
    * @return the copy
    */
   public static ClusterDescription copy(ClusterDescription source) {
-    //currently the copy is done by a generate/save. Inefficient but it goes
-    //down the tree nicely
+    //the copy is done by a generate/parse through a token buffer,
+    //which goes down the tree nicely without creating any JSON text
     try {
-      return fromJson(source.toJsonString());
+      return copyThroughTokens(source);
     } catch (IOException e) {
       throw new RuntimeException("ClusterDescription copy failed " + e, e);
     }
@@ -325,9 +342,51 @@ public class ClusterDescription implements Cloneable {
   public String toJsonString() throws IOException,
                                       JsonGenerationException,
                                       JsonMappingException {
-    ObjectMapper mapper = new ObjectMapper();
-    mapper.configure(SerializationConfig.Feature.INDENT_OUTPUT, true);
-    return mapper.writeValueAsString(this);
+    return toJsonString(false);
+  }
+
+  /**
+   * Convert to a JSON string
+   * @param compact should the output be compact rather than pretty-printed
+   * @return a JSON string description
+   * @throws IOException Problems mapping/writing the object
+   */
+  public String toJsonString(boolean compact) throws IOException,
+                                                     JsonGenerationException,
+                                                     JsonMappingException {
+    return writer(compact).writeValueAsString(this);
+  }
+
+  /**
+   * Stream the JSON straight to an output stream as UTF-8, without
+   * building an intermediate string. The stream is closed afterwards.
+   * @param out output stream
+   * @param compact should the output be compact rather than pretty-printed
+   * @throws IOException Problems mapping/writing the object
+   */
+  public void writeJson(OutputStream out, boolean compact) throws
+                                                           IOException,
+                                                           JsonGenerationException,
+                                                           JsonMappingException {
+    writer(compact).writeValue(out, this);
+  }
+
+  private static ObjectWriter writer(boolean compact) {
+    return compact ? COMPACT_WRITER : PRETTY_WRITER;
+  }
+
+  /**
+   * Deep copy by serializing into a token buffer and reading the
+   * tokens back
+   * @param source source
+   * @return the copy
+   * @throws IOException Problems mapping the object
+   */
+  private static ClusterDescription copyThroughTokens(ClusterDescription source)
+    throws IOException {
+    TokenBuffer buffer = new TokenBuffer(MAPPER);
+    MAPPER.writeValue(buffer, source);
+    return MAPPER.readValue(buffer.asParser(MAPPER), ClusterDescription.class);
   }
 
   /**
@@ -339,9 +398,8 @@ public class ClusterDescription implements Cloneable {
    */
   public static ClusterDescription fromJson(String json)
     throws IOException, JsonParseException, JsonMappingException {
-    ObjectMapper mapper = new ObjectMapper();
     try {
-      return mapper.readValue(json, ClusterDescription.class);
+      return MAPPER.readValue(json, ClusterDescription.class);
     } catch (IOException e) {
       log.error("Exception while parsing json : " + e + "\n" + json, e);
       throw e;
@@ -357,9 +415,8 @@ public class ClusterDescription implements Cloneable {
      */
     public static ClusterDescription fromStream(InputStream is)
             throws IOException, JsonParseException, JsonMappingException {
-        ObjectMapper mapper = new ObjectMapper();
         try {
-            return mapper.readValue(is, ClusterDescription.class);
+            return MAPPER.readValue(is, ClusterDescription.class);
         } catch (IOException e) {
             log.error("Exception while parsing input stream : " + e, e);
       throw e;
@@ -375,9 +432,8 @@ public class ClusterDescription implements Cloneable {
    */
   public static ClusterDescription fromFile(File jsonFile)
     throws IOException, JsonParseException, JsonMappingException {
-    ObjectMapper mapper = new ObjectMapper();
     try {
-      return mapper.readValue(jsonFile, ClusterDescription.class);
+      return MAPPER.readValue(jsonFile, ClusterDescription.class);
     } catch (IOException e) {
       log.error("Exception while parsing json file {}: {}" , jsonFile, e);
       throw e;
@@ -88,6 +88,8 @@ public class ClusterDescriptionOperations {
       Map<String, String> destRole = cd.getOrAddRole(name);
       Map<String, String> sourceComponent = compEntry.getValue();
       HoyaUtils.mergeMapsIgnoreDuplicateKeys(destRole, sourceComponent);
+      // components inherit the global options of their tree
+      HoyaUtils.mergeMapsIgnoreDuplicateKeys(destRole, confTree.global);
     }
   }
 }
@@ -110,6 +110,15 @@ public interface HoyaClusterProtocol extends VersionedProtocol {
    */
   Messages.KillContainerResponseProto killContainer(Messages.KillContainerRequestProto request) throws IOException, YarnException;
 
+  /**
+   * Start a rolling restart of the instances of a role
+   * @param request request naming the role and the batch size
+   * @return the response, with the number of instances to be replaced
+   * @throws IOException
+   * @throws YarnException
+   */
+  Messages.RollingRestartResponseProto rollingRestart(Messages.RollingRestartRequestProto request) throws IOException, YarnException;
+
   /**
    * AM to commit suicide. If the Hadoop halt entry point has not been disabled,
    * this will fail rather than return with a response.
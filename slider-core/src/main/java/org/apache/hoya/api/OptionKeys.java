@@ -91,6 +91,18 @@ public interface OptionKeys {
    */
   int DEFAULT_CONTAINER_FAILURE_THRESHOLD = 5;
 
+  /**
+   * Number of completed and of failed containers whose details
+   * are retained by the AM: {@value}
+   */
+  String INTERNAL_CONTAINER_HISTORY_RETENTION =
+    "internal.container.history.retention";
+
+  /**
+   * Default container history retention: {@value}
+   */
+  int DEFAULT_CONTAINER_HISTORY_RETENTION = 1000;
+
   /**
    * delay for container startup:{@value}
    */
@@ -69,4 +69,121 @@ public interface ResourceKeys {
    * placement policy
    */
   String COMPONENT_PLACEMENT_POLICY = "component.placement.policy";
+
+  /**
+   * Maximum number of instances of a component on a single host
+   * when the anti-affinity placement policy is set: {@value}
+   */
+  String COMPONENT_PLACEMENT_MAX_PER_HOST = "component.placement.max.per.host";
+
+  /** {@value} */
+  int DEF_COMPONENT_PLACEMENT_MAX_PER_HOST = 1;
+
+  /**
+   * Seconds a request for a container on a host from the role history
+   * may stay outstanding under the strict-history placement policy
+   * before it is cancelled and the container asked for anywhere: {@value}
+   */
+  String COMPONENT_PLACEMENT_STRICT_TIMEOUT =
+    "component.placement.strict.timeout";
+
+  /** {@value} */
+  int DEF_COMPONENT_PLACEMENT_STRICT_TIMEOUT = 300;
+
+  /**
+   * Maximum number of containers of a component released and asked for
+   * again between reviews of the cluster because they break its placement
+   * policy; beyond this, allocations are accepted where they are: {@value}
+   */
+  String COMPONENT_PLACEMENT_MAX_REREQUESTS =
+    "component.placement.max.rerequests";
+
+  /** {@value} */
+  int DEF_COMPONENT_PLACEMENT_MAX_REREQUESTS = 3;
+
+  /**
+   * Number of warm spare containers to keep allocated for a component:
+   * installed but not started until promoted to replace a failed
+   * instance: {@value}
+   */
+  String COMPONENT_WARM_SPARES = "component.warm.spares";
+
+  /** {@value} */
+  int DEF_COMPONENT_WARM_SPARES = 0;
+
+  /**
+   * Port in a component's containers which the AM probes for health;
+   * 0 disables health probing of the component: {@value}
+   */
+  String COMPONENT_HEALTH_PROBE_PORT = "component.health.probe.port";
+
+  /** {@value} */
+  int DEF_COMPONENT_HEALTH_PROBE_PORT = 0;
+
+  /**
+   * Path of an HTTP GET to issue against the probe port; if unset
+   * the probe only checks that the port accepts connections: {@value}
+   */
+  String COMPONENT_HEALTH_PROBE_PATH = "component.health.probe.path";
+
+  /**
+   * Number of consecutive probe failures after which a container is
+   * considered unhealthy and released for replacement: {@value}
+   */
+  String COMPONENT_HEALTH_PROBE_FAILURE_THRESHOLD =
+    "component.health.probe.failure.threshold";
+
+  /** {@value} */
+  int DEF_COMPONENT_HEALTH_PROBE_FAILURE_THRESHOLD = 3;
+
+  /**
+   * Seconds after a component starts during which failed health probes
+   * are not counted, giving it time to open its port. Where the provider
+   * reports component starts this runs from that report, otherwise from
+   * the start of the container: {@value}
+   */
+  String COMPONENT_HEALTH_PROBE_BOOTSTRAP_TIMEOUT =
+    "component.health.probe.bootstrap.timeout";
+
+  /** {@value} */
+  int DEF_COMPONENT_HEALTH_PROBE_BOOTSTRAP_TIMEOUT = 60;
+
+  /**
+   * Minimum number of instances the autoscaler may shrink a component
+   * to: {@value}
+   */
+  String COMPONENT_AUTOSCALE_MIN = "component.autoscale.min";
+
+  /** {@value} */
+  int DEF_COMPONENT_AUTOSCALE_MIN = 1;
+
+  /**
+   * Maximum number of instances the autoscaler may grow a component
+   * to; 0 disables autoscaling of the component. The load is reported
+   * by the component's status script, as the "load" metric of its
+   * structured output: {@value}
+   */
+  String COMPONENT_AUTOSCALE_MAX = "component.autoscale.max";
+
+  /** {@value} */
+  int DEF_COMPONENT_AUTOSCALE_MAX = 0;
+
+  /**
+   * Utilization, as a percentage of the load the agents report as
+   * full, which the autoscaler sizes a component for: {@value}
+   */
+  String COMPONENT_AUTOSCALE_TARGET_UTILIZATION =
+    "component.autoscale.target.utilization";
+
+  /** {@value} */
+  int DEF_COMPONENT_AUTOSCALE_TARGET_UTILIZATION = 70;
+
+  /**
+   * Seconds after the autoscaler resizes a component before it may
+   * resize it again; also how far ahead load is forecast: {@value}
+   */
+  String COMPONENT_AUTOSCALE_COOLDOWN = "component.autoscale.cooldown";
+
+  /** {@value} */
+  int DEF_COMPONENT_AUTOSCALE_COOLDOWN = 300;
 }
@@ -54,6 +54,16 @@ public interface RoleKeys {
    */
   String ROLE_FAILED_STARTING_INSTANCES = "role.failed.starting.instances";
 
+  /**
+   * Status report: number still to be replaced in a rolling restart: {@value}
+   */
+  String ROLE_RESTART_REMAINING_INSTANCES = "role.restart.remaining.instances";
+
+  /**
+   * Status report: number replaced by a rolling restart: {@value}
+   */
+  String ROLE_RESTARTED_INSTANCES = "role.restarted.instances";
+
   /**
    * Extra arguments (non-JVM) to use when starting this role
    */
@@ -50,11 +50,67 @@ public interface StatusKeys {
       "containers.surplus";
   String STATISTICS_CONTAINERS_UNKNOWN_COMPLETED =
       "containers.unknown.completed";
+  /**
+   * Containers released and re-requested to satisfy placement policies
+   */
+  String STATISTICS_CONTAINERS_ANTI_AFFINITY_REREQUESTS =
+      "containers.placement.anti-affinity.rerequests";
+  String STATISTICS_CONTAINERS_RACK_SPREAD_REREQUESTS =
+      "containers.placement.rack-spread.rerequests";
+  String STATISTICS_CONTAINERS_STRICT_HISTORY_REREQUESTS =
+      "containers.placement.strict-history.rerequests";
+  /**
+   * Warm spare containers: current count, promotions and the
+   * time in millis from the last promotion to the component starting
+   */
+  String STATISTICS_CONTAINERS_WARM_SPARES = "containers.warm.spares";
+  String STATISTICS_CONTAINERS_WARM_SPARE_PROMOTIONS =
+      "containers.warm.spare.promotions";
+  String STATISTICS_CONTAINERS_WARM_SPARE_FAILOVER_MILLIS =
+      "containers.warm.spare.failover.millis";
+  /**
+   * Time in millis from the last container to start to its
+   * component being reported as started
+   */
+  String STATISTICS_CONTAINERS_COMPONENT_STARTUP_MILLIS =
+      "containers.component.startup.millis";
+  /**
+   * Containers released after failing their health probes
+   */
+  String STATISTICS_CONTAINERS_UNHEALTHY_RELEASED =
+      "containers.unhealthy.released";
+  /**
+   * Statistics section of the AM's agent request server: per-endpoint
+   * counts and latencies, and the state of its thread pool
+   */
+  String STATISTICS_AGENT_WEB = "agent-web";
+  String STATISTICS_AGENT_WEB_THREADS_ACTIVE = "threads.active";
+  String STATISTICS_AGENT_WEB_QUEUED = "queued";
+  String STATISTICS_AGENT_WEB_REJECTED = "rejected";
+  String STATISTICS_AGENT_WEB_QUEUE_WAIT_MAX =
+      "queue.wait.max.millis";
+  /**
+   * Statistics section of the role history checkpoints: counts, and
+   * the latency and number of entries of the latest and largest
+   */
+  String STATISTICS_HISTORY_CHECKPOINT = "history-checkpoint";
+  String STATISTICS_HISTORY_CHECKPOINTS = "checkpoints";
+  String STATISTICS_HISTORY_CHECKPOINTS_FULL = "checkpoints.full";
+  String STATISTICS_HISTORY_CHECKPOINTS_FAILED = "checkpoints.failed";
+  String STATISTICS_HISTORY_CHECKPOINT_MILLIS_LAST = "latency.last.millis";
+  String STATISTICS_HISTORY_CHECKPOINT_MILLIS_MAX = "latency.max.millis";
+  String STATISTICS_HISTORY_CHECKPOINT_ENTRIES_LAST = "entries.last";
+  String STATISTICS_HISTORY_CHECKPOINT_ENTRIES_MAX = "entries.max";
   /**
    * No of containers provided on AM restart
    */
   String INFO_CONTAINERS_AM_RESTART = "containers.at.am-restart";
 
+  /**
+   * Time in millis to rebuild the model on AM restart
+   */
+  String INFO_AM_RESTART_REBUILD_TIME_MILLIS = "am-restart.rebuild.time.millis";
+
   String INFO_CREATE_TIME_MILLIS = "create.time.millis";
   String INFO_CREATE_TIME_HUMAN = "create.time";
   String INFO_LIVE_TIME_MILLIS = "live.time.millis";
@@ -81,4 +137,8 @@ public interface StatusKeys {
   String INFO_AM_RPC_PORT = "info.am.rpc.port";
   String INFO_AM_WEB_PORT = "info.am.web.port";
   String INFO_AM_WEB_URL = "info.am.web.url";
+  /**
+   * Port to which agents send their requests
+   */
+  String INFO_AM_AGENT_PORT = "info.am.agent.port";
 }
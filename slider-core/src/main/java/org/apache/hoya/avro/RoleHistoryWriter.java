@@ -36,6 +36,7 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.GlobFilter;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.net.NetworkTopology;
 import org.apache.hoya.HoyaKeys;
 import org.apache.hoya.exceptions.BadConfigException;
 import org.apache.hoya.tools.HoyaUtils;
@@ -45,6 +46,7 @@ import org.apache.hoya.yarn.appmaster.state.RoleHistory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
@@ -73,8 +75,63 @@ public class RoleHistoryWriter {
    * marker in the file to catch changes that are fundamentally incompatible
    * at the semantic level -changes that require either a different
    * parser or get rejected outright.
+   * Version 2 added the rack of each node.
    */
-  public static final int ROLE_HISTORY_VERSION = 0x01;
+  public static final int ROLE_HISTORY_VERSION = 0x02;
+
+  /**
+   * The version before racks were added. Files of this version are still
+   * read, with every node on the default rack.
+   */
+  public static final int ROLE_HISTORY_VERSION_1 = 0x01;
+
+  /**
+   * Schema that version 1 files were written with
+   */
+  private static final Schema ROLE_HISTORY_SCHEMA_1 = buildVersion1Schema();
+
+  /**
+   * Number of bytes buffered so that a source can be read again from the
+   * start once its header has been read.
+   */
+  private static final int HEADER_READ_LIMIT = 64 * 1024;
+
+  /**
+   * Build the version 1 schema: the current one without the rack
+   * of a node entry
+   * @return the schema
+   */
+  private static Schema buildVersion1Schema() {
+    Schema entrySchema = NodeEntryRecord.getClassSchema();
+    List<Schema.Field> entryFields = new ArrayList<Schema.Field>();
+    for (Schema.Field field : entrySchema.getFields()) {
+      if (!"rack".equals(field.name())) {
+        entryFields.add(new Schema.Field(field.name(), field.schema(),
+                                         field.doc(), field.defaultValue()));
+      }
+    }
+    Schema entrySchema1 = Schema.createRecord(entrySchema.getName(),
+                                              entrySchema.getDoc(),
+                                              entrySchema.getNamespace(),
+                                              false);
+    entrySchema1.setFields(entryFields);
+
+    Schema recordSchema = RoleHistoryRecord.getClassSchema();
+    List<Schema> branches = new ArrayList<Schema>();
+    for (Schema branch : recordSchema.getField("entry").schema().getTypes()) {
+      branches.add(branch.getFullName().equals(entrySchema.getFullName())
+                   ? entrySchema1 : branch);
+    }
+    Schema recordSchema1 = Schema.createRecord(recordSchema.getName(),
+                                               recordSchema.getDoc(),
+                                               recordSchema.getNamespace(),
+                                               false);
+    List<Schema.Field> recordFields = new ArrayList<Schema.Field>();
+    recordFields.add(new Schema.Field("entry", Schema.createUnion(branches),
+                                      null, null));
+    recordSchema1.setFields(recordFields);
+    return recordSchema1;
+  }
   
   /**
    * Write out the history.
@@ -88,11 +145,38 @@ public class RoleHistoryWriter {
    */
   public long write(OutputStream out, RoleHistory history, long savetime)
     throws IOException {
+    int roles = history.getRoleSize();
+    List<NodeEntryRecord> records = new ArrayList<NodeEntryRecord>();
+    Collection<NodeInstance> instances = history.cloneNodemap().values();
+    for (NodeInstance instance : instances) {
+      for (int role = 0; role < roles; role++) {
+        NodeEntry nodeEntry = instance.get(role);
+        if (nodeEntry != null) {
+          records.add(build(nodeEntry, role, instance));
+        }
+      }
+    }
+    return write(out, roles, records, savetime);
+  }
+
+  /**
+   * Write out a set of history records: the whole history or a delta.
+   *
+   * @param out outstream
+   * @param roles number of roles in the history
+   * @param records records to write
+   * @param savetime time in millis for the save time to go in as a record
+   * @return no of records written
+   * @throws IOException IO failures
+   */
+  public long write(OutputStream out,
+                    int roles,
+                    Collection<NodeEntryRecord> records,
+                    long savetime) throws IOException {
     try {
       DatumWriter<RoleHistoryRecord> writer =
         new SpecificDatumWriter<RoleHistoryRecord>(RoleHistoryRecord.class);
 
-      int roles = history.getRoleSize();
       RoleHistoryHeader header = new RoleHistoryHeader();
       header.setVersion(ROLE_HISTORY_VERSION);
       header.setSaved(savetime);
@@ -105,18 +189,9 @@ public class RoleHistoryWriter {
       writer.write(record, encoder);
       long count = 0;
       //now for every role history entry, write out its record
-      Collection<NodeInstance> instances = history.cloneNodemap().values();
-      for (NodeInstance instance : instances) {
-        for (int role = 0; role < roles; role++) {
-          NodeEntry nodeEntry = instance.get(role);
-
-          if (nodeEntry != null) {
-            NodeEntryRecord ner = build(nodeEntry, role, instance.hostname);
-            record = new RoleHistoryRecord(ner);
-            writer.write(record, encoder);
-            count++;
-          }
-        }
+      for (NodeEntryRecord ner : records) {
+        writer.write(new RoleHistoryRecord(ner), encoder);
+        count++;
       }
       // footer
       RoleHistoryFooter footer = new RoleHistoryFooter();
@@ -149,6 +224,37 @@ public class RoleHistoryWriter {
   }
 
 
+  /**
+   * Write a set of history records to a file
+   *
+   * @param fs filesystem
+   * @param path path
+   * @param overwrite overwrite flag
+   * @param roles number of roles in the history
+   * @param records records to write
+   * @param savetime time in millis for the save time to go in as a record
+   * @return no of records written
+   * @throws IOException IO failures
+   */
+  public long write(FileSystem fs, Path path, boolean overwrite,
+                    int roles, Collection<NodeEntryRecord> records,
+                    long savetime) throws IOException {
+    FSDataOutputStream out = fs.create(path, overwrite);
+    return write(out, roles, records, savetime);
+  }
+
+  /**
+   * Create the filename for a delta of the history
+   * @param time time value
+   * @return a filename such that later filenames sort later in the directory
+   */
+  public Path createDeltaFilename(Path historyPath, long time) {
+    String filename = String.format(Locale.ENGLISH,
+                          HoyaKeys.HISTORY_DELTA_FILENAME_CREATION_PATTERN,
+                          time);
+    return new Path(historyPath, filename);
+  }
+
   /**
    * Create the filename for a history file
    * @param time time value
@@ -162,9 +268,18 @@ public class RoleHistoryWriter {
     return path;
   }
   
-  private NodeEntryRecord build(NodeEntry entry, int role, String hostname) {
+  /**
+   * Build the record of a node entry
+   * @param entry entry
+   * @param role role index
+   * @param instance node of the entry
+   * @return the record
+   */
+  public NodeEntryRecord build(NodeEntry entry, int role,
+                               NodeInstance instance) {
     NodeEntryRecord record = new NodeEntryRecord(
-      hostname, role, entry.getLive() > 0, entry.getLastUsed()
+      instance.hostname, role, entry.getLive() > 0, entry.getLastUsed(),
+      instance.getRack()
     );
     return record;
   }
@@ -182,12 +297,30 @@ public class RoleHistoryWriter {
   public int read(InputStream in, RoleHistory history) throws
                                                        IOException,
                                                        BadConfigException {
+    return read(in, history, false);
+  }
+
+  /**
+   * Read a history or a delta of one.
+   * Older versions are read by resolving the schema they were written
+   * with against the current one; fields they lack take their defaults.
+   * @param in input source
+   * @param history history to read into
+   * @param delta is the source a delta? If so its entries are merged into
+   * the history's, rather than replacing them
+   * @return no. of entries read
+   * @throws IOException problems
+   */
+  public int read(InputStream in, RoleHistory history, boolean delta) throws
+                                                       IOException,
+                                                       BadConfigException {
+    BufferedInputStream source = new BufferedInputStream(in);
     try {
+      Schema schema = RoleHistoryRecord.getClassSchema();
       DatumReader<RoleHistoryRecord> reader =
         new SpecificDatumReader<RoleHistoryRecord>(RoleHistoryRecord.class);
-      Decoder decoder =
-        DecoderFactory.get().jsonDecoder(RoleHistoryRecord.getClassSchema(),
-                                         in);
+      source.mark(HEADER_READ_LIMIT);
+      Decoder decoder = DecoderFactory.get().jsonDecoder(schema, source);
 
       //read header : no entry -> EOF
       RoleHistoryRecord record = reader.read(null, decoder);
@@ -197,13 +330,25 @@ public class RoleHistoryWriter {
       }
       RoleHistoryHeader header = (RoleHistoryHeader) entry;
       Long saved = header.getSaved();
-      if (header.getVersion() != ROLE_HISTORY_VERSION) {
+      if (header.getVersion() == ROLE_HISTORY_VERSION_1) {
+        // start again, decoding with the schema the file was written with
+        source.reset();
+        reader = new SpecificDatumReader<RoleHistoryRecord>(
+          ROLE_HISTORY_SCHEMA_1, schema);
+        decoder = DecoderFactory.get().jsonDecoder(ROLE_HISTORY_SCHEMA_1,
+                                                   source);
+        reader.read(null, decoder);
+      } else if (header.getVersion() != ROLE_HISTORY_VERSION) {
         throw new IOException(
           String.format("Can't read role file version %04x -need %04x",
           header.getVersion(),
           ROLE_HISTORY_VERSION));
       }
-      history.prepareForReading(header);
+      if (delta) {
+        history.prepareForMerging(header);
+      } else {
+        history.prepareForReading(header);
+      }
       RoleHistoryFooter footer = null;
       int records = 0;
       //go through reading data
@@ -233,6 +378,11 @@ public class RoleHistoryWriter {
           String hostname =
             HoyaUtils.sequenceToString(nodeEntryRecord.getHost());
           NodeInstance instance = history.getOrCreateNodeInstance(hostname);
+          // the saved rack is used if the current topology does not know it
+          if (NetworkTopology.DEFAULT_RACK.equals(instance.getRack())) {
+            instance.setRack(
+              HoyaUtils.sequenceToString(nodeEntryRecord.getRack()));
+          }
           instance.set(roleId, nodeEntry);
         }
       } catch (EOFException e) {
@@ -242,7 +392,7 @@ public class RoleHistoryWriter {
         throw ex;
       }
       //at this point there should be no data left. 
-      if (in.read() > 0) {
+      if (source.read() > 0) {
         // footer is in stream before the last record
         throw new EOFException(
           "File footer reached before end of file -after " + records +
@@ -254,7 +404,7 @@ public class RoleHistoryWriter {
       }
       return records;
     } finally {
-      in.close();
+      source.close();
     }
 
   }
@@ -394,7 +544,100 @@ public class RoleHistoryWriter {
                                                           BadConfigException {
     assert fs != null: "null filesystem";
     List<Path> entries = findAllHistoryEntries(fs, dir, false);
-    return attemptToReadHistory(roleHistory, fs, entries);
+    Path loaded = attemptToReadHistory(roleHistory, fs, entries);
+    if (loaded != null) {
+      int deltas = applyDeltas(fs, loaded, roleHistory);
+      log.debug("Applied {} deltas to {}", deltas, loaded);
+    }
+    return loaded;
+  }
+
+  /**
+   * Find the deltas in the directory of a history file which were
+   * written after it
+   * @param fs filesystem
+   * @param base history file
+   * @return a possibly empty list of deltas, oldest first
+   * @throws IOException IO problems
+   */
+  public List<Path> findDeltasAfter(FileSystem fs, Path base) throws
+                                                              IOException {
+    String baseKey = stripSuffix(base);
+    FileStatus[] stats = fs.listStatus(base.getParent(),
+      new GlobFilter(HoyaKeys.HISTORY_DELTA_FILENAME_GLOB_PATTERN));
+    List<Path> paths = new ArrayList<Path>(stats.length);
+    for (FileStatus stat : stats) {
+      if (stat.isFile() && stripSuffix(stat.getPath()).compareTo(baseKey) > 0) {
+        paths.add(stat.getPath());
+      }
+    }
+    Collections.sort(paths, new OlderFilesFirst());
+    return paths;
+  }
+
+  /**
+   * Apply the deltas written after a history file to the history read
+   * from it, oldest first. If one cannot be read, it and any later
+   * deltas are skipped.
+   * @param fs filesystem
+   * @param base history file
+   * @param roleHistory history read from that file
+   * @return the number of deltas applied
+   * @throws IOException if the directory cannot be listed
+   */
+  public int applyDeltas(FileSystem fs, Path base, RoleHistory roleHistory)
+    throws IOException, BadConfigException {
+    int applied = 0;
+    for (Path delta : findDeltasAfter(fs, base)) {
+      try {
+        read(fs.open(delta), roleHistory, true);
+        applied++;
+      } catch (IOException e) {
+        log.warn("Failed to read delta {}; skipping later deltas", delta, e);
+        break;
+      } catch (AvroTypeException e) {
+        log.warn("Failed to parse delta {}; skipping later deltas", delta, e);
+        break;
+      }
+    }
+    return applied;
+  }
+
+  /**
+   * Delete all deltas written before a history file; they are
+   * included in it
+   * @param fileSystem filesystem
+   * @param keep history file
+   * @return the number of files deleted
+   * @throws IOException IO problems
+   */
+  public int purgeOlderDeltas(FileSystem fileSystem, Path keep) throws
+                                                                IOException {
+    String keepKey = stripSuffix(keep);
+    FileStatus[] stats = fileSystem.listStatus(keep.getParent(),
+      new GlobFilter(HoyaKeys.HISTORY_DELTA_FILENAME_GLOB_PATTERN));
+    int deleteCount = 0;
+    for (FileStatus stat : stats) {
+      Path path = stat.getPath();
+      if (stripSuffix(path).compareTo(keepKey) < 0) {
+        log.debug("Deleting {}", path);
+        deleteCount++;
+        fileSystem.delete(path, false);
+      }
+    }
+    return deleteCount;
+  }
+
+  /**
+   * Get the name of a history file or delta without its suffix; these
+   * sort in the order the files were written
+   * @param path path
+   * @return the name up to its last '.'
+   */
+  private static String stripSuffix(Path path) {
+    String name = path.getName();
+    int dot = name.lastIndexOf('.');
+    return dot >= 0 ? name.substring(0, dot) : name;
   }
 
   /**
@@ -127,6 +127,11 @@ public final class AggregateConf {
     appConfOperations.validate();
   }
 
+  /**
+   * Resolve all three trees. This does not copy any options;
+   * see {@link ConfTreeOperations#resolve()}
+   * @throws BadConfigException if the configuration is invalid
+   */
   public void resolve() throws BadConfigException {
     validate();
     resourceOperations.resolve();
@@ -134,6 +139,19 @@ public final class AggregateConf {
     appConfOperations.resolve();
   }
 
+  /**
+   * Build a new aggregate conf whose trees are the flattened
+   * -resolved- forms of this one's; for serialization
+   * @return a new instance
+   */
+  public AggregateConf flatten() {
+    AggregateConf flattened = new AggregateConf(resourceOperations.flatten(),
+                                                appConfOperations.flatten(),
+                                                internalOperations.flatten());
+    flattened.setName(name);
+    return flattened;
+  }
+
   /**
    * string operation includes all the inner conftrees
    * @return a string description
@@ -41,6 +41,12 @@ public class ConfTreeOperations {
   public final ConfTree confTree;
   private final MapOperations globalOptions;
 
+  /**
+   * Flag set once the tree is resolved: component views then
+   * fall back to the global options
+   */
+  private volatile boolean resolved;
+
   protected static final Logger
     log = LoggerFactory.getLogger(ConfTreeOperations.class);
 
@@ -78,13 +84,46 @@ public class ConfTreeOperations {
   }
 
   /**
-   * Resolve a ConfTree by mapping all global options into each component
-   * -if there is none there already
+   * Resolve a ConfTree so that every component inherits all global options
+   * -if there is none there already.
+   * <p>
+   * Nothing is copied: after this call the component views returned by
+   * {@link #getComponent(String)} look up missing options in the global
+   * section. The underlying tree is unchanged; use {@link #flatten()}
+   * to get a resolved copy for serialization.
    */
   public void resolve() {
+    resolved = true;
+  }
+
+  /**
+   * Has the tree been resolved?
+   * @return true if component views fall back to the global options
+   */
+  public boolean isResolved() {
+    return resolved;
+  }
+
+  /**
+   * Build a new tree with every global option merged into each component
+   * -if there is none there already. This is the resolved form of the tree
+   * for serialization; the metadata is shared with this tree.
+   * @return a new conf tree
+   */
+  public ConfTree flatten() {
+    ConfTree flattened = new ConfTree();
+    flattened.schema = confTree.schema;
+    flattened.metadata = confTree.metadata;
+    flattened.global = new HashMap<String, String>(confTree.global);
+    flattened.components =
+      new HashMap<String, Map<String, String>>(confTree.components.size());
     for (Map.Entry<String, Map<String, String>> comp : confTree.components.entrySet()) {
-      mergeInGlobal(comp.getValue());
+      Map<String, String> options =
+        new HashMap<String, String>(comp.getValue());
+      HoyaUtils.mergeMapsIgnoreDuplicateKeys(options, confTree.global);
+      flattened.components.put(comp.getKey(), options);
     }
+    return flattened;
   }
 
   /**
@@ -112,14 +151,28 @@ public class ConfTreeOperations {
   public MapOperations getComponent(String component) {
     Map<String, String> instance = confTree.components.get(component);
     if (instance != null) {
-      return new MapOperations(component, instance);
+      return componentView(component, instance);
     }
     return null;
   }
 
+  /**
+   * Wrap a component's map; layered over the global options
+   * if the tree is resolved
+   * @param component component name
+   * @param instance component options
+   * @return the view
+   */
+  private MapOperations componentView(String component,
+                                      Map<String, String> instance) {
+    return resolved ? new MapOperations(component, instance, globalOptions)
+                    : new MapOperations(component, instance);
+  }
+
   /**
    * Get at the underlying component map
-   * @return a map of components. This is the raw ConfTree data structure
+   * @return a map of components. This is the raw ConfTree data structure:
+   * the component maps do not contain inherited global options
    */
   public Map<String, Map<String, String>> getComponents() {
     return confTree.components;
@@ -139,7 +192,7 @@ public class ConfTreeOperations {
     //create a new instances
     Map<String, String> map = new HashMap<String, String>();
     confTree.components.put(name, map);
-    return new MapOperations(name, map);
+    return componentView(name, map);
   }
 
 
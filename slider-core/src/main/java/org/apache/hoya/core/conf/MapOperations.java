@@ -34,6 +34,13 @@ import java.util.Set;
  *
  * This delegates the standard map interface to the map passed in,
  * so it can be used to add more actions to the map.
+ *
+ * An instance may be a layered view: lookups which miss in the local
+ * map fall through to a parent map (which may itself be layered), so
+ * a component can be resolved against its global options without
+ * copying them in. Writes always go to the local map; the bulk
+ * read operations (size, key and entry sets, ...) work on a
+ * {@link #flatten()}ed copy.
  */
 public class MapOperations implements Map<String, String> {
   private static final Logger log =
@@ -46,9 +53,13 @@ public class MapOperations implements Map<String, String> {
 
   public final String name;
 
+  /**
+   * Map to fall back to on lookups; null if this is not a layered view
+   */
+  private final Map<String, String> parent;
+
   public MapOperations() {
-    options = new HashMap<String, String>();
-    name = "";
+    this("", new HashMap<String, String>());
   }
 
   /**
@@ -57,9 +68,65 @@ public class MapOperations implements Map<String, String> {
    * @param options
    */
   public MapOperations(String name, Map<String, String> options) {
+    this(name, options, null);
+  }
+
+  /**
+   * Create a layered view
+   * @param name name
+   * @param options local options, which take priority
+   * @param parent map to resolve missing options from; may be null
+   */
+  public MapOperations(String name,
+                       Map<String, String> options,
+                       Map<String, String> parent) {
     assert options != null : "null map";
     this.options = options;
     this.name = name;
+    this.parent = parent;
+  }
+
+  /**
+   * Is this a layered view?
+   * @return true if lookups can fall through to a parent map
+   */
+  public boolean isLayered() {
+    return parent != null;
+  }
+
+  /**
+   * Get the parent map
+   * @return the parent, or null if this is not a layered view
+   */
+  public Map<String, String> getParent() {
+    return parent;
+  }
+
+  /**
+   * Build a new map containing every option visible through this view,
+   * local values overriding those of the parent layers. This is a copy:
+   * it is for serialization and bulk operations, not lookups.
+   * @return a new map
+   */
+  public Map<String, String> flatten() {
+    Map<String, String> flattened = new HashMap<String, String>(options);
+    if (parent != null) {
+      Map<String, String> inherited = parent instanceof MapOperations
+                                      ? ((MapOperations) parent).flatten()
+                                      : parent;
+      HoyaUtils.mergeMapsIgnoreDuplicateKeys(flattened, inherited);
+    }
+    return flattened;
+  }
+
+  /**
+   * Get the map the bulk operations work on: the local map
+   * if this is not layered, a read-only flattened copy if it is
+   * @return the map
+   */
+  private Map<String, String> view() {
+    return parent == null ? options
+                          : Collections.unmodifiableMap(flatten());
   }
 
 
@@ -71,7 +138,7 @@ public class MapOperations implements Map<String, String> {
    * @return option in map or the default
    */
   public String getOption(String key, String defVal) {
-    String val = options.get(key);
+    String val = get(key);
     return val != null ? val : defVal;
   }
 
@@ -84,7 +151,7 @@ public class MapOperations implements Map<String, String> {
    * @throws BadConfigException if the option is missing
    */
   public String getMandatoryOption(String key) throws BadConfigException {
-    String val = options.get(key);
+    String val = get(key);
     if (val == null) {
       if (log.isDebugEnabled()) {
         log.debug("Missing key {} from config containing {}",
@@ -173,23 +240,28 @@ public class MapOperations implements Map<String, String> {
   }
 
   public int size() {
-    return options.size();
+    return view().size();
   }
 
   public boolean isEmpty() {
-    return options.isEmpty();
+    return view().isEmpty();
   }
 
   public boolean containsValue(Object value) {
-    return options.containsValue(value);
+    return view().containsValue(value);
   }
 
   public boolean containsKey(Object key) {
-    return options.containsKey(key);
+    return options.containsKey(key)
+           || (parent != null && parent.containsKey(key));
   }
 
   public String get(Object key) {
-    return options.get(key);
+    String val = options.get(key);
+    if (val == null && parent != null && !options.containsKey(key)) {
+      val = parent.get(key);
+    }
+    return val;
   }
 
   public String put(String key, String value) {
@@ -209,25 +281,25 @@ public class MapOperations implements Map<String, String> {
   }
 
   public Set<String> keySet() {
-    return options.keySet();
+    return view().keySet();
   }
 
   public Collection<String> values() {
-    return options.values();
+    return view().values();
   }
 
   public Set<Map.Entry<String, String>> entrySet() {
-    return options.entrySet();
+    return view().entrySet();
   }
 
   @SuppressWarnings("EqualsWhichDoesntCheckParameterClass")
   public boolean equals(Object o) {
-    return options.equals(o);
+    return view().equals(o);
   }
 
   @Override
   public int hashCode() {
-    return options.hashCode();
+    return view().hashCode();
   }
 
   public boolean isSet(String key) {
@@ -239,7 +311,7 @@ public class MapOperations implements Map<String, String> {
     StringBuilder builder = new StringBuilder();
     builder.append(name).append("=\n");
 
-    for (Entry<String, String> entry : options.entrySet()) {
+    for (Entry<String, String> entry : entrySet()) {
       builder.append("  ")
              .append(entry.getKey())
              .append('=')
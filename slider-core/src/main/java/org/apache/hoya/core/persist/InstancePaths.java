@@ -31,6 +31,7 @@ public class InstancePaths {
   public final Path snapshotConfPath;
   public final Path generatedConfPath;
   public final Path historyPath;
+  public final Path providerStatePath;
   public final Path dataPath;
   public final Path tmpPath;
   public final Path tmpPathAM;
@@ -42,6 +43,8 @@ public class InstancePaths {
     generatedConfPath =
       new Path(instanceDir, HoyaKeys.GENERATED_CONF_DIR_NAME);
     historyPath = new Path(instanceDir, HoyaKeys.HISTORY_DIR_NAME);
+    providerStatePath =
+      new Path(instanceDir, HoyaKeys.PROVIDER_STATE_DIR_NAME);
     dataPath = new Path(instanceDir, HoyaKeys.DATA_DIR_NAME);
     tmpPath = new Path(instanceDir, HoyaKeys.TMP_DIR_PREFIX);
     tmpPathAM = new Path(tmpPath, "appmaster");
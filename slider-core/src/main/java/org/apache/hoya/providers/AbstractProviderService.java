@@ -19,7 +19,10 @@
 package org.apache.hoya.providers;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.service.Service;
+import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.service.launcher.ExitCodeProvider;
 import org.apache.hoya.HoyaKeys;
 import org.apache.hoya.api.ClusterDescription;
@@ -64,6 +67,8 @@ public abstract class AbstractProviderService
   protected StateAccessForProviders stateAccessor;
   protected AgentRestOperations restOps;
   protected RegistryBinderService<ServiceInstanceData> registry;
+  protected FileSystem stateFileSystem;
+  protected Path stateDirectory;
 
   public AbstractProviderService(String name) {
     super(name);
@@ -82,6 +87,16 @@ public abstract class AbstractProviderService
     this.stateAccessor = stateAccessor;
   }
 
+  @Override
+  public void setStateDirectory(FileSystem fs, Path stateDir) {
+    this.stateFileSystem = fs;
+    this.stateDirectory = stateDir;
+  }
+
+  public Path getStateDirectory() {
+    return stateDirectory;
+  }
+
   @Override
   public void bind(StateAccessForProviders stateAccessor,
       RegistryBinderService<ServiceInstanceData> registry) {
@@ -94,6 +109,13 @@ public abstract class AbstractProviderService
     return restOps;
   }
 
+  /**
+   * No-op implementation of this method.
+   */
+  @Override
+  public void notifyContainerCompleted(ContainerId containerId) {
+  }
+
   public void setAgentRestOperations(AgentRestOperations agentRestOperations) {
     this.restOps = agentRestOperations;
   }
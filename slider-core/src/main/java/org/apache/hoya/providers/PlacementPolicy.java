@@ -28,4 +28,16 @@ public class PlacementPolicy {
   public static final int NO_DATA_LOCALITY = 2;
   public static final int ANTI_AFFINITY_REQUIRED = 4;
 
+  /**
+   * Spread instances across racks; an allocation which would unbalance
+   * the racks is released and re-requested
+   */
+  public static final int RACK_SPREAD = 8;
+
+  /**
+   * Strict history: an instance with a previous location must be placed
+   * back on that host; locality is not relaxed
+   */
+  public static final int STRICT_HISTORY = 16;
+
 }
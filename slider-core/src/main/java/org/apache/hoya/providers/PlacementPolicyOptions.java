@@ -23,4 +23,6 @@ public enum PlacementPolicyOptions {
   EXCLUDE_FROM_FLEXING,
   NO_DATA_LOCALITY,
   ANTI_AFFINITY_REQUIRED,
+  RACK_SPREAD,
+  STRICT_HISTORY,
 }
@@ -19,9 +19,11 @@
 package org.apache.hoya.providers;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.service.Service;
 import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.service.launcher.ExitCodeProvider;
 import org.apache.hoya.api.ClusterDescription;
 import org.apache.hoya.core.conf.AggregateConf;
@@ -134,6 +136,15 @@ public interface ProviderService extends ProviderCore, Service,
    */
   Map<String,URL> buildMonitorDetails(ClusterDescription clusterSpec);
 
+  /**
+   * Set the directory in which the provider may keep state to restore
+   * after an AM restart -invoked before the service is started.
+   * The directory may not exist yet.
+   * @param fs filesystem of the directory
+   * @param stateDir the directory
+   */
+  void setStateDirectory(FileSystem fs, Path stateDir);
+
   /**
    * bind operation -invoked before the service is started
    * @param stateAccessor interface offering read access to the state
@@ -147,4 +158,11 @@ public interface ProviderService extends ProviderCore, Service,
    * @return  the interface if available, null otherwise.
    */
   AgentRestOperations getAgentRestOperations();
+
+  /**
+   * Notify the provider that a container has completed, so that any
+   * state it holds about the container can be released
+   * @param containerId the completed container
+   */
+  void notifyContainerCompleted(ContainerId containerId);
 }
@@ -88,6 +88,24 @@ public interface AgentKeys {
   String COMPONENT_SCRIPT = "role.script";
   String WAIT_HEARTBEAT = "wait.heartbeat";
   String PYTHON_EXE = "python";
+
+  /**
+   * Provider status: agent registrations and heartbeats told to retry
+   * later because they exceeded the admitted rate
+   */
+  String INFO_REGISTRATIONS_DEFERRED = "info.agent.registrations.deferred";
+  String INFO_HEARTBEATS_DEFERRED = "info.agent.heartbeats.deferred";
+
+  /**
+   * Provider status: agents restored from the state saved
+   * before an AM restart
+   */
+  String INFO_AGENTS_RESTORED = "info.agent.restored";
+
+  /**
+   * Command in a heartbeat response telling an agent to register again
+   */
+  String REGISTRATION_COMMAND = "register";
 }
 
 
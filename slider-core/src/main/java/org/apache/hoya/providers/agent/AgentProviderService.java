@@ -23,9 +23,11 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.yarn.api.ApplicationConstants;
 import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.LocalResource;
 import org.apache.hadoop.yarn.api.records.LocalResourceType;
 import org.apache.hoya.HoyaKeys;
+import org.apache.hoya.HoyaXmlConfKeys;
 import org.apache.hoya.api.ClusterDescription;
 import org.apache.hoya.api.OptionKeys;
 import org.apache.hoya.api.StatusKeys;
@@ -35,6 +37,7 @@ import org.apache.hoya.core.conf.MapOperations;
 import org.apache.hoya.core.launch.CommandLineBuilder;
 import org.apache.hoya.core.launch.ContainerLauncher;
 import org.apache.hoya.exceptions.BadCommandArgumentsException;
+import org.apache.hoya.exceptions.BadConfigException;
 import org.apache.hoya.exceptions.SliderException;
 import org.apache.hoya.providers.AbstractProviderService;
 import org.apache.hoya.providers.ProviderCore;
@@ -42,6 +45,7 @@ import org.apache.hoya.providers.ProviderRole;
 import org.apache.hoya.providers.ProviderUtils;
 import org.apache.hoya.tools.HoyaFileSystem;
 import org.apache.hoya.tools.HoyaUtils;
+import org.apache.hoya.yarn.appmaster.state.RoleInstance;
 import org.apache.hoya.yarn.appmaster.state.StateAccessForProviders;
 import org.apache.hoya.yarn.appmaster.web.rest.agent.AgentCommandType;
 import org.apache.hoya.yarn.appmaster.web.rest.agent.AgentRestOperations;
@@ -50,9 +54,9 @@ import org.apache.hoya.yarn.appmaster.web.rest.agent.ExecutionCommand;
 import org.apache.hoya.yarn.appmaster.web.rest.agent.HeartBeat;
 import org.apache.hoya.yarn.appmaster.web.rest.agent.HeartBeatResponse;
 import org.apache.hoya.yarn.appmaster.web.rest.agent.Register;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.RegistrationCommand;
 import org.apache.hoya.yarn.appmaster.web.rest.agent.RegistrationResponse;
 import org.apache.hoya.yarn.appmaster.web.rest.agent.RegistrationStatus;
-import org.apache.hoya.yarn.appmaster.web.rest.agent.StatusCommand;
 import org.apache.hoya.yarn.service.EventCallback;
 import org.apache.slider.core.registry.info.ServiceInstanceData;
 import static org.apache.slider.core.registry.info.RegistryFields.*;
@@ -87,9 +91,27 @@ public class AgentProviderService extends AbstractProviderService implements
   private static final ProviderUtils providerUtils = new ProviderUtils(log);
   private static final String LABEL_MAKER = "___";
   private AgentClientProvider clientProvider;
-  private Map<String, ComponentInstanceState> componentStatuses = new HashMap<String, ComponentInstanceState>();
-  private Map<String, List<String>> roleHostMapping = new HashMap<String, List<String>>();
+  private final AgentRegistry agents = new AgentRegistry();
+  private CommandConfigurations commandConfigurations;
   private AtomicInteger taskId = new AtomicInteger(0);
+  private TokenBucket registrations =
+    new TokenBucket(HoyaXmlConfKeys.DEFAULT_AGENT_REGISTRATION_RATE,
+                    HoyaXmlConfKeys.DEFAULT_AGENT_REGISTRATION_BURST);
+  private TokenBucket heartbeats =
+    new TokenBucket(HoyaXmlConfKeys.DEFAULT_AGENT_HEARTBEAT_RATE,
+                    HoyaXmlConfKeys.DEFAULT_AGENT_HEARTBEAT_BURST);
+  private long minHeartbeatInterval =
+    HoyaXmlConfKeys.DEFAULT_AGENT_HEARTBEAT_INTERVAL;
+  private long minActiveHeartbeatInterval =
+    HoyaXmlConfKeys.DEFAULT_AGENT_HEARTBEAT_INTERVAL_ACTIVE;
+  private double heartbeatBudget =
+    HoyaXmlConfKeys.DEFAULT_AGENT_HEARTBEAT_RATE / 2.0;
+
+  /**
+   * Store of the agent state; null if no state directory was set
+   */
+  private AgentStateStore stateStore;
+  private int restoredAgents;
 
   public AgentProviderService() {
     super("AgentProviderService");
@@ -105,6 +127,103 @@ public class AgentProviderService extends AbstractProviderService implements
   protected void serviceInit(Configuration conf) throws Exception {
     super.serviceInit(conf);
     clientProvider = new AgentClientProvider(conf);
+    registrations = new TokenBucket(
+      conf.getInt(HoyaXmlConfKeys.KEY_AGENT_REGISTRATION_RATE,
+                  HoyaXmlConfKeys.DEFAULT_AGENT_REGISTRATION_RATE),
+      conf.getInt(HoyaXmlConfKeys.KEY_AGENT_REGISTRATION_BURST,
+                  HoyaXmlConfKeys.DEFAULT_AGENT_REGISTRATION_BURST));
+    heartbeats = new TokenBucket(
+      conf.getInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_RATE,
+                  HoyaXmlConfKeys.DEFAULT_AGENT_HEARTBEAT_RATE),
+      conf.getInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_BURST,
+                  HoyaXmlConfKeys.DEFAULT_AGENT_HEARTBEAT_BURST));
+    minHeartbeatInterval =
+      conf.getInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_INTERVAL,
+                  HoyaXmlConfKeys.DEFAULT_AGENT_HEARTBEAT_INTERVAL);
+    minActiveHeartbeatInterval =
+      conf.getInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_INTERVAL_ACTIVE,
+                  HoyaXmlConfKeys.DEFAULT_AGENT_HEARTBEAT_INTERVAL_ACTIVE);
+    heartbeatBudget =
+      conf.getFloat(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_BUDGET,
+                    (float) (heartbeats.getRatePerSecond() / 2));
+    if (heartbeatBudget <= 0) {
+      throw new BadConfigException("Heartbeat budget must be positive: %s",
+                                   heartbeatBudget);
+    }
+  }
+
+  /**
+   * Restore the state of agents saved by an earlier AM, then start
+   * saving it
+   * @throws Exception on a failure
+   */
+  @Override
+  protected void serviceStart() throws Exception {
+    if (stateDirectory != null) {
+      stateStore = new AgentStateStore("AgentStateStore", agents,
+                                       stateFileSystem, stateDirectory);
+      stateStore.init(getConfig());
+      restoreAgents(stateStore.load());
+      stateStore.start();
+    }
+    super.serviceStart();
+  }
+
+  @Override
+  protected void serviceStop() throws Exception {
+    super.serviceStop();
+    if (stateStore != null) {
+      stateStore.stop();
+    }
+  }
+
+  /**
+   * Restore the agents of the containers which survived an AM restart.
+   * Their components carry on in their saved state, so one which was
+   * started is not installed or started again; the saved state of
+   * containers which are no longer live is dropped.
+   * @param snapshot saved state; may be null
+   */
+  protected void restoreAgents(AgentStateSnapshot snapshot) {
+    StateAccessForProviders accessor = getStateAccessor();
+    if (snapshot == null || accessor == null) {
+      return;
+    }
+    Map<String, RoleInstance> live = new HashMap<String, RoleInstance>();
+    for (RoleInstance instance : accessor.cloneLiveContainerInfoList()) {
+      live.put(instance.id, instance);
+    }
+    for (AgentStateRecord record : snapshot.agents) {
+      RoleInstance instance = live.get(record.containerId);
+      if (instance == null || agents.contains(record.label)) {
+        continue;
+      }
+      RegisteredAgent agent = agents.register(record.label,
+                                              record.role,
+                                              record.containerId,
+                                              record.applicationId);
+      agent.restore(record);
+      if (instance.host != null) {
+        setRoleHostMapping(record.role, instance.host);
+      }
+      if (agent.getComponentState().getState() == State.STARTED) {
+        accessor.onComponentStarted(record.containerId);
+      }
+      restoredAgents++;
+    }
+    log.info("Restored {} of {} saved agents", restoredAgents,
+             snapshot.agents.size());
+    // save again without the agents of lost containers
+    stateChanged();
+  }
+
+  /**
+   * Note a change to the state of an agent which is to be saved
+   */
+  private void stateChanged() {
+    if (stateStore != null) {
+      stateStore.markDirty();
+    }
   }
 
   @Override
@@ -200,29 +319,32 @@ public class AgentProviderService extends AbstractProviderService implements
     operation.add(ARG_HOST);
     operation.add(getClusterInfoPropertyValue(StatusKeys.INFO_AM_HOSTNAME));
     operation.add(ARG_PORT);
-    operation.add(getClusterInfoPropertyValue(StatusKeys.INFO_AM_WEB_PORT));
+    operation.add(getClusterInfoPropertyValue(StatusKeys.INFO_AM_AGENT_PORT));
 
     launcher.addCommand(operation.build());
 
     // initialize the component instance state
-    componentStatuses.put(label,
-                          new ComponentInstanceState(
-                              role,
-                              container.getId().toString(),
-                              getClusterInfoPropertyValue(OptionKeys.APPLICATION_NAME)));
+    agents.register(label,
+                    role,
+                    container.getId().toString(),
+                    getClusterInfoPropertyValue(OptionKeys.APPLICATION_NAME));
+    stateChanged();
   }
 
   protected void setRoleHostMapping(String role, String host) {
-    List<String> hosts = roleHostMapping.get(role);
-    if (hosts == null) {
-      hosts = new ArrayList<String>();
-    }
-    hosts.add(host);
-    roleHostMapping.put(role, hosts);
+    agents.addRoleHost(role, host);
   }
 
   private List<String> getHostsForRole(String role) {
-    return roleHostMapping.get(role);
+    return agents.getHostsForRole(role);
+  }
+
+  /**
+   * Get the registry of agents
+   * @return the agent registry
+   */
+  public AgentRegistry getAgentRegistry() {
+    return agents;
   }
 
   private String getContainerLabel(Container container, String role) {
@@ -265,6 +387,11 @@ public class AgentProviderService extends AbstractProviderService implements
    */
   public Map<String, String> buildProviderStatus() {
     Map<String, String> stats = new HashMap<String, String>();
+    stats.put(INFO_REGISTRATIONS_DEFERRED,
+              Long.toString(registrations.getDeferred()));
+    stats.put(INFO_HEARTBEATS_DEFERRED,
+              Long.toString(heartbeats.getDeferred()));
+    stats.put(INFO_AGENTS_RESTORED, Integer.toString(restoredAgents));
     return stats;
   }
 
@@ -278,8 +405,19 @@ public class AgentProviderService extends AbstractProviderService implements
     // dummy impl
     RegistrationResponse response = new RegistrationResponse();
     String label = registration.getHostname();
-    if (componentStatuses.containsKey(label)) {
+    RegisteredAgent agent = agents.get(label);
+    if (agent != null) {
+      long retryAfter = registrations.tryAcquire();
+      if (retryAfter > 0) {
+        log.debug("Deferring registration of {} by {} ms", label, retryAfter);
+        response.setResponseStatus(RegistrationStatus.FAILED);
+        response.setRetryAfter(retryAfter);
+        response.setLog("Registration deferred.");
+        return response;
+      }
+      agent.onRegistration();
       response.setResponseStatus(RegistrationStatus.OK);
+      response.setHeartbeatInterval(getHeartbeatInterval(false));
     } else {
       response.setResponseStatus(RegistrationStatus.FAILED);
       response.setLog("Label not recognized.");
@@ -287,6 +425,42 @@ public class AgentProviderService extends AbstractProviderService implements
     return response;
   }
 
+  @Override
+  public long admitHeartBeat() {
+    return heartbeats.tryAcquire();
+  }
+
+  /**
+   * Get the heartbeat interval to assign to an agent.
+   * <p>
+   * Agents which are still being brought to their target state, or which
+   * have commands pending, are given the short active interval, stretched
+   * if needed so that together they use no more than half the heartbeat
+   * budget. Settled agents share what the active agents leave, which is
+   * never less than half the budget, with no interval shorter than the
+   * configured minimum.
+   * <p>
+   * Only the agents of live containers are counted: those of completed
+   * containers are removed from the registry when the AM is notified.
+   * @param settled is the agent settled
+   * @return the interval in millis
+   */
+  public long getHeartbeatInterval(boolean settled) {
+    int live = agents.size();
+    int settledCount = Math.min(agents.getSettledCount(), live);
+    int active = live - settledCount;
+    long activeInterval = Math.max(minActiveHeartbeatInterval,
+      (long) Math.ceil(2000.0 * active / heartbeatBudget));
+    if (!settled) {
+      return activeInterval;
+    }
+    double activeRate = 1000.0 * active / activeInterval;
+    double remaining = Math.max(heartbeatBudget - activeRate,
+                                heartbeatBudget / 2);
+    return Math.max(minHeartbeatInterval,
+      (long) Math.ceil(1000.0 * settledCount / remaining));
+  }
+
   private Command getCommand(String commandVal) {
     if (commandVal.equals(Command.START.toString())) {
       return Command.START;
@@ -314,49 +488,231 @@ public class AgentProviderService extends AbstractProviderService implements
 
   @Override
   public HeartBeatResponse handleHeartBeat(HeartBeat heartBeat) {
-    // dummy impl
-    HeartBeatResponse response = new HeartBeatResponse();
     long id = heartBeat.getResponseId();
-    response.setResponseId(id + 1L);
-
     String label = heartBeat.getHostname();
-    String roleName = getRoleName(label);
-    StateAccessForProviders accessor = getStateAccessor();
-    String scriptPath;
-      scriptPath = accessor.getInstanceDefinitionSnapshot().
-          getAppConfOperations().getComponentOpt(roleName, AgentKeys.COMPONENT_SCRIPT, null);
-    if (scriptPath == null) {
-      log.error("role.script is unavailable for " + roleName + ". Commands will not be sent.");
+    RegisteredAgent agent = agents.get(label);
+    if (agent == null) {
+      HeartBeatResponse response = new HeartBeatResponse();
+      response.setResponseId(id + 1L);
       return response;
     }
+    StateAccessForProviders accessor = getStateAccessor();
+
+    synchronized (agent) {
+      if (agent.isRestored()) {
+        // restored after an AM restart: the agent must register first
+        HeartBeatResponse response = new HeartBeatResponse();
+        response.setResponseId(id + 1L);
+        response.setRegistrationCommand(
+          new RegistrationCommand(REGISTRATION_COMMAND));
+        return response;
+      }
+      String roleName = agent.getRoleName();
+      if (!agent.isRoleSettingsResolved()) {
+        ConfTreeOperations appConf =
+            accessor.getInstanceDefinitionSnapshot().getAppConfOperations();
+        String scriptPath = appConf.getComponentOpt(roleName,
+            AgentKeys.COMPONENT_SCRIPT, null);
+        if (scriptPath == null) {
+          log.error("role.script is unavailable for " + roleName +
+                    ". Commands will not be sent.");
+          return agent.idleResponse(id + 1L,
+                                    getHeartbeatInterval(agent.isSettled()));
+        }
+        agent.setRoleSettings(scriptPath,
+            appConf.getComponentOptInt(roleName, AgentKeys.WAIT_HEARTBEAT, 0));
+      }
+
+      if (!agent.onHeartbeat(id)) {
+        HeartBeatResponse last = agent.resendLastResponse(id);
+        if (last != null) {
+          // the response was lost: send it again, with any commands in it
+          log.debug("Resending response to heartbeat {} from {}", id, label);
+          return last;
+        }
+        log.debug("Ignoring stale heartbeat {} from {}", id, label);
+        return agent.idleResponse(id + 1L,
+                                  getHeartbeatInterval(agent.isSettled()));
+      }
+      // a null hash means the agent holds no configurations, such as
+      // after it has restarted: the next command must carry them in full
+      String hash = heartBeat.getConfigurationHash();
+      String applied = agent.getAppliedConfigurationHash();
+      if (hash == null ? applied != null : !hash.equals(applied)) {
+        stateChanged();
+      }
+      agent.setAppliedConfigurationHash(hash);
+      Map<String, Double> metrics = heartBeat.getMetrics();
+      if (metrics != null) {
+        Double load = metrics.get(HeartBeat.METRIC_LOAD);
+        if (load != null) {
+          accessor.onComponentLoad(agent.getContainerId(), load);
+        }
+      }
+
+      ComponentInstanceState componentStatus = agent.getComponentState();
+      boolean changed = false;
+      List<CommandReport> reports = heartBeat.getReports();
+      if (reports != null && !reports.isEmpty()) {
+        CommandReport report = reports.get(0);
+        CommandResult result = getCommandResult(report.getStatus());
+        Command command = getCommand(report.getRoleCommand());
+        componentStatus.applyCommandResult(result, command);
+        stateChanged();
+        log.info("Component operation. Status: {}", result);
+        if (command == Command.START && result == CommandResult.COMPLETED) {
+          accessor.onComponentStarted(agent.getContainerId());
+        }
+        changed = true;
+      }
+
+      return respond(agent, id, changed);
+    }
+  }
 
-    if (!componentStatuses.containsKey(label)) {
+  @Override
+  public HeartBeatResponse pollHeartBeat(HeartBeat heartBeat) {
+    long id = heartBeat.getResponseId();
+    RegisteredAgent agent = agents.get(heartBeat.getHostname());
+    if (agent == null) {
+      HeartBeatResponse response = new HeartBeatResponse();
+      response.setResponseId(id + 1L);
       return response;
     }
-    ComponentInstanceState componentStatus = componentStatuses.get(label);
+    synchronized (agent) {
+      agent.setCommandListener(null);
+      if (agent.getLastHeartbeatId() != id
+          || agent.isLastResponseResent()
+          || !agent.isRoleSettingsResolved()) {
+        // superseded by a later heartbeat or a retransmission of this one,
+        // or never fully handled
+        return agent.idleResponse(id + 1L,
+                                  getHeartbeatInterval(agent.isSettled()));
+      }
+      return respond(agent, id, false);
+    }
+  }
+
+  @Override
+  public boolean awaitCommands(String label, Runnable listener) {
+    RegisteredAgent agent = agents.get(label);
+    if (agent == null) {
+      return false;
+    }
+    synchronized (agent) {
+      if (agent.getComponentState().getTargetState() != targetState(agent)) {
+        return false;
+      }
+      agent.setCommandListener(listener);
+      return true;
+    }
+  }
 
-    List<CommandReport> reports = heartBeat.getReports();
-    if (reports != null && !reports.isEmpty()) {
-      CommandReport report = reports.get(0);
-      CommandResult result = getCommandResult(report.getStatus());
-      Command command = getCommand(report.getRoleCommand());
-      componentStatus.applyCommandResult(result, command);
-      log.info("Component operation. Status: {}", result);
+  @Override
+  public void notifyCommandsPending(String containerId, String role) {
+    RegisteredAgent agent = agents.get(containerId + LABEL_MAKER + role);
+    if (agent != null) {
+      agent.notifyCommandsPending();
     }
+  }
 
-    int waitForCount = accessor.getInstanceDefinitionSnapshot().
-        getAppConfOperations().getComponentOptInt(roleName, AgentKeys.WAIT_HEARTBEAT, 0);
+  /**
+   * Drop the agents of a completed container, so that they are no longer
+   * counted or saved. Any long-polling heartbeat of the agent is released.
+   * @param containerId the completed container
+   */
+  @Override
+  public void notifyContainerCompleted(ContainerId containerId) {
+    String id = containerId.toString();
+    boolean removed = false;
+    for (RegisteredAgent agent : agents.getAgents()) {
+      if (id.equals(agent.getContainerId())
+          && agents.remove(agent.getLabel()) != null) {
+        log.debug("Removed agent {} of completed container", agent.getLabel());
+        agent.notifyCommandsPending();
+        removed = true;
+      }
+    }
+    if (removed) {
+      stateChanged();
+    }
+  }
+
+  /**
+   * Get the state an agent's component should be in.
+   * Warm spares are installed, but not started until they are promoted
+   * @param agent agent
+   * @return the target state
+   */
+  private State targetState(RegisteredAgent agent) {
+    return getStateAccessor().isWarmSpare(agent.getContainerId())
+           ? State.INSTALLED : State.STARTED;
+  }
+
+  /**
+   * Respond to a heartbeat from an agent, recording the response
+   * so that it can be sent again if the heartbeat is retransmitted.
+   * Must be called while holding the lock on the agent.
+   * @param agent agent
+   * @param id heartbeat ID
+   * @param changed has the component state changed in this heartbeat
+   * @return the response
+   */
+  private HeartBeatResponse respond(RegisteredAgent agent,
+                                    long id,
+                                    boolean changed) {
+    HeartBeatResponse response = buildResponse(agent, id, changed);
+    agent.setLastResponse(response);
+    return response;
+  }
 
+  /**
+   * Build the response to a heartbeat from an agent, issuing its
+   * next command, if any.
+   * <p>
+   * At most one command is issued per response: each command depends on
+   * the reported outcome of the one before it, and the agent would run a
+   * START queued behind a failed INSTALL.
+   * Must be called while holding the lock on the agent.
+   * @param agent agent
+   * @param id heartbeat ID
+   * @param changed has the component state changed in this heartbeat
+   * @return a new response
+   */
+  private HeartBeatResponse buildResponse(RegisteredAgent agent,
+                                          long id,
+                                          boolean changed) {
+    String roleName = agent.getRoleName();
+    ComponentInstanceState componentStatus = agent.getComponentState();
+    changed |= agent.updateTargetState(targetState(agent));
+
+    // fast path: nothing has changed and there is nothing to do
+    Command command = changed ? agent.refreshNextCommand()
+                              : agent.getNextCommand();
+    int waitForCount = agent.getWaitForCount();
+    State state = componentStatus.getState();
+    boolean settled = Command.NOP == command
+                      && state != State.INSTALLING
+                      && state != State.STARTING;
+    agents.setSettled(agent, settled);
+    long interval = getHeartbeatInterval(settled);
     if (id < waitForCount) {
-      log.info("Waiting until heartbeat count {}. Current val: {}", waitForCount, id);
-      componentStatuses.put(roleName, componentStatus);
-      return response;
+      log.info("Waiting until heartbeat count {}. Current val: {}",
+               waitForCount, id);
+      return agent.idleResponse(id + 1L, interval);
+    }
+    if (Command.NOP == command) {
+      return agent.idleResponse(id + 1L, interval);
     }
 
-    Command command = componentStatus.getNextCommand();
+    HeartBeatResponse response = new HeartBeatResponse();
+    response.setResponseId(id + 1L);
+    response.setHeartbeatInterval(interval);
+    String scriptPath = agent.getScriptPath();
     if (Command.NOP != command) {
       try {
         componentStatus.commandIssued(command);
+        stateChanged();
         if (command == Command.INSTALL) {
           log.info("Installing component ...");
           addInstallCommand(roleName, response, scriptPath);
@@ -368,13 +724,43 @@ public class AgentProviderService extends AbstractProviderService implements
         componentStatus.applyCommandResult(CommandResult.FAILED, command);
         log.warn("Component instance failed operation.", e);
       }
+      agent.refreshNextCommand();
     }
-
+    deliverConfigurations(response, agent.getAppliedConfigurationHash());
     return response;
   }
 
-  private String getRoleName(String label) {
-    return label.substring(label.indexOf(LABEL_MAKER) + LABEL_MAKER.length());
+  /**
+   * Set the configuration hash of every command in a response, and drop
+   * the full configurations from those whose configurations the agent
+   * has reported applying.
+   * @param response response to update
+   * @param appliedHash hash of the configurations the agent has applied;
+   * may be null
+   */
+  protected void deliverConfigurations(HeartBeatResponse response,
+                                       String appliedHash) {
+    for (ExecutionCommand cmd : response.getExecutionCommands()) {
+      Map<String, Map<String, String>> configurations = cmd.getConfigurations();
+      if (configurations != null) {
+        String hash = hashOf(configurations);
+        cmd.setConfigurationHash(hash);
+        if (hash.equals(appliedHash)) {
+          cmd.setConfigurations(null);
+        }
+      }
+    }
+  }
+
+  private String hashOf(Map<String, Map<String, String>> configurations) {
+    CommandConfigurations current;
+    synchronized (this) {
+      current = commandConfigurations;
+    }
+    if (current != null && current.getConfigurations() == configurations) {
+      return current.getHash();
+    }
+    return CommandConfigurations.hashOf(configurations);
   }
 
   protected void addInstallCommand(String roleName, HeartBeatResponse response, String scriptPath)
@@ -430,51 +816,6 @@ public class AgentProviderService extends AbstractProviderService implements
     cmd.setConfigurations(configurations);
   }
 
-  protected void addStatusCommand(String roleName, HeartBeatResponse response, String scriptPath)
-      throws SliderException {
-    assert getStateAccessor().isApplicationLive();
-    ConfTreeOperations appConf = getStateAccessor().getAppConfSnapshot();
-    ConfTreeOperations internalsConf = getStateAccessor().getInternalsSnapshot();
-
-    StatusCommand cmd = new StatusCommand();
-    String clusterName = internalsConf.get(OptionKeys.APPLICATION_NAME);
-
-    cmd.setCommandType(AgentCommandType.STATUS_COMMAND);
-    cmd.setComponentName(roleName);
-    cmd.setServiceName(clusterName);
-    cmd.setClusterName(clusterName);
-    cmd.setRoleCommand(StatusCommand.STATUS_COMMAND);
-
-    Map<String, String> hostLevelParams = new TreeMap<String, String>();
-    hostLevelParams.put(JAVA_HOME, appConf.getGlobalOptions().getMandatoryOption(JAVA_HOME));
-    cmd.setHostLevelParams(hostLevelParams);
-
-    cmd.setCommandParams(setCommandParameters(scriptPath, false));
-
-    Map<String, Map<String, String>> configurations = buildCommandConfigurations(appConf);
-
-    cmd.setConfigurations(configurations);
-
-    response.addStatusCommand(cmd);
-  }
-
-  protected void addGetConfigCommand(String roleName, HeartBeatResponse response)
-      throws SliderException {
-    assert getStateAccessor().isApplicationLive();
-    ConfTreeOperations internalsConf = getStateAccessor().getInternalsSnapshot();
-
-    StatusCommand cmd = new StatusCommand();
-    String clusterName = internalsConf.get(OptionKeys.APPLICATION_NAME);
-
-    cmd.setCommandType(AgentCommandType.STATUS_COMMAND);
-    cmd.setComponentName(roleName);
-    cmd.setServiceName(clusterName);
-    cmd.setClusterName(clusterName);
-    cmd.setRoleCommand(StatusCommand.GET_CONFIG_COMMAND);
-
-    response.addStatusCommand(cmd);
-  }
-
   protected void addStartCommand(String roleName, HeartBeatResponse response, String scriptPath) throws
       SliderException {
     assert getStateAccessor().isApplicationLive();
@@ -503,7 +844,26 @@ public class AgentProviderService extends AbstractProviderService implements
     response.addExecutionCommand(cmd);
   }
 
+  /**
+   * Get the command configurations. These are built once per
+   * application configuration and set of role hosts, and shared between
+   * commands; they must not be modified.
+   * @param appConf application configuration
+   * @return the configurations
+   */
   private Map<String, Map<String, String>> buildCommandConfigurations(ConfTreeOperations appConf) {
+    long version = agents.getRoleHostVersion();
+    synchronized (this) {
+      if (commandConfigurations == null
+          || !commandConfigurations.isCurrent(appConf, version)) {
+        commandConfigurations = new CommandConfigurations(appConf, version,
+            createCommandConfigurations(appConf));
+      }
+      return commandConfigurations.getConfigurations();
+    }
+  }
+
+  private Map<String, Map<String, String>> createCommandConfigurations(ConfTreeOperations appConf) {
 
     Map<String, Map<String, String>> configurations = new TreeMap<String, Map<String, String>>();
     Map<String, String> tokens = getStandardTokenMap(appConf);
@@ -557,7 +917,7 @@ public class AgentProviderService extends AbstractProviderService implements
   }
 
   protected void addRoleRelatedTokens(Map<String, String> tokens) {
-    for (Map.Entry<String, List<String>> entry : roleHostMapping.entrySet()) {
+    for (Map.Entry<String, List<String>> entry : agents.getRoleHostMapping().entrySet()) {
       String tokenName = entry.getKey().toUpperCase(Locale.ENGLISH) + "_HOST";
       String hosts = StringUtils.join(",", entry.getValue());
       tokens.put("${" + tokenName + "}", hosts);
@@ -579,7 +939,7 @@ public class AgentProviderService extends AbstractProviderService implements
   }
 
   private void buildRoleHostDetails(Map<String, URL> details) {
-    for (Map.Entry<String, List<String>> entry : roleHostMapping.entrySet()) {
+    for (Map.Entry<String, List<String>> entry : agents.getRoleHostMapping().entrySet()) {
       details.put(entry.getKey() + " Host(s): " + entry.getValue(),
                   null);
     }
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.providers.agent;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent registry of the agents of an application, and of the hosts
+ * on which each role has been deployed.
+ * <p>
+ * It is read and written from the web server threads handling agent
+ * requests as well as from the container launcher threads. The agent map
+ * is split into independently locked shards, so heartbeats from different
+ * agents do not contend; state changes of a single agent are serialized
+ * on its {@link RegisteredAgent} instance.
+ */
+public class AgentRegistry {
+
+  /**
+   * Default number of shards: {@value}
+   */
+  public static final int DEFAULT_SHARDS = 16;
+
+  private final ConcurrentMap<String, RegisteredAgent> agents;
+
+  private final ConcurrentMap<String, List<String>> roleHosts =
+    new ConcurrentHashMap<String, List<String>>();
+
+  /**
+   * Incremented on every change to the role hosts
+   */
+  private final AtomicLong roleHostVersion = new AtomicLong();
+
+  /**
+   * Number of registered agents which are settled
+   */
+  private final AtomicInteger settled = new AtomicInteger();
+
+  public AgentRegistry() {
+    this(DEFAULT_SHARDS);
+  }
+
+  /**
+   * Create a registry
+   * @param shards number of shards
+   */
+  public AgentRegistry(int shards) {
+    agents = new ConcurrentHashMap<String, RegisteredAgent>(256, 0.75f,
+                                                            shards);
+  }
+
+  /**
+   * Register an agent, replacing any existing entry with the same label
+   * @param label agent label
+   * @param roleName role of the agent's component
+   * @param containerId container ID
+   * @param applicationId application
+   * @return the new entry
+   */
+  public RegisteredAgent register(String label,
+                                  String roleName,
+                                  String containerId,
+                                  String applicationId) {
+    RegisteredAgent agent =
+      new RegisteredAgent(label, roleName, containerId, applicationId);
+    forget(agents.put(label, agent));
+    return agent;
+  }
+
+  /**
+   * Look up an agent
+   * @param label agent label
+   * @return the agent or null
+   */
+  public RegisteredAgent get(String label) {
+    return agents.get(label);
+  }
+
+  public boolean contains(String label) {
+    return agents.containsKey(label);
+  }
+
+  public RegisteredAgent remove(String label) {
+    RegisteredAgent agent = agents.remove(label);
+    forget(agent);
+    return agent;
+  }
+
+  public int size() {
+    return agents.size();
+  }
+
+  /**
+   * Get all the registered agents
+   * @return a read-only view, which does not block updates
+   */
+  public Collection<RegisteredAgent> getAgents() {
+    return Collections.unmodifiableCollection(agents.values());
+  }
+
+  /**
+   * Note whether an agent is settled: it has no command in progress and
+   * none to be issued. The count of settled agents is kept up to date;
+   * agents no longer registered are never counted.
+   * @param agent an agent
+   * @param isSettled the agent's current condition
+   */
+  public void setSettled(RegisteredAgent agent, boolean isSettled) {
+    if (isSettled && agents.get(agent.getLabel()) != agent) {
+      return;
+    }
+    if (agent.setSettled(isSettled)) {
+      settled.addAndGet(isSettled ? 1 : -1);
+    }
+  }
+
+  /**
+   * Get the number of settled agents
+   * @return the count
+   */
+  public int getSettledCount() {
+    return settled.get();
+  }
+
+  /**
+   * Drop a replaced or removed agent from the settled count
+   * @param agent the agent, or null
+   */
+  private void forget(RegisteredAgent agent) {
+    if (agent != null) {
+      setSettled(agent, false);
+    }
+  }
+
+  /**
+   * Note that a role has been deployed on a host
+   * @param role role name
+   * @param host hostname
+   */
+  public void addRoleHost(String role, String host) {
+    List<String> hosts = roleHosts.get(role);
+    if (hosts == null) {
+      List<String> created = new CopyOnWriteArrayList<String>();
+      hosts = roleHosts.putIfAbsent(role, created);
+      if (hosts == null) {
+        hosts = created;
+      }
+    }
+    hosts.add(host);
+    roleHostVersion.incrementAndGet();
+  }
+
+  /**
+   * Get the version of the role hosts, which changes whenever
+   * a host is added
+   * @return the current version
+   */
+  public long getRoleHostVersion() {
+    return roleHostVersion.get();
+  }
+
+  /**
+   * Get the hosts of a role
+   * @param role role name
+   * @return the list of hosts or null if the role is unknown
+   */
+  public List<String> getHostsForRole(String role) {
+    return roleHosts.get(role);
+  }
+
+  /**
+   * Get a read-only view of the map of role to hosts
+   * @return the role host mapping
+   */
+  public Map<String, List<String>> getRoleHostMapping() {
+    return Collections.unmodifiableMap(roleHosts);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.providers.agent;
+
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+
+/**
+ * The state of an agent's component instance, as saved so that an AM
+ * which restarts can carry on from where its predecessor left off
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+public class AgentStateRecord {
+
+  public String label;
+  public String role;
+  public String containerId;
+  public String applicationId;
+  public State state;
+  public Command lastCommand;
+  public int failures;
+
+  /**
+   * Hash of the configurations the agent last reported as applied
+   */
+  public String configurationHash;
+
+  @Override
+  public String toString() {
+    return "AgentStateRecord{" +
+           "label='" + label + '\'' +
+           ", state=" + state +
+           ", lastCommand=" + lastCommand +
+           ", failures=" + failures +
+           '}';
+  }
+}
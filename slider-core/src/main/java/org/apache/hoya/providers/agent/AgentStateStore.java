@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.providers.agent;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.service.AbstractService;
+import org.apache.hoya.HoyaXmlConfKeys;
+import org.apache.hoya.core.persist.JsonSerDeser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service which saves the state of the registered agents to a file
+ * in the instance directory, so that an AM which restarts can restore it.
+ * <p>
+ * Changes are noted with {@link #markDirty()}; a background thread
+ * saves a snapshot of all the agents if there have been any since the
+ * last save, and a final save is made when the service stops.
+ * The snapshot is written to a temporary file which is then renamed
+ * into place, so a reader never sees a partial file.
+ */
+public class AgentStateStore extends AbstractService implements Runnable {
+  protected static final Logger log =
+    LoggerFactory.getLogger(AgentStateStore.class);
+
+  /**
+   * Name of the file holding the agent state: {@value}
+   */
+  public static final String STATE_FILENAME = "agents.json";
+
+  /**
+   * Name of the file a snapshot is written to before being renamed: {@value}
+   */
+  public static final String TEMP_FILENAME = STATE_FILENAME + ".tmp";
+
+  private final AgentRegistry agents;
+  private final FileSystem fs;
+  private final Path stateDir;
+  private final Path statePath;
+  private final Path tempPath;
+  private final AtomicBoolean dirty = new AtomicBoolean();
+  private final AtomicLong saves = new AtomicLong();
+  private ScheduledExecutorService executor;
+  private int interval;
+
+  public AgentStateStore(String name,
+                         AgentRegistry agents,
+                         FileSystem fs,
+                         Path stateDir) {
+    super(name);
+    this.agents = agents;
+    this.fs = fs;
+    this.stateDir = stateDir;
+    statePath = new Path(stateDir, STATE_FILENAME);
+    tempPath = new Path(stateDir, TEMP_FILENAME);
+  }
+
+  @Override
+  protected void serviceInit(Configuration conf) throws Exception {
+    super.serviceInit(conf);
+    interval = conf.getInt(HoyaXmlConfKeys.KEY_AGENT_STATE_SAVE_INTERVAL,
+                           HoyaXmlConfKeys.DEFAULT_AGENT_STATE_SAVE_INTERVAL);
+    if (interval <= 0) {
+      throw new IllegalArgumentException(
+        "Agent state save interval must be positive: " + interval);
+    }
+  }
+
+  @Override
+  protected void serviceStart() throws Exception {
+    super.serviceStart();
+    executor = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon(true)
+                                .setNameFormat(getName() + "-%d")
+                                .build());
+    executor.scheduleWithFixedDelay(this, interval, interval,
+                                    TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  protected void serviceStop() throws Exception {
+    if (executor != null) {
+      // let any save in progress finish, then save the latest changes
+      executor.shutdown();
+      executor.awaitTermination(interval, TimeUnit.MILLISECONDS);
+      run();
+    }
+    super.serviceStop();
+  }
+
+  /**
+   * Note that the state of an agent has changed
+   */
+  public void markDirty() {
+    dirty.set(true);
+  }
+
+  public boolean isDirty() {
+    return dirty.get();
+  }
+
+  /**
+   * Get the number of snapshots saved
+   * @return the count
+   */
+  public long getSaves() {
+    return saves.get();
+  }
+
+  public Path getStatePath() {
+    return statePath;
+  }
+
+  /**
+   * Save the state if it has changed; failures are logged, and the
+   * save tried again next time
+   */
+  @Override
+  public void run() {
+    if (!dirty.getAndSet(false)) {
+      return;
+    }
+    try {
+      save();
+    } catch (IOException e) {
+      dirty.set(true);
+      log.warn("Failed to save agent state to {}: {}", statePath, e, e);
+    }
+  }
+
+  /**
+   * Save a snapshot of the state of all the agents
+   * @throws IOException IO problems
+   */
+  public synchronized void save() throws IOException {
+    AgentStateSnapshot snapshot = new AgentStateSnapshot();
+    for (RegisteredAgent agent : agents.getAgents()) {
+      snapshot.agents.add(agent.toRecord());
+    }
+    snapshot.saved = System.currentTimeMillis();
+    fs.mkdirs(stateDir);
+    new JsonSerDeser<AgentStateSnapshot>(AgentStateSnapshot.class)
+      .save(fs, tempPath, snapshot, true);
+    if (fs.exists(statePath) && !fs.delete(statePath, false)) {
+      throw new IOException("Failed to delete " + statePath);
+    }
+    if (!fs.rename(tempPath, statePath)) {
+      throw new IOException("Failed to rename " + tempPath
+                            + " to " + statePath);
+    }
+    saves.incrementAndGet();
+    log.debug("Saved the state of {} agents", snapshot.agents.size());
+  }
+
+  /**
+   * Load the saved state. If the AM failed between deleting the old file
+   * and renaming the new one into place, the new one is read.
+   * A file which cannot be read is logged and skipped: the agents
+   * then start afresh, as they would with no saved state.
+   * @return the saved state, or null if there is none
+   */
+  public synchronized AgentStateSnapshot load() {
+    try {
+      Path path = fs.exists(statePath) ? statePath : tempPath;
+      if (!fs.exists(path)) {
+        return null;
+      }
+      return new JsonSerDeser<AgentStateSnapshot>(AgentStateSnapshot.class)
+        .load(fs, path);
+    } catch (IOException e) {
+      log.warn("Failed to load agent state from {}: {}", stateDir, e, e);
+      return null;
+    }
+  }
+}
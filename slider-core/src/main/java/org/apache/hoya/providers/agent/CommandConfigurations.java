@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.providers.agent;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable set of command configurations, with the content hash
+ * by which agents and the AM refer to it.
+ * The hash is independent of the ordering of the maps.
+ */
+public final class CommandConfigurations {
+
+  private final Object source;
+  private final long version;
+  private final Map<String, Map<String, String>> configurations;
+  private final String hash;
+
+  /**
+   * Create an instance
+   * @param source the object the configurations were built from
+   * @param version version of any other data used in building them
+   * @param configurations the configurations
+   */
+  public CommandConfigurations(Object source,
+                               long version,
+                               Map<String, Map<String, String>> configurations) {
+    this.source = source;
+    this.version = version;
+    this.configurations = Collections.unmodifiableMap(configurations);
+    this.hash = hashOf(configurations);
+  }
+
+  /**
+   * Are these configurations built from the given source and version
+   * @param source source object; compared by identity
+   * @param version version
+   * @return true if the configurations are current
+   */
+  public boolean isCurrent(Object source, long version) {
+    return this.source == source && this.version == version;
+  }
+
+  public Map<String, Map<String, String>> getConfigurations() {
+    return configurations;
+  }
+
+  public String getHash() {
+    return hash;
+  }
+
+  /**
+   * Calculate the content hash of a set of configurations
+   * @param configurations configurations
+   * @return a hex string
+   */
+  public static String hashOf(Map<String, Map<String, String>> configurations) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    Map<String, Map<String, String>> sorted =
+      new TreeMap<String, Map<String, String>>(configurations);
+    for (Map.Entry<String, Map<String, String>> config : sorted.entrySet()) {
+      update(digest, config.getKey());
+      Map<String, String> options = config.getValue();
+      if (options == null) {
+        continue;
+      }
+      for (Map.Entry<String, String> option :
+          new TreeMap<String, String>(options).entrySet()) {
+        update(digest, option.getKey());
+        update(digest, option.getValue());
+      }
+    }
+    byte[] bytes = digest.digest();
+    StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+      builder.append(Character.forDigit(b & 0xf, 16));
+    }
+    return builder.toString();
+  }
+
+  private static void update(MessageDigest digest, String text) {
+    try {
+      if (text != null) {
+        digest.update(text.getBytes("UTF-8"));
+      }
+      // separator, so that adjacent values cannot run together
+      digest.update((byte) 0);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -32,6 +32,7 @@ public class ComponentInstanceState {
   private State state = State.INIT;
   private State targetState = State.STARTED;
   private int failuresSeen = 0;
+  private Command lastCommand = Command.NOP;
   private final String compName;
   private final String containerId;
   private final String applicationId;
@@ -51,6 +52,7 @@ public class ComponentInstanceState {
       throw new IllegalArgumentException("Command " + command + " is not allowed is state " + state);
     }
     this.state = this.state.getNextState(command);
+    this.lastCommand = command;
   }
 
   public void applyCommandResult(CommandResult result, Command command) {
@@ -103,6 +105,63 @@ public class ComponentInstanceState {
     this.state = state;
   }
 
+  public State getTargetState() {
+    return targetState;
+  }
+
+  /**
+   * Set the state the component is to be driven to. A warm spare
+   * is held at {@link State#INSTALLED} until it is promoted, at which
+   * point the target is raised to {@link State#STARTED}
+   * @param targetState the new target state
+   */
+  public void setTargetState(State targetState) {
+    this.targetState = targetState;
+  }
+
+  public String getContainerId() {
+    return containerId;
+  }
+
+  public String getApplicationId() {
+    return applicationId;
+  }
+
+  /**
+   * Get the last command issued
+   * @return the command, or {@link Command#NOP} if none has been
+   */
+  public Command getLastCommand() {
+    return lastCommand;
+  }
+
+  public int getFailuresSeen() {
+    return failuresSeen;
+  }
+
+  /**
+   * Restore the state saved by an earlier AM.
+   * A command which was in progress may have completed or failed
+   * without the result being seen, so the state is rolled back to the
+   * one the command was issued in, and the command will be issued again.
+   * @param savedState saved state
+   * @param savedLastCommand saved last command
+   * @param savedFailures saved count of failures
+   */
+  public void restore(State savedState,
+                      Command savedLastCommand,
+                      int savedFailures) {
+    if (savedState == State.INSTALLING) {
+      state = State.INIT;
+    } else if (savedState == State.STARTING) {
+      state = State.INSTALLED;
+    } else {
+      state = savedState;
+    }
+    lastCommand = savedLastCommand;
+    failuresSeen = savedFailures;
+  }
+
   @Override
   public int hashCode() {
     int hashCode = 1;
@@ -0,0 +1,347 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.providers.agent;
+
+import org.apache.hoya.yarn.appmaster.web.rest.agent.HeartBeatResponse;
+
+/**
+ * The AM-side state of one agent: its component instance state,
+ * the sequence number of the last heartbeat processed, the next command
+ * to issue and the per-role settings resolved on its first heartbeat.
+ * <p>
+ * All access to an instance must be synchronized on it; the registry
+ * holding it is concurrent, so different agents never contend.
+ */
+public class RegisteredAgent {
+
+  private final String label;
+  private final String roleName;
+  private final ComponentInstanceState componentState;
+
+  /**
+   * ID of the last heartbeat processed; -1 until the first one
+   */
+  private long lastHeartbeatId = -1;
+  private long heartbeats;
+
+  /**
+   * The command the component state machine will issue next,
+   * recalculated whenever the component state changes
+   */
+  private Command nextCommand;
+
+  private String scriptPath;
+  private int waitForCount = -1;
+
+  /**
+   * Hash of the configurations the agent last reported as applied
+   */
+  private String appliedConfigurationHash;
+
+  /**
+   * Callback of a long-polling heartbeat waiting for commands;
+   * null if there is none
+   */
+  private Runnable commandListener;
+
+  /**
+   * Is the component in its target state with nothing pending
+   */
+  private boolean settled;
+
+  /**
+   * Was the agent restored from the state saved by an earlier AM,
+   * and has not yet registered with this one
+   */
+  private boolean restored;
+
+  /**
+   * The response to the last heartbeat processed, sent again if that
+   * heartbeat is retransmitted. It is never modified once set, as it may
+   * be being serialized for more than one request.
+   */
+  private HeartBeatResponse lastResponse;
+
+  /**
+   * Has the last response been sent again since it was set
+   */
+  private boolean lastResponseResent;
+
+  public RegisteredAgent(String label,
+                         String roleName,
+                         String containerId,
+                         String applicationId) {
+    this.label = label;
+    this.roleName = roleName;
+    this.componentState =
+      new ComponentInstanceState(roleName, containerId, applicationId);
+    this.nextCommand = componentState.getNextCommand();
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  public String getRoleName() {
+    return roleName;
+  }
+
+  public ComponentInstanceState getComponentState() {
+    return componentState;
+  }
+
+  public String getContainerId() {
+    return componentState.getContainerId();
+  }
+
+  /**
+   * The agent has (re)registered: its heartbeat sequence starts again
+   */
+  public synchronized void onRegistration() {
+    lastHeartbeatId = -1;
+    lastResponse = null;
+    restored = false;
+  }
+
+  /**
+   * Restore the state saved by an earlier AM. The agent must register
+   * again before its heartbeats are handled.
+   * @param record the saved state
+   */
+  public synchronized void restore(AgentStateRecord record) {
+    componentState.restore(record.state, record.lastCommand, record.failures);
+    appliedConfigurationHash = record.configurationHash;
+    nextCommand = componentState.getNextCommand();
+    restored = true;
+  }
+
+  /**
+   * Is the agent restored from saved state and yet to register
+   * @return true if the agent has to be told to register
+   */
+  public synchronized boolean isRestored() {
+    return restored;
+  }
+
+  /**
+   * Build a record of the state to save
+   * @return the current state
+   */
+  public synchronized AgentStateRecord toRecord() {
+    AgentStateRecord record = new AgentStateRecord();
+    record.label = label;
+    record.role = roleName;
+    record.containerId = componentState.getContainerId();
+    record.applicationId = componentState.getApplicationId();
+    record.state = componentState.getState();
+    record.lastCommand = componentState.getLastCommand();
+    record.failures = componentState.getFailuresSeen();
+    record.configurationHash = appliedConfigurationHash;
+    return record;
+  }
+
+  /**
+   * Note a heartbeat.
+   * @param id the heartbeat's response ID
+   * @return false if the heartbeat is a retransmission of one
+   * already processed
+   */
+  public synchronized boolean onHeartbeat(long id) {
+    heartbeats++;
+    if (id <= lastHeartbeatId) {
+      return false;
+    }
+    lastHeartbeatId = id;
+    return true;
+  }
+
+  public synchronized long getLastHeartbeatId() {
+    return lastHeartbeatId;
+  }
+
+  /**
+   * Record the response to the last heartbeat processed
+   * @param response the response, which must not be modified afterwards
+   */
+  public synchronized void setLastResponse(HeartBeatResponse response) {
+    lastResponse = response;
+    lastResponseResent = false;
+  }
+
+  /**
+   * Get the response to send to a retransmitted heartbeat: the one
+   * already sent, so that no command in it is lost
+   * @param id the heartbeat's response ID
+   * @return the last response, or null if the heartbeat is not the last
+   * one processed or it has no recorded response
+   */
+  public synchronized HeartBeatResponse resendLastResponse(long id) {
+    if (id != lastHeartbeatId || lastResponse == null) {
+      return null;
+    }
+    lastResponseResent = true;
+    return lastResponse;
+  }
+
+  /**
+   * Has the last response been sent again? If so, a long-polling request
+   * for the same heartbeat has been abandoned by the agent.
+   * @return true if {@link #resendLastResponse(long)} has returned the
+   * last response since it was set
+   */
+  public synchronized boolean isLastResponseResent() {
+    return lastResponseResent;
+  }
+
+  public synchronized long getHeartbeats() {
+    return heartbeats;
+  }
+
+  /**
+   * Set the target state of the component
+   * @param target the new target state
+   * @return true if this changed the target
+   */
+  public synchronized boolean updateTargetState(State target) {
+    if (componentState.getTargetState() == target) {
+      return false;
+    }
+    componentState.setTargetState(target);
+    return true;
+  }
+
+  public synchronized Command getNextCommand() {
+    return nextCommand;
+  }
+
+  /**
+   * Recalculate the next command after a change to the component state
+   * @return the next command
+   */
+  public synchronized Command refreshNextCommand() {
+    nextCommand = componentState.getNextCommand();
+    return nextCommand;
+  }
+
+  public synchronized String getScriptPath() {
+    return scriptPath;
+  }
+
+  public synchronized int getWaitForCount() {
+    return waitForCount;
+  }
+
+  /**
+   * Have the role settings been resolved
+   * @return true if {@link #setRoleSettings(String, int)} has been called
+   */
+  public synchronized boolean isRoleSettingsResolved() {
+    return scriptPath != null;
+  }
+
+  public synchronized void setRoleSettings(String scriptPath,
+                                           int waitForCount) {
+    this.scriptPath = scriptPath;
+    this.waitForCount = waitForCount;
+  }
+
+  public synchronized String getAppliedConfigurationHash() {
+    return appliedConfigurationHash;
+  }
+
+  /**
+   * Note the configuration hash reported in a heartbeat
+   * @param hash the hash; null if the agent holds no configurations,
+   * such as after a restart
+   */
+  public synchronized void setAppliedConfigurationHash(String hash) {
+    appliedConfigurationHash = hash;
+  }
+
+  /**
+   * Set the callback to invoke when there may be new commands for the
+   * agent, replacing any previous one. It is invoked at most once.
+   * @param listener callback; null to clear it
+   */
+  public synchronized void setCommandListener(Runnable listener) {
+    commandListener = listener;
+  }
+
+  /**
+   * Invoke and clear the command listener, if any. The listener is
+   * run outside the lock on this agent.
+   * @return true if there was a listener
+   */
+  public boolean notifyCommandsPending() {
+    Runnable listener;
+    synchronized (this) {
+      listener = commandListener;
+      commandListener = null;
+    }
+    if (listener == null) {
+      return false;
+    }
+    listener.run();
+    return true;
+  }
+
+  public synchronized boolean isSettled() {
+    return settled;
+  }
+
+  /**
+   * Set the settled flag; use
+   * {@link AgentRegistry#setSettled(RegisteredAgent, boolean)}
+   * so that the registry's count is updated
+   * @param settled new value
+   * @return true if this changed the flag
+   */
+  synchronized boolean setSettled(boolean settled) {
+    if (this.settled == settled) {
+      return false;
+    }
+    this.settled = settled;
+    return true;
+  }
+
+  /**
+   * Build the response to a heartbeat which requires no action
+   * @param responseId the ID of the response
+   * @param heartbeatInterval the heartbeat interval assigned to the agent
+   * @return a new idle response
+   */
+  public HeartBeatResponse idleResponse(long responseId,
+                                        long heartbeatInterval) {
+    HeartBeatResponse response = new HeartBeatResponse();
+    response.setResponseId(responseId);
+    response.setHeartbeatInterval(heartbeatInterval);
+    return response;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("RegisteredAgent{");
+    sb.append("label='").append(label).append('\'');
+    sb.append(", state=").append(componentState.getState());
+    sb.append(", lastHeartbeatId=").append(lastHeartbeatId);
+    sb.append(", nextCommand=").append(nextCommand);
+    sb.append('}');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.providers.agent;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket limiting the rate of agent requests the AM admits.
+ * <p>
+ * Tokens are added at a fixed rate up to a burst capacity; each admitted
+ * request takes one. A request which finds the bucket empty is told
+ * how long it will be until a token is available, which the AM passes on
+ * to the agent as the time to retry after.
+ */
+public class TokenBucket {
+
+  private final double ratePerMilli;
+  private final double capacity;
+  private double tokens;
+  private long lastRefill;
+  private final AtomicLong admitted = new AtomicLong();
+  private final AtomicLong deferred = new AtomicLong();
+
+  /**
+   * Create a full bucket
+   * @param ratePerSecond tokens added per second
+   * @param capacity maximum number of tokens: the largest burst admitted
+   */
+  public TokenBucket(double ratePerSecond, int capacity) {
+    Preconditions.checkArgument(ratePerSecond > 0,
+                                "rate must be positive: %s", ratePerSecond);
+    Preconditions.checkArgument(capacity > 0,
+                                "capacity must be positive: %s", capacity);
+    this.ratePerMilli = ratePerSecond / 1000;
+    this.capacity = capacity;
+    tokens = capacity;
+    lastRefill = -1;
+  }
+
+  /**
+   * Try to take a token now
+   * @return 0 if a token was taken, else the time in millis until there
+   * will be one
+   */
+  public long tryAcquire() {
+    return tryAcquire(System.currentTimeMillis());
+  }
+
+  /**
+   * Try to take a token
+   * @param now the current time in millis
+   * @return 0 if a token was taken, else the time in millis until there
+   * will be one
+   */
+  public synchronized long tryAcquire(long now) {
+    if (lastRefill >= 0 && now > lastRefill) {
+      tokens = Math.min(capacity,
+                        tokens + (now - lastRefill) * ratePerMilli);
+    }
+    lastRefill = Math.max(now, lastRefill);
+    if (tokens >= 1) {
+      tokens -= 1;
+      admitted.incrementAndGet();
+      return 0;
+    }
+    deferred.incrementAndGet();
+    return Math.max(1, (long) Math.ceil((1 - tokens) / ratePerMilli));
+  }
+
+  /**
+   * Get the rate at which tokens are added
+   * @return tokens per second
+   */
+  public double getRatePerSecond() {
+    return ratePerMilli * 1000;
+  }
+
+  public long getAdmitted() {
+    return admitted.get();
+  }
+
+  public long getDeferred() {
+    return deferred.get();
+  }
+}
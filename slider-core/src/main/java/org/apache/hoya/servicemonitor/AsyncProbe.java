@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.servicemonitor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A probe target of the {@link AsyncProbeScheduler}: a TCP port which
+ * must accept connections, optionally followed by an HTTP GET whose
+ * response code must be in a given range.
+ *
+ * The I/O state is only touched by the scheduler's selector thread;
+ * the probe is immutable as far as other threads are concerned, other
+ * than the cancellation flag.
+ */
+public final class AsyncProbe {
+
+  private static final Charset ASCII = Charset.forName("US-ASCII");
+
+  /**
+   * Size of the buffer for the HTTP status line: {@value}
+   */
+  static final int RESPONSE_BUFFER_SIZE = 512;
+
+  private final String key;
+  private final InetSocketAddress address;
+  private final String path;
+  private final int minCode;
+  private final int maxCode;
+  private volatile boolean cancelled;
+
+  /* state of the probe in progress; owned by the selector thread */
+  SocketChannel channel;
+  SelectionKey selectionKey;
+  ByteBuffer request;
+  ByteBuffer response;
+  TimerWheel.Entry<AsyncProbe> timer;
+  long started;
+  int successCount;
+  int failureCount;
+
+  /**
+   * Create a probe
+   * @param key key to report results under
+   * @param address address to connect to; this should be resolved
+   * @param path path for an HTTP GET; null for a port probe
+   * @param minCode minimum successful HTTP response code
+   * @param maxCode maximum successful HTTP response code
+   */
+  public AsyncProbe(String key,
+                    InetSocketAddress address,
+                    String path,
+                    int minCode,
+                    int maxCode) {
+    this.key = key;
+    this.address = address;
+    this.path = path;
+    this.minCode = minCode;
+    this.maxCode = maxCode;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public InetSocketAddress getAddress() {
+    return address;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public boolean isHttp() {
+    return path != null;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * Is a probe in progress
+   * @return true if there is an open channel
+   */
+  boolean isInProgress() {
+    return channel != null;
+  }
+
+  /**
+   * Is an HTTP response code a success
+   * @param code response code
+   * @return true if it is in the range of acceptable codes
+   */
+  boolean isSuccessfulResponse(int code) {
+    return code >= minCode && code <= maxCode;
+  }
+
+  /**
+   * Build the HTTP request to send
+   * @return a buffer ready to be written
+   */
+  ByteBuffer buildRequest() {
+    String request = "GET " + path + " HTTP/1.1\r\n"
+                     + "Host: " + address.getHostName() + ":"
+                     + address.getPort() + "\r\n"
+                     + "Connection: close\r\n"
+                     + "\r\n";
+    return ByteBuffer.wrap(request.getBytes(ASCII));
+  }
+
+  /**
+   * Parse the response code out of an HTTP status line,
+   * such as {@code HTTP/1.1 200 OK}
+   * @param buffer buffer in write mode, with the data read so far
+   * @return the response code, or -1 if the line is not yet complete
+   * @throws IOException if the status line is malformed
+   */
+  static int parseStatusCode(ByteBuffer buffer) throws IOException {
+    int end = -1;
+    for (int i = 0; i < buffer.position(); i++) {
+      if (buffer.get(i) == '\n') {
+        end = i;
+        break;
+      }
+    }
+    if (end < 0) {
+      return -1;
+    }
+    String line = new String(buffer.array(), 0, end, ASCII).trim();
+    String[] parts = line.split(" ");
+    if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+      throw new IOException("Not an HTTP status line: \"" + line + "\"");
+    }
+    try {
+      return Integer.parseInt(parts[1]);
+    } catch (NumberFormatException e) {
+      throw new IOException("Bad response code in \"" + line + "\"");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "AsyncProbe{" +
+           "key='" + key + '\'' +
+           ", address=" + address +
+           (isHttp() ? (", path='" + path + '\'') : "") +
+           ", successCount=" + successCount +
+           ", failureCount=" + failureCount +
+           '}';
+  }
+}
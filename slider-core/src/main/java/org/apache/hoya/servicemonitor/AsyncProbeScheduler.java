@@ -0,0 +1,435 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.servicemonitor;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.service.AbstractService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A scheduler which probes many targets from a single selector thread.
+ *
+ * Unlike the {@link ReportingLoop}, which needs two threads per monitored
+ * service and probes with blocking sockets, every connect, HTTP request
+ * and response here is non-blocking, multiplexed over one selector.
+ * The next probe of each target and the timeout of each probe in progress
+ * are kept in a {@link TimerWheel} driven by the same thread. Results are
+ * handed to a {@link ProbeResultListener} through a small thread pool, so
+ * slow listeners cannot hold up probing.
+ *
+ * Targets are added and removed from any thread.
+ */
+public class AsyncProbeScheduler extends AbstractService
+    implements Runnable, MonitorKeys {
+  protected static final Logger log =
+    LoggerFactory.getLogger(AsyncProbeScheduler.class);
+
+  /**
+   * Number of buckets in the timer wheel: {@value}
+   */
+  public static final int WHEEL_SIZE = 512;
+
+  /**
+   * How long to wait for the selector thread on shutdown: {@value}
+   */
+  public static final int SHUTDOWN_TIME = 10000;
+
+  private final ProbeResultListener listener;
+  private final ConcurrentMap<String, AsyncProbe> targets =
+    new ConcurrentHashMap<String, AsyncProbe>();
+  /**
+   * Probes added or cancelled, for the selector thread to pick up
+   */
+  private final Queue<AsyncProbe> pending =
+    new ConcurrentLinkedQueue<AsyncProbe>();
+  private final AtomicLong probesCompleted = new AtomicLong();
+  private final AtomicLong probesFailed = new AtomicLong();
+  private final Random random = new Random();
+
+  private int interval;
+  private int timeout;
+  private int tick;
+  private int callbackThreads;
+  private volatile boolean stopping;
+  private Selector selector;
+  private TimerWheel<AsyncProbe> wheel;
+  private ExecutorService callbacks;
+  private Thread selectorThread;
+
+  public AsyncProbeScheduler(String name, ProbeResultListener listener) {
+    super(name);
+    this.listener = listener;
+  }
+
+  @Override
+  protected void serviceInit(Configuration conf) throws Exception {
+    super.serviceInit(conf);
+    interval = conf.getInt(ASYNC_PROBE_INTERVAL, ASYNC_PROBE_INTERVAL_DEFAULT);
+    timeout = conf.getInt(ASYNC_PROBE_TIMEOUT, ASYNC_PROBE_TIMEOUT_DEFAULT);
+    tick = conf.getInt(ASYNC_PROBE_TICK, ASYNC_PROBE_TICK_DEFAULT);
+    callbackThreads = conf.getInt(ASYNC_PROBE_CALLBACK_THREADS,
+                                  ASYNC_PROBE_CALLBACK_THREADS_DEFAULT);
+    if (interval <= 0 || timeout <= 0 || tick <= 0 || callbackThreads <= 0) {
+      throw new IllegalArgumentException(
+        "Asynchronous probe interval, timeout, tick and thread count" +
+        " must all be positive");
+    }
+  }
+
+  @Override
+  protected void serviceStart() throws Exception {
+    super.serviceStart();
+    selector = Selector.open();
+    wheel = new TimerWheel<AsyncProbe>(WHEEL_SIZE, tick, now());
+    callbacks = Executors.newFixedThreadPool(callbackThreads,
+      new ThreadFactoryBuilder().setDaemon(true)
+                                .setNameFormat(getName() + " callback %d")
+                                .build());
+    selectorThread = new Thread(this, getName() + " selector");
+    selectorThread.setDaemon(true);
+    selectorThread.start();
+  }
+
+  @Override
+  protected void serviceStop() throws Exception {
+    stopping = true;
+    if (selectorThread != null) {
+      selector.wakeup();
+      selectorThread.join(SHUTDOWN_TIME);
+      selectorThread = null;
+    }
+    if (callbacks != null) {
+      callbacks.shutdownNow();
+    }
+    super.serviceStop();
+  }
+
+  /**
+   * Add a target to probe. The first probe is scheduled at a random
+   * point within the probe interval, to spread the load of many targets
+   * added at once. Any existing target with the same key is replaced.
+   * @param key key to report results under
+   * @param host hostname
+   * @param port port
+   * @param path path for an HTTP GET; null for a port probe
+   * @return the probe
+   */
+  public AsyncProbe addTarget(String key, String host, int port, String path) {
+    //resolve the host here, so that the selector thread never blocks on DNS
+    AsyncProbe probe = new AsyncProbe(key,
+                                      new InetSocketAddress(host, port),
+                                      path,
+                                      200,
+                                      399);
+    AsyncProbe old = targets.put(key, probe);
+    if (old != null) {
+      old.cancel();
+      pending.add(old);
+    }
+    pending.add(probe);
+    wakeup();
+    return probe;
+  }
+
+  /**
+   * Remove a target; any probe in progress is abandoned
+   * and its outcome not reported
+   * @param key key of the target
+   * @return true if there was such a target
+   */
+  public boolean removeTarget(String key) {
+    AsyncProbe probe = targets.remove(key);
+    if (probe == null) {
+      return false;
+    }
+    probe.cancel();
+    pending.add(probe);
+    wakeup();
+    return true;
+  }
+
+  public boolean hasTarget(String key) {
+    return targets.containsKey(key);
+  }
+
+  public int getTargetCount() {
+    return targets.size();
+  }
+
+  public long getProbesCompleted() {
+    return probesCompleted.get();
+  }
+
+  public long getProbesFailed() {
+    return probesFailed.get();
+  }
+
+  private void wakeup() {
+    Selector s = selector;
+    if (s != null) {
+      s.wakeup();
+    }
+  }
+
+  protected long now() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * The selector loop
+   */
+  @Override
+  public void run() {
+    List<AsyncProbe> due = new ArrayList<AsyncProbe>();
+    try {
+      while (!stopping) {
+        long wait = Math.max(1, wheel.getNextTickTime() - now());
+        selector.select(wait);
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          onSelected(key, (AsyncProbe) key.attachment());
+        }
+        drainPending();
+        due.clear();
+        wheel.advance(now(), due);
+        for (AsyncProbe probe : due) {
+          onTimer(probe);
+        }
+      }
+    } catch (IOException e) {
+      log.error("Probe selector failed", e);
+    } catch (ClosedSelectorException e) {
+      log.debug("Probe selector closed");
+    } finally {
+      for (SelectionKey key : selector.keys()) {
+        close((AsyncProbe) key.attachment());
+      }
+      try {
+        selector.close();
+      } catch (IOException e) {
+        log.debug("When closing selector", e);
+      }
+    }
+  }
+
+  private void drainPending() {
+    AsyncProbe probe;
+    while ((probe = pending.poll()) != null) {
+      if (probe.isCancelled()) {
+        abandon(probe);
+      } else {
+        probe.timer = wheel.schedule(probe, now() + random.nextInt(interval));
+      }
+    }
+  }
+
+  private void abandon(AsyncProbe probe) {
+    if (probe.timer != null) {
+      probe.timer.cancel();
+      probe.timer = null;
+    }
+    close(probe);
+  }
+
+  /**
+   * A timer has fired: either the probe is due, or the probe
+   * in progress has timed out
+   * @param probe probe
+   */
+  private void onTimer(AsyncProbe probe) {
+    probe.timer = null;
+    if (probe.isCancelled()) {
+      close(probe);
+    } else if (probe.isInProgress()) {
+      fail(probe, new SocketTimeoutException(
+        "No response from " + probe.getAddress() + " in " + timeout + "ms"));
+    } else {
+      begin(probe);
+    }
+  }
+
+  private void begin(AsyncProbe probe) {
+    long start = now();
+    probe.started = start;
+    probe.timer = wheel.schedule(probe, start + timeout);
+    try {
+      SocketChannel channel = SocketChannel.open();
+      probe.channel = channel;
+      channel.configureBlocking(false);
+      if (probe.getAddress().isUnresolved()) {
+        throw new IOException("Unresolved host " + probe.getAddress());
+      }
+      boolean connected = channel.connect(probe.getAddress());
+      probe.selectionKey = channel.register(selector,
+                                            SelectionKey.OP_CONNECT,
+                                            probe);
+      if (connected) {
+        onConnected(probe);
+      }
+    } catch (IOException e) {
+      fail(probe, e);
+    }
+  }
+
+  private void onSelected(SelectionKey key, AsyncProbe probe) {
+    if (probe.isCancelled()) {
+      abandon(probe);
+      return;
+    }
+    try {
+      if (!key.isValid()) {
+        return;
+      }
+      if (key.isConnectable()) {
+        if (probe.channel.finishConnect()) {
+          onConnected(probe);
+        }
+      } else if (key.isWritable()) {
+        probe.channel.write(probe.request);
+        if (!probe.request.hasRemaining()) {
+          probe.request = null;
+          probe.response = ByteBuffer.allocate(AsyncProbe.RESPONSE_BUFFER_SIZE);
+          key.interestOps(SelectionKey.OP_READ);
+        }
+      } else if (key.isReadable()) {
+        onReadable(probe);
+      }
+    } catch (IOException e) {
+      fail(probe, e);
+    }
+  }
+
+  private void onConnected(AsyncProbe probe) {
+    if (!probe.isHttp()) {
+      succeed(probe, "Connected to " + probe.getAddress());
+    } else {
+      probe.request = probe.buildRequest();
+      probe.selectionKey.interestOps(SelectionKey.OP_WRITE);
+    }
+  }
+
+  private void onReadable(AsyncProbe probe) throws IOException {
+    int read = probe.channel.read(probe.response);
+    int code = AsyncProbe.parseStatusCode(probe.response);
+    if (code >= 0) {
+      String text = "GET " + probe.getAddress() + probe.getPath()
+                    + " returned " + code;
+      if (probe.isSuccessfulResponse(code)) {
+        succeed(probe, text);
+      } else {
+        fail(probe, new IOException(text));
+      }
+    } else if (read < 0) {
+      throw new IOException("Connection to " + probe.getAddress()
+                            + " closed before a status line was received");
+    } else if (!probe.response.hasRemaining()) {
+      throw new IOException("No status line in the first "
+                            + AsyncProbe.RESPONSE_BUFFER_SIZE
+                            + " bytes from " + probe.getAddress());
+    }
+  }
+
+  private void succeed(AsyncProbe probe, String text) {
+    probe.successCount++;
+    complete(probe, new ProbeStatus(now(), text));
+  }
+
+  private void fail(AsyncProbe probe, Throwable thrown) {
+    probe.failureCount++;
+    probesFailed.incrementAndGet();
+    log.debug("Probe {} failed: {}", probe.getKey(), thrown.toString());
+    complete(probe, new ProbeStatus(now(),
+                                    "Probe of " + probe.getAddress()
+                                    + " failed: " + thrown,
+                                    thrown));
+  }
+
+  /**
+   * Finish a probe: close its channel, schedule the next probe
+   * and hand the status to the listener
+   * @param probe probe
+   * @param status outcome
+   */
+  private void complete(AsyncProbe probe, final ProbeStatus status) {
+    close(probe);
+    if (probe.timer != null) {
+      probe.timer.cancel();
+      probe.timer = null;
+    }
+    probesCompleted.incrementAndGet();
+    if (probe.isCancelled()) {
+      return;
+    }
+    status.setProbePhase(ProbePhase.LIVE);
+    probe.timer = wheel.schedule(probe,
+                                 Math.max(probe.started + interval, now()));
+    final String key = probe.getKey();
+    callbacks.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          listener.onProbeResult(key, status);
+        } catch (RuntimeException e) {
+          log.warn("Probe listener failed on {}", key, e);
+        }
+      }
+    });
+  }
+
+  private void close(AsyncProbe probe) {
+    if (probe.selectionKey != null) {
+      probe.selectionKey.cancel();
+      probe.selectionKey = null;
+    }
+    if (probe.channel != null) {
+      try {
+        probe.channel.close();
+      } catch (IOException e) {
+        log.debug("When closing channel to {}", probe.getAddress(), e);
+      }
+      probe.channel = null;
+    }
+    probe.request = null;
+    probe.response = null;
+  }
+}
@@ -276,4 +276,52 @@ public interface MonitorKeys {
   String PID_PROBE_PIDFILE =
     MONITOR_KEY_PREFIX + "pidprobe.pidfile";
 
+  /**
+   * Asynchronous probing: milliseconds between the start of successive
+   * probes of a target {@value}
+   */
+  String ASYNC_PROBE_INTERVAL =
+    MONITOR_KEY_PREFIX + "async.probe.interval";
+
+  /**
+   * Asynchronous probing: milliseconds a probe may take to connect
+   * and, for HTTP probes, receive a status line {@value}
+   */
+  String ASYNC_PROBE_TIMEOUT =
+    MONITOR_KEY_PREFIX + "async.probe.timeout";
+
+  /**
+   * Asynchronous probing: granularity in milliseconds of the timer wheel
+   * {@value}
+   */
+  String ASYNC_PROBE_TICK =
+    MONITOR_KEY_PREFIX + "async.probe.tick";
+
+  /**
+   * Asynchronous probing: number of threads delivering results
+   * {@value}
+   */
+  String ASYNC_PROBE_CALLBACK_THREADS =
+    MONITOR_KEY_PREFIX + "async.probe.callback.threads";
+
+  /**
+   * default interval for asynchronous probes {@value}
+   */
+  int ASYNC_PROBE_INTERVAL_DEFAULT = 5000;
+
+  /**
+   * default timeout for asynchronous probes {@value}
+   */
+  int ASYNC_PROBE_TIMEOUT_DEFAULT = 2000;
+
+  /**
+   * default timer wheel tick {@value}
+   */
+  int ASYNC_PROBE_TICK_DEFAULT = 50;
+
+  /**
+   * default number of callback threads {@value}
+   */
+  int ASYNC_PROBE_CALLBACK_THREADS_DEFAULT = 2;
+
 }
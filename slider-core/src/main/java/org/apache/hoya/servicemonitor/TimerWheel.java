@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.servicemonitor;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A hashed timer wheel: scheduled items are hashed by their deadline
+ * into a ring of buckets, each covering one tick. Scheduling and
+ * cancelling are O(1); advancing the wheel only visits the buckets
+ * of the ticks that have passed, so many thousands of timers can be
+ * kept by one thread at little cost.
+ *
+ * Deadlines are only honoured to the granularity of a tick.
+ * This class is not thread safe: it is designed to be driven by
+ * the single thread that owns it.
+ * @param <T> type of the scheduled items
+ */
+public final class TimerWheel<T> {
+
+  private final long tickMillis;
+  private final int mask;
+  private final List<LinkedList<Entry<T>>> buckets;
+  private final long startTime;
+
+  /**
+   * The next tick to process
+   */
+  private long tick;
+  private int size;
+
+  /**
+   * Create a timer wheel
+   * @param ticksPerWheel number of buckets; rounded up to a power of two
+   * @param tickMillis duration of a tick in milliseconds
+   * @param now the current time, which is the time of tick 0
+   */
+  public TimerWheel(int ticksPerWheel, long tickMillis, long now) {
+    if (ticksPerWheel <= 0) {
+      throw new IllegalArgumentException(
+        "ticksPerWheel must be positive: " + ticksPerWheel);
+    }
+    if (tickMillis <= 0) {
+      throw new IllegalArgumentException(
+        "tickMillis must be positive: " + tickMillis);
+    }
+    int wheelSize = 1;
+    while (wheelSize < ticksPerWheel) {
+      wheelSize <<= 1;
+    }
+    this.tickMillis = tickMillis;
+    this.mask = wheelSize - 1;
+    this.startTime = now;
+    buckets = new ArrayList<LinkedList<Entry<T>>>(wheelSize);
+    for (int i = 0; i < wheelSize; i++) {
+      buckets.add(new LinkedList<Entry<T>>());
+    }
+  }
+
+  public long getTickMillis() {
+    return tickMillis;
+  }
+
+  /**
+   * Get the number of scheduled entries, including any cancelled entries
+   * which have not yet been purged
+   * @return the entry count
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the time at which the next tick falls due
+   * @return a time in milliseconds
+   */
+  public long getNextTickTime() {
+    return startTime + tick * tickMillis;
+  }
+
+  /**
+   * Schedule an item
+   * @param item item to schedule
+   * @param deadline time at or after which the item falls due
+   * @return the entry, which can be used to cancel the timer
+   */
+  public Entry<T> schedule(T item, long deadline) {
+    long deadlineTick = (deadline - startTime + tickMillis - 1) / tickMillis;
+    if (deadlineTick < tick) {
+      deadlineTick = tick;
+    }
+    Entry<T> entry = new Entry<T>(item, deadline,
+                                  (deadlineTick - tick) / buckets.size());
+    buckets.get((int) (deadlineTick & mask)).add(entry);
+    size++;
+    return entry;
+  }
+
+  /**
+   * Advance the wheel to the given time, collecting every item
+   * which has fallen due. Cancelled entries are discarded.
+   * @param now the current time
+   * @param expired list to add the expired items to
+   * @return the number of items added to the list
+   */
+  public int advance(long now, List<T> expired) {
+    int count = 0;
+    while (getNextTickTime() <= now) {
+      Iterator<Entry<T>> it = buckets.get((int) (tick & mask)).iterator();
+      while (it.hasNext()) {
+        Entry<T> entry = it.next();
+        if (entry.cancelled) {
+          it.remove();
+          size--;
+        } else if (entry.rounds > 0) {
+          entry.rounds--;
+        } else {
+          it.remove();
+          size--;
+          expired.add(entry.item);
+          count++;
+        }
+      }
+      tick++;
+    }
+    return count;
+  }
+
+  /**
+   * A scheduled entry
+   * @param <T> type of the item
+   */
+  public static final class Entry<T> {
+    private final T item;
+    private final long deadline;
+    private long rounds;
+    private boolean cancelled;
+
+    private Entry(T item, long deadline, long rounds) {
+      this.item = item;
+      this.deadline = deadline;
+      this.rounds = rounds;
+    }
+
+    public T getItem() {
+      return item;
+    }
+
+    public long getDeadline() {
+      return deadline;
+    }
+
+    /**
+     * Cancel the entry; it will be discarded when its bucket is next visited
+     */
+    public void cancel() {
+      cancelled = true;
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+  }
+}
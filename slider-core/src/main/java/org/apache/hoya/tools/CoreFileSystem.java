@@ -162,6 +162,7 @@ public class CoreFileSystem {
     createWithPermissions(instancePaths.snapshotConfPath, clusterPerms);
     createWithPermissions(instancePaths.generatedConfPath, clusterPerms);
     createWithPermissions(instancePaths.historyPath, clusterPerms);
+    createWithPermissions(instancePaths.providerStatePath, clusterPerms);
     createWithPermissions(instancePaths.tmpPathAM, clusterPerms);
 
     // Data Directory
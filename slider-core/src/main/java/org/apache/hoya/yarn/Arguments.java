@@ -39,6 +39,7 @@ package org.apache.hoya.yarn;
 public interface Arguments {
 
   String ARG_APP_HOME = "--apphome";
+  String ARG_BATCH = "--batch";
   String ARG_CONFDIR = "--appconf";
   String ARG_COMPONENT = "--component";
   String ARG_COMPONENT_SHORT = "--comp";
@@ -79,6 +80,7 @@ public interface Arguments {
   String ARG_RESOURCE_OPT_SHORT = "-ro";
   String ARG_SYSPROP = "-S";
   String ARG_TEMPLATE = "--template";
+  String ARG_THREADS = "--threads";
   String ARG_WAIT = "--wait";
   String ARG_ZKPATH = "--zkpath";
   String ARG_ZKPORT = "--zkport";
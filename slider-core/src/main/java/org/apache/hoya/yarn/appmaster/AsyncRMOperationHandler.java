@@ -48,4 +48,10 @@ public class AsyncRMOperationHandler extends RMOperationHandler {
   public void addContainerRequest(AMRMClient.ContainerRequest req) {
     client.addContainerRequest(req);
   }
+
+  @Override
+  public void removeContainerRequest(AMRMClient.ContainerRequest req) {
+    log.debug("Cancelling container request {}", req);
+    client.removeContainerRequest(req);
+  }
 }
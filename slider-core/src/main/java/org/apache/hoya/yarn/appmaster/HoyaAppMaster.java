@@ -19,6 +19,7 @@
 package org.apache.hoya.yarn.appmaster;
 
 import com.google.protobuf.BlockingService;
+import com.google.protobuf.ByteString;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
 import org.apache.hadoop.fs.Path;
@@ -58,6 +59,7 @@ import org.apache.hadoop.yarn.util.ConverterUtils;
 import org.apache.hadoop.yarn.webapp.WebApps;
 import org.apache.hoya.HoyaExitCodes;
 import org.apache.hoya.HoyaKeys;
+import org.apache.hoya.HoyaXmlConfKeys;
 import org.apache.hoya.api.ClusterDescription;
 import org.apache.hoya.api.HoyaClusterProtocol;
 import org.apache.hoya.api.OptionKeys;
@@ -68,6 +70,7 @@ import org.apache.hoya.api.proto.HoyaClusterAPI;
 import org.apache.hoya.api.proto.Messages;
 import org.apache.hoya.core.build.InstanceIO;
 import org.apache.hoya.core.conf.AggregateConf;
+import org.apache.hoya.core.conf.ConfTreeOperations;
 import org.apache.hoya.core.conf.ConfTree;
 import org.apache.hoya.core.conf.MapOperations;
 import org.apache.hoya.core.persist.ConfTreeSerDeser;
@@ -79,12 +82,21 @@ import org.apache.hoya.providers.HoyaProviderFactory;
 import org.apache.hoya.providers.ProviderRole;
 import org.apache.hoya.providers.ProviderService;
 import org.apache.hoya.providers.hoyaam.HoyaAMClientProvider;
+import org.apache.hoya.servicemonitor.AsyncProbeScheduler;
+import org.apache.hoya.servicemonitor.ProbeResultListener;
+import org.apache.hoya.servicemonitor.ProbeStatus;
 import org.apache.hoya.tools.ConfigHelper;
 import org.apache.hoya.tools.HoyaFileSystem;
 import org.apache.hoya.tools.HoyaUtils;
 import org.apache.hoya.tools.HoyaVersionInfo;
 import org.apache.hoya.yarn.HoyaActions;
 import org.apache.hoya.yarn.appmaster.rpc.HoyaAMPolicyProvider;
+import org.apache.hoya.yarn.appmaster.autoscale.AutoscaleListener;
+import org.apache.hoya.yarn.appmaster.autoscale.Autoscaler;
+import org.apache.hoya.yarn.appmaster.autoscale.AutoscalerService;
+import org.apache.hoya.yarn.appmaster.rolling.RollingRestartListener;
+import org.apache.hoya.yarn.appmaster.rolling.RollingRestartService;
+import org.apache.hoya.yarn.appmaster.history.RoleHistoryCheckpointService;
 import org.apache.hoya.yarn.appmaster.rpc.HoyaClusterProtocolPBImpl;
 import org.apache.hoya.yarn.appmaster.rpc.RpcBinder;
 import org.apache.hoya.yarn.appmaster.state.AbstractRMOperation;
@@ -92,13 +104,17 @@ import org.apache.hoya.yarn.appmaster.state.AppState;
 import org.apache.hoya.yarn.appmaster.state.ContainerAssignment;
 import org.apache.hoya.yarn.appmaster.state.ContainerReleaseOperation;
 import org.apache.hoya.yarn.appmaster.state.RMOperationHandler;
+import org.apache.hoya.yarn.appmaster.state.RoleHistory;
 import org.apache.hoya.yarn.appmaster.state.RoleInstance;
 import org.apache.hoya.yarn.appmaster.state.RoleStatus;
+import org.apache.hoya.yarn.appmaster.state.RollingRestart;
+import org.apache.hoya.yarn.appmaster.web.AgentWebService;
 import org.apache.hoya.yarn.appmaster.web.HoyaAMWebApp;
 import org.apache.hoya.yarn.appmaster.web.SliderAmFilterInitializer;
 import org.apache.hoya.yarn.appmaster.web.SliderAmIpFilter;
 import org.apache.hoya.yarn.appmaster.web.WebAppApi;
 import org.apache.hoya.yarn.appmaster.web.WebAppApiImpl;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.AgentRestOperations;
 import static org.apache.hoya.yarn.appmaster.web.rest.RestPaths.*;
 import org.apache.hoya.yarn.params.AbstractActionArgs;
 import org.apache.hoya.yarn.params.HoyaAMArgs;
@@ -149,7 +165,10 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
              ServiceStateChangeListener,
              RoleKeys,
              EventCallback,
-             ContainerStartOperation {
+             ContainerStartOperation,
+             ProbeResultListener,
+             AutoscaleListener,
+             RollingRestartListener {
   protected static final Logger log =
     LoggerFactory.getLogger(HoyaAppMaster.class);
 
@@ -166,6 +185,11 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
 
   public static final int HEARTBEAT_INTERVAL = 1000;
   public static final int NUM_RPC_HANDLERS = 5;
+
+  /**
+   * Initial size of the buffer into which status JSON is streamed: {@value}
+   */
+  public static final int STATUS_BUFFER_SIZE = 16 * 1024;
   public static final String SERVICE_CLASSNAME =
     "org.apache.hoya.yarn.appmaster.HoyaAppMaster";
 
@@ -269,12 +293,33 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
   private String amCompletionReason;
 
   private RoleLaunchService launchService;
+
+  /**
+   * Health probes of the live containers
+   */
+  private AsyncProbeScheduler healthProbes;
+
+  /**
+   * Autoscaling of the roles which have an autoscale policy
+   */
+  private AutoscalerService autoscaler;
+
+  /**
+   * Drives rolling restarts through their health gates
+   */
+  private RollingRestartService rollingRestarts;
+  private RoleHistoryCheckpointService historyCheckpoints;
   
   //username -null if it is not known/not to be set
   private String hadoop_user_name;
   private String service_user_name;
   
   private HoyaAMWebApp webApp;
+
+  /**
+   * Server for agent requests; null if agents use the web application
+   */
+  private AgentWebService agentWebService;
   private InetSocketAddress rpcServiceAddress;
 
   /**
@@ -569,6 +614,19 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
       appInformation.put(StatusKeys.INFO_AM_WEB_URL, appMasterTrackingUrl + "/");
       appInformation.set(StatusKeys.INFO_AM_WEB_PORT, webApp.port());      
 
+      // agents get a server of their own unless it is disabled
+      int agentPort = webApp.port();
+      if (conf.getInt(HoyaXmlConfKeys.KEY_AGENT_WEB_THREADS,
+                      HoyaXmlConfKeys.DEFAULT_AGENT_WEB_THREADS) > 0) {
+        agentWebService = new AgentWebService("AgentWeb",
+          new WebAppApiImpl(this, appState, providerService));
+        agentWebService.init(conf);
+        agentWebService.start();
+        addService(agentWebService);
+        agentPort = agentWebService.getPort();
+      }
+      appInformation.set(StatusKeys.INFO_AM_AGENT_PORT, agentPort);
+
       // Register self with ResourceManager
       // This will start heartbeating to the RM
       // address = HoyaUtils.getRmSchedulerAddress(asyncRMClient.getConfig());
@@ -613,7 +671,11 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
       //determine the location for the role history data
       Path historyDir = new Path(clusterDirPath, HISTORY_DIR_NAME);
 
-      //build the instance
+      //build the instance, with racks resolved as the cluster's are
+      appState.setTopology(RoleHistory.createTopology(getConfig()));
+      // only components deployed by agents report when they have started
+      appState.setComponentStartsReported(
+        providerService.getAgentRestOperations() != null);
       appState.buildInstance(instanceDefinition,
                              providerConf,
                              providerRoles,
@@ -654,10 +716,34 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
 
     deployChildService(launchService);
 
+    //health probing, starting with any containers from a previous attempt
+    healthProbes = new AsyncProbeScheduler("HealthProbeScheduler", this);
+    deployChildService(healthProbes);
+    for (RoleInstance instance : appState.cloneLiveContainerInfoList()) {
+      registerHealthProbe(instance);
+    }
+
+    //autoscaling from the load the components report
+    autoscaler = new AutoscalerService("Autoscaler", appState, this);
+    deployChildService(autoscaler);
+
+    //rolling restarts
+    rollingRestarts = new RollingRestartService("RollingRestarts", appState,
+                                                this);
+    deployChildService(rollingRestarts);
+
+    //role history checkpoints
+    historyCheckpoints = new RoleHistoryCheckpointService(
+      "HistoryCheckpoints", appState.getRoleHistory());
+    deployChildService(historyCheckpoints);
+
     appState.noteAMLaunched();
 
 
     //Give the provider restricted access to the state, registry
+    providerService.setStateDirectory(fs.getFileSystem(),
+                                      new Path(clusterDirPath,
+                                               PROVIDER_STATE_DIR_NAME));
     providerService.bind(appState, registry);
     registerServiceInstance(clustername, appid);
 
@@ -954,7 +1040,8 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
    * container launch operations.
    * 
    * The operations are run in sequence; they are expected to be 0 or more
-   * release operations (to handle over-allocations)
+   * release operations (to handle over-allocations), and requests for
+   * replacements of containers released for breaking a placement policy
    * 
    * @param allocatedContainers list of containers that are now ready to be
    * given work.
@@ -966,6 +1053,8 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
     List<ContainerAssignment> assignments = new ArrayList<ContainerAssignment>();
     List<AbstractRMOperation> operations = new ArrayList<AbstractRMOperation>();
     
+    //place any new hosts before the app state is locked
+    appState.resolveRacks(allocatedContainers);
     //app state makes all the decisions
     appState.onContainersAllocated(allocatedContainers, assignments, operations);
 
@@ -986,6 +1075,9 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
     LOG_YARN.info("onContainersCompleted([{}]", completedContainers.size());
     for (ContainerStatus status : completedContainers) {
       ContainerId containerId = status.getContainerId();
+      if (healthProbes != null) {
+        healthProbes.removeTarget(containerId.toString());
+      }
       LOG_YARN.info("Container Completion for" +
                     " containerID={}," +
                     " state={}," +
@@ -998,9 +1090,21 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
       // non complete containers should not be here
       assert (status.getState() == ContainerState.COMPLETE);
       AppState.NodeCompletionResult result = appState.onCompletedNode(conf, status);
+      providerService.notifyContainerCompleted(containerId);
       if (result.containerFailed) {
         RoleInstance ri = result.roleInstance;
         log.error("Role instance {} failed ", ri);
+        if (result.promotedSpare != null) {
+          log.info("Warm spare {} promoted to replace it",
+                   result.promotedSpare.id);
+          // push the start command to the spare's agent if it is waiting
+          AgentRestOperations agentOps =
+            providerService.getAgentRestOperations();
+          if (agentOps != null) {
+            agentOps.notifyCommandsPending(result.promotedSpare.id,
+                                           result.promotedSpare.role);
+          }
+        }
       }
     }
 
@@ -1082,6 +1186,7 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
   @Override //AMRMClientAsync
   public void onNodesUpdated(List<NodeReport> updatedNodes) {
     LOG_YARN.info("Nodes updated");
+    appState.onNodesUpdated(updatedNodes);
   }
 
   /**
@@ -1157,15 +1262,14 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
                                                        IOException,
                                                        YarnException {
     HoyaUtils.getCurrentUser();
-    String result;
     //quick update
-    //query and json-ify
+    //query and json-ify straight into the response buffer
     ClusterDescription cd;
     cd = getCurrentClusterStatus();
-    result = cd.toJsonString();
-    String stat = result;
+    ByteString.Output out = ByteString.newOutput(STATUS_BUFFER_SIZE);
+    cd.writeJson(out, request.getCompact());
     return Messages.GetJSONClusterStatusResponseProto.newBuilder()
-      .setClusterSpec(stat)
+      .setClusterSpecBytes(out.toByteString())
       .build();
   }
 
@@ -1195,9 +1299,11 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
     String app;
     synchronized (appState) {
       AggregateConf instanceDefinition = appState.getInstanceDefinition();
-      internal = instanceDefinition.getInternal().toJson();
-      resources = instanceDefinition.getResources().toJson();
-      app = instanceDefinition.getAppConf().toJson();
+      internal =
+        instanceDefinition.getInternalOperations().flatten().toJson();
+      resources =
+        instanceDefinition.getResourceOperations().flatten().toJson();
+      app = instanceDefinition.getAppConfOperations().flatten().toJson();
     }
     assert internal != null;
     assert resources != null;
@@ -1293,6 +1399,27 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
     return builder.build();
   }
 
+  @Override //HoyaClusterProtocol
+  public Messages.RollingRestartResponseProto rollingRestart(Messages.RollingRestartRequestProto request) throws
+                                                                                                           IOException,
+                                                                                                           YarnException {
+    HoyaUtils.getCurrentUser();
+    String role = request.getRole();
+    int batchSize = request.getBatchSize();
+    log.info("Rolling restart of role {}, {} at a time", role, batchSize);
+    // only components deployed by agents report when they have started
+    boolean waitForComponentStart =
+      providerService.getAgentRestOperations() != null;
+    RollingRestart restart =
+      appState.startRollingRestart(role, batchSize, waitForComponentStart);
+    int instances = restart.getRemaining();
+    // release the first batch
+    reviewRequestAndReleaseNodes();
+    return Messages.RollingRestartResponseProto.newBuilder()
+                   .setInstances(instances)
+                   .build();
+  }
+
   @Override
   public Messages.AMSuicideResponseProto amSuicide(Messages.AMSuicideRequestProto request) throws
                                                                                            IOException,
@@ -1318,6 +1445,18 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
     Map<String, String> providerStatus = providerService.buildProviderStatus();
     assert providerStatus != null : "null provider status";
     appState.refreshClusterStatus(providerStatus);
+    if (agentWebService != null) {
+      Map<String, Integer> agentWebStats = new HashMap<String, Integer>();
+      agentWebService.addStatistics(agentWebStats);
+      getClusterDescription().statistics.put(StatusKeys.STATISTICS_AGENT_WEB,
+                                             agentWebStats);
+    }
+    if (historyCheckpoints != null) {
+      Map<String, Integer> checkpointStats = new HashMap<String, Integer>();
+      historyCheckpoints.addStatistics(checkpointStats);
+      getClusterDescription().statistics.put(
+        StatusKeys.STATISTICS_HISTORY_CHECKPOINT, checkpointStats);
+    }
   }
 
   /**
@@ -1450,6 +1589,7 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
     RoleInstance cinfo = appState.onNodeManagerContainerStarted(containerId);
     if (cinfo != null) {
       LOG_YARN.info("Deployed instance of role {}", cinfo.role);
+      registerHealthProbe(cinfo);
       //trigger an async container status
       nmClientAsync.getContainerStatusAsync(containerId,
                                             cinfo.container.getNodeId());
@@ -1462,10 +1602,72 @@ public class HoyaAppMaster extends AbstractSliderLaunchedService
     }
   }
 
+  /**
+   * Start probing the health of a container, if its role has
+   * a health probe port
+   * @param instance role instance
+   */
+  private void registerHealthProbe(RoleInstance instance) {
+    RoleStatus role = appState.lookupRoleStatus(instance.roleId);
+    if (!role.isHealthProbed()) {
+      return;
+    }
+    String host = instance.getHost().getHost();
+    log.debug("Probing health of {} at {}:{}", instance.id, host,
+              role.getHealthProbePort());
+    healthProbes.addTarget(instance.id,
+                           host,
+                           role.getHealthProbePort(),
+                           role.getHealthProbePath());
+  }
+
+  @Override //ProbeResultListener
+  public void onProbeResult(String key, ProbeStatus status) {
+    if (amCompletionFlag.get()) {
+      return;
+    }
+    if (!status.isSuccess()) {
+      log.info("Health probe of {} failed: {}", key, status.getMessage());
+    }
+    List<AbstractRMOperation> operations =
+      appState.onContainerHealthProbe(ConverterUtils.toContainerId(key),
+                                      status.isSuccess());
+    if (!operations.isEmpty()) {
+      healthProbes.removeTarget(key);
+      rmOperationHandler.execute(operations);
+    }
+  }
+
+  @Override //AutoscaleListener
+  public void onAutoscale(Map<String, Integer> instances) {
+    if (amCompletionFlag.get()) {
+      return;
+    }
+    log.info("Autoscaling to {}", instances);
+    try {
+      ConfTreeOperations resources =
+        ConfTreeOperations.fromInstance(getInstanceDefinition().getResources());
+      Autoscaler.applyDecisions(resources, instances);
+      flexCluster(resources.getConfTree());
+    } catch (Exception e) {
+      log.warn("Failed to autoscale to {}: {}", instances, e, e);
+    }
+  }
+
+  @Override //RollingRestartListener
+  public void onRollingRestartReview() {
+    try {
+      reviewRequestAndReleaseNodes();
+    } catch (SliderInternalStateException e) {
+      log.warn("Failed to review the rolling restart: {}", e, e);
+    }
+  }
+
   @Override //  NMClientAsync.CallbackHandler 
   public void onStartContainerError(ContainerId containerId, Throwable t) {
     LOG_YARN.error("Failed to start Container " + containerId, t);
     appState.onNodeManagerContainerStartFailed(containerId, t);
+    providerService.notifyContainerCompleted(containerId);
   }
 
   @Override //  NMClientAsync.CallbackHandler 
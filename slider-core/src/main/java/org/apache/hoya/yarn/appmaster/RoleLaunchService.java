@@ -280,10 +280,9 @@ public class RoleLaunchService extends AbstractService {
         log.info("Starting container with command: {}",
                  commandsAsString);
 
-        instance.command = commandsAsString;
+        instance.setLaunchDetails(commandsAsString, envDescription);
         instance.role = containerRole;
         instance.roleId = role.id;
-        instance.environment = envDescription;
         containerStarter.startContainer(container,
                                         containerLauncher.completeContainerLaunch(),
                                         instance);
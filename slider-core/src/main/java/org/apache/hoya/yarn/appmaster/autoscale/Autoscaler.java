@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.autoscale;
+
+import org.apache.hoya.api.ResourceKeys;
+import org.apache.hoya.core.conf.ConfTreeOperations;
+import org.apache.hoya.yarn.appmaster.state.AppState;
+import org.apache.hoya.yarn.appmaster.state.AutoscalePolicy;
+import org.apache.hoya.yarn.appmaster.state.RoleInstance;
+import org.apache.hoya.yarn.appmaster.state.RoleStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides how many instances each autoscaled role should have.
+ * <p>
+ * On every review the total load of a role -the mean load reported by
+ * its live instances times the number of instances- is added to that
+ * role's {@link LoadForecaster}. Forecasting the total rather than the
+ * mean keeps resizes from showing up as changes in load. The role is
+ * then sized for the larger of the observed load and the load forecast
+ * one cooldown period ahead, so that it grows ahead of a rising load
+ * but only shrinks once the load has actually dropped. A role is not
+ * resized again until its cooldown has passed.
+ * <p>
+ * This class only makes decisions; applying them is left to the caller,
+ * so it can be driven offline against an {@link AppState}.
+ */
+public class Autoscaler {
+  protected static final Logger log =
+    LoggerFactory.getLogger(Autoscaler.class);
+
+  private final AppState appState;
+  private final long staleness;
+  private final Map<String, LoadForecaster> forecasters =
+    new HashMap<String, LoadForecaster>();
+  private final Map<String, Long> lastResized = new HashMap<String, Long>();
+
+  /**
+   * Create an autoscaler
+   * @param appState state to review
+   * @param staleness age in milliseconds after which a load report
+   * from an instance is ignored
+   */
+  public Autoscaler(AppState appState, long staleness) {
+    this.appState = appState;
+    this.staleness = staleness;
+  }
+
+  /**
+   * Review the load of all autoscaled roles
+   * @param now current time
+   * @return map of role name to new instance count for every role
+   * to resize; empty if there is nothing to do
+   */
+  public synchronized Map<String, Integer> review(long now) {
+    // sum and count the fresh load reports of each role
+    Map<Integer, double[]> loads = new HashMap<Integer, double[]>();
+    for (RoleInstance instance : appState.cloneLiveContainerInfoList()) {
+      double load = instance.load;
+      if (instance.released || load < 0 ||
+          now - instance.loadTimestamp > staleness) {
+        continue;
+      }
+      double[] sum = loads.get(instance.roleId);
+      if (sum == null) {
+        sum = new double[2];
+        loads.put(instance.roleId, sum);
+      }
+      sum[0] += load;
+      sum[1]++;
+    }
+
+    Map<String, Integer> decisions = new HashMap<String, Integer>();
+    for (RoleStatus role : appState.getRoleStatusMap().values()) {
+      AutoscalePolicy policy = role.getAutoscalePolicy();
+      double[] sum = loads.get(role.getKey());
+      int actual = role.getActual();
+      if (!policy.isEnabled() || sum == null || actual == 0) {
+        continue;
+      }
+      String name = role.getName();
+      double observed = actual * sum[0] / sum[1];
+      LoadForecaster forecaster = forecasters.get(name);
+      if (forecaster == null) {
+        forecaster = new LoadForecaster();
+        forecasters.put(name, forecaster);
+      }
+      forecaster.observe(now, observed);
+      double predicted = forecaster.forecast(now + policy.getCooldown());
+      int desired = role.getDesired();
+      int target = policy.instancesFor(Math.max(observed, predicted));
+      if (target == desired) {
+        continue;
+      }
+      Long last = lastResized.get(name);
+      if (last != null && now - last < policy.getCooldown()) {
+        log.debug("{}: not resizing from {} to {} during cooldown",
+                  name, desired, target);
+        continue;
+      }
+      log.info("{}: load {} forecast {}; resizing from {} to {}",
+               name, observed, predicted, desired, target);
+      decisions.put(name, target);
+      lastResized.put(name, now);
+    }
+    return decisions;
+  }
+
+  /**
+   * Get the forecaster of a role
+   * @param role role name
+   * @return the forecaster or null if the role has not been reviewed
+   */
+  public synchronized LoadForecaster getForecaster(String role) {
+    return forecasters.get(role);
+  }
+
+  /**
+   * Apply decisions to a copy of the resources
+   * @param resources resources to update
+   * @param instances map of role name to instance count
+   */
+  public static void applyDecisions(ConfTreeOperations resources,
+                                    Map<String, Integer> instances) {
+    for (Map.Entry<String, Integer> entry : instances.entrySet()) {
+      resources.setRoleOpt(entry.getKey(),
+                           ResourceKeys.COMPONENT_INSTANCES,
+                           entry.getValue());
+    }
+  }
+}
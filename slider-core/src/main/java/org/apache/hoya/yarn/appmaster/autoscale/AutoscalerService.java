@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.autoscale;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.service.AbstractService;
+import org.apache.hoya.HoyaXmlConfKeys;
+import org.apache.hoya.yarn.appmaster.state.AppState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service which periodically runs an {@link Autoscaler} against
+ * the application state and passes any decisions to a listener
+ */
+public class AutoscalerService extends AbstractService implements Runnable {
+  protected static final Logger log =
+    LoggerFactory.getLogger(AutoscalerService.class);
+
+  private final AppState appState;
+  private final AutoscaleListener listener;
+  private Autoscaler autoscaler;
+  private ScheduledExecutorService executor;
+  private int interval;
+
+  public AutoscalerService(String name,
+                           AppState appState,
+                           AutoscaleListener listener) {
+    super(name);
+    this.appState = appState;
+    this.listener = listener;
+  }
+
+  @Override
+  protected void serviceInit(Configuration conf) throws Exception {
+    super.serviceInit(conf);
+    interval = conf.getInt(HoyaXmlConfKeys.KEY_AUTOSCALE_INTERVAL,
+                           HoyaXmlConfKeys.DEFAULT_AUTOSCALE_INTERVAL);
+    if (interval <= 0) {
+      throw new IllegalArgumentException(
+        "Autoscale interval must be positive: " + interval);
+    }
+    // load reports older than two intervals are considered stale
+    autoscaler = new Autoscaler(appState, 2L * interval);
+  }
+
+  @Override
+  protected void serviceStart() throws Exception {
+    super.serviceStart();
+    executor = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon(true)
+                                .setNameFormat(getName() + "-%d")
+                                .build());
+    executor.scheduleWithFixedDelay(this, interval, interval,
+                                    TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  protected void serviceStop() throws Exception {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+    super.serviceStop();
+  }
+
+  /**
+   * Review the state once; failures are logged and do not stop
+   * later reviews
+   */
+  @Override
+  public void run() {
+    try {
+      Map<String, Integer> decisions =
+        autoscaler.review(System.currentTimeMillis());
+      if (!decisions.isEmpty()) {
+        listener.onAutoscale(decisions);
+      }
+    } catch (Exception e) {
+      log.warn("Autoscaling review failed: {}", e, e);
+    }
+  }
+
+  public Autoscaler getAutoscaler() {
+    return autoscaler;
+  }
+}
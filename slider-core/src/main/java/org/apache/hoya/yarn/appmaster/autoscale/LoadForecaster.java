@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.autoscale;
+
+/**
+ * Forecasts the load of a role from a series of observations by
+ * double exponential (Holt) smoothing: a smoothed level and a smoothed
+ * trend, which is extrapolated to predict the load ahead of time.
+ * Not thread safe.
+ */
+public class LoadForecaster {
+
+  /**
+   * Default weight of a new observation in the level: {@value}
+   */
+  public static final double DEFAULT_LEVEL_SMOOTHING = 0.5;
+
+  /**
+   * Default weight of a new observation in the trend: {@value}
+   */
+  public static final double DEFAULT_TREND_SMOOTHING = 0.3;
+
+  private final double alpha;
+  private final double beta;
+  private double level;
+  /** trend in load per millisecond */
+  private double trend;
+  private long lastObserved;
+  private int observations;
+
+  public LoadForecaster() {
+    this(DEFAULT_LEVEL_SMOOTHING, DEFAULT_TREND_SMOOTHING);
+  }
+
+  /**
+   * Create a forecaster
+   * @param alpha smoothing of the level, in the range (0, 1]
+   * @param beta smoothing of the trend, in the range [0, 1]
+   */
+  public LoadForecaster(double alpha, double beta) {
+    if (alpha <= 0 || alpha > 1 || beta < 0 || beta > 1) {
+      throw new IllegalArgumentException(
+        "Smoothing factors out of range: " + alpha + ", " + beta);
+    }
+    this.alpha = alpha;
+    this.beta = beta;
+  }
+
+  /**
+   * Add an observation
+   * @param time time of the observation
+   * @param load observed load
+   */
+  public void observe(long time, double load) {
+    if (observations == 0) {
+      level = load;
+      trend = 0;
+    } else {
+      long interval = time - lastObserved;
+      double previous = level;
+      if (interval <= 0) {
+        // a repeated observation: only the level moves
+        level = alpha * load + (1 - alpha) * level;
+        return;
+      }
+      level = alpha * load + (1 - alpha) * (level + trend * interval);
+      trend = beta * (level - previous) / interval + (1 - beta) * trend;
+    }
+    lastObserved = time;
+    observations++;
+  }
+
+  /**
+   * Forecast the load at a time
+   * @param time time of the forecast; normally in the future
+   * @return the forecast load, never negative; 0 if nothing
+   * has been observed
+   */
+  public double forecast(long time) {
+    if (observations == 0) {
+      return 0;
+    }
+    return Math.max(0, level + trend * (time - lastObserved));
+  }
+
+  public double getLevel() {
+    return level;
+  }
+
+  public int getObservations() {
+    return observations;
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.history;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.service.AbstractService;
+import org.apache.hoya.HoyaXmlConfKeys;
+import org.apache.hoya.api.StatusKeys;
+import org.apache.hoya.yarn.appmaster.state.RoleHistory;
+import org.apache.hoya.yarn.appmaster.state.RoleHistoryCheckpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service which checkpoints the role history on a thread of its own,
+ * so that writing it never holds up the handling of allocations.
+ * <p>
+ * Changes are checkpointed once the history has been left unchanged
+ * for the checkpoint interval, or when the oldest change has waited for
+ * the maximum delay. A checkpoint is normally a delta of the entries
+ * changed since the one before; the first, every one after the configured
+ * number of deltas, and any after a change to the whole history are full.
+ * <p>
+ * Only one checkpoint is written at a time and none are queued: changes
+ * made while one is being written are collected by the history and go
+ * into the next.
+ */
+public class RoleHistoryCheckpointService extends AbstractService
+  implements Runnable {
+  protected static final Logger log =
+    LoggerFactory.getLogger(RoleHistoryCheckpointService.class);
+
+  private final RoleHistory history;
+  private ScheduledExecutorService executor;
+  private long interval;
+  private long maxDelay;
+  private int maxDeltas;
+  private int deltas;
+
+  // statistics, updated only by checkpoint(), so they can be read
+  // without waiting for a checkpoint to be written
+  private volatile int checkpoints;
+  private volatile int fullCheckpoints;
+  private volatile int failures;
+  private volatile long lastLatency;
+  private volatile long maxLatency;
+  private volatile int lastEntries;
+  private volatile int maxEntries;
+
+  public RoleHistoryCheckpointService(String name, RoleHistory history) {
+    super(name);
+    this.history = history;
+  }
+
+  @Override
+  protected void serviceInit(Configuration conf) throws Exception {
+    super.serviceInit(conf);
+    interval = conf.getInt(HoyaXmlConfKeys.KEY_HISTORY_CHECKPOINT_INTERVAL,
+                        HoyaXmlConfKeys.DEFAULT_HISTORY_CHECKPOINT_INTERVAL);
+    maxDelay = conf.getInt(HoyaXmlConfKeys.KEY_HISTORY_CHECKPOINT_MAX_DELAY,
+                        HoyaXmlConfKeys.DEFAULT_HISTORY_CHECKPOINT_MAX_DELAY);
+    maxDeltas = conf.getInt(HoyaXmlConfKeys.KEY_HISTORY_CHECKPOINT_DELTAS,
+                        HoyaXmlConfKeys.DEFAULT_HISTORY_CHECKPOINT_DELTAS);
+    if (interval <= 0 || maxDelay < interval || maxDeltas < 0) {
+      throw new IllegalArgumentException(
+        "History checkpoint interval must be positive and no more than"
+        + " the maximum delay, and the deltas not negative: "
+        + interval + ", " + maxDelay + ", " + maxDeltas);
+    }
+    // start with a full checkpoint, which supersedes the deltas of any
+    // previous attempt
+    deltas = maxDeltas;
+  }
+
+  @Override
+  protected void serviceStart() throws Exception {
+    super.serviceStart();
+    executor = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon(true)
+                                .setNameFormat(getName() + "-%d")
+                                .build());
+    // check twice an interval, so no change waits much more than that
+    long period = Math.max(1, interval / 2);
+    executor.scheduleWithFixedDelay(this, period, period,
+                                    TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop checking, then write any changes not yet checkpointed
+   */
+  @Override
+  protected void serviceStop() throws Exception {
+    if (executor != null) {
+      executor.shutdown();
+      executor.awaitTermination(interval, TimeUnit.MILLISECONDS);
+      if (history.isDirty()) {
+        checkpoint();
+      }
+    }
+    super.serviceStop();
+  }
+
+  /**
+   * Checkpoint the history if it is due; failures are logged
+   * and do not stop later checkpoints
+   */
+  @Override
+  public void run() {
+    try {
+      if (isCheckpointDue(System.currentTimeMillis())) {
+        checkpoint();
+      }
+    } catch (RuntimeException e) {
+      log.warn("History checkpoint failed: {}", e, e);
+    }
+  }
+
+  /**
+   * Is a checkpoint due: has the history changed, and either been left
+   * unchanged for the interval or had a change waiting for the maximum delay
+   * @param now the current time
+   * @return true if the history should be checkpointed
+   */
+  public boolean isCheckpointDue(long now) {
+    if (!history.isDirty()) {
+      return false;
+    }
+    return now - history.getLastChangeTime() >= interval
+           || now - history.getFirstChangeTime() >= maxDelay;
+  }
+
+  /**
+   * Write a checkpoint of the changes to the history
+   * @return the path written, or null if there was nothing to write or the
+   * write failed
+   */
+  public synchronized Path checkpoint() {
+    long started = System.currentTimeMillis();
+    RoleHistoryCheckpoint checkpoint =
+      history.prepareCheckpoint(deltas >= maxDeltas);
+    if (checkpoint == null) {
+      return null;
+    }
+    try {
+      Path path = history.writeCheckpoint(checkpoint);
+      long latency = System.currentTimeMillis() - started;
+      int entries = checkpoint.records.size();
+      checkpoints++;
+      if (checkpoint.full) {
+        fullCheckpoints++;
+        deltas = 0;
+      } else {
+        deltas++;
+      }
+      lastLatency = latency;
+      maxLatency = Math.max(maxLatency, latency);
+      lastEntries = entries;
+      maxEntries = Math.max(maxEntries, entries);
+      log.debug("Wrote {} to {} in {} ms", checkpoint, path, latency);
+      return path;
+    } catch (IOException e) {
+      failures++;
+      log.warn("Failed to write {}: {}", checkpoint, e, e);
+      return null;
+    }
+  }
+
+  /**
+   * Add the checkpoint statistics to a map
+   * @param stats map to update
+   */
+  public void addStatistics(Map<String, Integer> stats) {
+    stats.put(StatusKeys.STATISTICS_HISTORY_CHECKPOINTS, checkpoints);
+    stats.put(StatusKeys.STATISTICS_HISTORY_CHECKPOINTS_FULL, fullCheckpoints);
+    stats.put(StatusKeys.STATISTICS_HISTORY_CHECKPOINTS_FAILED, failures);
+    stats.put(StatusKeys.STATISTICS_HISTORY_CHECKPOINT_MILLIS_LAST,
+              (int) lastLatency);
+    stats.put(StatusKeys.STATISTICS_HISTORY_CHECKPOINT_MILLIS_MAX,
+              (int) maxLatency);
+    stats.put(StatusKeys.STATISTICS_HISTORY_CHECKPOINT_ENTRIES_LAST,
+              lastEntries);
+    stats.put(StatusKeys.STATISTICS_HISTORY_CHECKPOINT_ENTRIES_MAX,
+              maxEntries);
+  }
+}
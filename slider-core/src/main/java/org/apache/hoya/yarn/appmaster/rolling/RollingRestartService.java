@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.rolling;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.service.AbstractService;
+import org.apache.hoya.HoyaXmlConfKeys;
+import org.apache.hoya.yarn.appmaster.state.AppState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service which, while a rolling restart is in progress, periodically
+ * asks its listener to review the cluster. Container events trigger
+ * reviews anyway; this picks up the health gate opening on events
+ * which do not, such as components starting and health probes passing.
+ * It does the same while strict-history requests for specific hosts are
+ * outstanding, so that those which time out are cancelled.
+ */
+public class RollingRestartService extends AbstractService implements Runnable {
+  protected static final Logger log =
+    LoggerFactory.getLogger(RollingRestartService.class);
+
+  private final AppState appState;
+  private final RollingRestartListener listener;
+  private ScheduledExecutorService executor;
+  private int interval;
+
+  public RollingRestartService(String name,
+                               AppState appState,
+                               RollingRestartListener listener) {
+    super(name);
+    this.appState = appState;
+    this.listener = listener;
+  }
+
+  @Override
+  protected void serviceInit(Configuration conf) throws Exception {
+    super.serviceInit(conf);
+    interval = conf.getInt(HoyaXmlConfKeys.KEY_ROLLING_RESTART_INTERVAL,
+                           HoyaXmlConfKeys.DEFAULT_ROLLING_RESTART_INTERVAL);
+    if (interval <= 0) {
+      throw new IllegalArgumentException(
+        "Rolling restart interval must be positive: " + interval);
+    }
+  }
+
+  @Override
+  protected void serviceStart() throws Exception {
+    super.serviceStart();
+    executor = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon(true)
+                                .setNameFormat(getName() + "-%d")
+                                .build());
+    executor.scheduleWithFixedDelay(this, interval, interval,
+                                    TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  protected void serviceStop() throws Exception {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+    super.serviceStop();
+  }
+
+  /**
+   * Trigger a review if a restart is in progress or strict requests
+   * are outstanding; failures are logged and do not stop later reviews
+   */
+  @Override
+  public void run() {
+    if (!appState.isRollingRestartInProgress()
+        && !appState.hasStrictRequestsOutstanding()) {
+      return;
+    }
+    try {
+      listener.onRollingRestartReview();
+    } catch (Exception e) {
+      log.warn("Rolling restart review failed: {}", e, e);
+    }
+  }
+}
@@ -146,6 +146,17 @@ public class HoyaClusterProtocolPBImpl implements HoyaClusterProtocolPB {
     }
   }
 
+  @Override
+  public Messages.RollingRestartResponseProto rollingRestart(RpcController controller,
+                                                             Messages.RollingRestartRequestProto request) throws
+                                                                                                           ServiceException {
+    try {
+      return real.rollingRestart(request);
+    } catch (Exception e) {
+      throw wrap(e);
+    }
+  }
+
 
   @Override
   public Messages.AMSuicideResponseProto amSuicide(RpcController controller,
@@ -41,9 +41,11 @@ import org.apache.hadoop.yarn.exceptions.YarnException;
 import org.apache.hoya.api.HoyaClusterProtocol;
 import org.apache.hoya.api.proto.Messages;
 
+import java.io.Closeable;
 import java.io.IOException;
 
-public class HoyaClusterProtocolProxy implements HoyaClusterProtocol {
+public class HoyaClusterProtocolProxy implements HoyaClusterProtocol,
+                                                 Closeable {
 
   final HoyaClusterProtocolPB endpoint;
   private static final RpcController NULL_CONTROLLER = null;
@@ -55,6 +57,14 @@ public class HoyaClusterProtocolProxy implements HoyaClusterProtocol {
   private IOException convert(ServiceException se) {
     return ProtobufHelper.getRemoteException(se);
   }
+
+  /**
+   * Stop the underlying RPC proxy
+   */
+  @Override
+  public void close() {
+    RPC.stopProxy(endpoint);
+  }
   
   @Override
   public Messages.StopClusterResponseProto stopCluster(Messages.StopClusterRequestProto request) throws
@@ -160,6 +170,17 @@ public class HoyaClusterProtocolProxy implements HoyaClusterProtocol {
     }
   }
 
+  @Override
+  public Messages.RollingRestartResponseProto rollingRestart(Messages.RollingRestartRequestProto request) throws
+                                                                                                           IOException,
+                                                                                                           YarnException {
+    try {
+      return endpoint.rollingRestart(NULL_CONTROLLER, request);
+    } catch (ServiceException e) {
+      throw convert(e);
+    }
+  }
+
   @Override
   public Messages.AMSuicideResponseProto amSuicide(Messages.AMSuicideRequestProto request) throws
                                                                                            IOException,
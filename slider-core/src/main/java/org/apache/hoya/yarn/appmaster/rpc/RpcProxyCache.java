@@ -0,0 +1,373 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.rpc;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.yarn.api.ApplicationClientProtocol;
+import org.apache.hadoop.yarn.api.records.ApplicationReport;
+import org.apache.hadoop.yarn.exceptions.YarnException;
+import org.apache.hoya.api.HoyaClusterProtocol;
+import org.apache.hoya.api.proto.Messages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of RPC proxies to Slider AMs, keyed by application ID,
+ * AM address and user, so that a client issuing many calls to an AM
+ * does not set up a new proxy and connection for every command.
+ * <p>
+ * A cached proxy which has been idle for longer than the liveness
+ * interval is checked with an echo call before it is handed out again;
+ * if that fails it is discarded and a new one is created. When an
+ * application's AM is seen at a new address -as happens on an AM
+ * restart- all proxies to its previous AMs are discarded.
+ * <p>
+ * A call through a cached proxy which fails to reach the AM discards all
+ * proxies to that application, and proxies unused for longer than the
+ * idle timeout are stopped.
+ */
+public class RpcProxyCache implements Closeable {
+  protected static final Logger log =
+    LoggerFactory.getLogger(RpcProxyCache.class);
+
+  /**
+   * Text sent in the liveness check: {@value}
+   */
+  public static final String LIVENESS_ECHO = "ping";
+
+  private final Configuration conf;
+  private final int rpcTimeout;
+  private final long livenessInterval;
+  private final long idleTimeout;
+
+  private final Map<ProxyKey, CachedProxy> proxies =
+    new ConcurrentHashMap<ProxyKey, CachedProxy>();
+
+  /**
+   * Create a cache whose proxies are never stopped for being idle
+   * @param conf configuration to use when creating proxies
+   * @param rpcTimeout timeout for RPCs to block during communications
+   * @param livenessInterval time in milliseconds a proxy can be idle
+   * before it is checked when next requested. 0 means: check every time.
+   */
+  public RpcProxyCache(Configuration conf,
+                       int rpcTimeout,
+                       long livenessInterval) {
+    this(conf, rpcTimeout, livenessInterval, 0);
+  }
+
+  /**
+   * Create a cache
+   * @param conf configuration to use when creating proxies
+   * @param rpcTimeout timeout for RPCs to block during communications
+   * @param livenessInterval time in milliseconds a proxy can be idle
+   * before it is checked when next requested. 0 means: check every time.
+   * @param idleTimeout time in milliseconds a proxy can be unused before
+   * it is stopped. 0 means: never.
+   */
+  public RpcProxyCache(Configuration conf,
+                       int rpcTimeout,
+                       long livenessInterval,
+                       long idleTimeout) {
+    this.conf = conf;
+    this.rpcTimeout = rpcTimeout;
+    this.livenessInterval = livenessInterval;
+    this.idleTimeout = idleTimeout;
+  }
+
+  /**
+   * Get a proxy to the AM of an application, reusing a cached one if
+   * there is one for the same AM address and user which is still live
+   * @param rmClient client of the resource manager
+   * @param application application to work with
+   * @param connectTimeout timeout for creating a new proxy
+   * @return the proxy
+   * @throws IOException IO problems
+   * @throws YarnException binding failures, including the application
+   * finishing
+   * @throws InterruptedException if interrupted waiting for the AM
+   */
+  public HoyaClusterProtocol getProxy(ApplicationClientProtocol rmClient,
+                                      ApplicationReport application,
+                                      int connectTimeout) throws
+                                                         IOException,
+                                                         YarnException,
+                                                         InterruptedException {
+    ProxyKey key = new ProxyKey(application.getApplicationId().toString(),
+                                application.getHost() + ":" +
+                                application.getRpcPort(),
+                                UserGroupInformation.getCurrentUser()
+                                                    .getUserName());
+    evictIdle();
+    CachedProxy cached = proxies.get(key);
+    if (cached != null) {
+      if (isLive(cached)) {
+        cached.lastUsed = System.currentTimeMillis();
+        return cached.wrapper;
+      }
+      log.debug("Discarding proxy to {} as it failed its liveness check",
+                key);
+      discard(key, cached);
+    }
+    // any proxy to another address of the same application is to an AM
+    // which has since been replaced
+    invalidate(key.applicationId, key);
+    HoyaClusterProtocol proxy = RpcBinder.getProxy(conf, rmClient,
+                                                   application,
+                                                   connectTimeout,
+                                                   rpcTimeout);
+    CachedProxy created = new CachedProxy(key, proxy);
+    synchronized (proxies) {
+      CachedProxy existing = proxies.get(key);
+      if (existing != null) {
+        // another thread got there first: use its proxy
+        stopProxy(proxy);
+        return existing.wrapper;
+      }
+      proxies.put(key, created);
+    }
+    return created.wrapper;
+  }
+
+  /**
+   * Stop all proxies which have not been used within the idle timeout
+   * @return the number of proxies stopped
+   */
+  public int evictIdle() {
+    if (idleTimeout <= 0) {
+      return 0;
+    }
+    long now = System.currentTimeMillis();
+    int evicted = 0;
+    for (Map.Entry<ProxyKey, CachedProxy> entry : proxies.entrySet()) {
+      CachedProxy cached = entry.getValue();
+      if (now - cached.lastUsed > idleTimeout
+          && discard(entry.getKey(), cached)) {
+        log.debug("Stopped idle proxy to {}", entry.getKey());
+        evicted++;
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * Check a proxy's liveness if it has been idle too long
+   * @param cached cached proxy
+   * @return true if the proxy can be used
+   */
+  private boolean isLive(CachedProxy cached) {
+    long now = System.currentTimeMillis();
+    if (now - cached.lastChecked <= livenessInterval) {
+      return true;
+    }
+    try {
+      cached.proxy.echo(Messages.EchoRequestProto.newBuilder()
+                                                 .setText(LIVENESS_ECHO)
+                                                 .build());
+      cached.lastChecked = now;
+      return true;
+    } catch (Exception e) {
+      log.debug("Liveness check failed: {}", e.toString());
+      return false;
+    }
+  }
+
+  /**
+   * Discard all proxies to an application
+   * @param applicationId application ID
+   * @return the number of proxies discarded
+   */
+  public int invalidate(String applicationId) {
+    return invalidate(applicationId, null);
+  }
+
+  /**
+   * Discard all proxies to an application other than one to retain
+   * @param applicationId application ID
+   * @param retain key of a proxy to keep; may be null
+   * @return the number of proxies discarded
+   */
+  private int invalidate(String applicationId, ProxyKey retain) {
+    List<ProxyKey> stale = new ArrayList<ProxyKey>();
+    for (ProxyKey key : proxies.keySet()) {
+      if (key.applicationId.equals(applicationId) && !key.equals(retain)) {
+        stale.add(key);
+      }
+    }
+    int discarded = 0;
+    for (ProxyKey key : stale) {
+      CachedProxy cached = proxies.get(key);
+      if (cached != null && discard(key, cached)) {
+        discarded++;
+      }
+    }
+    return discarded;
+  }
+
+  private boolean discard(ProxyKey key, CachedProxy cached) {
+    synchronized (proxies) {
+      if (proxies.get(key) != cached) {
+        return false;
+      }
+      proxies.remove(key);
+    }
+    stopProxy(cached.proxy);
+    return true;
+  }
+
+  private static void stopProxy(HoyaClusterProtocol proxy) {
+    if (proxy instanceof Closeable) {
+      try {
+        ((Closeable) proxy).close();
+      } catch (Exception e) {
+        log.debug("Failed to stop proxy: {}", e.toString());
+      }
+    }
+  }
+
+  /**
+   * Number of cached proxies
+   * @return the size of the cache
+   */
+  public int size() {
+    return proxies.size();
+  }
+
+  /**
+   * Stop all cached proxies
+   */
+  @Override
+  public void close() {
+    for (ProxyKey key : new ArrayList<ProxyKey>(proxies.keySet())) {
+      CachedProxy cached = proxies.get(key);
+      if (cached != null) {
+        discard(key, cached);
+      }
+    }
+  }
+
+  /**
+   * A cached proxy, the wrapper handed out for it, and when it was
+   * last known to be live and last used
+   */
+  private final class CachedProxy implements InvocationHandler {
+    final ProxyKey key;
+    final HoyaClusterProtocol proxy;
+    final HoyaClusterProtocol wrapper;
+    volatile long lastChecked;
+    volatile long lastUsed;
+
+    CachedProxy(ProxyKey key, HoyaClusterProtocol proxy) {
+      this.key = key;
+      this.proxy = proxy;
+      this.wrapper = (HoyaClusterProtocol) Proxy.newProxyInstance(
+        HoyaClusterProtocol.class.getClassLoader(),
+        new Class[]{HoyaClusterProtocol.class},
+        this);
+      this.lastChecked = System.currentTimeMillis();
+      this.lastUsed = lastChecked;
+    }
+
+    /**
+     * Forward a call to the proxy. If it fails to reach the AM, all
+     * proxies to the application are discarded, so that the next request
+     * for one binds to the AM again. A failure reported by the AM itself
+     * leaves them in place.
+     */
+    @Override
+    public Object invoke(Object target, Method method, Object[] args) throws
+                                                                     Throwable {
+      if (method.getDeclaringClass() == Object.class) {
+        if ("equals".equals(method.getName())) {
+          return target == args[0];
+        } else if ("hashCode".equals(method.getName())) {
+          return System.identityHashCode(target);
+        }
+        return "proxy to " + key;
+      }
+      lastUsed = System.currentTimeMillis();
+      try {
+        return method.invoke(proxy, args);
+      } catch (InvocationTargetException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException
+            && !(cause instanceof RemoteException)) {
+          log.debug("Call to {} failed: {}", key, cause.toString());
+          invalidate(key.applicationId);
+        }
+        throw cause;
+      }
+    }
+  }
+
+  /**
+   * Key of a proxy: application, AM address and user
+   */
+  private static final class ProxyKey {
+    final String applicationId;
+    final String address;
+    final String user;
+
+    ProxyKey(String applicationId, String address, String user) {
+      this.applicationId = applicationId;
+      this.address = address;
+      this.user = user;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ProxyKey)) {
+        return false;
+      }
+      ProxyKey that = (ProxyKey) o;
+      return applicationId.equals(that.applicationId)
+             && address.equals(that.address)
+             && user.equals(that.user);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = applicationId.hashCode();
+      result = 31 * result + address.hashCode();
+      result = 31 * result + user.hashCode();
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return applicationId + " at " + address + " as " + user;
+    }
+  }
+}
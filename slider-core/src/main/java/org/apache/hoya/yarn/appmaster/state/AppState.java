@@ -22,15 +22,18 @@ import com.google.common.annotations.VisibleForTesting;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.net.DNSToSwitchMapping;
 import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.ContainerStatus;
 import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.hadoop.yarn.api.records.NodeReport;
 import org.apache.hadoop.yarn.api.records.Resource;
 import org.apache.hadoop.yarn.api.records.impl.pb.ContainerPBImpl;
 import org.apache.hadoop.yarn.client.api.AMRMClient;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.exceptions.YarnRuntimeException;
+import org.apache.hadoop.yarn.util.ConverterUtils;
 import org.apache.hoya.HoyaExitCodes;
 import org.apache.hoya.HoyaKeys;
 import org.apache.hoya.api.ClusterDescription;
@@ -41,17 +44,18 @@ import org.apache.hoya.api.OptionKeys;
 import org.apache.hoya.api.ResourceKeys;
 import org.apache.hoya.api.RoleKeys;
 import org.apache.hoya.api.StatusKeys;
-import org.apache.hoya.api.proto.Messages;
 import org.apache.hoya.core.conf.AggregateConf;
 import org.apache.hoya.core.conf.ConfTree;
 import org.apache.hoya.core.conf.ConfTreeOperations;
 import org.apache.hoya.core.conf.MapOperations;
 import org.apache.hoya.exceptions.BadClusterStateException;
+import org.apache.hoya.exceptions.BadCommandArgumentsException;
 import org.apache.hoya.exceptions.BadConfigException;
 import org.apache.hoya.exceptions.ErrorStrings;
 import org.apache.hoya.exceptions.SliderInternalStateException;
 import org.apache.hoya.exceptions.NoSuchNodeException;
 import org.apache.hoya.exceptions.TriggerClusterTeardownException;
+import org.apache.hoya.providers.PlacementPolicy;
 import org.apache.hoya.providers.ProviderRole;
 import org.apache.hoya.tools.ConfigHelper;
 import org.apache.hoya.tools.HoyaUtils;
@@ -62,6 +66,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -77,6 +82,8 @@ import static org.apache.hoya.api.RoleKeys.ROLE_FAILED_INSTANCES;
 import static org.apache.hoya.api.RoleKeys.ROLE_FAILED_STARTING_INSTANCES;
 import static org.apache.hoya.api.RoleKeys.ROLE_RELEASING_INSTANCES;
 import static org.apache.hoya.api.RoleKeys.ROLE_REQUESTED_INSTANCES;
+import static org.apache.hoya.api.RoleKeys.ROLE_RESTARTED_INSTANCES;
+import static org.apache.hoya.api.RoleKeys.ROLE_RESTART_REMAINING_INSTANCES;
 import static org.apache.hoya.api.ResourceKeys.YARN_CORES;
 import static org.apache.hoya.api.ResourceKeys.YARN_MEMORY;
 
@@ -209,17 +216,22 @@ public class AppState implements StateAccessForProviders {
 
   /**
    * List of completed nodes. This isn't kept in the CD as it gets too
-   * big for the RPC responses. Indeed, we should think about how deep to get this
+   * big for the RPC responses. It is bounded, with the oldest
+   * entries dropped once the retention limit is reached.
    */
-  private final Map<ContainerId, RoleInstance> completedNodes
-    = new ConcurrentHashMap<ContainerId, RoleInstance>();
+  private final RoleInstanceHistory completedHistory =
+    new RoleInstanceHistory(OptionKeys.DEFAULT_CONTAINER_HISTORY_RETENTION);
+  private final Map<ContainerId, RoleInstance> completedNodes =
+    Collections.synchronizedMap(completedHistory);
 
   /**
    * Nodes that failed to start.
-   * Again, kept out of the CD
+   * Again, kept out of the CD, and bounded.
    */
+  private final RoleInstanceHistory failedHistory =
+    new RoleInstanceHistory(OptionKeys.DEFAULT_CONTAINER_HISTORY_RETENTION);
   private final Map<ContainerId, RoleInstance> failedNodes =
-    new ConcurrentHashMap<ContainerId, RoleInstance>();
+    Collections.synchronizedMap(failedHistory);
 
   /**
    * Nodes that came assigned to a role above that
@@ -227,6 +239,33 @@ public class AppState implements StateAccessForProviders {
    */
   private final Set<ContainerId> surplusNodes = new HashSet<ContainerId>();
 
+  /**
+   * Warm spares: containers allocated for a role above its desired count,
+   * whose components are installed but not started until they are promoted
+   * to replace a failed instance. Map of container ID to role key
+   */
+  private final ConcurrentMap<String, Integer> warmSpares =
+    new ConcurrentHashMap<String, Integer>();
+
+  /**
+   * Promoted warm spares whose components have not yet been reported
+   * as started, mapped to the time of their promotion
+   */
+  private final ConcurrentMap<String, Long> promotedSpares =
+    new ConcurrentHashMap<String, Long>();
+
+  /**
+   * The most recent rolling restart of each role, by role key
+   */
+  private final ConcurrentMap<Integer, RollingRestart> rollingRestarts =
+    new ConcurrentHashMap<Integer, RollingRestart>();
+
+  /**
+   * Does the provider report when the component in a container has
+   * started? If so, health probe failures before then are not counted.
+   */
+  private volatile boolean componentStartsReported;
+
   /**
    * Map of containerID -> cluster nodes, for status reports.
    * Access to this should be synchronized on the clusterDescription
@@ -250,6 +289,11 @@ public class AppState implements StateAccessForProviders {
   private int containerMaxMemory;
   
   private RoleHistory roleHistory;
+
+  /**
+   * Mapping of hosts to racks used by the role history; null for none
+   */
+  private DNSToSwitchMapping topology;
   private Configuration publishedProviderConf;
   private long startTimeThreshold;
   
@@ -384,11 +428,55 @@ public class AppState implements StateAccessForProviders {
    * Get the role history of the application
    * @return the role history
    */
-  @VisibleForTesting
+  @Override
   public RoleHistory getRoleHistory() {
     return roleHistory;
   }
 
+  /**
+   * Set the mapping used to resolve the racks of nodes in the role history.
+   * This must be called before the instance is built.
+   * @param topology mapping; null for none
+   */
+  public synchronized void setTopology(DNSToSwitchMapping topology) {
+    this.topology = topology;
+  }
+
+  /**
+   * Declare whether the provider reports the start of components
+   * through {@link #onComponentStarted(String)}
+   * @param reported true if it does
+   */
+  public void setComponentStartsReported(boolean reported) {
+    componentStartsReported = reported;
+  }
+
+  /**
+   * Update the role history from the reports of nodes whose
+   * state has changed; ignored until the instance is built
+   * @param updatedNodes node reports
+   */
+  public void onNodesUpdated(List<NodeReport> updatedNodes) {
+    RoleHistory history = roleHistory;
+    if (history != null) {
+      history.onNodesUpdated(updatedNodes);
+    }
+  }
+
+  /**
+   * Resolve the racks of the hosts of newly allocated containers.
+   * This is not synchronized, as the topology lookups may be slow:
+   * it must be called before
+   * {@link #onContainersAllocated(List, List, List)}.
+   * @param allocatedContainers containers
+   */
+  public void resolveRacks(List<Container> allocatedContainers) {
+    RoleHistory history = roleHistory;
+    if (history != null) {
+      history.resolveRacksOfContainers(allocatedContainers);
+    }
+  }
+
   /**
    * Get the path used for history files
    * @return the directory used for history files
@@ -515,11 +603,22 @@ public class AppState implements StateAccessForProviders {
     failureThreshold = globalInternalOpts.getOptionInt(
       OptionKeys.INTERNAL_CONTAINER_FAILURE_THRESHOLD,
       OptionKeys.DEFAULT_CONTAINER_FAILURE_THRESHOLD);
+
+    int historyRetention = globalInternalOpts.getOptionInt(
+      OptionKeys.INTERNAL_CONTAINER_HISTORY_RETENTION,
+      OptionKeys.DEFAULT_CONTAINER_HISTORY_RETENTION);
+    synchronized (completedNodes) {
+      completedHistory.setRetention(historyRetention);
+    }
+    synchronized (failedNodes) {
+      failedHistory.setRetention(historyRetention);
+    }
     initClusterStatus();
 
 
     // add the roles
     roleHistory = new RoleHistory(providerRoles);
+    roleHistory.setTopology(topology);
     roleHistory.onStart(fs, historyDir);
     
     //rebuild any live containers
@@ -595,7 +694,9 @@ public class AppState implements StateAccessForProviders {
 
     //note the time 
     snapshotTime = now();
-    //snapshot all three sectons
+    //snapshot all three sectons. These are copies of the unresolved trees;
+    //resolving the snapshot makes the global options visible to
+    //component lookups without copying them into every component
     resourcesSnapshot =
       ConfTreeOperations.fromInstance(instanceDefinition.getResources());
     appConfSnapshot =
@@ -606,6 +707,10 @@ public class AppState implements StateAccessForProviders {
     instanceDefinitionSnapshot = new AggregateConf(resourcesSnapshot.confTree,
                                                    appConfSnapshot.confTree,
                                                    internalsSnapshot.confTree);
+    instanceDefinitionSnapshot.resolve();
+    resourcesSnapshot = instanceDefinitionSnapshot.getResourceOperations();
+    appConfSnapshot = instanceDefinitionSnapshot.getAppConfOperations();
+    internalsSnapshot = instanceDefinitionSnapshot.getInternalOperations();
 
     clusterSpec =
       ClusterDescriptionOperations.buildFromInstanceDefinition(
@@ -634,8 +739,9 @@ public class AppState implements StateAccessForProviders {
     
     //propagate the role table
 
-    Map<String, Map<String, String>> updated = resources.components;
-    getClusterStatus().roles = HoyaUtils.deepClone(updated);
+    Map<String, Map<String, String>> updated =
+      instanceDefinition.getResourceOperations().flatten().components;
+    getClusterStatus().roles = updated;
     getClusterStatus().updateTime = now();
     buildRoleRequirementsFromResources();
   }
@@ -667,6 +773,34 @@ public class AppState implements StateAccessForProviders {
                  desiredInstanceCount);
         roleStatus.setDesired(desiredInstanceCount);
       }
+      roleStatus.setMaxInstancesPerHost(resources.getComponentOptInt(role,
+          ResourceKeys.COMPONENT_PLACEMENT_MAX_PER_HOST,
+          ResourceKeys.DEF_COMPONENT_PLACEMENT_MAX_PER_HOST));
+      roleStatus.setStrictPlacementTimeout(1000L *
+          resources.getComponentOptInt(role,
+            ResourceKeys.COMPONENT_PLACEMENT_STRICT_TIMEOUT,
+            ResourceKeys.DEF_COMPONENT_PLACEMENT_STRICT_TIMEOUT));
+      roleStatus.setMaxPlacementRerequests(resources.getComponentOptInt(role,
+          ResourceKeys.COMPONENT_PLACEMENT_MAX_REREQUESTS,
+          ResourceKeys.DEF_COMPONENT_PLACEMENT_MAX_REREQUESTS));
+      roleStatus.setWarmSpares(resources.getComponentOptInt(role,
+          ResourceKeys.COMPONENT_WARM_SPARES,
+          ResourceKeys.DEF_COMPONENT_WARM_SPARES));
+      roleStatus.setHealthProbePort(resources.getComponentOptInt(role,
+          ResourceKeys.COMPONENT_HEALTH_PROBE_PORT,
+          ResourceKeys.DEF_COMPONENT_HEALTH_PROBE_PORT));
+      roleStatus.setHealthProbePath(resources.getComponentOpt(role,
+          ResourceKeys.COMPONENT_HEALTH_PROBE_PATH, null));
+      roleStatus.setHealthProbeFailureThreshold(resources.getComponentOptInt(
+          role,
+          ResourceKeys.COMPONENT_HEALTH_PROBE_FAILURE_THRESHOLD,
+          ResourceKeys.DEF_COMPONENT_HEALTH_PROBE_FAILURE_THRESHOLD));
+      roleStatus.setHealthProbeBootstrapTime(1000L *
+          resources.getComponentOptInt(role,
+            ResourceKeys.COMPONENT_HEALTH_PROBE_BOOTSTRAP_TIMEOUT,
+            ResourceKeys.DEF_COMPONENT_HEALTH_PROBE_BOOTSTRAP_TIMEOUT));
+      roleStatus.setAutoscalePolicy(
+          AutoscalePolicy.fromResources(resources, role));
     }
     //now the dynamic ones. Iterate through the the cluster spec and
     //add any role status entries not in the role status
@@ -876,8 +1010,7 @@ public class AppState implements StateAccessForProviders {
         containers = new HashMap<String, ClusterNode>();
         map.put(node.role, containers);
       }
-      Messages.RoleInstanceState pbuf = node.toProtobuf();
-      ClusterNode clusterNode = ClusterNode.fromProtobuf(pbuf);
+      ClusterNode clusterNode = node.toClusterNode();
       containers.put(clusterNode.name, clusterNode);
     }
     return map;
@@ -1104,13 +1237,17 @@ public class AppState implements StateAccessForProviders {
     RoleInstance instance = getStartingNodes().remove(containerId);
     if (null != instance) {
       RoleStatus roleStatus = lookupRoleStatus(instance.roleId);
+      if (warmSpares.remove(instance.id) != null) {
+        roleStatus.decSpares();
+      }
       if (null != thrown) {
         instance.diagnostics = HoyaUtils.stringify(thrown);
       }
       roleStatus.noteFailed(null);
       roleStatus.incStartFailed(); 
-      getFailedNodes().put(containerId, instance);
       roleHistory.onNodeManagerContainerStartFailed(instance.container);
+      instance.compact();
+      getFailedNodes().put(containerId, instance);
     }
   }
 
@@ -1151,6 +1288,10 @@ public class AppState implements StateAccessForProviders {
     public boolean surplusNode = false;
     public RoleInstance roleInstance;
     public boolean containerFailed;
+    /**
+     * Any warm spare promoted to replace the failed container
+     */
+    public RoleInstance promotedSpare;
 
     @Override
     public String toString() {
@@ -1159,6 +1300,7 @@ public class AppState implements StateAccessForProviders {
       sb.append("surplusNode=").append(surplusNode);
       sb.append(", roleInstance=").append(roleInstance);
       sb.append(", containerFailed=").append(containerFailed);
+      sb.append(", promotedSpare=").append(promotedSpare);
       sb.append('}');
       return sb.toString();
     }
@@ -1195,6 +1337,9 @@ public class AppState implements StateAccessForProviders {
       roleStatus.decReleasing();
       roleStatus.decActual();
       roleStatus.incCompleted();
+      if (warmSpares.remove(containerId.toString()) != null) {
+        roleStatus.decSpares();
+      }
       roleHistory.onReleaseCompleted(container);
 
     } else if (surplusNodes.remove(containerId)) {
@@ -1219,6 +1364,13 @@ public class AppState implements StateAccessForProviders {
         try {
           RoleStatus roleStatus = lookupRoleStatus(roleId);
           roleStatus.decActual();
+          promotedSpares.remove(roleInstance.id);
+          if (warmSpares.remove(roleInstance.id) != null) {
+            // a spare failed: the next review will ask for a new one
+            roleStatus.decSpares();
+          } else {
+            result.promotedSpare = promoteWarmSpare(roleStatus);
+          }
           boolean shortLived = isShortLived(roleInstance);
           String message;
           if (roleInstance.container != null) {
@@ -1286,10 +1438,188 @@ public class AppState implements StateAccessForProviders {
       getCompletedNodes().put(id, node);
       result.roleInstance = node;
     }
+    if (result.containerFailed && result.roleInstance == null) {
+      // a failed instance which never went live
+      RoleInstance failed = failedNodes.get(id);
+      if (failed != null) {
+        failed.compact();
+      }
+    }
+    if (result.roleInstance != null) {
+      result.roleInstance.compact();
+    }
     return result;
   }
 
 
+  /**
+   * Promote a warm spare of a role to replace a failed instance.
+   * Spares whose containers are live are preferred to those still starting;
+   * spares being released are never promoted.
+   * The promotion is picked up by the provider, which then starts
+   * the component in the spare's container.
+   * @param role role which has lost an instance
+   * @return the promoted instance or null if there was no spare to promote
+   */
+  private RoleInstance promoteWarmSpare(RoleStatus role) {
+    if (role.getSpares() == 0) {
+      return null;
+    }
+    int roleId = role.getKey();
+    RoleInstance promoted = null;
+    for (RoleInstance ri : activeContainers.values()) {
+      if (ri.roleId == roleId && !ri.released
+          && warmSpares.containsKey(ri.id)) {
+        promoted = ri;
+        if (ri.state == ClusterDescription.STATE_LIVE) {
+          break;
+        }
+      }
+    }
+    if (promoted != null) {
+      warmSpares.remove(promoted.id);
+      role.decSpares();
+      role.incSparePromotions();
+      promotedSpares.put(promoted.id, now());
+      log.info("{}: promoted warm spare {} to replace a failed instance",
+               role.getName(), promoted.id);
+    }
+    return promoted;
+  }
+
+  /**
+   * Is a container an unpromoted warm spare
+   * @param containerId the container ID
+   * @return true if it is
+   */
+  @Override
+  public boolean isWarmSpare(String containerId) {
+    return warmSpares.containsKey(containerId);
+  }
+
+  /**
+   * The component in a container has started: if it was a promoted
+   * warm spare, record the failover latency against its role
+   * @param containerId the container ID
+   */
+  @Override
+  public synchronized void onComponentStarted(String containerId) {
+    RoleInstance started =
+      activeContainers.get(ConverterUtils.toContainerId(containerId));
+    if (started != null) {
+      if (!started.componentStarted && started.startTime > 0) {
+        long startup = now() - started.startTime;
+        lookupRoleStatus(started.roleId).setLastStartupLatency(startup);
+        log.debug("{}: component of {} started {} millis after its container",
+                  started.role, containerId, startup);
+      }
+      started.componentStarted = true;
+      started.componentStartTime = now();
+    }
+    Long promoted = promotedSpares.remove(containerId);
+    if (promoted == null) {
+      return;
+    }
+    long latency = now() - promoted;
+    RoleInstance instance =
+      activeContainers.get(ConverterUtils.toContainerId(containerId));
+    if (instance != null) {
+      RoleStatus role = lookupRoleStatus(instance.roleId);
+      role.setLastFailoverLatency(latency);
+      log.info("{}: warm spare {} started {} millis after promotion",
+               role.getName(), containerId, latency);
+    }
+  }
+
+  @Override
+  public void onComponentLoad(String containerId, double load) {
+    RoleInstance instance =
+      activeContainers.get(ConverterUtils.toContainerId(containerId));
+    if (instance != null && load >= 0) {
+      instance.load = load;
+      instance.loadTimestamp = now();
+    }
+  }
+
+  /**
+   * Record the outcome of a health probe of a live container.
+   * A success resets the container's failure count; once the consecutive
+   * failures reach the role's threshold the container is released so
+   * that the next review requests a replacement.
+   * Failures are not counted for unpromoted warm spares, whose components
+   * are not started, or while the component is bootstrapping.
+   * @param containerId container probed
+   * @param healthy did the probe succeed
+   * @return the operations to execute -a release if the container
+   * has just been declared unhealthy, otherwise an empty list
+   */
+  public synchronized List<AbstractRMOperation> onContainerHealthProbe(
+      ContainerId containerId, boolean healthy) {
+    List<AbstractRMOperation> operations =
+      new ArrayList<AbstractRMOperation>(1);
+    RoleInstance instance = activeContainers.get(containerId);
+    if (instance == null || instance.released) {
+      //completed or already on its way out
+      return operations;
+    }
+    if (healthy) {
+      instance.healthProbeFailures = 0;
+      instance.healthProbePassed = true;
+      return operations;
+    }
+    RoleStatus role = lookupRoleStatus(instance.roleId);
+    if (warmSpares.containsKey(instance.id)
+        || isHealthProbeBootstrapping(instance, role)) {
+      instance.healthProbeFailures = 0;
+      return operations;
+    }
+    int failures = ++instance.healthProbeFailures;
+    if (failures < role.getHealthProbeFailureThreshold()) {
+      log.debug("{}: container {} failed health probe {} times",
+                role.getName(), containerId, failures);
+      return operations;
+    }
+    log.warn("{}: container {} failed {} consecutive health probes;" +
+             " releasing it for replacement",
+             role.getName(), containerId, failures);
+    try {
+      containerReleaseSubmitted(instance.container);
+    } catch (SliderInternalStateException e) {
+      log.warn("when releasing unhealthy container {} :", containerId, e);
+      return operations;
+    }
+    role.incUnhealthyReleased();
+    operations.add(new ContainerReleaseOperation(containerId));
+    return operations;
+  }
+
+  /**
+   * Is the component of a container still within its health probe
+   * bootstrap time? That runs from when the component was reported as
+   * started -never, until it is, if the provider reports starts- or
+   * otherwise from the start of the container or its promotion from
+   * a warm spare, whichever is later.
+   * @param instance instance probed
+   * @param role its role
+   * @return true if failed probes are not yet counted
+   */
+  private boolean isHealthProbeBootstrapping(RoleInstance instance,
+                                             RoleStatus role) {
+    long started;
+    if (instance.componentStarted) {
+      started = instance.componentStartTime;
+    } else if (componentStartsReported) {
+      return true;
+    } else {
+      started = instance.startTime;
+      Long promoted = promotedSpares.get(instance.id);
+      if (promoted != null) {
+        started = Math.max(started, promoted);
+      }
+    }
+    return now() - started < role.getHealthProbeBootstrapTime();
+  }
+
   /**
    * Return the percentage done that Hoya is to have YARN display in its
    * Web UI
@@ -1334,7 +1664,9 @@ public class AppState implements StateAccessForProviders {
     MapOperations infoOps = new MapOperations("info",cd.info);
     infoOps.mergeWithoutOverwrite(applicationInfo);
     HoyaUtils.addBuildInfo(infoOps, "status");
-    cd.statistics = new HashMap<String, Map<String, Integer>>();
+    Map<Integer, RoleStatus> roleStatuses = getRoleStatusMap();
+    cd.statistics =
+      new HashMap<String, Map<String, Integer>>(roleStatuses.size() * 2 + 2);
 
     // build the map of node -> container IDs
     Map<String, List<String>> instanceMap = createRoleToInstanceMap();
@@ -1347,7 +1679,7 @@ public class AppState implements StateAccessForProviders {
     cd.status.put(ClusterDescriptionKeys.KEY_CLUSTER_LIVE, clusterNodes);
 
 
-    for (RoleStatus role : getRoleStatusMap().values()) {
+    for (RoleStatus role : roleStatuses.values()) {
       String rolename = role.getName();
       List<String> instances = instanceMap.get(rolename);
       int nodeCount = instances != null ? instances.size(): 0;
@@ -1358,8 +1690,16 @@ public class AppState implements StateAccessForProviders {
       cd.setRoleOpt(rolename, ROLE_RELEASING_INSTANCES, role.getReleasing());
       cd.setRoleOpt(rolename, ROLE_FAILED_INSTANCES, role.getFailed());
       cd.setRoleOpt(rolename, ROLE_FAILED_STARTING_INSTANCES, role.getStartFailed());
-      Map<String, Integer> stats = role.buildStatistics();
-      cd.statistics.put(rolename, stats);
+      RollingRestart restart = rollingRestarts.get(role.getKey());
+      if (restart != null) {
+        cd.setRoleOpt(rolename, ROLE_RESTART_REMAINING_INSTANCES,
+                      restart.getRemaining());
+        cd.setRoleOpt(rolename, ROLE_RESTARTED_INSTANCES,
+                      restart.getRestarted());
+      }
+      // a live, read-only view of the role's counters: nothing is copied
+      // until the description is serialized
+      cd.statistics.put(rolename, role.getStatistics().asMap());
     }
 
     Map<String, Integer> hoyastats = new HashMap<String, Integer>();
@@ -1385,6 +1725,12 @@ public class AppState implements StateAccessForProviders {
       new ArrayList<AbstractRMOperation>();
     for (RoleStatus roleStatus : getRoleStatusMap().values()) {
       if (!roleStatus.getExcludeFromFlexing()) {
+        roleStatus.resetPlacementRerequests();
+        allOperations.addAll(reviewStrictRequests(roleStatus));
+        RollingRestart restart = rollingRestarts.get(roleStatus.getKey());
+        if (restart != null) {
+          allOperations.addAll(reviewRollingRestart(restart, roleStatus));
+        }
         List<AbstractRMOperation> operations = reviewOneRole(roleStatus);
         allOperations.addAll(operations);
       }
@@ -1392,6 +1738,206 @@ public class AppState implements StateAccessForProviders {
     return allOperations;
   }
   
+  /**
+   * Start a rolling restart of a role: its live instances are released
+   * in batches, the next batch only being released once every instance
+   * of the role is back up and passing its health checks.
+   * Replacements are requested by the normal review of the role once
+   * a release has completed, by which time the role history lists the
+   * released node first -so they are asked for on the same hosts.
+   * @param roleName role to restart
+   * @param batchSize number of instances to replace at a time
+   * @param waitForComponentStart should the gate between batches wait
+   * for the provider to report that the components have started
+   * @return the restart
+   * @throws BadCommandArgumentsException if the role or batch size is invalid
+   * @throws BadClusterStateException if the role is already being restarted
+   */
+  public synchronized RollingRestart startRollingRestart(String roleName,
+      int batchSize,
+      boolean waitForComponentStart) throws BadCommandArgumentsException,
+                                            BadClusterStateException {
+    ProviderRole providerRole = roles.get(roleName);
+    if (providerRole == null) {
+      throw new BadCommandArgumentsException("Unknown role %s", roleName);
+    }
+    if (batchSize < 1) {
+      throw new BadCommandArgumentsException(
+        "Invalid batch size %d for a rolling restart", batchSize);
+    }
+    RoleStatus role = lookupRoleStatus(providerRole.id);
+    RollingRestart current = rollingRestarts.get(role.getKey());
+    if (current != null && !current.isFinished()) {
+      throw new BadClusterStateException(
+        "Role %s is already being restarted: %s", roleName, current);
+    }
+    List<ContainerId> instances = new ArrayList<ContainerId>();
+    for (RoleInstance instance : liveNodes.values()) {
+      if (instance.roleId == role.getKey() && !instance.released) {
+        instances.add(instance.getId());
+      }
+    }
+    RollingRestart restart = new RollingRestart(roleName,
+                                                role.getKey(),
+                                                batchSize,
+                                                waitForComponentStart,
+                                                instances,
+                                                now());
+    rollingRestarts.put(role.getKey(), restart);
+    log.info("{}: rolling restart of {} instance(s), {} at a time",
+             roleName, instances.size(), batchSize);
+    return restart;
+  }
+
+  /**
+   * Get the most recent rolling restart of a role
+   * @param roleName role
+   * @return the restart or null if the role has never been restarted
+   */
+  public RollingRestart getRollingRestart(String roleName) {
+    ProviderRole providerRole = roles.get(roleName);
+    return providerRole == null ? null : rollingRestarts.get(providerRole.id);
+  }
+
+  /**
+   * Cancel the requests for specific hosts made under the strict-history
+   * policy of a role which have been outstanding for longer than its
+   * timeout, asking for the containers anywhere instead. The role's
+   * requested count is unchanged.
+   * @param role role
+   * @return the operations to cancel and replace the requests
+   */
+  private List<AbstractRMOperation> reviewStrictRequests(RoleStatus role) {
+    List<AbstractRMOperation> operations = new ArrayList<AbstractRMOperation>();
+    for (OutstandingRequest expired : roleHistory.expireStrictRequests(role)) {
+      log.info("{}: request for a container on {} not satisfied in time;" +
+               " asking for one anywhere",
+               role.getName(), expired.hostname);
+      if (expired.issuedRequest != null) {
+        operations.add(new CancelRequestOperation(expired.issuedRequest));
+      }
+      Resource capability = recordFactory.newResource();
+      buildResourceRequirements(role, capability);
+      operations.add(new ContainerRequestOperation(
+        roleHistory.requestInstanceOnNode(null, role, capability)));
+    }
+    return operations;
+  }
+
+  /**
+   * Are any requests for specific hosts outstanding under the strict-history
+   * policy? If so, the cluster must be reviewed periodically so that they
+   * can be expired.
+   * @return true if there are any
+   */
+  public boolean hasStrictRequestsOutstanding() {
+    RoleHistory history = roleHistory;
+    if (history == null) {
+      return false;
+    }
+    for (RoleStatus role : getRoleStatusMap().values()) {
+      if (role.getStrictHistory()
+          && history.countOutstandingRequests(role.getKey()) > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Is any role being restarted
+   * @return true if a rolling restart is in progress
+   */
+  public boolean isRollingRestartInProgress() {
+    for (RollingRestart restart : rollingRestarts.values()) {
+      if (!restart.isFinished()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Advance a rolling restart: once the current batch has gone and
+   * the role has been restored, release the next batch
+   * @param restart restart
+   * @param role role being restarted
+   * @return any release operations
+   * @throws SliderInternalStateException on a failure to release
+   */
+  private List<AbstractRMOperation> reviewRollingRestart(
+      RollingRestart restart,
+      RoleStatus role) throws SliderInternalStateException {
+    List<AbstractRMOperation> operations =
+      new ArrayList<AbstractRMOperation>();
+    if (restart.isFinished()) {
+      return operations;
+    }
+    for (ContainerId id : restart.getReleasing()) {
+      if (!liveNodes.containsKey(id)) {
+        restart.onContainerCompleted(id);
+      }
+    }
+    if (!restart.isBatchReleased()) {
+      return operations;
+    }
+    // instances which have failed or been flexed away need no restart
+    for (ContainerId id : restart.getPending()) {
+      RoleInstance instance = liveNodes.get(id);
+      if (instance == null || instance.released) {
+        restart.forget(id);
+      }
+    }
+    if (!isRoleRestored(restart, role)) {
+      return operations;
+    }
+    List<ContainerId> batch = restart.nextBatch();
+    if (batch.isEmpty()) {
+      restart.finished(now());
+      log.info("{}: rolling restart completed in {} millis: {}",
+               role.getName(), restart.getFinishTime() - restart.getStartTime(),
+               restart);
+      return operations;
+    }
+    log.info("{}: rolling restart releasing batch {} of {} instance(s)",
+             role.getName(), restart.getBatches(), batch.size());
+    for (ContainerId id : batch) {
+      containerReleaseSubmitted(liveNodes.get(id).container);
+      operations.add(new ContainerReleaseOperation(id));
+    }
+    return operations;
+  }
+
+  /**
+   * The health gate between the batches of a rolling restart: the role
+   * must be at its desired size with nothing outstanding, and every
+   * instance which is not awaiting restart must have started its component
+   * -if the restart waits for that- and passed a health probe -if the
+   * role is probed. Warm spares have no started component so are skipped.
+   * @param restart restart
+   * @param role role
+   * @return true if the next batch can be released
+   */
+  private boolean isRoleRestored(RollingRestart restart, RoleStatus role) {
+    if (role.getRequested() > 0 || role.getActual() < role.getDesired()) {
+      return false;
+    }
+    boolean probed = role.isHealthProbed();
+    for (RoleInstance instance : liveNodes.values()) {
+      if (instance.roleId != role.getKey()
+          || instance.released
+          || restart.isToBeReplaced(instance.getId())
+          || warmSpares.containsKey(instance.id)) {
+        continue;
+      }
+      if ((restart.isWaitForComponentStart() && !instance.componentStarted)
+          || (probed && !instance.healthProbePassed)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public void checkFailureThreshold(RoleStatus role) throws
                                                         TriggerClusterTeardownException {
     int failures = role.getFailed();
@@ -1434,6 +1980,10 @@ public class AppState implements StateAccessForProviders {
     log.info(details);
     checkFailureThreshold(role);
     
+    if (delta == 0) {
+      reviewPlacement(role, operations);
+    }
+    
     if (delta > 0) {
       log.info("{}: Asking for {} more nodes(s) for a total of {} ", name,
                delta, expected);
@@ -1460,9 +2010,28 @@ public class AppState implements StateAccessForProviders {
 
       //then pick some containers to kill
       int excess = -delta;
+      int roleId = role.getKey();
+
+      // release any spares above the number wanted first, as
+      // their components have not been started
+      List<RoleInstance> spares = new ArrayList<RoleInstance>();
+      for (RoleInstance possible : cloneActiveContainerList()) {
+        if (possible.roleId == roleId && !possible.released
+            && warmSpares.containsKey(possible.id)) {
+          spares.add(possible);
+        }
+      }
+      int surplusSpares = Math.min(excess,
+                                   spares.size() - role.getWarmSpares());
+      for (int i = 0; i < surplusSpares; i++) {
+        RoleInstance possible = spares.get(i);
+        log.info("{}: releasing warm spare {}", name, possible.id);
+        containerReleaseSubmitted(possible.container);
+        operations.add(new ContainerReleaseOperation(possible.getId()));
+        excess--;
+      }
 
       // get the nodes to release
-      int roleId = role.getKey();
       List<NodeInstance> nodesForRelease =
         roleHistory.findNodesForRelease(roleId, excess);
       
@@ -1483,9 +2052,43 @@ public class AppState implements StateAccessForProviders {
   }
 
 
+  /**
+   * Review the placement of the live instances of a role against its
+   * placement policy. At most one misplaced instance is released per review,
+   * with a replacement requested in the same operation list, so as
+   * to keep the role's capacity up while the instances are moved.
+   * @param role role
+   * @param operations list of operations to add to
+   * @throws SliderInternalStateException if the operation reveals that
+   * the internal state of the application is inconsistent.
+   */
+  private void reviewPlacement(RoleStatus role,
+                               List<AbstractRMOperation> operations)
+      throws SliderInternalStateException {
+    List<NodeInstance> misplaced = roleHistory.findMisplacedNodes(role);
+    if (misplaced.isEmpty()) {
+      return;
+    }
+    int roleId = role.getKey();
+    NodeInstance node = misplaced.get(0);
+    RoleInstance possible = findRoleInstanceOnHost(node, roleId);
+    if (possible == null) {
+      return;
+    }
+    log.info("{}: relocating instance {} from overloaded node {}",
+             role.getName(), possible.id, node.hostname);
+    containerReleaseSubmitted(possible.container);
+    operations.add(new ContainerReleaseOperation(possible.getId()));
+    role.notePlacementRerequest(PlacementPolicy.ANTI_AFFINITY_REQUIRED);
+    Resource capability = recordFactory.newResource();
+    operations.add(new ContainerRequestOperation(
+      buildContainerResourceAndRequest(role, capability)));
+  }
+
   /**
    * Find a container running on a specific host -looking
-   * into the node ID to determine this.
+   * into the node ID to determine this. Containers which are not
+   * warm spares are preferred.
    *
    * @param node node
    * @param roleId role the container must be in
@@ -1495,14 +2098,18 @@ public class AppState implements StateAccessForProviders {
   private RoleInstance findRoleInstanceOnHost(NodeInstance node, int roleId) {
     Collection<RoleInstance> targets = cloneActiveContainerList();
     String hostname = node.hostname;
+    RoleInstance spare = null;
     for (RoleInstance ri : targets) {
       if (hostname.equals(RoleHistoryUtils.hostnameOf(ri.container))
                          && ri.roleId == roleId
         && containersBeingReleased.get(ri.getContainerId()) == null) {
-        return ri;
+        if (!warmSpares.containsKey(ri.id)) {
+          return ri;
+        }
+        spare = ri;
       }
     }
-    return null;
+    return spare;
   }
   
   /**
@@ -1533,10 +2140,12 @@ public class AppState implements StateAccessForProviders {
   /**
    * Event handler for allocated containers: builds up the lists
    * of assignment actions (what to run where), and possibly
-   * a list of release operations
+   * a list of release operations. Containers whose placement breaks
+   * the placement policy of their role are released, and a replacement
+   * container requested in the same list of operations.
    * @param allocatedContainers the containers allocated
    * @param assignments the assignments of roles to containers
-   * @param releaseOperations any release operations
+   * @param releaseOperations any release and re-request operations
    */
   public synchronized void onContainersAllocated(List<Container> allocatedContainers,
                                     List<ContainerAssignment> assignments,
@@ -1562,11 +2171,28 @@ public class AppState implements StateAccessForProviders {
       allocated = role.incActual();
 
       //look for (race condition) where we get more back than we asked
+      //warm spares are part of what was asked for
       desired = role.getDesired();
+      int wanted = desired + role.getWarmSpares();
+      //anything above the desired count of (non-spare) instances is a spare
+      boolean spare = allocated - role.getSpares() > desired;
+
+      boolean requestFound =
+        roleHistory.onContainerAllocated(container, wanted, allocated);
+      int violatedPolicy = PlacementPolicy.DEFAULT;
+      if (allocated <= wanted) {
+        violatedPolicy = roleHistory.checkPlacement(container, role,
+            requestFound, wanted - allocated + 1);
+      }
+      if (violatedPolicy != PlacementPolicy.DEFAULT
+          && !role.canRerequestPlacement()) {
+        log.info("Accepting container {} on {} despite placement policy {}" +
+                 " of role {}: too many re-requests since the last review",
+                 cid, containerHostInfo, violatedPolicy, role.getName());
+        violatedPolicy = PlacementPolicy.DEFAULT;
+      }
 
-      roleHistory.onContainerAllocated( container, desired, allocated );
-
-      if (allocated > desired) {
+      if (allocated > wanted) {
         log.info("Discarding surplus container {} on {}", cid,
                  containerHostInfo);
         releaseOperations.add(new ContainerReleaseOperation(cid));
@@ -1575,6 +2201,19 @@ public class AppState implements StateAccessForProviders {
         surplusContainers.incrementAndGet();
         //and, as we aren't binding it to role, dec that role's actual count
         role.decActual();
+      } else if (violatedPolicy != PlacementPolicy.DEFAULT) {
+        log.info("Releasing container {} on {}: breaks placement policy {}" +
+                 " of role {}",
+                 cid, containerHostInfo, violatedPolicy, role.getName());
+        releaseOperations.add(new ContainerReleaseOperation(cid));
+        //discard it the same way as a surplus node
+        surplusNodes.add(cid);
+        role.decActual();
+        role.notePlacementRerequest(violatedPolicy);
+        //and ask for a replacement
+        Resource capability = recordFactory.newResource();
+        releaseOperations.add(new ContainerRequestOperation(
+          buildContainerResourceAndRequest(role, capability)));
       } else {
 
         String roleName = role.getName();
@@ -1587,6 +2226,11 @@ public class AppState implements StateAccessForProviders {
                  container.getNodeId().getPort()
                 );
 
+        if (spare) {
+          log.info("Container {} is a warm spare for role {}", cid, roleName);
+          role.incSpares();
+          warmSpares.put(cid.toString(), role.getKey());
+        }
         assignments.add(new ContainerAssignment(container, role));
         //add to the history
         roleHistory.onContainerAssigned(container);
@@ -1607,8 +2251,14 @@ public class AppState implements StateAccessForProviders {
 
   /**
    * Event handler for the list of active containers on restart.
+   * The containers are ingested in one pass: role instances are created
+   * and registered as live directly, role counts are updated in bulk
+   * and the role history is reconciled once, rather than walking
+   * each container through the submit/start lifecycle.
    * Sets the info key {@link StatusKeys#INFO_CONTAINERS_AM_RESTART}
-   * to the size of the list passed down (and does not set it if none were)
+   * to the size of the list passed down (and does not set it if none were),
+   * and {@link StatusKeys#INFO_AM_RESTART_REBUILD_TIME_MILLIS} to the
+   * time taken.
    * @param liveContainers the containers allocated
    * @return true if a rebuild took place (even if size 0)
    * @throws HoyaRuntimeException on problems
@@ -1618,57 +2268,51 @@ public class AppState implements StateAccessForProviders {
     if (liveContainers == null) {
       return false;
     }
+    long start = now();
+    Map<Integer, Integer> roleCounts = new HashMap<Integer, Integer>();
     for (Container container : liveContainers) {
-      addRestartedContainer(container);
+      int roleId = ContainerPriority.extractRole(container);
+      Integer count = roleCounts.get(roleId);
+      roleCounts.put(roleId, count == null ? 1 : count + 1);
+      addRestartedContainer(container, lookupRoleStatus(roleId), start);
     }
+    for (Map.Entry<Integer, Integer> entry : roleCounts.entrySet()) {
+      lookupRoleStatus(entry.getKey()).addRestartedInstances(entry.getValue());
+    }
+    startedContainers.addAndGet(liveContainers.size());
+    int nodes = roleHistory.onAMRestart(liveContainers);
+    long duration = now() - start;
+    log.info("Rebuilt {} containers on {} nodes in {} millis",
+             liveContainers.size(), nodes, duration);
     clusterStatus.setInfo(StatusKeys.INFO_CONTAINERS_AM_RESTART,
                                Integer.toString(liveContainers.size()));
+    clusterStatus.setInfo(StatusKeys.INFO_AM_RESTART_REBUILD_TIME_MILLIS,
+                          Long.toString(duration));
     return true;
   }
 
   /**
-   * Add a restarted container by walking it through the create/submit/start
-   * lifecycle, so building up the internal structures
+   * Add a restarted container straight into the live structures
    * @param container container that was running before the AM restarted
-   * @throws HoyaRuntimeException on problems
+   * @param role role of the container
+   * @param time time to use as its create and start time
    */
-  private void addRestartedContainer(Container container) throws
-                                                          BadClusterStateException {
-    String containerHostInfo = container.getNodeId().getHost()
-                               + ":" +
-                               container.getNodeId().getPort();
-    // get the container ID
+  private void addRestartedContainer(Container container,
+                                     RoleStatus role,
+                                     long time) {
     ContainerId cid = container.getId();
-    
-    // get the role
-    int roleId = ContainerPriority.extractRole(container);
-    RoleStatus role =
-      lookupRoleStatus(roleId);
-    // increment its count
-    role.incActual();
-    String roleName = role.getName();
-    
-    log.info("Rebuilding container {} in role {} on {},",
-             cid,
-             roleName,
-             containerHostInfo);
-    
-    //update app state internal structures and maps
-
+    if (log.isDebugEnabled()) {
+      log.debug("Rebuilding container {} in role {} on {}",
+                cid, role.getName(), container.getNodeId());
+    }
     RoleInstance instance = new RoleInstance(container);
-    instance.command = roleName;
-    instance.role = roleName;
-    instance.roleId = roleId;
-    instance.environment = new String[0];
-    instance.container = container;
-    instance.createTime = now();
+    instance.setLaunchDetails(role.getName(), new String[0]);
+    instance.role = role.getName();
+    instance.roleId = role.getKey();
+    instance.createTime = time;
+    instance.startTime = time;
     instance.state = ClusterDescription.STATE_LIVE;
     activeContainers.put(cid, instance);
-    //role history gets told
-    roleHistory.onContainerAssigned(container);
-    // pretend the container has just had its start actions submitted
-    containerStartSubmitted(container, instance);
-    // now pretend it has just started
-    innerOnNodeManagerContainerStarted(cid);
+    getLiveNodes().put(cid, instance);
   }
 }
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.state;
+
+import org.apache.hoya.api.ResourceKeys;
+import org.apache.hoya.core.conf.ConfTreeOperations;
+import org.apache.hoya.exceptions.BadConfigException;
+
+/**
+ * The autoscaling policy of a role, as set in the resources: the bounds
+ * on its size, the utilization to size it for, and the cooldown
+ * between resizes. Immutable.
+ */
+public final class AutoscalePolicy {
+
+  /**
+   * The policy of roles which are not autoscaled
+   */
+  public static final AutoscalePolicy DISABLED =
+    new AutoscalePolicy(0, 0, 1.0, 0);
+
+  private final int min;
+  private final int max;
+  private final double targetUtilization;
+  private final long cooldown;
+
+  /**
+   * Create a policy
+   * @param min minimum number of instances
+   * @param max maximum number of instances; 0 for no autoscaling
+   * @param targetUtilization utilization to size for, in the range (0, 1]
+   * @param cooldown milliseconds between resizes
+   */
+  public AutoscalePolicy(int min,
+                         int max,
+                         double targetUtilization,
+                         long cooldown) {
+    this.min = min;
+    this.max = max;
+    this.targetUtilization = targetUtilization;
+    this.cooldown = cooldown;
+  }
+
+  /**
+   * Build the policy of a role from the resources
+   * @param resources resources
+   * @param role role name
+   * @return the policy, or {@link #DISABLED} if no maximum is set
+   * @throws BadConfigException if the values are inconsistent
+   */
+  public static AutoscalePolicy fromResources(ConfTreeOperations resources,
+                                              String role) throws
+                                                           BadConfigException {
+    int max = resources.getComponentOptInt(role,
+        ResourceKeys.COMPONENT_AUTOSCALE_MAX,
+        ResourceKeys.DEF_COMPONENT_AUTOSCALE_MAX);
+    if (max <= 0) {
+      return DISABLED;
+    }
+    int min = resources.getComponentOptInt(role,
+        ResourceKeys.COMPONENT_AUTOSCALE_MIN,
+        ResourceKeys.DEF_COMPONENT_AUTOSCALE_MIN);
+    int target = resources.getComponentOptInt(role,
+        ResourceKeys.COMPONENT_AUTOSCALE_TARGET_UTILIZATION,
+        ResourceKeys.DEF_COMPONENT_AUTOSCALE_TARGET_UTILIZATION);
+    int cooldown = resources.getComponentOptInt(role,
+        ResourceKeys.COMPONENT_AUTOSCALE_COOLDOWN,
+        ResourceKeys.DEF_COMPONENT_AUTOSCALE_COOLDOWN);
+    if (min < 0 || min > max) {
+      throw new BadConfigException(
+        "Component %s: autoscale minimum %d is not in the range 0-%d",
+        role, min, max);
+    }
+    if (target <= 0 || target > 100) {
+      throw new BadConfigException(
+        "Component %s: autoscale target utilization %d is not in the range 1-100",
+        role, target);
+    }
+    if (cooldown < 0) {
+      throw new BadConfigException(
+        "Component %s: autoscale cooldown %d is negative", role, cooldown);
+    }
+    return new AutoscalePolicy(min, max, target / 100.0, cooldown * 1000L);
+  }
+
+  public boolean isEnabled() {
+    return max > 0;
+  }
+
+  public int getMin() {
+    return min;
+  }
+
+  public int getMax() {
+    return max;
+  }
+
+  public double getTargetUtilization() {
+    return targetUtilization;
+  }
+
+  public long getCooldown() {
+    return cooldown;
+  }
+
+  /**
+   * Work out how many instances are needed to carry a load
+   * at the target utilization, within the bounds of the policy
+   * @param demand total load, in units of the capacity of one instance
+   * @return the number of instances to have
+   */
+  public int instancesFor(double demand) {
+    int needed =
+      (int) Math.ceil(Math.max(0, demand) / targetUtilization - 1e-9);
+    return Math.max(min, Math.min(max, needed));
+  }
+
+  @Override
+  public String toString() {
+    return isEnabled()
+           ? ("autoscale " + min + "-" + max +
+              " at " + Math.round(targetUtilization * 100) + "%" +
+              ", cooldown " + cooldown + "ms")
+           : "no autoscaling";
+  }
+}
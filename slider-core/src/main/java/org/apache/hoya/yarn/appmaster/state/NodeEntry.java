@@ -78,6 +78,15 @@ public class NodeEntry {
     return (live - releasing);
   }
 
+  /**
+   * Get the load of this role on the node: the instances which are
+   * starting or live, and not being released
+   * @return a number, possibly 0
+   */
+  public synchronized int getLoad() {
+    return starting + live - releasing;
+  }
+
   /**
    * Return true if the node is not busy, and it
    * has not been used since the absolute time
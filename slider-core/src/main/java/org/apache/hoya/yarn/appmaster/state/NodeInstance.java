@@ -18,6 +18,8 @@
 
 package org.apache.hoya.yarn.appmaster.state;
 
+import org.apache.hadoop.net.NetworkTopology;
+
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -33,6 +35,18 @@ public class NodeInstance {
 
   public final String hostname;
 
+  /**
+   * Network location of the host; the default rack until
+   * the topology is known
+   */
+  private String rack = NetworkTopology.DEFAULT_RACK;
+
+  /**
+   * Can the node run containers? False once the RM reports it as
+   * lost, unhealthy or decommissioned
+   */
+  private boolean usable = true;
+
   private final List<NodeEntry> nodeEntries;
 
   /**
@@ -44,6 +58,22 @@ public class NodeInstance {
     nodeEntries = new ArrayList<NodeEntry>(roles);
   }
 
+  public synchronized String getRack() {
+    return rack;
+  }
+
+  public synchronized void setRack(String rack) {
+    this.rack = rack;
+  }
+
+  public synchronized boolean isUsable() {
+    return usable;
+  }
+
+  public synchronized void setUsable(boolean usable) {
+    this.usable = usable;
+  }
+
   /**
    * Get the entry for a role -if present
    * @param role role index
@@ -85,6 +115,25 @@ public class NodeInstance {
     return (nodeEntry != null ) ? nodeEntry.getActive() : 0;
   }
 
+  /**
+   * Count the number of role instances on this node which are
+   * starting or live and not being released
+   * @param role role index
+   * @return the load of the role on this node
+   */
+  public int getRoleLoad(int role) {
+    NodeEntry nodeEntry = get(role);
+    return (nodeEntry != null ) ? nodeEntry.getLoad() : 0;
+  }
+
+  /**
+   * Get a copy of the list of entries
+   * @return the entries, one per role with history on this node
+   */
+  public synchronized List<NodeEntry> cloneEntries() {
+    return new ArrayList<NodeEntry>(nodeEntries);
+  }
+
   /**
    * Get the entry for a role -and remove it if present
    * @param role the role index
@@ -19,6 +19,7 @@
 package org.apache.hoya.yarn.appmaster.state;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +31,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 /**
  * Node map map -and methods to work with it. 
@@ -53,7 +55,9 @@ public class NodeMap extends HashMap<String, NodeInstance> {
   }
 
   /**
-   * Get the node instance for the specific node -creating it if needed
+   * Get the node instance for the specific node -creating it if needed.
+   * A new node is on the default rack until its rack is resolved
+   * by the role history.
    * @param hostname node
    * @return the instance
    */
@@ -83,6 +87,46 @@ public class NodeMap extends HashMap<String, NodeInstance> {
     return nodes;
   }
 
+  /**
+   * Build a map of the load of a role on every rack with a usable node.
+   * Racks with usable nodes but no instances of the role are included with
+   * a load of 0; racks whose nodes have all been lost are left out.
+   * @param role role index
+   * @return rack to load map
+   */
+  public Map<String, Integer> buildRackLoad(int role) {
+    Map<String, Integer> rackLoad = new HashMap<String, Integer>();
+    for (NodeInstance instance : values()) {
+      if (instance.isUsable()) {
+        rackLoad.put(instance.getRack(), 0);
+      }
+    }
+    for (NodeInstance instance : values()) {
+      String rack = instance.getRack();
+      Integer load = rackLoad.get(rack);
+      if (load != null) {
+        rackLoad.put(rack, load + instance.getRoleLoad(role));
+      }
+    }
+    return rackLoad;
+  }
+
+  /**
+   * List the nodes with more active instances of a role than the limit
+   * @param role role index
+   * @param limit maximum number of instances allowed on a node
+   * @return a possibly empty list of nodes, most loaded first
+   */
+  public List<NodeInstance> findOverloadedNodes(int role, int limit) {
+    List<NodeInstance> nodes = new ArrayList<NodeInstance>();
+    for (NodeInstance instance : listActiveNodes(role)) {
+      if (instance.getActiveRoleInstances(role) > limit) {
+        nodes.add(instance);
+      }
+    }
+    return nodes;
+  }
+
   /**
    * purge the history of all nodes that have been inactive since the absolute time
    * @param absoluteTime time
@@ -106,15 +150,71 @@ public class NodeMap extends HashMap<String, NodeInstance> {
   
 
   /**
-   * Find a list of node for release; algorithm may make its own
-   * decisions on which to release.
+   * Find a list of nodes for release, keeping the instances which remain
+   * spread across racks.
+   * Each instance is taken from the rack with the most active instances
+   * of the role, ties going to the first rack in name order; within a
+   * rack, the nodes are chosen by
+   * {@link #selectOnRackForRelease(List, int, int)}.
+   * If all nodes are on the same rack, only the host-level choice applies.
    * @param role role index
    * @param count number of nodes to release
    * @return a possibly empty list of nodes.
    */
   public List<NodeInstance> findNodesForRelease(int role, int count) {
+    Preconditions.checkArgument(count >= 0, "Negative count %s", count);
+    // group the active nodes by rack, each list sorted most active first
+    Map<String, List<NodeInstance>> nodesByRack =
+      new HashMap<String, List<NodeInstance>>();
+    for (NodeInstance node : listActiveNodes(role)) {
+      String rack = node.getRack();
+      List<NodeInstance> nodes = nodesByRack.get(rack);
+      if (nodes == null) {
+        nodes = new ArrayList<NodeInstance>();
+        nodesByRack.put(rack, nodes);
+      }
+      nodes.add(node);
+    }
+    PriorityQueue<RackReleaseQueue> racks =
+      new PriorityQueue<RackReleaseQueue>(Math.max(1, nodesByRack.size()));
+    for (Map.Entry<String, List<NodeInstance>> entry : nodesByRack.entrySet()) {
+      List<NodeInstance> nodes = entry.getValue();
+      int load = 0;
+      for (NodeInstance node : nodes) {
+        load += node.getActiveRoleInstances(role);
+      }
+      racks.add(new RackReleaseQueue(entry.getKey(), load,
+                                     selectOnRackForRelease(nodes, role,
+                                                            count)));
+    }
+    log.debug("searching for {} nodes on {} racks", count, racks.size());
     List<NodeInstance> targets = new ArrayList<NodeInstance>(count);
-    List<NodeInstance> active = listActiveNodes(role);
+    while (targets.size() < count && !racks.isEmpty()) {
+      RackReleaseQueue rack = racks.poll();
+      targets.add(rack.next());
+      if (rack.hasNext()) {
+        racks.add(rack);
+      }
+    }
+    return targets;
+  }
+
+  /**
+   * Find a list of nodes on a rack for release, going by the load on each
+   * node alone: instances above the first on a node go first, then the
+   * nodes with only one instance, then the last instance on the nodes
+   * which had more.
+   * The list is the same for any count, up to that count, so
+   * its head is the choice for any smaller count.
+   * @param nodes nodes with active instances, most active first
+   * @param role role index
+   * @param count number of nodes to release
+   * @return a possibly empty list of nodes.
+   */
+  private static List<NodeInstance> selectOnRackForRelease(
+    List<NodeInstance> nodes, int role, int count) {
+    List<NodeInstance> targets = new ArrayList<NodeInstance>(count);
+    List<NodeInstance> active = new ArrayList<NodeInstance>(nodes);
     List<NodeInstance> multiple = new ArrayList<NodeInstance>();
     int nodesRemaining = count;
     log.debug("searching for {} nodes with candidate set size {}",
@@ -156,7 +256,6 @@ public class NodeMap extends HashMap<String, NodeInstance> {
     return targets;
   }
 
-
   /**
    * Clone point
    * @return
@@ -177,4 +276,39 @@ public class NodeMap extends HashMap<String, NodeInstance> {
       put(node.hostname, node);
     }
   }
+
+  /**
+   * The nodes of a rack in the order they are to be released, and the
+   * rack's remaining load. Racks are ordered most loaded first.
+   */
+  private static final class RackReleaseQueue
+    implements Comparable<RackReleaseQueue> {
+    private final String rack;
+    private final List<NodeInstance> nodes;
+    private int load;
+    private int next;
+
+    private RackReleaseQueue(String rack, int load, List<NodeInstance> nodes) {
+      this.rack = rack;
+      this.load = load;
+      this.nodes = nodes;
+    }
+
+    private boolean hasNext() {
+      return next < nodes.size();
+    }
+
+    private NodeInstance next() {
+      load--;
+      return nodes.get(next++);
+    }
+
+    @Override
+    public int compareTo(RackReleaseQueue that) {
+      if (load != that.load) {
+        return load > that.load ? -1 : 1;
+      }
+      return rack.compareTo(that.rack);
+    }
+  }
 }
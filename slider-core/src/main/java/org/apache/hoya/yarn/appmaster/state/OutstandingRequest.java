@@ -61,6 +61,13 @@ public final class OutstandingRequest {
    */
   public long requestedTime;
 
+  /**
+   * The container request built for this -only valid after
+   * {@link #buildContainerRequest(Resource, RoleStatus, long)}; needed
+   * to cancel it
+   */
+  public AMRMClient.ContainerRequest issuedRequest;
+
   /**
    * Create a request
    * @param roleId role
@@ -108,7 +115,8 @@ public final class OutstandingRequest {
     if (node != null) {
       hosts = new String[1];
       hosts[0] = node.hostname;
-      relaxLocality = true;
+      // strict placement must not fall back to other hosts
+      relaxLocality = !role.getStrictHistory();
       locationSpecified = true;
       // tell the node it is in play
       node.getOrCreate(roleId);
@@ -126,7 +134,7 @@ public final class OutstandingRequest {
                                       null,
                                       pri,
                                       relaxLocality);
-    
+    issuedRequest = request;
     return request;
   }
 
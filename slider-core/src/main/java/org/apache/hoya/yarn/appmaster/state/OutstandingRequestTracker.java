@@ -177,6 +177,43 @@ public class OutstandingRequestTracker {
     return hosts;
   }
   
+  /**
+   * Count the outstanding requests for a role
+   * @param role role index
+   * @return the number of located requests for the role outstanding
+   */
+  public synchronized int countRequestsForRole(int role) {
+    int count = 0;
+    for (OutstandingRequest request : requests.keySet()) {
+      if (request.roleId == role) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Drop the requests for a role made before a given time, marking
+   * them as completed
+   * @param role role index
+   * @param requestedBefore time in millis
+   * @return a possibly empty list of the requests dropped
+   */
+  public synchronized List<OutstandingRequest> expireRequests(int role,
+      long requestedBefore) {
+    List<OutstandingRequest> expired = new ArrayList<OutstandingRequest>();
+    Iterator<OutstandingRequest> iterator = requests.keySet().iterator();
+    while (iterator.hasNext()) {
+      OutstandingRequest request = iterator.next();
+      if (request.roleId == role && request.requestedTime < requestedBefore) {
+        iterator.remove();
+        request.completed();
+        expired.add(request);
+      }
+    }
+    return expired;
+  }
+
   public synchronized List<OutstandingRequest> listOutstandingRequests() {
     return new ArrayList<OutstandingRequest>(requests.values());
   }
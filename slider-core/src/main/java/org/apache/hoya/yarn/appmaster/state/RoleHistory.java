@@ -19,14 +19,25 @@
 package org.apache.hoya.yarn.appmaster.state;
 
 import com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.net.CachedDNSToSwitchMapping;
+import org.apache.hadoop.net.DNSToSwitchMapping;
+import org.apache.hadoop.net.NetworkTopology;
+import org.apache.hadoop.net.ScriptBasedMapping;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.NodeReport;
+import org.apache.hadoop.yarn.api.records.NodeState;
 import org.apache.hadoop.yarn.api.records.Resource;
 import org.apache.hadoop.yarn.client.api.AMRMClient;
+import org.apache.hoya.avro.NodeEntryRecord;
 import org.apache.hoya.avro.RoleHistoryHeader;
 import org.apache.hoya.avro.RoleHistoryWriter;
 import org.apache.hoya.exceptions.BadConfigException;
+import org.apache.hoya.providers.PlacementPolicy;
 import org.apache.hoya.providers.ProviderRole;
 import org.apache.hoya.tools.HoyaUtils;
 import org.slf4j.Logger;
@@ -37,9 +48,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * The Role History.
@@ -58,6 +73,13 @@ import java.util.Map;
 public class RoleHistory {
   protected static final Logger log =
     LoggerFactory.getLogger(RoleHistory.class);
+
+  /**
+   * Under the rack-spread policy, how many more instances of a role a rack
+   * may hold than the least loaded rack and still take another
+   */
+  public static final int RACK_SPREAD_TOLERANCE = 1;
+
   private final List<ProviderRole> providerRoles;
   private final Map<String, ProviderRole> providerRoleMap =
     new HashMap<String, ProviderRole>();
@@ -74,11 +96,42 @@ public class RoleHistory {
   
   private NodeMap nodemap;
   private int roleSize;
-  private boolean dirty;
+
+  /**
+   * Entries changed since the last checkpoint, with their nodes
+   */
+  private final Map<NodeEntry, NodeInstance> dirtyEntries =
+    new HashMap<NodeEntry, NodeInstance>();
+
+  /**
+   * Must the next checkpoint include every entry?
+   */
+  private boolean fullCheckpointRequired;
+
+  /**
+   * Time of the first change since the last checkpoint; 0 if there
+   * has been none
+   */
+  private long firstChangeTime;
+
+  /**
+   * Time of the latest change
+   */
+  private long lastChangeTime;
+
+  /**
+   * Time of the latest checkpoint or save
+   */
+  private long lastCheckpointTime;
   private FileSystem filesystem;
   private Path historyPath;
   private RoleHistoryWriter historyWriter = new RoleHistoryWriter();
 
+  /**
+   * Mapping used to resolve the racks of nodes; null for none
+   */
+  private DNSToSwitchMapping topology;
+
   private OutstandingRequestTracker outstandingRequests =
     new OutstandingRequestTracker();
 
@@ -105,6 +158,7 @@ public class RoleHistory {
   protected synchronized void reset() throws BadConfigException {
 
     nodemap = new NodeMap(roleSize);
+    clean();
     resetAvailableNodeLists();
 
     resetAvailableNodeLists();
@@ -178,6 +232,140 @@ public class RoleHistory {
     setThawedDataTime(header.getSaved());
   }
   
+  /**
+   * Create the mapping of hosts to racks which the cluster is configured
+   * with, as the YARN services do: through
+   * {@link CommonConfigurationKeysPublic#NET_TOPOLOGY_NODE_SWITCH_MAPPING_IMPL_KEY},
+   * with results cached
+   * @param conf configuration
+   * @return the mapping
+   */
+  public static DNSToSwitchMapping createTopology(Configuration conf) {
+    Class<? extends DNSToSwitchMapping> mappingClass = conf.getClass(
+      CommonConfigurationKeysPublic.NET_TOPOLOGY_NODE_SWITCH_MAPPING_IMPL_KEY,
+      ScriptBasedMapping.class,
+      DNSToSwitchMapping.class);
+    DNSToSwitchMapping mapping =
+      ReflectionUtils.newInstance(mappingClass, conf);
+    if (!(mapping instanceof CachedDNSToSwitchMapping)) {
+      mapping = new CachedDNSToSwitchMapping(mapping);
+    }
+    return mapping;
+  }
+
+  /**
+   * Set the mapping used to resolve the racks of nodes.
+   * This should be set before the history is loaded.
+   * @param topology mapping; null for none
+   */
+  public synchronized void setTopology(DNSToSwitchMapping topology) {
+    this.topology = topology;
+  }
+
+  /**
+   * Resolve the racks of a set of hosts in one call to the topology,
+   * creating their node instances if needed.
+   * <p>
+   * The topology may run a script or do DNS lookups, so it is not called
+   * with the history locked. A host the topology cannot place keeps any
+   * rack it already has, such as one read from a saved history.
+   * @param hostnames hosts
+   * @return the number of nodes whose rack changed
+   */
+  public int resolveRacks(Collection<String> hostnames) {
+    DNSToSwitchMapping mapping;
+    synchronized (this) {
+      mapping = topology;
+    }
+    if (mapping == null || hostnames.isEmpty()) {
+      return 0;
+    }
+    List<String> hosts =
+      new ArrayList<String>(new LinkedHashSet<String>(hostnames));
+    List<String> racks = mapping.resolve(hosts);
+    if (racks == null || racks.size() != hosts.size()) {
+      log.warn("Unable to resolve the racks of {} hosts", hosts.size());
+      return 0;
+    }
+    int moved = 0;
+    synchronized (this) {
+      for (int i = 0; i < hosts.size(); i++) {
+        String rack = racks.get(i);
+        NodeInstance node = nodemap.getOrCreate(hosts.get(i));
+        if (rack == null || NetworkTopology.DEFAULT_RACK.equals(rack)) {
+          log.debug("Unable to resolve the rack of {}", node.hostname);
+        } else if (!rack.equals(node.getRack())) {
+          node.setRack(rack);
+          moved++;
+        }
+      }
+    }
+    return moved;
+  }
+
+  /**
+   * Resolve the racks of the hosts of newly allocated containers which
+   * are not yet in the history. This must be called before the allocations
+   * are processed, and not with the history locked.
+   * @param allocatedContainers containers
+   * @return the number of nodes whose rack changed
+   */
+  public int resolveRacksOfContainers(List<Container> allocatedContainers) {
+    Set<String> unknown = new HashSet<String>();
+    synchronized (this) {
+      for (Container container : allocatedContainers) {
+        String hostname = RoleHistoryUtils.hostnameOf(container);
+        if (!nodemap.containsKey(hostname)) {
+          unknown.add(hostname);
+        }
+      }
+    }
+    return resolveRacks(unknown);
+  }
+
+  /**
+   * Update the racks and usability of known nodes from node reports
+   * @param updatedNodes reports of nodes whose state has changed
+   * @return the number of nodes whose rack changed
+   */
+  public synchronized int onNodesUpdated(List<NodeReport> updatedNodes) {
+    int moved = 0;
+    for (NodeReport report : updatedNodes) {
+      NodeInstance node = nodemap.get(report.getNodeId().getHost());
+      if (node == null) {
+        continue;
+      }
+      NodeState state = report.getNodeState();
+      if (state != null && state.isUnusable() == node.isUsable()) {
+        log.info("Node {} is {}", node.hostname, state);
+        node.setUsable(!state.isUnusable());
+      }
+      String rack = report.getRackName();
+      if (rack != null && !rack.equals(node.getRack())) {
+        log.info("Node {} is on rack {}", node.hostname, rack);
+        node.setRack(rack);
+        moved++;
+      }
+    }
+    return moved;
+  }
+
+  /**
+   * Prepare to merge a delta of the history into it
+   * @param header header of the delta
+   * @throws IOException if the delta does not match the history
+   */
+  public synchronized void prepareForMerging(RoleHistoryHeader header) throws
+                                                                     IOException {
+    int roleCountInSource = header.getRoles();
+    if (roleCountInSource != roleSize) {
+      throw new IOException("Number of roles in delta " + roleCountInSource
+                            + " does not match the expected number of " +
+                            roleSize);
+    }
+    setThawedDataTime(header.getSaved());
+  }
+
   public synchronized long getStartTime() {
     return startTime;
   }
@@ -206,12 +394,26 @@ public class RoleHistory {
     return nodemap.size();
   }
 
+  /**
+   * Has the history changed since the last checkpoint?
+   * @return true if there is anything to checkpoint
+   */
   public synchronized boolean isDirty() {
-    return dirty;
+    return fullCheckpointRequired || !dirtyEntries.isEmpty();
   }
 
+  /**
+   * Mark the whole history as changed, or as clean
+   * @param dirty true if the next checkpoint must be a full one;
+   * false to forget all changes
+   */
   public synchronized void setDirty(boolean dirty) {
-    this.dirty = dirty;
+    if (dirty) {
+      fullCheckpointRequired = true;
+      changed();
+    } else {
+      clean();
+    }
   }
 
   /**
@@ -219,8 +421,43 @@ public class RoleHistory {
    * @param timestamp timestamp -updates the savetime field
    */
   public synchronized void saved(long timestamp) {
-    dirty = false;
+    clean();
     saveTime = timestamp;
+    lastCheckpointTime = Math.max(lastCheckpointTime, timestamp);
+  }
+
+  private void clean() {
+    dirtyEntries.clear();
+    fullCheckpointRequired = false;
+    firstChangeTime = 0;
+  }
+
+  /**
+   * Record the time of a change. Unsynced: expects caller to be in
+   * a sync block.
+   */
+  private void changed() {
+    long now = now();
+    if (firstChangeTime == 0) {
+      firstChangeTime = now;
+    }
+    lastChangeTime = now;
+  }
+
+  /**
+   * Get the time of the first change since the last checkpoint
+   * @return the time, or 0 if there has been no change
+   */
+  public synchronized long getFirstChangeTime() {
+    return firstChangeTime;
+  }
+
+  /**
+   * Get the time of the latest change
+   * @return the time, or 0 if there has been no change
+   */
+  public synchronized long getLastChangeTime() {
+    return lastChangeTime;
   }
 
   /**
@@ -273,15 +510,21 @@ public class RoleHistory {
   }
 
   /**
-   * Mark ourselves as dirty
+   * Mark ourselves as dirty: the next checkpoint will include every entry
    */
   public void touch() {
     setDirty(true);
-    try {
-      saveHistoryIfDirty();
-    } catch (IOException e) {
-      log.warn("Failed to save history file ", e);
-    }
+  }
+
+  /**
+   * Mark the entry of a container as changed, for the next checkpoint
+   * @param container container
+   */
+  private synchronized void touch(Container container) {
+    NodeInstance node = getOrCreateNodeInstance(container);
+    NodeEntry entry = node.getOrCreate(ContainerPriority.extractRole(container));
+    dirtyEntries.put(entry, node);
+    changed();
   }
 
   /**
@@ -291,6 +534,8 @@ public class RoleHistory {
    */
   public synchronized void purgeUnusedEntries(long absoluteTime) {
     nodemap.purgeUnusedEntries(absoluteTime);
+    // a delta cannot record the removal of entries
+    setDirty(true);
   }
 
   /**
@@ -317,19 +562,81 @@ public class RoleHistory {
   }
 
   /**
-   * Save the history with the current timestamp if it is dirty;
-   * return the path saved to if this is the case
-   * @return the path or null if the history was not saved
-   * @throws IOException failed to save for some reason
+   * Take a checkpoint of the history and mark it clean.
+   * Only the entries changed since the last checkpoint are included, unless
+   * a full checkpoint is asked for or required: after a change to the whole
+   * history, or a checkpoint which could not be written.
+   * This only copies the records; they are written by
+   * {@link #writeCheckpoint(RoleHistoryCheckpoint)}, which does not
+   * hold the history's lock.
+   * @param full should every entry be included?
+   * @return the checkpoint, or null if it would be a delta with no entries
    */
-  public synchronized Path saveHistoryIfDirty() throws IOException {
-    if (isDirty()) {
-      long time = now();
-      return saveHistory(time);
-    } else {
+  public synchronized RoleHistoryCheckpoint prepareCheckpoint(boolean full) {
+    full |= fullCheckpointRequired;
+    if (!full && dirtyEntries.isEmpty()) {
       return null;
     }
-  } 
+    List<NodeEntryRecord> records;
+    if (full) {
+      records = new ArrayList<NodeEntryRecord>();
+      for (NodeInstance node : nodemap.values()) {
+        for (NodeEntry entry : node.cloneEntries()) {
+          records.add(historyWriter.build(entry, entry.index, node));
+        }
+      }
+    } else {
+      records = new ArrayList<NodeEntryRecord>(dirtyEntries.size());
+      for (Map.Entry<NodeEntry, NodeInstance> dirty : dirtyEntries.entrySet()) {
+        NodeEntry entry = dirty.getKey();
+        records.add(historyWriter.build(entry, entry.index, dirty.getValue()));
+      }
+    }
+    clean();
+    // checkpoints are named by their time, so keep the times unique
+    long time = Math.max(now(), lastCheckpointTime + 1);
+    lastCheckpointTime = time;
+    return new RoleHistoryCheckpoint(full, time, roleSize, records);
+  }
+
+  /**
+   * Write a checkpoint to the history directory. After a full checkpoint
+   * the older history files and deltas are deleted.
+   * If the checkpoint cannot be written, the next one will be a full one.
+   * @param checkpoint checkpoint from {@link #prepareCheckpoint(boolean)}
+   * @return the path written to
+   * @throws IOException IO problems
+   */
+  public Path writeCheckpoint(RoleHistoryCheckpoint checkpoint) throws
+                                                                IOException {
+    Path path = checkpoint.full
+                ? historyWriter.createHistoryFilename(historyPath,
+                                                      checkpoint.time)
+                : historyWriter.createDeltaFilename(historyPath,
+                                                    checkpoint.time);
+    boolean written = false;
+    try {
+      historyWriter.write(filesystem, path, true, checkpoint.roles,
+                          checkpoint.records, checkpoint.time);
+      written = true;
+    } finally {
+      if (!written) {
+        setDirty(true);
+      }
+    }
+    synchronized (this) {
+      saveTime = Math.max(saveTime, checkpoint.time);
+    }
+    if (checkpoint.full) {
+      try {
+        historyWriter.purgeOlderHistoryEntries(filesystem, path);
+        historyWriter.purgeOlderDeltas(filesystem, path);
+      } catch (IOException e) {
+        log.info("Ignoring exception raised while deleting old entries", e);
+      }
+    }
+    return path;
+  }
 
   /**
    * Start up
@@ -344,8 +651,17 @@ public class RoleHistory {
     historyPath = historyDir;
     startTime = now();
     //assume the history is being thawed; this will downgrade as appropriate
-    return onThaw();
+    boolean thawed = onThaw();
+    if (thawed) {
+      //place the nodes read in, all in one go
+      List<String> hostnames;
+      synchronized (this) {
+        hostnames = new ArrayList<String>(nodemap.keySet());
+      }
+      resolveRacks(hostnames);
     }
+    return thawed;
+  }
   
   /**
    * Handler for bootstrap event
@@ -376,6 +692,7 @@ public class RoleHistory {
       // delete any old entries
       try {
         int count = historyWriter.purgeOlderHistoryEntries(filesystem, loaded);
+        count += historyWriter.purgeOlderDeltas(filesystem, loaded);
         log.debug("Deleted {} old history entries", count);
       } catch (IOException e) {
         log.info("Ignoring exception raised while trying to delete old entries",
@@ -450,8 +767,49 @@ public class RoleHistory {
     }
   }
 
-  public synchronized void onAMRestart() {
-    //TODO once AM restart is implemented and we know what to expect
+  /**
+   * Reconcile the history with the containers which survived an AM restart,
+   * in one pass. The live count of every node entry is set from the
+   * containers on that node, merging with whatever history was thawed;
+   * any outstanding requests are discarded, as the RM forgets them
+   * with the previous attempt; the available node lists are rebuilt
+   * and the history saved once.
+   * @param liveContainers the containers from the previous attempt
+   * @return the number of nodes hosting live containers
+   */
+  public int onAMRestart(List<Container> liveContainers) {
+    int nodes;
+    synchronized (this) {
+      long now = now();
+      // counts of live containers per node entry
+      Map<NodeEntry, Integer> live = new HashMap<NodeEntry, Integer>();
+      Set<String> hosts = new HashSet<String>();
+      for (Container container : liveContainers) {
+        hosts.add(RoleHistoryUtils.hostnameOf(container));
+        NodeEntry entry = getOrCreateNodeEntry(container);
+        Integer count = live.get(entry);
+        live.put(entry, count == null ? 1 : count + 1);
+      }
+      // reset the entries of the thawed history and then merge
+      for (NodeInstance node : nodemap.values()) {
+        for (int role = 0; role < roleSize; role++) {
+          NodeEntry entry = node.get(role);
+          if (entry != null && !live.containsKey(entry)) {
+            entry.setLive(0);
+          }
+        }
+      }
+      for (Map.Entry<NodeEntry, Integer> entry : live.entrySet()) {
+        NodeEntry nodeEntry = entry.getKey();
+        nodeEntry.setLive(entry.getValue());
+        nodeEntry.setLastUsed(now);
+      }
+      nodes = hosts.size();
+      outstandingRequests = new OutstandingRequestTracker();
+      buildAvailableNodeLists();
+    }
+    touch();
+    return nodes;
   }
 
   /**
@@ -468,15 +826,160 @@ public class RoleHistory {
     NodeInstance nodeInstance = null;
     
     List<NodeInstance> targets = getNodesForRoleId(roleKey);
+    if (targets != null && role.getRackSpread()) {
+      return selectNodeOnLeastLoadedRack(targets, role);
+    }
     while (targets != null && !targets.isEmpty() && nodeInstance == null) {
       NodeInstance head = targets.remove(0);
-      if (head.getActiveRoleInstances(roleKey) == 0) {
+      if (isPlaceable(head, role)) {
         nodeInstance = head;
       }
     }
     return nodeInstance;
   }
 
+  /**
+   * Can a new instance of a role be placed on a node without
+   * breaking the host limits of the role's placement policy
+   * @param node node
+   * @param role role
+   * @return true if the node can take another instance
+   */
+  private boolean isPlaceable(NodeInstance node, RoleStatus role) {
+    int roleKey = role.getKey();
+    if (role.getAntiAffinityRequired()) {
+      return node.getRoleLoad(roleKey) < role.getMaxInstancesPerHost();
+    }
+    return node.getActiveRoleInstances(roleKey) == 0;
+  }
+
+  /**
+   * Select the node from a list of candidates which is on the rack with the
+   * lowest load of the role; nodes which can no longer take an instance
+   * are dropped from the list as they are found.
+   * @param targets available nodes, most recently used first
+   * @param role role
+   * @return the selected node (which is removed from the list) or null
+   */
+  private NodeInstance selectNodeOnLeastLoadedRack(List<NodeInstance> targets,
+                                                   RoleStatus role) {
+    Map<String, Integer> rackLoad = nodemap.buildRackLoad(role.getKey());
+    NodeInstance selected = null;
+    int selectedLoad = Integer.MAX_VALUE;
+    Iterator<NodeInstance> it = targets.iterator();
+    while (it.hasNext()) {
+      NodeInstance candidate = it.next();
+      if (!isPlaceable(candidate, role)) {
+        it.remove();
+        continue;
+      }
+      if (!candidate.isUsable()) {
+        continue;
+      }
+      Integer load = rackLoad.get(candidate.getRack());
+      int candidateLoad = load != null ? load : 0;
+      if (candidateLoad < selectedLoad) {
+        selected = candidate;
+        selectedLoad = candidateLoad;
+      }
+    }
+    if (selected != null) {
+      targets.remove(selected);
+    }
+    return selected;
+  }
+
+  /**
+   * Review the placement of an allocated container against the placement
+   * policy of its role. This must be called before the container is
+   * assigned, so that it is not counted in the host and rack loads.
+   * @param container allocated container
+   * @param role role of the container
+   * @param requestFound was an outstanding request on the host satisfied
+   * by this allocation
+   * @param vacancies the number of instances of the role still wanted,
+   * including this one
+   * @return the policy from {@link PlacementPolicy} which the placement
+   * breaks, or {@link PlacementPolicy#DEFAULT} if it is acceptable
+   */
+  public synchronized int checkPlacement(Container container,
+                                         RoleStatus role,
+                                         boolean requestFound,
+                                         int vacancies) {
+    int roleKey = role.getKey();
+    NodeInstance node = getOrCreateNodeInstance(container);
+    if (role.getAntiAffinityRequired()
+        && node.getRoleLoad(roleKey) >= role.getMaxInstancesPerHost()) {
+      return PlacementPolicy.ANTI_AFFINITY_REQUIRED;
+    }
+    // an allocation elsewhere is only turned down if it would take the
+    // place of an instance which a request on a history host could fill
+    if (role.getStrictHistory() && !requestFound
+        && outstandingRequests.countRequestsForRole(roleKey) >= vacancies) {
+      return PlacementPolicy.STRICT_HISTORY;
+    }
+    if (role.getRackSpread() && !isLeastLoadedRack(node.getRack(), roleKey)) {
+      return PlacementPolicy.RACK_SPREAD;
+    }
+    return PlacementPolicy.DEFAULT;
+  }
+
+  /**
+   * Is a rack within {@link #RACK_SPREAD_TOLERANCE} of the lowest load of
+   * a role on any rack with usable nodes
+   * @param rack rack
+   * @param role role index
+   * @return true if an instance can be added to the rack without
+   * unbalancing the racks
+   */
+  private boolean isLeastLoadedRack(String rack, int role) {
+    Map<String, Integer> rackLoad = nodemap.buildRackLoad(role);
+    Integer load = rackLoad.get(rack);
+    if (rackLoad.size() <= 1 || load == null) {
+      return true;
+    }
+    return load <= Collections.min(rackLoad.values()) + RACK_SPREAD_TOLERANCE;
+  }
+
+  /**
+   * Cancel the requests for specific hosts made for a role under the
+   * strict-history policy which have been outstanding for longer than
+   * its timeout, so that the containers can be asked for anywhere.
+   * @param role role
+   * @return a possibly empty list of the requests cancelled
+   */
+  public synchronized List<OutstandingRequest> expireStrictRequests(
+      RoleStatus role) {
+    if (!role.getStrictHistory()) {
+      return new ArrayList<OutstandingRequest>(0);
+    }
+    return outstandingRequests.expireRequests(role.getKey(),
+        now() - role.getStrictPlacementTimeout());
+  }
+
+  /**
+   * Count the outstanding requests for specific hosts made for a role
+   * @param role role index
+   * @return the number of requests
+   */
+  public synchronized int countOutstandingRequests(int role) {
+    return outstandingRequests.countRequestsForRole(role);
+  }
+
+  /**
+   * Find the nodes which hold more instances of a role than its
+   * placement policy permits.
+   * @param role role
+   * @return a possibly empty list of nodes, most loaded first
+   */
+  public synchronized List<NodeInstance> findMisplacedNodes(RoleStatus role) {
+    if (!role.getAntiAffinityRequired()) {
+      return new ArrayList<NodeInstance>(0);
+    }
+    return nodemap.findOverloadedNodes(role.getKey(),
+                                       role.getMaxInstancesPerHost());
+  }
+
   /**
    * Request an instance on a given node.
    * An outstanding request is created & tracked, with the 
@@ -513,8 +1016,8 @@ public class RoleHistory {
 
 
   /**
-   * Find a list of node for release; algorithm may make its own
-   * decisions on which to release.
+   * Find a list of node for release, keeping the remaining instances
+   * spread across nodes and racks.
    * @param role role index
    * @param count number of nodes to release
    * @return a possibly empty list of nodes.
@@ -626,7 +1129,7 @@ public class RoleHistory {
   public void onContainerStarted(Container container) {
     NodeEntry nodeEntry = getOrCreateNodeEntry(container);
     nodeEntry.onStartCompleted();
-    touch();
+    touch(container);
   }
 
   /**
@@ -671,7 +1174,7 @@ public class RoleHistory {
 
   /**
    * Mark a container finished; if it was released then that is treated
-   * differently. history is touch()ed
+   * differently. The entry is marked as changed
    *
    *
    * @param container completed container
@@ -691,7 +1194,7 @@ public class RoleHistory {
       available = nodeEntry.containerCompleted(wasReleased);
       maybeQueueNodeForWork(container, nodeEntry, available);
     }
-    touch();
+    touch(container);
     return available;
   }
 
@@ -718,21 +1221,49 @@ public class RoleHistory {
   }
 
   /**
-   * Print the history to the log. This is for testing and diagnostics 
+   * Print the history to the log at debug level. This is for testing
+   * and diagnostics; the REST API offers a filtered view of a live AM's
+   * history without this cost
    */
   public synchronized void dump() {
+    if (!log.isDebugEnabled()) {
+      return;
+    }
     for (ProviderRole role : providerRoles) {
-      log.info(role.toString());
+      log.debug(role.toString());
       List<NodeInstance> instances =
         getOrCreateNodesForRoleId(role.id);
-      log.info("  available: " + instances.size()
+      log.debug("  available: " + instances.size()
                + " " + HoyaUtils.joinWithInnerSeparator(", ", instances));
     }
 
-    log.info("Nodes in Cluster: {}", getClusterSize());
+    log.debug("Nodes in Cluster: {}", getClusterSize());
     for (NodeInstance node : nodemap.values()) {
-      log.info(node.toFullString());
+      log.debug(node.toFullString());
+    }
+  }
+
+  /**
+   * List the nodes of some hosts, or all of them.
+   * The node instances are not copied: the list refers to the live
+   * instances, whose state is guarded by their own locks, so the history
+   * is only locked for as long as it takes to collect the references.
+   * @param hostnames hosts to list; empty for all hosts
+   * @return the nodes of those hosts which are in the history
+   */
+  public synchronized List<NodeInstance> listNodes(
+    Collection<String> hostnames) {
+    if (hostnames.isEmpty()) {
+      return new ArrayList<NodeInstance>(nodemap.values());
+    }
+    List<NodeInstance> nodes = new ArrayList<NodeInstance>(hostnames.size());
+    for (String hostname : hostnames) {
+      NodeInstance node = nodemap.get(hostname);
+      if (node != null) {
+        nodes.add(node);
+      }
     }
+    return nodes;
   }
 
   /**
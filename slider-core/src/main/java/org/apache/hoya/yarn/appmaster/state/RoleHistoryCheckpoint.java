@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.state;
+
+import org.apache.hoya.avro.NodeEntryRecord;
+
+import java.util.List;
+
+/**
+ * The records of a role history checkpoint, taken from the history
+ * so that they can be written without holding its lock.
+ * A full checkpoint holds every entry; a delta, only those changed since
+ * the previous checkpoint.
+ */
+public final class RoleHistoryCheckpoint {
+
+  /**
+   * Is this a full checkpoint?
+   */
+  public final boolean full;
+
+  /**
+   * Time of the checkpoint; unique across the checkpoints of a history
+   */
+  public final long time;
+
+  /**
+   * Number of roles in the history
+   */
+  public final int roles;
+
+  /**
+   * The entries
+   */
+  public final List<NodeEntryRecord> records;
+
+  public RoleHistoryCheckpoint(boolean full,
+                               long time,
+                               int roles,
+                               List<NodeEntryRecord> records) {
+    this.full = full;
+    this.time = time;
+    this.roles = roles;
+    this.records = records;
+  }
+
+  @Override
+  public String toString() {
+    return (full ? "full" : "delta") + " checkpoint at " + time
+           + " of " + records.size() + " entries";
+  }
+}
@@ -18,21 +18,40 @@
 
 package org.apache.hoya.yarn.appmaster.state;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.hoya.api.ClusterDescription;
+import org.apache.hoya.api.ClusterNode;
 import org.apache.hoya.api.proto.Messages;
 import org.apache.hoya.tools.HoyaUtils;
 
 import java.util.Arrays;
 
 /**
- * Tracking information about a container
+ * Tracking information about a container.
+ * <p>
+ * The container record, launch command and environment are only needed
+ * while the instance is active; {@link #compact()} drops them when
+ * the instance is moved into the completed or failed history.
  */
 public final class RoleInstance implements Cloneable {
 
+  /**
+   * Launch commands and environment entries are near-identical across
+   * the instances of a role, so they are shared through this interner
+   */
+  private static final Interner<String> STRINGS = Interners.newWeakInterner();
+
+  /**
+   * The container; null once the instance has been compacted
+   */
   public Container container;
+
+  private final ContainerId containerId;
+  private final NodeId nodeId;
   /**
    * UUID of container used in Hoya RPC to refer to instances. 
    * The string value of the container ID is used here.
@@ -45,6 +64,32 @@ public final class RoleInstance implements Cloneable {
    * already been targeted for termination
    */
   public boolean released;
+  /**
+   * Number of consecutive health probe failures
+   */
+  public int healthProbeFailures;
+  /**
+   * flag set once a health probe of the container has succeeded
+   */
+  public boolean healthProbePassed;
+  /**
+   * flag set when the provider reports that the component in the
+   * container has started
+   */
+  public volatile boolean componentStarted;
+  /**
+   * Time the provider reported that the component started; 0 if it has not
+   */
+  public volatile long componentStartTime;
+  /**
+   * Last load reported by the component, as a fraction of its capacity;
+   * negative if none has been reported
+   */
+  public volatile double load = -1;
+  /**
+   * Time the load was last reported
+   */
+  public volatile long loadTimestamp;
   public String role;
   public int roleId;
   /**
@@ -95,7 +140,9 @@ public final class RoleInstance implements Cloneable {
     if (container.getId() == null) {
       throw new NullPointerException("Null container ID");
     }
-    id = container.getId().toString();
+    containerId = container.getId();
+    nodeId = container.getNodeId();
+    id = containerId.toString();
     if (container.getNodeId() != null) {
       host = container.getNodeId().getHost();
     }
@@ -105,11 +152,48 @@ public final class RoleInstance implements Cloneable {
   }
 
   public ContainerId getId() {
-    return container.getId();
+    return containerId;
   }
   
   public NodeId getHost() {
-    return container.getNodeId();
+    return nodeId;
+  }
+
+  /**
+   * Record the launch command and environment of the instance.
+   * The strings are interned, so that instances of the same role
+   * share them.
+   * @param command launch command
+   * @param environment environment description
+   */
+  public void setLaunchDetails(String command, String[] environment) {
+    this.command = intern(command);
+    if (environment != null) {
+      String[] env = new String[environment.length];
+      for (int i = 0; i < environment.length; i++) {
+        env[i] = intern(environment[i]);
+      }
+      this.environment = env;
+    } else {
+      this.environment = null;
+    }
+  }
+
+  private static String intern(String s) {
+    return s != null ? STRINGS.intern(s) : null;
+  }
+
+  /**
+   * Drop everything not needed once the instance has finished:
+   * the container record, launch details, output and provider info.
+   * The ID, role, host, times and exit details are retained.
+   */
+  public void compact() {
+    container = null;
+    command = null;
+    environment = null;
+    output = null;
+    providerInfo = null;
   }
 
   @Override
@@ -136,7 +220,7 @@ public final class RoleInstance implements Cloneable {
   }
 
   public ContainerId getContainerId() {
-    return container != null ? container.getId() : null;
+    return containerId;
   }
 
   /**
@@ -146,11 +230,7 @@ public final class RoleInstance implements Cloneable {
   public Messages.RoleInstanceState toProtobuf() {
     Messages.RoleInstanceState.Builder builder =
       Messages.RoleInstanceState.newBuilder();
-    if (container != null) {
-      builder.setName(container.getId().toString());
-    } else {
-      builder.setName("unallocated instance");
-    }
+    builder.setName(id);
     if (command != null) {
       builder.setCommand(command);
     }
@@ -179,6 +259,33 @@ public final class RoleInstance implements Cloneable {
     return builder.build();
   }
 
+  /**
+   * Build the cluster node of this instance for the status document.
+   * This is equivalent to converting the protobuf form, without
+   * building and copying the intermediate message; the arrays are shared.
+   * @return a new cluster node
+   */
+  public ClusterNode toClusterNode() {
+    ClusterNode node = new ClusterNode(containerId);
+    node.command = command != null ? command : "";
+    node.diagnostics = diagnostics != null ? diagnostics : "";
+    if (environment != null && environment.length > 0) {
+      node.environment = environment;
+    }
+    node.exitCode = exitCode;
+    if (output != null && output.length > 0) {
+      node.output = output;
+    }
+    node.role = role != null ? role : "";
+    node.roleId = roleId;
+    node.state = state;
+    node.host = host;
+    node.createTime = createTime;
+    node.startTime = startTime;
+    node.released = released;
+    return node;
+  }
+
   /**
    * Clone operation clones all the simple values but shares the 
    * Container object into the cloned copy -same with the output,
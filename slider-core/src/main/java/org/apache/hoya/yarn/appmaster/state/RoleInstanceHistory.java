@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.state;
+
+import org.apache.hadoop.yarn.api.records.ContainerId;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded record of role instances which have completed or failed.
+ * It is kept in insertion order; once the retention limit is reached,
+ * each new entry evicts the oldest one, so the history acts as a ring
+ * whose size does not grow over the life of the application.
+ * <p>
+ * This class is not thread safe; wrap it with
+ * {@link java.util.Collections#synchronizedMap(Map)} for shared use.
+ */
+public class RoleInstanceHistory
+    extends LinkedHashMap<ContainerId, RoleInstance> {
+
+  private int retention;
+  private long evicted;
+
+  /**
+   * Create a history
+   * @param retention maximum number of entries to retain
+   */
+  public RoleInstanceHistory(int retention) {
+    setRetention(retention);
+  }
+
+  public int getRetention() {
+    return retention;
+  }
+
+  /**
+   * Set the retention limit. A reduced limit takes effect
+   * on the next insertion.
+   * @param retention maximum number of entries to retain; must be &gt; 0
+   */
+  public void setRetention(int retention) {
+    if (retention <= 0) {
+      throw new IllegalArgumentException(
+        "Invalid history retention " + retention);
+    }
+    this.retention = retention;
+  }
+
+  /**
+   * Get the number of entries evicted from the history
+   * @return the count of evicted entries
+   */
+  public long getEvicted() {
+    return evicted;
+  }
+
+  @Override
+  public RoleInstance put(ContainerId key, RoleInstance value) {
+    RoleInstance previous = super.put(key, value);
+    // trim anything left over from a reduction in the retention
+    while (size() > retention) {
+      ContainerId eldest = keySet().iterator().next();
+      remove(eldest);
+      evicted++;
+    }
+    return previous;
+  }
+}
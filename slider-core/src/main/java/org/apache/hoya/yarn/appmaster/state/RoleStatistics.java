@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.state;
+
+import org.apache.hoya.api.StatusKeys;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The counters of a role, in a fixed schema backed by an atomic array.
+ *
+ * Counters are updated in place and can be read without locking.
+ * They are only turned into a map at the serialization boundary, through
+ * {@link #asMap()}: a read-only view over the live counters which is
+ * created once per instance.
+ */
+public final class RoleStatistics {
+
+  public static final int DESIRED = 0;
+  public static final int ACTUAL = 1;
+  public static final int REQUESTED = 2;
+  public static final int RELEASING = 3;
+  public static final int FAILED = 4;
+  public static final int STARTED = 5;
+  public static final int START_FAILED = 6;
+  public static final int COMPLETED = 7;
+  public static final int TOTAL_REQUESTED = 8;
+  public static final int ANTI_AFFINITY_REREQUESTS = 9;
+  public static final int RACK_SPREAD_REREQUESTS = 10;
+  public static final int STRICT_HISTORY_REREQUESTS = 11;
+  public static final int SPARES = 12;
+  public static final int SPARE_PROMOTIONS = 13;
+  public static final int FAILOVER_MILLIS = 14;
+  public static final int UNHEALTHY_RELEASED = 15;
+  public static final int STARTUP_MILLIS = 16;
+
+  /**
+   * Number of counters
+   */
+  public static final int SIZE = 17;
+
+  /**
+   * The statistics keys of the exported counters
+   */
+  private static final String[] KEYS = new String[SIZE];
+
+  /**
+   * Indices of the exported counters, in export order
+   */
+  private static final int[] EXPORTED;
+
+  private static final Map<String, Integer> INDICES =
+    new HashMap<String, Integer>();
+
+  static {
+    KEYS[REQUESTED] = StatusKeys.STATISTICS_CONTAINERS_ACTIVE_REQUESTS;
+    KEYS[COMPLETED] = StatusKeys.STATISTICS_CONTAINERS_COMPLETED;
+    KEYS[DESIRED] = StatusKeys.STATISTICS_CONTAINERS_DESIRED;
+    KEYS[FAILED] = StatusKeys.STATISTICS_CONTAINERS_FAILED;
+    KEYS[ACTUAL] = StatusKeys.STATISTICS_CONTAINERS_LIVE;
+    KEYS[TOTAL_REQUESTED] = StatusKeys.STATISTICS_CONTAINERS_REQUESTED;
+    KEYS[STARTED] = StatusKeys.STATISTICS_CONTAINERS_STARTED;
+    KEYS[START_FAILED] = StatusKeys.STATISTICS_CONTAINERS_START_FAILED;
+    KEYS[ANTI_AFFINITY_REREQUESTS] =
+      StatusKeys.STATISTICS_CONTAINERS_ANTI_AFFINITY_REREQUESTS;
+    KEYS[RACK_SPREAD_REREQUESTS] =
+      StatusKeys.STATISTICS_CONTAINERS_RACK_SPREAD_REREQUESTS;
+    KEYS[STRICT_HISTORY_REREQUESTS] =
+      StatusKeys.STATISTICS_CONTAINERS_STRICT_HISTORY_REREQUESTS;
+    KEYS[SPARES] = StatusKeys.STATISTICS_CONTAINERS_WARM_SPARES;
+    KEYS[SPARE_PROMOTIONS] =
+      StatusKeys.STATISTICS_CONTAINERS_WARM_SPARE_PROMOTIONS;
+    KEYS[FAILOVER_MILLIS] =
+      StatusKeys.STATISTICS_CONTAINERS_WARM_SPARE_FAILOVER_MILLIS;
+    KEYS[UNHEALTHY_RELEASED] =
+      StatusKeys.STATISTICS_CONTAINERS_UNHEALTHY_RELEASED;
+    KEYS[STARTUP_MILLIS] =
+      StatusKeys.STATISTICS_CONTAINERS_COMPONENT_STARTUP_MILLIS;
+    int count = 0;
+    for (String key : KEYS) {
+      if (key != null) {
+        count++;
+      }
+    }
+    EXPORTED = new int[count];
+    int pos = 0;
+    for (int i = 0; i < SIZE; i++) {
+      if (KEYS[i] != null) {
+        EXPORTED[pos++] = i;
+        INDICES.put(KEYS[i], i);
+      }
+    }
+  }
+
+  private final AtomicIntegerArray counters;
+  private final Map<String, Integer> view = new StatisticsView();
+
+  public RoleStatistics() {
+    counters = new AtomicIntegerArray(SIZE);
+  }
+
+  /**
+   * Copy constructor
+   * @param that source
+   */
+  public RoleStatistics(RoleStatistics that) {
+    counters = new AtomicIntegerArray(SIZE);
+    for (int i = 0; i < SIZE; i++) {
+      counters.set(i, that.counters.get(i));
+    }
+  }
+
+  public int get(int counter) {
+    return counters.get(counter);
+  }
+
+  public void set(int counter, int value) {
+    counters.set(counter, value);
+  }
+
+  public int increment(int counter) {
+    return counters.incrementAndGet(counter);
+  }
+
+  public int add(int counter, int delta) {
+    return counters.addAndGet(counter, delta);
+  }
+
+  /**
+   * Decrement a counter, never going below zero
+   * @param counter counter index
+   * @return the new value
+   */
+  public int decrementToFloor(int counter) {
+    while (true) {
+      int current = counters.get(counter);
+      int next = Math.max(0, current - 1);
+      if (counters.compareAndSet(counter, current, next)) {
+        return next;
+      }
+    }
+  }
+
+  /**
+   * Get the exported counters as a read-only map. This is a view:
+   * it is not copied and always shows the current values
+   * @return a map of statistics key to value
+   */
+  public Map<String, Integer> asMap() {
+    return view;
+  }
+
+  /**
+   * Take a snapshot of the exported counters
+   * @return a new map of statistics key to value
+   */
+  public Map<String, Integer> toMap() {
+    Map<String, Integer> map =
+      new HashMap<String, Integer>(EXPORTED.length * 4 / 3 + 1);
+    for (int i : EXPORTED) {
+      map.put(KEYS[i], counters.get(i));
+    }
+    return map;
+  }
+
+  @Override
+  public String toString() {
+    return toMap().toString();
+  }
+
+  /**
+   * Read-only map view of the exported counters
+   */
+  private final class StatisticsView extends AbstractMap<String, Integer> {
+
+    private final Set<Entry<String, Integer>> entries =
+      new AbstractSet<Entry<String, Integer>>() {
+        @Override
+        public Iterator<Entry<String, Integer>> iterator() {
+          return new Iterator<Entry<String, Integer>>() {
+            private int pos = 0;
+
+            @Override
+            public boolean hasNext() {
+              return pos < EXPORTED.length;
+            }
+
+            @Override
+            public Entry<String, Integer> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              int i = EXPORTED[pos++];
+              return new SimpleImmutableEntry<String, Integer>(KEYS[i],
+                counters.get(i));
+            }
+
+            @Override
+            public void remove() {
+              throw new UnsupportedOperationException();
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return EXPORTED.length;
+        }
+      };
+
+    @Override
+    public Set<Entry<String, Integer>> entrySet() {
+      return entries;
+    }
+
+    @Override
+    public Integer get(Object key) {
+      Integer index = INDICES.get(key);
+      return index != null ? counters.get(index) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return INDICES.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+      return EXPORTED.length;
+    }
+  }
+}
@@ -18,17 +18,18 @@
 
 package org.apache.hoya.yarn.appmaster.state;
 
-import org.apache.hoya.api.StatusKeys;
+import org.apache.hoya.api.ResourceKeys;
 import org.apache.hoya.providers.PlacementPolicy;
 import org.apache.hoya.providers.ProviderRole;
 
-import java.util.HashMap;
 import java.util.Map;
 
 
 /**
- * Models the ongoing status of all nodes in  
- * Nothing here is synchronized: grab the whole instance to update.
+ * Models the ongoing status of all nodes in a role.
+ * The counters are held in a {@link RoleStatistics} instance, so can be
+ * updated and read without locking; the configuration of the role
+ * is synchronized.
  */
 public final class RoleStatus implements Cloneable {
 
@@ -44,10 +45,53 @@ public final class RoleStatus implements Cloneable {
 
   private final ProviderRole providerRole;
 
-  private int desired, actual, requested, releasing;
-  private int failed, started, startFailed, completed, totalRequested;
+  /**
+   * The counters; replaced with a copy on a clone
+   */
+  private RoleStatistics statistics = new RoleStatistics();
+
+  /**
+   * Maximum number of instances on a single host under anti-affinity
+   */
+  private int maxInstancesPerHost =
+    ResourceKeys.DEF_COMPONENT_PLACEMENT_MAX_PER_HOST;
+
+  /**
+   * Millis a strict-history request for a specific host may be outstanding
+   */
+  private long strictPlacementTimeout =
+    ResourceKeys.DEF_COMPONENT_PLACEMENT_STRICT_TIMEOUT * 1000L;
+
+  /**
+   * Placement re-requests permitted between reviews, and the number
+   * made since the last one
+   */
+  private int maxPlacementRerequests =
+    ResourceKeys.DEF_COMPONENT_PLACEMENT_MAX_REREQUESTS;
+  private int placementRerequestsSinceReview;
+
+  /**
+   * Number of warm spares desired
+   */
+  private int warmSpares;
+
+  /**
+   * Health probing: the port and optional HTTP path to probe,
+   * the consecutive failure threshold and the bootstrap time in millis
+   */
+  private int healthProbePort;
+  private String healthProbePath;
+  private int healthProbeFailureThreshold =
+    ResourceKeys.DEF_COMPONENT_HEALTH_PROBE_FAILURE_THRESHOLD;
+  private long healthProbeBootstrapTime =
+    ResourceKeys.DEF_COMPONENT_HEALTH_PROBE_BOOTSTRAP_TIMEOUT * 1000L;
+
+  /**
+   * Autoscaling policy; disabled unless the resources enable it
+   */
+  private AutoscalePolicy autoscalePolicy = AutoscalePolicy.DISABLED;
 
-  private String failureMessage = "";
+  private volatile String failureMessage = "";
 
   public RoleStatus(ProviderRole providerRole) {
     this.providerRole = providerRole;
@@ -84,62 +128,258 @@ public final class RoleStatus implements Cloneable {
     return 0 != (getPlacementPolicy() & PlacementPolicy.NO_DATA_LOCALITY);
   }
 
+  public boolean getAntiAffinityRequired() {
+    return 0 != (getPlacementPolicy() & PlacementPolicy.ANTI_AFFINITY_REQUIRED);
+  }
+
+  public boolean getRackSpread() {
+    return 0 != (getPlacementPolicy() & PlacementPolicy.RACK_SPREAD);
+  }
+
+  public boolean getStrictHistory() {
+    return 0 != (getPlacementPolicy() & PlacementPolicy.STRICT_HISTORY);
+  }
+
+  public synchronized int getMaxInstancesPerHost() {
+    return maxInstancesPerHost;
+  }
+
+  public synchronized void setMaxInstancesPerHost(int maxInstancesPerHost) {
+    this.maxInstancesPerHost = Math.max(1, maxInstancesPerHost);
+  }
+
+  public synchronized long getStrictPlacementTimeout() {
+    return strictPlacementTimeout;
+  }
+
+  public synchronized void setStrictPlacementTimeout(long millis) {
+    this.strictPlacementTimeout = Math.max(0, millis);
+  }
+
+  public synchronized int getMaxPlacementRerequests() {
+    return maxPlacementRerequests;
+  }
+
+  public synchronized void setMaxPlacementRerequests(int maxRerequests) {
+    this.maxPlacementRerequests = Math.max(0, maxRerequests);
+  }
+
+  /**
+   * Can another container be released and asked for again because of
+   * its placement before the next review
+   * @return true if the limit per review has not been reached
+   */
+  public synchronized boolean canRerequestPlacement() {
+    return placementRerequestsSinceReview < maxPlacementRerequests;
+  }
+
+  /**
+   * The cluster is being reviewed: reset the count of placement re-requests
+   */
+  public synchronized void resetPlacementRerequests() {
+    placementRerequestsSinceReview = 0;
+  }
+
+  /**
+   * Note that a container was released and re-requested because it
+   * broke one of the placement policies in {@link PlacementPolicy}
+   * @param policy the policy that forced the re-request
+   */
+  public void notePlacementRerequest(int policy) {
+    synchronized (this) {
+      placementRerequestsSinceReview++;
+    }
+    switch (policy) {
+      case PlacementPolicy.ANTI_AFFINITY_REQUIRED:
+        statistics.increment(RoleStatistics.ANTI_AFFINITY_REREQUESTS);
+        break;
+      case PlacementPolicy.RACK_SPREAD:
+        statistics.increment(RoleStatistics.RACK_SPREAD_REREQUESTS);
+        break;
+      case PlacementPolicy.STRICT_HISTORY:
+        statistics.increment(RoleStatistics.STRICT_HISTORY_REREQUESTS);
+        break;
+      default:
+        break;
+    }
+  }
+
+  public int getAntiAffinityRerequests() {
+    return statistics.get(RoleStatistics.ANTI_AFFINITY_REREQUESTS);
+  }
+
+  public int getRackSpreadRerequests() {
+    return statistics.get(RoleStatistics.RACK_SPREAD_REREQUESTS);
+  }
+
+  public int getStrictHistoryRerequests() {
+    return statistics.get(RoleStatistics.STRICT_HISTORY_REREQUESTS);
+  }
+
+  public synchronized int getWarmSpares() {
+    return warmSpares;
+  }
+
+  public synchronized void setWarmSpares(int warmSpares) {
+    this.warmSpares = Math.max(0, warmSpares);
+  }
+
+  /**
+   * Get the number of allocated containers currently held as warm spares
+   * @return the current spare count
+   */
+  public int getSpares() {
+    return statistics.get(RoleStatistics.SPARES);
+  }
+
+  public int incSpares() {
+    return statistics.increment(RoleStatistics.SPARES);
+  }
+
+  public int decSpares() {
+    return statistics.decrementToFloor(RoleStatistics.SPARES);
+  }
+
+  public int getSparePromotions() {
+    return statistics.get(RoleStatistics.SPARE_PROMOTIONS);
+  }
+
+  /**
+   * Note that a warm spare has been promoted to replace a failed instance
+   */
+  public void incSparePromotions() {
+    statistics.increment(RoleStatistics.SPARE_PROMOTIONS);
+  }
+
+  public long getLastFailoverLatency() {
+    return statistics.get(RoleStatistics.FAILOVER_MILLIS);
+  }
+
+  public void setLastFailoverLatency(long lastFailoverLatency) {
+    statistics.set(RoleStatistics.FAILOVER_MILLIS,
+                   (int) Math.min(Integer.MAX_VALUE, lastFailoverLatency));
+  }
+
+  public long getLastStartupLatency() {
+    return statistics.get(RoleStatistics.STARTUP_MILLIS);
+  }
+
+  /**
+   * Note the time from a container starting to its component
+   * being reported as started
+   * @param startupLatency latency in millis
+   */
+  public void setLastStartupLatency(long startupLatency) {
+    statistics.set(RoleStatistics.STARTUP_MILLIS,
+                   (int) Math.min(Integer.MAX_VALUE, startupLatency));
+  }
+
+  public synchronized int getHealthProbePort() {
+    return healthProbePort;
+  }
+
+  public synchronized void setHealthProbePort(int healthProbePort) {
+    this.healthProbePort = Math.max(0, healthProbePort);
+  }
+
+  public synchronized String getHealthProbePath() {
+    return healthProbePath;
+  }
+
+  public synchronized void setHealthProbePath(String healthProbePath) {
+    this.healthProbePath = healthProbePath;
+  }
+
+  public synchronized int getHealthProbeFailureThreshold() {
+    return healthProbeFailureThreshold;
+  }
+
+  public synchronized void setHealthProbeFailureThreshold(int threshold) {
+    this.healthProbeFailureThreshold = Math.max(1, threshold);
+  }
+
+  public synchronized long getHealthProbeBootstrapTime() {
+    return healthProbeBootstrapTime;
+  }
+
+  public synchronized void setHealthProbeBootstrapTime(long millis) {
+    this.healthProbeBootstrapTime = Math.max(0, millis);
+  }
+
+  public synchronized AutoscalePolicy getAutoscalePolicy() {
+    return autoscalePolicy;
+  }
+
+  public synchronized void setAutoscalePolicy(AutoscalePolicy policy) {
+    this.autoscalePolicy = policy;
+  }
+
+  /**
+   * Is health probing enabled for this role
+   * @return true if there is a port to probe
+   */
+  public synchronized boolean isHealthProbed() {
+    return healthProbePort > 0;
+  }
+
+  public int getUnhealthyReleased() {
+    return statistics.get(RoleStatistics.UNHEALTHY_RELEASED);
+  }
+
+  /**
+   * Note that a container has been released as unhealthy
+   */
+  public void incUnhealthyReleased() {
+    statistics.increment(RoleStatistics.UNHEALTHY_RELEASED);
+  }
+
   public int getDesired() {
-    return desired;
+    return statistics.get(RoleStatistics.DESIRED);
   }
 
   public void setDesired(int desired) {
-    this.desired = desired;
+    statistics.set(RoleStatistics.DESIRED, desired);
   }
 
   public int getActual() {
-    return actual;
+    return statistics.get(RoleStatistics.ACTUAL);
   }
 
   public int incActual() {
-    return ++actual;
+    return statistics.increment(RoleStatistics.ACTUAL);
   }
 
   public int decActual() {
-    if (0 > --actual) {
-      actual = 0;
-    }
-    return actual;
+    return statistics.decrementToFloor(RoleStatistics.ACTUAL);
   }
 
-  public synchronized int getRequested() {
-    return requested;
+  public int getRequested() {
+    return statistics.get(RoleStatistics.REQUESTED);
   }
 
-  public synchronized int incRequested() {
-    totalRequested++;
-    return ++requested;
+  public int incRequested() {
+    statistics.increment(RoleStatistics.TOTAL_REQUESTED);
+    return statistics.increment(RoleStatistics.REQUESTED);
   }
 
-  public synchronized int decRequested() {
-    if (0 > --requested) {
-      requested = 0;
-    }
-    return requested;
+  public int decRequested() {
+    return statistics.decrementToFloor(RoleStatistics.REQUESTED);
   }
 
   public int getReleasing() {
-    return releasing;
+    return statistics.get(RoleStatistics.RELEASING);
   }
 
   public int incReleasing() {
-    return ++releasing;
+    return statistics.increment(RoleStatistics.RELEASING);
   }
 
   public int decReleasing() {
-    if (0 > --releasing) {
-      releasing = 0;
-    }
-    return releasing;
+    return statistics.decrementToFloor(RoleStatistics.RELEASING);
   }
 
   public int getFailed() {
-    return failed;
+    return statistics.get(RoleStatistics.FAILED);
   }
 
   /**
@@ -149,18 +389,18 @@ public final class RoleStatus implements Cloneable {
    * @param text text about the failure
    */
   public void noteFailed(String text) {
-    failed++;
+    statistics.increment(RoleStatistics.FAILED);
     if (text != null) {
       failureMessage = text;
     }
   }
 
   public int getStartFailed() {
-    return startFailed;
+    return statistics.get(RoleStatistics.START_FAILED);
   }
 
   public void incStartFailed() {
-    startFailed++;
+    statistics.increment(RoleStatistics.START_FAILED);
   }
 
   public String getFailureMessage() {
@@ -168,42 +408,53 @@ public final class RoleStatus implements Cloneable {
   }
 
   public int getCompleted() {
-    return completed;
+    return statistics.get(RoleStatistics.COMPLETED);
   }
 
   public void setCompleted(int completed) {
-    this.completed = completed;
+    statistics.set(RoleStatistics.COMPLETED, completed);
   }
 
   public void incCompleted() {
-    completed ++;
+    statistics.increment(RoleStatistics.COMPLETED);
   }
   public int getStarted() {
-    return started;
+    return statistics.get(RoleStatistics.STARTED);
   }
 
   public void incStarted() {
-    started++;
+    statistics.increment(RoleStatistics.STARTED);
+  }
+
+  /**
+   * Add the instances found live on an AM restart: they
+   * count as both actual and started
+   * @param count number of instances
+   */
+  public void addRestartedInstances(int count) {
+    statistics.add(RoleStatistics.ACTUAL, count);
+    statistics.add(RoleStatistics.STARTED, count);
   }
 
   public int getTotalRequested() {
-    return totalRequested;
+    return statistics.get(RoleStatistics.TOTAL_REQUESTED);
   }
 
   /**
    * Get the number of roles we are short of.
-   * nodes released are ignored.
+   * nodes released are ignored; warm spares count towards the
+   * number of containers wanted.
    * @return the positive or negative number of roles to add/release.
    * 0 means "do nothing".
    */
   public synchronized int getDelta() {
-    int inuse = actual + requested;
+    int inuse = getActual() + getRequested();
     //don't know how to view these. Are they in-use or not?
     //inuse += releasing;
-    int delta = desired - inuse;
+    int delta = getDesired() + warmSpares - inuse;
     if (delta < 0) {
       //if we are releasing, remove the number that are already released.
-      delta += releasing;
+      delta += getReleasing();
       //but never switch to a positive
       delta = Math.min(delta, 0);
     }
@@ -215,14 +466,15 @@ public final class RoleStatus implements Cloneable {
     return "RoleStatus{" +
            "name='" + name + '\'' +
            ", key=" + key +
-           ", desired=" + desired +
-           ", actual=" + actual +
-           ", requested=" + requested +
-           ", releasing=" + releasing +
-           ", failed=" + failed +
-           ", started=" + started +
-           ", startFailed=" + startFailed +
-           ", completed=" + completed +
+           ", desired=" + getDesired() +
+           ", actual=" + getActual() +
+           ", requested=" + getRequested() +
+           ", releasing=" + getReleasing() +
+           ", failed=" + getFailed() +
+           ", started=" + getStarted() +
+           ", startFailed=" + getStartFailed() +
+           ", completed=" + getCompleted() +
+           ", spares=" + getSpares() + "/" + warmSpares +
            ", failureMessage='" + failureMessage + '\'' +
            
            '}';
@@ -230,7 +482,9 @@ public final class RoleStatus implements Cloneable {
 
   @Override
   public Object clone() throws CloneNotSupportedException {
-    return super.clone();
+    RoleStatus cloned = (RoleStatus) super.clone();
+    cloned.statistics = new RoleStatistics(statistics);
+    return cloned;
   }
 
   /**
@@ -242,19 +496,19 @@ public final class RoleStatus implements Cloneable {
   }
 
   /**
-   * Build the statistics map from the current data
+   * Get the counters of this role
+   * @return the statistics
+   */
+  public RoleStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Build the statistics map from the current data.
+   * This is a read-only view over the live counters, not a copy
    * @return a map for use in statistics reports
    */
   public Map<String, Integer> buildStatistics() {
-    Map<String, Integer> stats = new HashMap<String, Integer>();
-    stats.put(StatusKeys.STATISTICS_CONTAINERS_ACTIVE_REQUESTS, getRequested());
-    stats.put(StatusKeys.STATISTICS_CONTAINERS_COMPLETED, getCompleted());
-    stats.put(StatusKeys.STATISTICS_CONTAINERS_DESIRED, getDesired());
-    stats.put(StatusKeys.STATISTICS_CONTAINERS_FAILED, getFailed());
-    stats.put(StatusKeys.STATISTICS_CONTAINERS_LIVE, getActual());
-    stats.put(StatusKeys.STATISTICS_CONTAINERS_REQUESTED, getTotalRequested());
-    stats.put(StatusKeys.STATISTICS_CONTAINERS_STARTED, getStarted());
-    stats.put(StatusKeys.STATISTICS_CONTAINERS_START_FAILED, getStartFailed());
-    return stats;
+    return statistics.asMap();
   }
 }
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.state;
+
+import org.apache.hadoop.yarn.api.records.ContainerId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The progress of a rolling restart of one role: the instances still
+ * to be replaced, and those of the current batch which are on their way
+ * out. Batches are released by the {@link AppState}; the replacement
+ * instances are requested by the normal review of the role.
+ */
+public final class RollingRestart {
+
+  private final String role;
+  private final int roleId;
+  private final int batchSize;
+  private final boolean waitForComponentStart;
+  private final long startTime;
+  private final LinkedList<ContainerId> pending;
+  private final Set<ContainerId> releasing = new HashSet<ContainerId>();
+  private int restarted;
+  private int batches;
+  private long finishTime;
+
+  /**
+   * Create a restart
+   * @param role role name
+   * @param roleId role ID
+   * @param batchSize number of instances to replace at a time
+   * @param waitForComponentStart must the component of a replacement have
+   * been reported as started before the next batch is released
+   * @param instances the instances to replace
+   * @param startTime time the restart was started
+   */
+  public RollingRestart(String role,
+                        int roleId,
+                        int batchSize,
+                        boolean waitForComponentStart,
+                        Collection<ContainerId> instances,
+                        long startTime) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be positive: "
+                                         + batchSize);
+    }
+    this.role = role;
+    this.roleId = roleId;
+    this.batchSize = batchSize;
+    this.waitForComponentStart = waitForComponentStart;
+    this.pending = new LinkedList<ContainerId>(instances);
+    this.startTime = startTime;
+  }
+
+  public String getRole() {
+    return role;
+  }
+
+  public int getRoleId() {
+    return roleId;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public boolean isWaitForComponentStart() {
+    return waitForComponentStart;
+  }
+
+  public long getStartTime() {
+    return startTime;
+  }
+
+  public synchronized long getFinishTime() {
+    return finishTime;
+  }
+
+  public synchronized boolean isFinished() {
+    return finishTime > 0;
+  }
+
+  public synchronized int getRestarted() {
+    return restarted;
+  }
+
+  public synchronized int getBatches() {
+    return batches;
+  }
+
+  /**
+   * Get the number of instances not yet replaced, including those
+   * of the current batch
+   * @return the count of remaining instances
+   */
+  public synchronized int getRemaining() {
+    return pending.size() + releasing.size();
+  }
+
+  /**
+   * Is an instance one which has yet to be replaced
+   * @param id container ID
+   * @return true if it is pending or in the current batch
+   */
+  public synchronized boolean isToBeReplaced(ContainerId id) {
+    return pending.contains(id) || releasing.contains(id);
+  }
+
+  /**
+   * Note that a container of the current batch has gone
+   * @param id container ID
+   */
+  public synchronized void onContainerCompleted(ContainerId id) {
+    if (releasing.remove(id)) {
+      restarted++;
+    }
+  }
+
+  /**
+   * Has every container of the current batch gone
+   * @return true if the batch has been released
+   */
+  public synchronized boolean isBatchReleased() {
+    return releasing.isEmpty();
+  }
+
+  /**
+   * Remove a pending instance, as it has gone without being released
+   * by this restart
+   * @param id container ID
+   */
+  public synchronized void forget(ContainerId id) {
+    pending.remove(id);
+  }
+
+  /**
+   * Take the next batch of instances to release
+   * @return up to the batch size of container IDs; empty when there
+   * are none left to replace
+   */
+  public synchronized List<ContainerId> nextBatch() {
+    List<ContainerId> batch = new ArrayList<ContainerId>(batchSize);
+    while (batch.size() < batchSize && !pending.isEmpty()) {
+      batch.add(pending.removeFirst());
+    }
+    if (!batch.isEmpty()) {
+      releasing.addAll(batch);
+      batches++;
+    }
+    return batch;
+  }
+
+  /**
+   * Get a copy of the instances still pending
+   * @return the pending container IDs, in release order
+   */
+  public synchronized List<ContainerId> getPending() {
+    return new ArrayList<ContainerId>(pending);
+  }
+
+  /**
+   * Get a copy of the instances of the current batch not yet gone
+   * @return the container IDs being released
+   */
+  public synchronized List<ContainerId> getReleasing() {
+    return new ArrayList<ContainerId>(releasing);
+  }
+
+  /**
+   * Mark the restart as finished
+   * @param time finish time
+   */
+  public synchronized void finished(long time) {
+    pending.clear();
+    releasing.clear();
+    finishTime = time;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "RollingRestart{" + role +
+           ": batch size " + batchSize +
+           ", restarted " + restarted +
+           ", remaining " + getRemaining() +
+           ", batches " + batches +
+           (isFinished() ? ", finished" : "") +
+           '}';
+  }
+}
@@ -163,4 +163,34 @@ public interface StateAccessForProviders {
    * @param providerStatus status from the provider for the cluster info section
    */
   void refreshClusterStatus();
+
+  /**
+   * Is a container a warm spare: allocated and prepared for its role,
+   * but with its component not to be started until it is promoted
+   * to replace a failed instance.
+   * @param containerId the container ID
+   * @return true if the container is an unpromoted warm spare
+   */
+  boolean isWarmSpare(String containerId);
+
+  /**
+   * Notify the state that the component in a container has started.
+   * If the container was a promoted warm spare, the failover latency
+   * is recorded.
+   * @param containerId the container ID
+   */
+  void onComponentStarted(String containerId);
+
+  /**
+   * Record the load a component reports, for the autoscaler
+   * @param containerId the container ID
+   * @param load load as a fraction of the component's capacity
+   */
+  void onComponentLoad(String containerId, double load);
+
+  /**
+   * Get the role history
+   * @return the history of role placement
+   */
+  RoleHistory getRoleHistory();
 }
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hoya.yarn.appmaster.web;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.mortbay.thread.ThreadPool;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Jetty thread pool with a fixed number of threads and a bounded
+ * queue of jobs waiting for them.
+ * <p>
+ * When the queue is full a dispatch is refused; Jetty leaves the
+ * connection in its selector and retries it later, so excess load backs
+ * up in the agents' connections rather than in the AM's memory.
+ * The refusals and the longest time a job waited in the queue are counted.
+ */
+public class AgentRequestThreadPool implements ThreadPool {
+
+  private final ThreadPoolExecutor executor;
+  private final AtomicInteger rejected = new AtomicInteger();
+  private final AtomicLong maxQueueWait = new AtomicLong();
+
+  /**
+   * Create the pool
+   * @param name prefix for thread names
+   * @param threads number of threads
+   * @param queue maximum number of jobs queued for a thread
+   */
+  public AgentRequestThreadPool(String name, int threads, int queue) {
+    executor = new ThreadPoolExecutor(threads, threads,
+                                      60, TimeUnit.SECONDS,
+                                      new ArrayBlockingQueue<Runnable>(queue),
+                                      new ThreadFactoryBuilder()
+                                        .setDaemon(true)
+                                        .setNameFormat(name + "-%d")
+                                        .build());
+  }
+
+  @Override
+  public boolean dispatch(Runnable job) {
+    try {
+      executor.execute(new QueuedJob(job));
+      return true;
+    } catch (RejectedExecutionException e) {
+      rejected.incrementAndGet();
+      return false;
+    }
+  }
+
+  @Override
+  public void join() throws InterruptedException {
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public int getThreads() {
+    return executor.getPoolSize();
+  }
+
+  @Override
+  public int getIdleThreads() {
+    return executor.getPoolSize() - executor.getActiveCount();
+  }
+
+  @Override
+  public boolean isLowOnThreads() {
+    return !executor.getQueue().isEmpty();
+  }
+
+  /**
+   * Stop the threads, interrupting any running jobs
+   */
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+  public int getActiveThreads() {
+    return executor.getActiveCount();
+  }
+
+  public int getQueued() {
+    return executor.getQueue().size();
+  }
+
+  public int getRejected() {
+    return rejected.get();
+  }
+
+  public long getMaxQueueWait() {
+    return maxQueueWait.get();
+  }
+
+  /**
+   * A job which records how long it waited to run
+   */
+  private class QueuedJob implements Runnable {
+    private final Runnable job;
+    private final long queued = System.currentTimeMillis();
+
+    private QueuedJob(Runnable job) {
+      this.job = job;
+    }
+
+    @Override
+    public void run() {
+      long wait = System.currentTimeMillis() - queued;
+      long max = maxQueueWait.get();
+      while (wait > max && !maxQueueWait.compareAndSet(max, wait)) {
+        max = maxQueueWait.get();
+      }
+      job.run();
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hoya.yarn.appmaster.web;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.service.AbstractService;
+import org.apache.hoya.HoyaXmlConfKeys;
+import org.apache.hoya.api.StatusKeys;
+import org.apache.hoya.yarn.appmaster.web.rest.RestPaths;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.AgentRequestMetrics;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.AgentServlet;
+import org.mortbay.jetty.Server;
+import org.mortbay.jetty.nio.SelectChannelConnector;
+import org.mortbay.jetty.servlet.Context;
+import org.mortbay.jetty.servlet.ServletHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * A lightweight HTTP server for agent requests, separate from the
+ * AM's web application.
+ * <p>
+ * Agent registrations and heartbeats are served by an {@link AgentServlet}
+ * on their usual paths, with a thread pool and request queue of their own,
+ * so agent liveness does not depend on how busy the web UI and the
+ * management and publisher REST APIs are.
+ */
+public class AgentWebService extends AbstractService {
+  protected static final Logger log =
+    LoggerFactory.getLogger(AgentWebService.class);
+
+  /**
+   * Acceptor threads of the connector; they are taken from the pool
+   */
+  private static final int ACCEPTORS = 1;
+
+  private final WebAppApi slider;
+  private final AgentRequestMetrics metrics = new AgentRequestMetrics();
+  private Server server;
+  private SelectChannelConnector connector;
+  private AgentRequestThreadPool threadPool;
+
+  public AgentWebService(String name, WebAppApi slider) {
+    super(name);
+    this.slider = slider;
+  }
+
+  @Override
+  protected void serviceInit(Configuration conf) throws Exception {
+    super.serviceInit(conf);
+    int threads = conf.getInt(HoyaXmlConfKeys.KEY_AGENT_WEB_THREADS,
+                              HoyaXmlConfKeys.DEFAULT_AGENT_WEB_THREADS);
+    int queue = conf.getInt(HoyaXmlConfKeys.KEY_AGENT_WEB_QUEUE,
+                            HoyaXmlConfKeys.DEFAULT_AGENT_WEB_QUEUE);
+    if (threads <= 0 || queue <= 0) {
+      throw new IllegalArgumentException(
+        "Agent web threads and queue must be positive: "
+        + threads + ", " + queue);
+    }
+    threadPool = new AgentRequestThreadPool(getName(),
+                                            threads + ACCEPTORS,
+                                            queue);
+    connector = new SelectChannelConnector();
+    connector.setPort(conf.getInt(HoyaXmlConfKeys.KEY_AGENT_WEB_PORT, 0));
+    connector.setAcceptors(ACCEPTORS);
+    connector.setAcceptQueueSize(queue);
+    connector.setThreadPool(threadPool);
+
+    server = new Server();
+    server.setThreadPool(threadPool);
+    server.addConnector(connector);
+    Context context = new Context(server, "/", Context.NO_SESSIONS);
+    context.addServlet(new ServletHolder(new AgentServlet(slider, metrics)),
+                       RestPaths.SLIDER_PATH_AGENTS + "/*");
+  }
+
+  @Override
+  protected void serviceStart() throws Exception {
+    super.serviceStart();
+    server.start();
+    log.info("Agent requests served on port {}", getPort());
+  }
+
+  @Override
+  protected void serviceStop() throws Exception {
+    if (server != null) {
+      server.stop();
+    }
+    if (threadPool != null) {
+      threadPool.stop();
+    }
+    super.serviceStop();
+  }
+
+  /**
+   * Get the port the server is listening on
+   * @return the port, or -1 if the server is not started
+   */
+  public int getPort() {
+    return connector != null ? connector.getLocalPort() : -1;
+  }
+
+  public AgentRequestMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Add the request metrics and the state of the thread pool
+   * to a statistics map
+   * @param stats map to update
+   */
+  public void addStatistics(Map<String, Integer> stats) {
+    stats.putAll(metrics.asMap());
+    stats.put(StatusKeys.STATISTICS_AGENT_WEB_THREADS_ACTIVE,
+              threadPool.getActiveThreads());
+    stats.put(StatusKeys.STATISTICS_AGENT_WEB_QUEUED,
+              threadPool.getQueued());
+    stats.put(StatusKeys.STATISTICS_AGENT_WEB_REJECTED,
+              threadPool.getRejected());
+    stats.put(StatusKeys.STATISTICS_AGENT_WEB_QUEUE_WAIT_MAX,
+              (int) threadPool.getMaxQueueWait());
+  }
+}
@@ -28,6 +28,7 @@ import org.apache.hadoop.yarn.webapp.GenericExceptionHandler;
 import org.apache.hadoop.yarn.webapp.WebApp;
 import org.apache.hoya.yarn.appmaster.web.rest.AMWebServices;
 import org.apache.hoya.yarn.appmaster.web.rest.SliderJacksonJaxbJsonProvider;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.AgentLongPollServlet;
 import org.apache.slider.core.registry.info.ServiceInstanceData;
 import org.apache.slider.server.services.curator.CuratorHelper;
 import org.apache.slider.server.services.curator.RegistryBinderService;
@@ -93,6 +94,10 @@ public class HoyaAMWebApp extends WebApp {
       serve(path).with(Dispatcher.class);
     }
 
+    // long-polling agent heartbeats; Jersey forwards them here
+    serveRegex(AgentLongPollServlet.PATH_REGEX)
+      .with(AgentLongPollServlet.class);
+
     String regex = "(?!/ws)";
     serveRegex(regex).with(SliderDefaultWrapperServlet.class);
 
@@ -20,6 +20,7 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.apache.hoya.yarn.appmaster.web.WebAppApi;
 import org.apache.hoya.yarn.appmaster.web.rest.agent.AgentResource;
+import org.apache.hoya.yarn.appmaster.web.rest.history.RoleHistoryResource;
 import org.apache.hoya.yarn.appmaster.web.rest.management.ManagementResource;
 import org.apache.hoya.yarn.appmaster.web.rest.publisher.PublisherResource;
 
@@ -51,4 +52,9 @@ public class AMWebServices {
   public PublisherResource getPublisherResource() {
     return new PublisherResource(slider);
   }
+
+  @Path(RestPaths.SLIDER_SUBPATH_HISTORY)
+  public RoleHistoryResource getRoleHistoryResource() {
+    return new RoleHistoryResource(slider);
+  }
 }
@@ -28,6 +28,7 @@ public class RestPaths {
   public static final String SLIDER_SUBPATH_MANAGEMENT = "/mgmt";
   public static final String SLIDER_SUBPATH_AGENTS = "/agents";
   public static final String SLIDER_SUBPATH_PUBLISHER = "/publisher";
+  public static final String SLIDER_SUBPATH_HISTORY = "/history";
 
   public static final String SLIDER_PATH_MANAGEMENT = SLIDER_CONTEXT_ROOT
                                       + SLIDER_SUBPATH_MANAGEMENT;
@@ -37,6 +38,14 @@ public class RestPaths {
   public static final String SLIDER_PATH_PUBLISHER = SLIDER_CONTEXT_ROOT
                                       + SLIDER_SUBPATH_PUBLISHER;
 
+  public static final String SLIDER_PATH_HISTORY = SLIDER_CONTEXT_ROOT
+                                      + SLIDER_SUBPATH_HISTORY;
+
+  /**
+   * Subpath under an agent for long-polling heartbeats
+   */
+  public static final String SLIDER_SUBPATH_POLL = "/heartbeat/poll";
+
   public static final String SLIDER_SUBPATH_REGISTRY = "/registry";
   public static final String SLIDER_PATH_REGISTRY = WS_CONTEXT_ROOT
                                                     + SLIDER_SUBPATH_REGISTRY;
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hoya.yarn.appmaster.web.rest.agent;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.hoya.yarn.appmaster.web.WebAppApi;
+import org.apache.hoya.yarn.appmaster.web.rest.RestPaths;
+
+/**
+ * Long-polling agent heartbeats in the main web application.
+ * <p>
+ * A heartbeat POSTed to {@link #PATH_REGEX} is handled like one sent to
+ * {@link AgentResource}, but is held open while idle as described in
+ * {@link AgentServlet}. Jersey resource methods
+ * cannot be suspended, which is why this is a servlet; Jersey forwards
+ * the requests here.
+ */
+@Singleton
+public class AgentLongPollServlet extends AgentServlet {
+
+  /**
+   * Paths served: {@value}
+   */
+  public static final String PATH_REGEX = RestPaths.SLIDER_PATH_AGENTS
+                                          + "/[a-zA-Z][a-zA-Z_0-9]*"
+                                          + RestPaths.SLIDER_SUBPATH_POLL;
+
+  @Inject
+  public AgentLongPollServlet(WebAppApi slider) {
+    super(slider, new AgentRequestMetrics());
+  }
+}
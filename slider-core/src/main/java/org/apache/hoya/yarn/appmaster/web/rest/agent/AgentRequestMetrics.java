@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hoya.yarn.appmaster.web.rest.agent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request counts and latencies of the agent REST endpoints.
+ * Updates are lock-free; a snapshot of the values can be taken at any time
+ * for the statistics section of the cluster status.
+ */
+public class AgentRequestMetrics {
+
+  public static final String REQUESTS = ".requests";
+  public static final String FAILURES = ".failures";
+  public static final String LATENCY_MEAN = ".latency.mean.millis";
+  public static final String LATENCY_MAX = ".latency.max.millis";
+
+  private final ConcurrentMap<String, Endpoint> endpoints =
+    new ConcurrentHashMap<String, Endpoint>();
+
+  /**
+   * Record a completed request
+   * @param endpoint endpoint name
+   * @param millis time from the request being dispatched to its response
+   * being written
+   * @param succeeded false if an error was returned
+   */
+  public void record(String endpoint, long millis, boolean succeeded) {
+    getEndpoint(endpoint).record(millis, succeeded);
+  }
+
+  /**
+   * Get the number of requests to an endpoint
+   * @param endpoint endpoint name
+   * @return the count of completed requests
+   */
+  public long getRequests(String endpoint) {
+    Endpoint e = endpoints.get(endpoint);
+    return e != null ? e.requests.get() : 0;
+  }
+
+  /**
+   * Get the number of failed requests to an endpoint
+   * @param endpoint endpoint name
+   * @return the count of requests which returned an error
+   */
+  public long getFailures(String endpoint) {
+    Endpoint e = endpoints.get(endpoint);
+    return e != null ? e.failures.get() : 0;
+  }
+
+  /**
+   * Get the longest time taken by a request to an endpoint
+   * @param endpoint endpoint name
+   * @return the latency in millis
+   */
+  public long getMaxLatency(String endpoint) {
+    Endpoint e = endpoints.get(endpoint);
+    return e != null ? e.maxMillis.get() : 0;
+  }
+
+  /**
+   * Take a snapshot of the values, keyed by endpoint name and the
+   * suffixes in this class
+   * @return a new map
+   */
+  public Map<String, Integer> asMap() {
+    Map<String, Integer> map = new HashMap<String, Integer>();
+    for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+      String name = entry.getKey();
+      Endpoint e = entry.getValue();
+      long requests = e.requests.get();
+      map.put(name + REQUESTS, (int) requests);
+      map.put(name + FAILURES, (int) e.failures.get());
+      map.put(name + LATENCY_MEAN,
+              requests > 0 ? (int) (e.totalMillis.get() / requests) : 0);
+      map.put(name + LATENCY_MAX, (int) e.maxMillis.get());
+    }
+    return map;
+  }
+
+  private Endpoint getEndpoint(String name) {
+    Endpoint e = endpoints.get(name);
+    if (e == null) {
+      endpoints.putIfAbsent(name, new Endpoint());
+      e = endpoints.get(name);
+    }
+    return e;
+  }
+
+  /**
+   * Counters of one endpoint
+   */
+  private static class Endpoint {
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+    private final AtomicLong maxMillis = new AtomicLong();
+
+    private void record(long millis, boolean succeeded) {
+      requests.incrementAndGet();
+      if (!succeeded) {
+        failures.incrementAndGet();
+      }
+      totalMillis.addAndGet(millis);
+      long max = maxMillis.get();
+      while (millis > max && !maxMillis.compareAndSet(max, millis)) {
+        max = maxMillis.get();
+      }
+    }
+  }
+}
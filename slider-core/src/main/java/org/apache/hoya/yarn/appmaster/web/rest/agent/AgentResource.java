@@ -92,11 +92,18 @@ public class AgentResource {
   @Path("/{agent_name: [a-zA-Z][a-zA-Z_0-9]*}/heartbeat")
   @Consumes(MediaType.APPLICATION_JSON)
   @Produces({MediaType.APPLICATION_JSON})
-  public HeartBeatResponse heartbeat(HeartBeat message,
-                                     @Context HttpServletResponse res,
-                                     @PathParam("agent_name") String agent_name) {
+  public Response heartbeat(HeartBeat message,
+                            @Context HttpServletResponse res,
+                            @PathParam("agent_name") String agent_name) {
     init(res);
     AgentRestOperations ops = slider.getAgentRestOperations();
-    return ops.handleHeartBeat(message);
+    long retryAfter = ops.admitHeartBeat();
+    if (retryAfter > 0) {
+      return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                     .header(AgentServlet.RETRY_AFTER,
+                             (retryAfter + 999) / 1000)
+                     .build();
+    }
+    return Response.ok(ops.handleHeartBeat(message)).build();
   }
 }
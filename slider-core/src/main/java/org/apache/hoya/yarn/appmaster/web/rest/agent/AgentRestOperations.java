@@ -25,4 +25,41 @@ public interface AgentRestOperations {
   RegistrationResponse handleRegistration(Register registration);
 
   HeartBeatResponse handleHeartBeat(HeartBeat heartBeat);
+
+  /**
+   * Admit a heartbeat, or defer it if agents are heartbeating faster than
+   * the AM accepts. A deferred heartbeat must not be handled; the agent is
+   * told to send it again later.
+   * @return 0 if the heartbeat is admitted, else the time in millis
+   * after which to retry
+   */
+  long admitHeartBeat();
+
+  /**
+   * Build the response to a heartbeat which has already been handled,
+   * with any commands queued for the agent since. This completes
+   * a long-polling heartbeat.
+   * @param heartBeat the heartbeat
+   * @return the response
+   */
+  HeartBeatResponse pollHeartBeat(HeartBeat heartBeat);
+
+  /**
+   * Register a callback to be run -once- when there may be new
+   * commands for an agent
+   * @param label agent label
+   * @param listener callback
+   * @return true if the listener was registered; false if the agent is
+   * unknown or already has commands pending, in which case the caller
+   * should poll at once
+   */
+  boolean awaitCommands(String label, Runnable listener);
+
+  /**
+   * Notify the agent in a container that there may be new commands
+   * for it, completing any long-polling heartbeat
+   * @param containerId container ID
+   * @param role role of the container
+   */
+  void notifyCommandsPending(String containerId, String role);
 }
@@ -0,0 +1,327 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hoya.yarn.appmaster.web.rest.agent;
+
+import org.apache.hoya.yarn.appmaster.web.WebAppApi;
+import org.apache.hoya.yarn.appmaster.web.rest.RestPaths;
+import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.map.AnnotationIntrospector;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.introspect.JacksonAnnotationIntrospector;
+import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
+import org.mortbay.jetty.RetryRequest;
+import org.mortbay.util.ajax.Continuation;
+import org.mortbay.util.ajax.ContinuationSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The agent operations of {@link AgentResource} as a plain servlet:
+ * registration, heartbeats and long-polling heartbeats, with the
+ * latency of each recorded in an {@link AgentRequestMetrics} instance.
+ * Heartbeats which the AM does not admit are answered with a 503 and a
+ * {@link #RETRY_AFTER} header.
+ * <p>
+ * This does not need Jersey, so it can be deployed in a lightweight
+ * server of its own, and it can suspend requests.
+ * <p>
+ * A long-polling heartbeat is handled like any other;
+ * if the response would be idle, the request is
+ * held open until a command is queued for the agent or the time given in
+ * the {@link #WAIT_PARAM} parameter passes, and the response then carries
+ * whatever commands are pending.
+ * Waiting requests are suspended with a Jetty continuation, so they
+ * do not hold a server thread; on a connector without continuation support
+ * the continuation blocks the thread instead.
+ */
+public class AgentServlet extends HttpServlet {
+  protected static final Logger log =
+    LoggerFactory.getLogger(AgentServlet.class);
+
+  /**
+   * Paths served: {@value}
+   */
+  public static final String PATH_REGEX = RestPaths.SLIDER_PATH_AGENTS
+                                          + "/[a-zA-Z][a-zA-Z_0-9]*"
+                                          + "/(register|heartbeat(/poll)?)";
+
+  /**
+   * Parameter for the time in millis to hold an idle heartbeat: {@value}
+   */
+  public static final String WAIT_PARAM = "wait";
+
+  /**
+   * Upper limit on the wait time: {@value}
+   */
+  public static final long MAX_WAIT = 60000;
+
+  /**
+   * Endpoint names, as used in the metrics
+   */
+  public static final String ENDPOINT_REGISTER = "register";
+  public static final String ENDPOINT_HEARTBEAT = "heartbeat";
+  public static final String ENDPOINT_POLL = "poll";
+
+  /**
+   * Header giving the seconds after which to retry a deferred
+   * heartbeat: {@value}
+   */
+  public static final String RETRY_AFTER = "Retry-After";
+
+  /**
+   * Request attribute holding a heartbeat that has been handled,
+   * while its request is suspended
+   */
+  private static final String ATTR_HEARTBEAT =
+    AgentServlet.class.getName() + ".heartbeat";
+
+  /**
+   * Request attribute holding the time of the first dispatch of a request
+   */
+  private static final String ATTR_STARTED =
+    AgentServlet.class.getName() + ".started";
+
+  private static final Pattern PATH_PATTERN = Pattern.compile(PATH_REGEX);
+
+  private final WebAppApi slider;
+  private final AgentRequestMetrics metrics;
+  private final ObjectMapper mapper;
+
+  public AgentServlet(WebAppApi slider, AgentRequestMetrics metrics) {
+    this.slider = slider;
+    this.metrics = metrics;
+    mapper = new ObjectMapper();
+    mapper.setAnnotationIntrospector(new AnnotationIntrospector.Pair(
+      new JaxbAnnotationIntrospector(),
+      new JacksonAnnotationIntrospector()));
+  }
+
+  public AgentRequestMetrics getMetrics() {
+    return metrics;
+  }
+
+  @Override
+  protected void doPost(HttpServletRequest request,
+                        HttpServletResponse response) throws
+                                                      ServletException,
+                                                      IOException {
+    String endpoint = getEndpoint(request.getRequestURI());
+    if (endpoint == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND,
+                         request.getRequestURI());
+      return;
+    }
+    Long started = (Long) request.getAttribute(ATTR_STARTED);
+    if (started == null) {
+      started = System.currentTimeMillis();
+      request.setAttribute(ATTR_STARTED, started);
+    }
+    boolean succeeded = false;
+    try {
+      AgentRestOperations ops = slider.getAgentRestOperations();
+      if (ops == null) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND,
+                           "No agent provider");
+      } else if (ENDPOINT_REGISTER.equals(endpoint)) {
+        succeeded = register(ops, request, response);
+      } else if (ENDPOINT_HEARTBEAT.equals(endpoint)) {
+        succeeded = heartbeat(ops, request, response);
+      } else {
+        succeeded = poll(ops, request, response);
+      }
+    } catch (RetryRequest suspended) {
+      // the request will be dispatched again
+      throw suspended;
+    } catch (IOException e) {
+      record(endpoint, started, false);
+      throw e;
+    } catch (RuntimeException e) {
+      record(endpoint, started, false);
+      throw e;
+    }
+    record(endpoint, started, succeeded);
+  }
+
+  /**
+   * Get the endpoint of a request
+   * @param uri request URI
+   * @return the endpoint name, or null if the path is not an agent one
+   */
+  static String getEndpoint(String uri) {
+    Matcher matcher = PATH_PATTERN.matcher(uri);
+    if (!matcher.matches()) {
+      return null;
+    }
+    if (ENDPOINT_REGISTER.equals(matcher.group(1))) {
+      return ENDPOINT_REGISTER;
+    }
+    return matcher.group(2) != null ? ENDPOINT_POLL : ENDPOINT_HEARTBEAT;
+  }
+
+  private boolean register(AgentRestOperations ops,
+                           HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+    Register registration = read(request, response, Register.class);
+    if (registration == null) {
+      return false;
+    }
+    write(response, ops.handleRegistration(registration));
+    return true;
+  }
+
+  private boolean heartbeat(AgentRestOperations ops,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+    if (!admit(ops, response)) {
+      return false;
+    }
+    HeartBeat heartBeat = read(request, response, HeartBeat.class);
+    if (heartBeat == null) {
+      return false;
+    }
+    write(response, ops.handleHeartBeat(heartBeat));
+    return true;
+  }
+
+  private boolean poll(AgentRestOperations ops,
+                       HttpServletRequest request,
+                       HttpServletResponse response) throws IOException {
+    Continuation continuation =
+      ContinuationSupport.getContinuation(request, null);
+    HeartBeat heartBeat = (HeartBeat) request.getAttribute(ATTR_HEARTBEAT);
+    if (heartBeat == null) {
+      // first dispatch: handle the heartbeat
+      if (!admit(ops, response)) {
+        return false;
+      }
+      heartBeat = read(request, response, HeartBeat.class);
+      if (heartBeat == null) {
+        return false;
+      }
+      HeartBeatResponse reply = ops.handleHeartBeat(heartBeat);
+      long wait = getWait(request);
+      if (!reply.isIdle() || wait <= 0) {
+        write(response, reply);
+        return true;
+      }
+      request.setAttribute(ATTR_HEARTBEAT, heartBeat);
+      if (ops.awaitCommands(heartBeat.getHostname(),
+                            new Resumer(continuation))) {
+        // with continuation support this throws a RetryRequest; the
+        // request is dispatched again when resumed or expired
+        continuation.suspend(wait);
+      }
+    }
+    write(response, ops.pollHeartBeat(heartBeat));
+    return true;
+  }
+
+  /**
+   * Admit a heartbeat; if it is deferred, reply with a 503 and the time
+   * to retry after
+   * @param ops agent operations
+   * @param response response
+   * @return true if the heartbeat is admitted
+   * @throws IOException IO problems
+   */
+  private boolean admit(AgentRestOperations ops,
+                        HttpServletResponse response) throws IOException {
+    long retryAfter = ops.admitHeartBeat();
+    if (retryAfter <= 0) {
+      return true;
+    }
+    response.setHeader(RETRY_AFTER, Long.toString((retryAfter + 999) / 1000));
+    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                       "Heartbeat deferred");
+    return false;
+  }
+
+  private void record(String endpoint, long started, boolean succeeded) {
+    metrics.record(endpoint, System.currentTimeMillis() - started,
+                   succeeded);
+  }
+
+  /**
+   * Get the wait time of a request
+   * @param request request
+   * @return the time in millis, capped at {@link #MAX_WAIT}; 0 if unset
+   * or invalid
+   */
+  private long getWait(HttpServletRequest request) {
+    String wait = request.getParameter(WAIT_PARAM);
+    if (wait == null) {
+      return 0;
+    }
+    try {
+      return Math.min(Long.parseLong(wait), MAX_WAIT);
+    } catch (NumberFormatException e) {
+      log.debug("Invalid wait time {}", wait);
+      return 0;
+    }
+  }
+
+  /**
+   * Read the body of a request
+   * @param request request
+   * @param response response, which is sent a 400 error if the body
+   * cannot be parsed
+   * @param type type to read
+   * @return the body, or null if it could not be parsed
+   * @throws IOException IO problems
+   */
+  private <T> T read(HttpServletRequest request,
+                     HttpServletResponse response,
+                     Class<T> type) throws IOException {
+    try {
+      return mapper.readValue(request.getInputStream(), type);
+    } catch (JsonProcessingException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.toString());
+      return null;
+    }
+  }
+
+  private void write(HttpServletResponse response,
+                     Object reply) throws IOException {
+    response.setContentType(MediaType.APPLICATION_JSON);
+    mapper.writeValue(response.getOutputStream(), reply);
+  }
+
+  /**
+   * Resume a suspended request when commands are pending
+   */
+  private static class Resumer implements Runnable {
+    private final Continuation continuation;
+
+    private Resumer(Continuation continuation) {
+      this.continuation = continuation;
+    }
+
+    @Override
+    public void run() {
+      continuation.resume();
+    }
+  }
+}
@@ -43,6 +43,7 @@ public class ExecutionCommand {
   private Map<String, String> roleParams = null;
   private String roleCommand;
   private Map<String, Map<String, String>> configurations;
+  private String configurationHash;
   private Map<String, String> commandParams;
   private String serviceName;
   private String componentName;
@@ -180,4 +181,19 @@ public class ExecutionCommand {
   public void setComponentName(String componentName) {
     this.componentName = componentName;
   }
+
+  /**
+   * Get the hash of the command's configurations. If the configurations
+   * are absent, the agent is to use those it holds with this hash.
+   * @return the configuration hash
+   */
+  @JsonProperty("configurationHash")
+  public String getConfigurationHash() {
+    return configurationHash;
+  }
+
+  @JsonProperty("configurationHash")
+  public void setConfigurationHash(String configurationHash) {
+    this.configurationHash = configurationHash;
+  }
 }
@@ -2,6 +2,7 @@ package org.apache.hoya.yarn.appmaster.web.rest.agent;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 import org.codehaus.jackson.annotate.JsonProperty;
@@ -17,6 +18,11 @@ import org.codehaus.jackson.map.annotate.JsonSerialize;
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
 public class HeartBeat {
+  /**
+   * Metric of the load of the component, as a fraction of its capacity
+   */
+  public static final String METRIC_LOAD = "load";
+
   private long responseId = -1;
   private long timestamp;
   private String hostname;
@@ -25,6 +31,8 @@ public class HeartBeat {
   private List<DiskInfo> mounts = new ArrayList<DiskInfo>();
   HostStatus nodeStatus;
   private AgentEnv agentEnv = null;
+  private String configurationHash;
+  private Map<String, Double> metrics;
 
   public long getResponseId() {
     return responseId;
@@ -86,6 +94,35 @@ public class HeartBeat {
     this.componentStatus = componentStatus;
   }
 
+  /**
+   * Get the hash of the configurations the agent last applied
+   * @return the hash or null if none have been applied
+   */
+  @JsonProperty("configurationHash")
+  public String getConfigurationHash() {
+    return configurationHash;
+  }
+
+  @JsonProperty("configurationHash")
+  public void setConfigurationHash(String configurationHash) {
+    this.configurationHash = configurationHash;
+  }
+
+  /**
+   * Get the metrics the agent reports about its component, such as
+   * {@link #METRIC_LOAD}
+   * @return the metrics or null if none were reported
+   */
+  @JsonProperty("metrics")
+  public Map<String, Double> getMetrics() {
+    return metrics;
+  }
+
+  @JsonProperty("metrics")
+  public void setMetrics(Map<String, Double> metrics) {
+    this.metrics = metrics;
+  }
+
   @JsonProperty("mounts")
   public List<DiskInfo> getMounts() {
     return this.mounts;
@@ -105,6 +142,8 @@ public class HeartBeat {
            ", reports=" + reports +
            ", componentStatus=" + componentStatus +
            ", nodeStatus=" + nodeStatus +
+           ", configurationHash=" + configurationHash +
+           ", metrics=" + metrics +
            '}';
   }
 }
@@ -19,6 +19,7 @@ package org.apache.hoya.yarn.appmaster.web.rest.agent;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 import org.codehaus.jackson.annotate.JsonProperty;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
@@ -42,6 +43,12 @@ public class HeartBeatResponse {
   boolean restartAgent = false;
   boolean hasMappedComponents = false;
 
+  /**
+   * Millis the agent is to wait before its next heartbeat;
+   * 0 to keep its current interval
+   */
+  long heartbeatInterval;
+
   @JsonProperty("responseId")
   public long getResponseId() {
     return responseId;
@@ -102,6 +109,28 @@ public class HeartBeatResponse {
     this.hasMappedComponents = hasMappedComponents;
   }
 
+  @JsonProperty("heartbeatInterval")
+  public long getHeartbeatInterval() {
+    return heartbeatInterval;
+  }
+
+  @JsonProperty("heartbeatInterval")
+  public void setHeartbeatInterval(long heartbeatInterval) {
+    this.heartbeatInterval = heartbeatInterval;
+  }
+
+  /**
+   * Is this a response with nothing for the agent to act on?
+   * @return true if there are no commands and no restart request
+   */
+  @JsonIgnore
+  public boolean isIdle() {
+    return executionCommands.isEmpty()
+           && statusCommands.isEmpty()
+           && registrationCommand == null
+           && !restartAgent;
+  }
+
   public void addExecutionCommand(ExecutionCommand execCmd) {
     executionCommands.add(execCmd);
   }
@@ -118,6 +147,7 @@ public class HeartBeatResponse {
            ", statusCommands=" + statusCommands +
            ", registrationCommand=" + registrationCommand +
            ", restartAgent=" + restartAgent +
+           ", heartbeatInterval=" + heartbeatInterval +
            '}';
   }
 }
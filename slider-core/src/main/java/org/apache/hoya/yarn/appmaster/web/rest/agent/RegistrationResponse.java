@@ -48,6 +48,19 @@ public class RegistrationResponse {
   @JsonProperty("statusCommands")
   private List<StatusCommand> statusCommands = null;
 
+  /**
+   * Millis after which a deferred registration should be retried;
+   * 0 if the registration was admitted
+   */
+  @JsonProperty("retryAfter")
+  private long retryAfter;
+
+  /**
+   * Millis between the heartbeats of an idle agent
+   */
+  @JsonProperty("heartbeatInterval")
+  private long heartbeatInterval;
+
   public RegistrationResponse() {
   }
 
@@ -75,6 +88,22 @@ public class RegistrationResponse {
     this.responseId = responseId;
   }
 
+  public long getRetryAfter() {
+    return retryAfter;
+  }
+
+  public void setRetryAfter(long retryAfter) {
+    this.retryAfter = retryAfter;
+  }
+
+  public long getHeartbeatInterval() {
+    return heartbeatInterval;
+  }
+
+  public void setHeartbeatInterval(long heartbeatInterval) {
+    this.heartbeatInterval = heartbeatInterval;
+  }
+
   public void setExitstatus(int exitstatus) {
     this.exitstatus = exitstatus;
   }
@@ -89,6 +118,8 @@ public class RegistrationResponse {
            "response=" + response +
            ", responseId=" + responseId +
            ", statusCommands=" + statusCommands +
+           ", retryAfter=" + retryAfter +
+           ", heartbeatInterval=" + heartbeatInterval +
            '}';
   }
 }
@@ -39,6 +39,7 @@ public class StatusCommand {
   private String serviceName;
   private String componentName;
   private Map<String, Map<String, String>> configurations;
+  private String configurationHash;
   private Map<String, String> commandParams = new HashMap<String, String>();
   private Map<String, String> hostLevelParams = new HashMap<String, String>();
   private String roleCommand;
@@ -87,6 +88,21 @@ public class StatusCommand {
     this.configurations = configurations;
   }
 
+  /**
+   * Get the hash of the command's configurations. If the configurations
+   * are absent, the agent is to use those it holds with this hash.
+   * @return the configuration hash
+   */
+  @JsonProperty("configurationHash")
+  public String getConfigurationHash() {
+    return configurationHash;
+  }
+
+  @JsonProperty("configurationHash")
+  public void setConfigurationHash(String configurationHash) {
+    this.configurationHash = configurationHash;
+  }
+
   @JsonProperty("hostLevelParams")
   public Map<String, String> getHostLevelParams() {
     return hostLevelParams;
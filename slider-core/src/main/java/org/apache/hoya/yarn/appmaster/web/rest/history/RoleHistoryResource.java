@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.web.rest.history;
+
+import org.apache.hadoop.yarn.webapp.NotFoundException;
+import org.apache.hoya.yarn.appmaster.state.RoleStatus;
+import org.apache.hoya.yarn.appmaster.web.WebAppApi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The role history of the AM: each known node's entries for the roles,
+ * and the outstanding requests. The output can be limited to some hosts
+ * and roles with the {@link #HOST_PARAM} and {@link #ROLE_PARAM}
+ * parameters, each of which may be repeated.
+ * <p>
+ * The history is streamed as it is read, without a content length,
+ * gzipped if the client accepts that encoding.
+ */
+public class RoleHistoryResource {
+  protected static final Logger log =
+      LoggerFactory.getLogger(RoleHistoryResource.class);
+
+  /**
+   * Parameter naming a host to include: {@value}
+   */
+  public static final String HOST_PARAM = "host";
+
+  /**
+   * Parameter naming a role to include: {@value}
+   */
+  public static final String ROLE_PARAM = "role";
+
+  private static final String GZIP = "gzip";
+  private static final String VARY = "Vary";
+  private final WebAppApi slider;
+
+  public RoleHistoryResource(WebAppApi slider) {
+    this.slider = slider;
+  }
+
+  @GET
+  @Produces({MediaType.APPLICATION_JSON})
+  public Response getRoleHistory(
+      @QueryParam(HOST_PARAM) List<String> hosts,
+      @QueryParam(ROLE_PARAM) List<String> roles,
+      @Context HttpHeaders headers) {
+    Map<String, RoleStatus> statusByName = slider.getRoleStatusByName();
+    Map<Integer, String> roleNames = new HashMap<Integer, String>();
+    for (RoleStatus status : statusByName.values()) {
+      roleNames.put(status.getKey(), status.getName());
+    }
+    List<Integer> roleIds = new ArrayList<Integer>(roles.size());
+    for (String role : roles) {
+      RoleStatus status = statusByName.get(role);
+      if (status == null) {
+        log.info("Role {} not found", role);
+        throw new NotFoundException("Unknown role: " + role);
+      }
+      roleIds.add(status.getKey());
+    }
+    boolean gzip = acceptsGzip(headers);
+    RoleHistoryStream stream =
+      new RoleHistoryStream(slider.getAppState().getRoleHistory(),
+                            roleNames, hosts, roleIds, gzip);
+    Response.ResponseBuilder builder =
+      Response.ok(stream, MediaType.APPLICATION_JSON);
+    if (gzip) {
+      builder.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+    }
+    return builder.header(VARY, HttpHeaders.ACCEPT_ENCODING).build();
+  }
+
+  private static boolean acceptsGzip(HttpHeaders headers) {
+    List<String> encodings =
+        headers.getRequestHeader(HttpHeaders.ACCEPT_ENCODING);
+    if (encodings == null) {
+      return false;
+    }
+    for (String encoding : encodings) {
+      if (encoding.toLowerCase(Locale.ENGLISH).contains(GZIP)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.web.rest.history;
+
+import org.apache.hoya.yarn.appmaster.state.NodeEntry;
+import org.apache.hoya.yarn.appmaster.state.NodeInstance;
+import org.apache.hoya.yarn.appmaster.state.OutstandingRequest;
+import org.apache.hoya.yarn.appmaster.state.RoleHistory;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Write the node map and outstanding requests of a role history
+ * as JSON, a node at a time.
+ * <p>
+ * The history is not cloned: the nodes are listed by reference and
+ * each one's entries are copied only while it is written,
+ * so the memory used does not grow with the size of the cluster and
+ * the history is not locked while the output is sent.
+ * The output is therefore not an atomic snapshot of the history.
+ */
+public class RoleHistoryStream implements StreamingOutput {
+
+  public static final String FIELD_TIME = "time";
+  public static final String FIELD_NODES = "nodes";
+  public static final String FIELD_HOST = "host";
+  public static final String FIELD_RACK = "rack";
+  public static final String FIELD_ROLES = "roles";
+  public static final String FIELD_ROLE = "role";
+  public static final String FIELD_ID = "id";
+  public static final String FIELD_REQUESTED = "requested";
+  public static final String FIELD_STARTING = "starting";
+  public static final String FIELD_LIVE = "live";
+  public static final String FIELD_RELEASING = "releasing";
+  public static final String FIELD_FAILED = "failed";
+  public static final String FIELD_START_FAILED = "startFailed";
+  public static final String FIELD_LAST_USED = "lastUsed";
+  public static final String FIELD_OUTSTANDING = "outstanding";
+  public static final String FIELD_REQUESTED_TIME = "requestedTime";
+
+  private static final JsonFactory factory = new JsonFactory();
+
+  private final RoleHistory history;
+  private final Map<Integer, String> roleNames;
+  private final Collection<String> hosts;
+  private final Set<Integer> roles;
+  private final boolean gzip;
+
+  /**
+   * Create the stream
+   * @param history history to write
+   * @param roleNames map of role ID to name
+   * @param hosts hosts to include; empty for all
+   * @param roles IDs of the roles to include; empty for all
+   * @param gzip should the output be gzip compressed?
+   */
+  public RoleHistoryStream(RoleHistory history,
+                           Map<Integer, String> roleNames,
+                           Collection<String> hosts,
+                           Collection<Integer> roles,
+                           boolean gzip) {
+    this.history = history;
+    this.roleNames = roleNames;
+    this.hosts = new HashSet<String>(hosts);
+    this.roles = new HashSet<Integer>(roles);
+    this.gzip = gzip;
+  }
+
+  @Override
+  public void write(OutputStream output) throws IOException {
+    GZIPOutputStream compressed = null;
+    OutputStream out = output;
+    if (gzip) {
+      compressed = new GZIPOutputStream(output);
+      out = compressed;
+    }
+    JsonGenerator generator =
+      factory.createJsonGenerator(out, JsonEncoding.UTF8);
+    // the container closes its own stream
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    generator.writeStartObject();
+    generator.writeNumberField(FIELD_TIME, System.currentTimeMillis());
+    generator.writeArrayFieldStart(FIELD_NODES);
+    for (NodeInstance node : history.listNodes(hosts)) {
+      writeNode(generator, node);
+    }
+    generator.writeEndArray();
+    generator.writeArrayFieldStart(FIELD_OUTSTANDING);
+    for (OutstandingRequest request : history.getOutstandingRequestList()) {
+      if (included(request)) {
+        writeRequest(generator, request);
+      }
+    }
+    generator.writeEndArray();
+    generator.writeEndObject();
+    generator.close();
+    if (compressed != null) {
+      compressed.finish();
+    }
+    output.flush();
+  }
+
+  private boolean included(int role) {
+    return roles.isEmpty() || roles.contains(role);
+  }
+
+  private boolean included(OutstandingRequest request) {
+    return included(request.roleId)
+           && (hosts.isEmpty() || hosts.contains(request.hostname));
+  }
+
+  /**
+   * Write a node and its entries for the roles included.
+   * If only some roles are included, nodes with no entries
+   * for them are skipped
+   * @param generator generator
+   * @param node node
+   * @throws IOException IO problems
+   */
+  private void writeNode(JsonGenerator generator,
+                         NodeInstance node) throws IOException {
+    List<NodeEntry> entries = node.cloneEntries();
+    boolean found = roles.isEmpty();
+    for (NodeEntry entry : entries) {
+      found |= included(entry.index);
+    }
+    if (!found) {
+      return;
+    }
+    generator.writeStartObject();
+    generator.writeStringField(FIELD_HOST, node.hostname);
+    generator.writeStringField(FIELD_RACK, node.getRack());
+    generator.writeArrayFieldStart(FIELD_ROLES);
+    for (NodeEntry entry : entries) {
+      if (included(entry.index)) {
+        writeEntry(generator, entry);
+      }
+    }
+    generator.writeEndArray();
+    generator.writeEndObject();
+  }
+
+  private void writeEntry(JsonGenerator generator,
+                          NodeEntry entry) throws IOException {
+    // read the counters together, but do not hold the lock while writing
+    int requested, starting, live, releasing, failed, startFailed;
+    long lastUsed;
+    synchronized (entry) {
+      requested = entry.getRequested();
+      starting = entry.getStarting();
+      live = entry.getLive();
+      releasing = entry.getReleasing();
+      failed = entry.getFailed();
+      startFailed = entry.getStartFailed();
+      lastUsed = entry.getLastUsed();
+    }
+    generator.writeStartObject();
+    writeRole(generator, entry.index);
+    generator.writeNumberField(FIELD_REQUESTED, requested);
+    generator.writeNumberField(FIELD_STARTING, starting);
+    generator.writeNumberField(FIELD_LIVE, live);
+    generator.writeNumberField(FIELD_RELEASING, releasing);
+    generator.writeNumberField(FIELD_FAILED, failed);
+    generator.writeNumberField(FIELD_START_FAILED, startFailed);
+    generator.writeNumberField(FIELD_LAST_USED, lastUsed);
+    generator.writeEndObject();
+  }
+
+  private void writeRequest(JsonGenerator generator,
+                            OutstandingRequest request) throws IOException {
+    generator.writeStartObject();
+    writeRole(generator, request.roleId);
+    generator.writeStringField(FIELD_HOST, request.hostname);
+    generator.writeNumberField(FIELD_REQUESTED_TIME, request.requestedTime);
+    generator.writeEndObject();
+  }
+
+  private void writeRole(JsonGenerator generator, int role) throws
+                                                            IOException {
+    generator.writeStringField(FIELD_ROLE, roleNames.get(role));
+    generator.writeNumberField(FIELD_ID, role);
+  }
+}
@@ -74,7 +74,7 @@ public class ManagementResource {
   public AggregateConfResource getAggregateConfiguration(@Context UriInfo uriInfo,
                                                          @Context HttpServletResponse res) {
     init(res);
-    return ResourceFactory.createAggregateConfResource(getAggregateConf(),
+    return ResourceFactory.createAggregateConfResource(getAggregateConf().flatten(),
                                                        uriInfo.getAbsolutePathBuilder());
   }
 
@@ -86,7 +86,7 @@ public class ManagementResource {
                                               @Context HttpServletResponse res) {
     init(res);
     AggregateConfResource aggregateConf =
-        ResourceFactory.createAggregateConfResource(getAggregateConf(),
+        ResourceFactory.createAggregateConfResource(getAggregateConf().flatten(),
                                                     uriInfo.getBaseUriBuilder()
                                                     .path(RestPaths.SLIDER_CONTEXT_ROOT).path(
                                                     "mgmt/app"));
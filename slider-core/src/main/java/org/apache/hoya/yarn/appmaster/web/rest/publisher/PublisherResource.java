@@ -22,6 +22,7 @@ import org.apache.hadoop.yarn.webapp.NotFoundException;
 import org.apache.hoya.yarn.appmaster.web.WebAppApi;
 import org.apache.slider.core.registry.docstore.PublishedConfigSet;
 import org.apache.slider.core.registry.docstore.PublishedConfiguration;
+import org.apache.slider.core.registry.docstore.RenderedConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,13 +32,22 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
 
 public class PublisherResource {
   protected static final Logger log =
       LoggerFactory.getLogger(PublisherResource.class);
+  private static final String GZIP = "gzip";
+  private static final String VARY = "Vary";
   private final WebAppApi slider;
 
   public PublisherResource(WebAppApi slider) {
@@ -91,32 +101,97 @@ public class PublisherResource {
   @GET
   @Path("/{config}/json")
   @Produces({MediaType.APPLICATION_JSON})
-  public String getConfigurationContentJson(
+  public Response getConfigurationContentJson(
       @PathParam("config") String config,
       @Context UriInfo uriInfo,
+      @Context Request request,
+      @Context HttpHeaders headers,
       @Context HttpServletResponse res) throws IOException {
-    
-    // delegate (including init)
-    PublishedConfiguration publishedConfig =
-        getConfigurationInstance(config, uriInfo, res);
-    return publishedConfig.asJson();
+    return renderConfiguration(config, RenderedConfiguration.Format.JSON,
+        MediaType.APPLICATION_JSON, uriInfo, request, headers, res);
   }
 
-  
   @GET
   @Path("/{config}/xml")
   @Produces({MediaType.APPLICATION_XML})
-  public String getConfigurationContentXML(
+  public Response getConfigurationContentXML(
+      @PathParam("config") String config,
+      @Context UriInfo uriInfo,
+      @Context Request request,
+      @Context HttpHeaders headers,
+      @Context HttpServletResponse res) throws IOException {
+    return renderConfiguration(config, RenderedConfiguration.Format.XML,
+        MediaType.APPLICATION_XML, uriInfo, request, headers, res);
+  }
+
+  @GET
+  @Path("/{config}/properties")
+  @Produces({MediaType.TEXT_PLAIN})
+  public Response getConfigurationContentProperties(
       @PathParam("config") String config,
       @Context UriInfo uriInfo,
+      @Context Request request,
+      @Context HttpHeaders headers,
       @Context HttpServletResponse res) throws IOException {
-    
+    return renderConfiguration(config, RenderedConfiguration.Format.PROPERTIES,
+        MediaType.TEXT_PLAIN, uriInfo, request, headers, res);
+  }
+
+  /**
+   * Serve the pre-rendered form of a configuration. If the client's
+   * If-None-Match or If-Modified-Since headers show it has the current
+   * version, a 304 is returned; otherwise the rendered bytes are written
+   * as they are, gzipped if the client accepts that encoding.
+   * @param config configuration name
+   * @param format output format
+   * @param mediaType media type of the response
+   * @param uriInfo request URI
+   * @param request request, for precondition evaluation
+   * @param headers request headers
+   * @param res servlet response
+   * @return the response
+   * @throws IOException on any failure to render the configuration
+   */
+  private Response renderConfiguration(String config,
+      RenderedConfiguration.Format format,
+      String mediaType,
+      UriInfo uriInfo,
+      Request request,
+      HttpHeaders headers,
+      HttpServletResponse res) throws IOException {
     // delegate (including init)
     PublishedConfiguration publishedConfig =
         getConfigurationInstance(config, uriInfo, res);
-    return publishedConfig.asConfigurationXML();
+    RenderedConfiguration rendered = publishedConfig.render();
+    boolean gzip = acceptsGzip(headers);
+    EntityTag etag = new EntityTag(rendered.getETag(format, gzip));
+    // HTTP dates only have a resolution of seconds
+    Date lastModified = new Date(rendered.getLastModified() / 1000 * 1000);
+    Response.ResponseBuilder builder =
+        request.evaluatePreconditions(lastModified, etag);
+    if (builder == null) {
+      builder = Response.ok(rendered.getContent(format, gzip), mediaType);
+      if (gzip) {
+        builder.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+      }
+    }
+    return builder.tag(etag)
+                  .lastModified(lastModified)
+                  .header(VARY, HttpHeaders.ACCEPT_ENCODING)
+                  .build();
   }
 
-  
-  
+  private static boolean acceptsGzip(HttpHeaders headers) {
+    List<String> encodings =
+        headers.getRequestHeader(HttpHeaders.ACCEPT_ENCODING);
+    if (encodings == null) {
+      return false;
+    }
+    for (String encoding : encodings) {
+      if (encoding.toLowerCase(Locale.ENGLISH).contains(GZIP)) {
+        return true;
+      }
+    }
+    return false;
+  }
 }
@@ -116,7 +116,7 @@ public class ContainerStatsBlock extends HtmlBlock {
       div.h2(BOLD, StringUtils.capitalize(name));
 
       // Generate the details on this role
-      Iterable<Entry<String,Integer>> stats = roleStatus.buildStatistics().entrySet();
+      Iterable<Entry<String,Integer>> stats = roleStatus.getStatistics().asMap().entrySet();
       generateRoleDetails(div,"role-stats-wrap", "Specifications", Iterables.transform(stats, stringIntPairFunc));
 
       // Sort the ClusterNodes by their name (containerid)
@@ -132,7 +132,8 @@ public class ContainerStatsBlock extends HtmlBlock {
               
               if (containerInstances.containsKey(containerId)) {
                 RoleInstance roleInst = containerInstances.get(containerId);
-                if (roleInst.container.getNodeHttpAddress() != null) {
+                if (roleInst.container != null
+                    && roleInst.container.getNodeHttpAddress() != null) {
                   return Maps.<TableContent,String> immutableEntry(
                     new TableAnchorContent(containerId, buildNodeUrlForContainer(roleInst.container.getNodeHttpAddress(), containerId)), null);
                 }
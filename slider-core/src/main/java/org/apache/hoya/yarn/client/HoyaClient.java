@@ -19,11 +19,14 @@
 package org.apache.hoya.yarn.client;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.curator.x.discovery.ServiceDiscovery;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.ipc.RPC;
 import org.apache.hadoop.net.NetUtils;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
@@ -77,6 +80,7 @@ import org.apache.hoya.tools.HoyaVersionInfo;
 import org.apache.hoya.yarn.Arguments;
 import org.apache.hoya.yarn.HoyaActions;
 import org.apache.hoya.yarn.appmaster.rpc.RpcBinder;
+import org.apache.hoya.yarn.appmaster.rpc.RpcProxyCache;
 import org.apache.hoya.yarn.params.AbstractClusterBuildingActionArgs;
 import org.apache.hoya.yarn.params.ActionAMSuicideArgs;
 import org.apache.hoya.yarn.params.ActionCreateArgs;
@@ -86,6 +90,7 @@ import org.apache.hoya.yarn.params.ActionFreezeArgs;
 import org.apache.hoya.yarn.params.ActionGetConfArgs;
 import org.apache.hoya.yarn.params.ActionKillContainerArgs;
 import org.apache.hoya.yarn.params.ActionRegistryArgs;
+import org.apache.hoya.yarn.params.ActionRestartArgs;
 import org.apache.hoya.yarn.params.ActionStatusArgs;
 import org.apache.hoya.yarn.params.ActionThawArgs;
 import org.apache.hoya.yarn.params.ClientArgs;
@@ -103,15 +108,23 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Client service for Hoya
@@ -132,6 +145,7 @@ public class HoyaClient extends AbstractSliderLaunchedService implements RunServ
    * if no bonding has yet taken place
    */
   private HoyaClusterOperations hoyaClusterOperations;
+  private volatile HoyaClusterOperations lastClusterOperations;
 
   private HoyaFileSystem hoyaFileSystem;
 
@@ -143,6 +157,11 @@ public class HoyaClient extends AbstractSliderLaunchedService implements RunServ
   private AggregateConf launchedInstanceDefinition;
   private RegistryBinderService<ServiceInstanceData> registry;
 
+  /**
+   * Proxies to AMs, reused across commands
+   */
+  private RpcProxyCache proxyCache;
+
   /**
    * Constructor
    */
@@ -181,6 +200,18 @@ public class HoyaClient extends AbstractSliderLaunchedService implements RunServ
     hoyaFileSystem = new HoyaFileSystem(getConfig());
     YARNRegistryClient =
       new YARNRegistryClient(yarnClient, getUsername(), getConfig());
+    proxyCache = new RpcProxyCache(getConfig(),
+                                   Constants.RPC_TIMEOUT,
+                                   Constants.PROXY_LIVENESS_INTERVAL,
+                                   Constants.PROXY_IDLE_TIMEOUT);
+  }
+
+  @Override
+  protected void serviceStop() throws Exception {
+    if (proxyCache != null) {
+      proxyCache.close();
+    }
+    super.serviceStop();
   }
 
   /**
@@ -231,9 +262,16 @@ public class HoyaClient extends AbstractSliderLaunchedService implements RunServ
     } else if (HoyaActions.ACTION_REGISTRY.equals(action)) {     
       exitCode = actionRegistry(
           serviceArgs.getActionRegistryArgs());
+    } else if (HoyaActions.ACTION_RESTART.equals(action)) {
+      exitCode = actionRestart(clusterName,
+                               serviceArgs.getActionRestartArgs());
     } else if (HoyaActions.ACTION_STATUS.equals(action)) {     
-      exitCode = actionStatus(clusterName,
-                              serviceArgs.getActionStatusArgs());
+      ActionStatusArgs statusArgs = serviceArgs.getActionStatusArgs();
+      if (statusArgs.isMultiInstance()) {
+        exitCode = actionStatusOfInstances(statusArgs);
+      } else {
+        exitCode = actionStatus(clusterName, statusArgs);
+      }
     } else if (HoyaActions.ACTION_VERSION.equals(action)) {
       
       exitCode = actionVersion();
@@ -1437,6 +1475,38 @@ public class HoyaClient extends AbstractSliderLaunchedService implements RunServ
     return EXIT_SUCCESS;
   }
 
+  /**
+   * Start a rolling restart of a component of the cluster. This returns
+   * once the AM has started the restart; its progress is in the
+   * component's status
+   * @param name cluster name
+   * @param args arguments
+   * @return exit code
+   * @throws YarnException
+   * @throws IOException
+   */
+  public int actionRestart(String name,
+                           ActionRestartArgs args) throws
+                                                   YarnException,
+                                                   IOException {
+    String component = args.component;
+    if (HoyaUtils.isUnset(component)) {
+      throw new BadCommandArgumentsException("Missing component");
+    }
+    if (args.batch < 1) {
+      throw new BadCommandArgumentsException("Invalid batch size %d",
+                                             args.batch);
+    }
+    verifyBindingsDefined();
+    HoyaUtils.validateClusterName(name);
+    log.info("Rolling restart of {} in {}, {} at a time", component, name,
+             args.batch);
+    int instances = createClusterOperations(name)
+      .rollingRestart(component, args.batch);
+    log.info("Restarting {} instance(s) of {}", instances, component);
+    return EXIT_SUCCESS;
+  }
+
   /**
    * Echo operation (not currently wired up to command line)
    * @param name cluster name
@@ -1505,7 +1575,8 @@ public class HoyaClient extends AbstractSliderLaunchedService implements RunServ
   }
 
   /**
-   * Connect to a Hoya AM
+   * Connect to a Hoya AM. Proxies are cached, so repeated connections
+   * to the same AM reuse the same proxy while it is live
    * @param app application report providing the details on the application
    * @return an instance
    * @throws YarnException
@@ -1516,11 +1587,9 @@ public class HoyaClient extends AbstractSliderLaunchedService implements RunServ
                                                               IOException {
 
     try {
-      return RpcBinder.getProxy(getConfig(),
-                                yarnClient.getRmClient(),
-                                app,
-                                Constants.CONNECT_TIMEOUT,
-                                Constants.RPC_TIMEOUT);
+      return proxyCache.getProxy(yarnClient.getRmClient(),
+                                 app,
+                                 Constants.CONNECT_TIMEOUT);
     } catch (InterruptedException e) {
       throw new SliderException(HoyaExitCodes.EXIT_TIMED_OUT,
                               e,
@@ -1545,15 +1614,167 @@ public class HoyaClient extends AbstractSliderLaunchedService implements RunServ
     HoyaUtils.validateClusterName(clustername);
     String outfile = statusArgs.getOutput();
     ClusterDescription status = getClusterDescription(clustername);
-    String text = status.toJsonString();
     if (outfile == null) {
-      log.info(text);
+      log.info(status.toJsonString());
     } else {
       status.save(new File(outfile).getAbsoluteFile());
     }
     return EXIT_SUCCESS;
   }
 
+  /**
+   * Status operation across many instances: the RM is queried once
+   * and the AMs in parallel; a one line summary of each instance is
+   * logged or saved
+   *
+   * @param statusArgs status arguments
+   * @return 0 -for success, else an exception is thrown
+   * @throws YarnException
+   * @throws IOException
+   */
+  @VisibleForTesting
+  public int actionStatusOfInstances(ActionStatusArgs statusArgs) throws
+                                                                  YarnException,
+                                                                  IOException {
+    List<InstanceStatusSummary> summaries =
+      getStatusOfInstances(statusArgs.parameters, statusArgs.getThreads());
+    String outfile = statusArgs.getOutput();
+    if (outfile == null) {
+      log.info("Status of {} instances", summaries.size());
+      for (InstanceStatusSummary summary : summaries) {
+        log.info(summary.toString());
+      }
+    } else {
+      PrintWriter out = new PrintWriter(new FileWriter(outfile));
+      try {
+        for (InstanceStatusSummary summary : summaries) {
+          out.println(summary.toString());
+        }
+      } finally {
+        out.close();
+      }
+    }
+    return EXIT_SUCCESS;
+  }
+
+  /**
+   * Get summaries of the status of many instances. The RM is asked for
+   * the list of instances once; the AMs of the live instances are then
+   * queried concurrently. An instance which is not live, or whose AM
+   * cannot be reached, has its summary marked as failed rather than
+   * failing the whole operation.
+   * @param names instance names; if empty, all live instances of the user
+   * @param threads maximum number of AMs to query at the same time
+   * @return the summaries, in the order of the names, or sorted by name
+   * if all instances were requested
+   * @throws YarnException YARN issues
+   * @throws IOException IO problems
+   */
+  @VisibleForTesting
+  public List<InstanceStatusSummary> getStatusOfInstances(List<String> names,
+                                                          int threads) throws
+                                                                      YarnException,
+                                                                      IOException {
+    verifyBindingsDefined();
+    // one call to the RM; keep the most recent live report of each name
+    Map<String, ApplicationReport> live =
+      new TreeMap<String, ApplicationReport>();
+    for (ApplicationReport report : YARNRegistryClient.listInstances()) {
+      if (yarnClient.isApplicationLive(report)) {
+        ApplicationReport current = live.get(report.getName());
+        if (current == null ||
+            current.getStartTime() < report.getStartTime()) {
+          live.put(report.getName(), report);
+        }
+      }
+    }
+    List<String> targets;
+    if (names.isEmpty()) {
+      targets = new ArrayList<String>(live.keySet());
+    } else {
+      for (String name : names) {
+        HoyaUtils.validateClusterName(name);
+      }
+      targets = names;
+    }
+    List<InstanceStatusSummary> summaries =
+      new ArrayList<InstanceStatusSummary>(targets.size());
+    if (targets.isEmpty()) {
+      return summaries;
+    }
+    int poolSize = Math.max(1, Math.min(threads, targets.size()));
+    ExecutorService executor = Executors.newFixedThreadPool(poolSize,
+      new ThreadFactoryBuilder().setDaemon(true)
+                                .setNameFormat("status-%d")
+                                .build());
+    try {
+      List<Future<InstanceStatusSummary>> futures =
+        new ArrayList<Future<InstanceStatusSummary>>(targets.size());
+      for (String name : targets) {
+        final ApplicationReport report = live.get(name);
+        if (report == null) {
+          InstanceStatusSummary summary =
+            new InstanceStatusSummary(name, "", "");
+          summary.failure = "not a live instance";
+          futures.add(Futures.immediateFuture(summary));
+        } else {
+          futures.add(executor.submit(new Callable<InstanceStatusSummary>() {
+            @Override
+            public InstanceStatusSummary call() {
+              return summarizeInstance(report);
+            }
+          }));
+        }
+      }
+      for (Future<InstanceStatusSummary> future : futures) {
+        summaries.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      throw new SliderException(EXIT_TIMED_OUT, e,
+        "Interrupted waiting for the status of instances");
+    } catch (ExecutionException e) {
+      throw new SliderException(EXIT_INTERNAL_ERROR, e.getCause(),
+        "Failed to get the status of instances: %s", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return summaries;
+  }
+
+  /**
+   * Connect to the AM of an instance and summarize its status.
+   * Each AM is only queried once, so the proxy is not cached: it is
+   * stopped as soon as the status has been read.
+   * Failures are recorded in the summary
+   * @param report application report of the instance
+   * @return the summary
+   */
+  private InstanceStatusSummary summarizeInstance(ApplicationReport report) {
+    InstanceStatusSummary summary =
+      new InstanceStatusSummary(report.getName(),
+                                report.getApplicationId().toString(),
+                                report.getYarnApplicationState().toString());
+    HoyaClusterProtocol appMaster = null;
+    try {
+      appMaster = RpcBinder.getProxy(getConfig(),
+                                     yarnClient.getRmClient(),
+                                     report,
+                                     Constants.CONNECT_TIMEOUT,
+                                     Constants.RPC_TIMEOUT);
+      HoyaClusterOperations operations =
+        new HoyaClusterOperations(appMaster);
+      summary.summarize(operations.getClusterDescription());
+    } catch (Exception e) {
+      log.debug("Failed to get the status of {}", report.getName(), e);
+      summary.failure = e.toString();
+    } finally {
+      if (appMaster != null) {
+        RPC.stopProxy(appMaster);
+      }
+    }
+    return summary;
+  }
+
   /**
    * Version Details
    * @return exit code
@@ -1948,7 +2169,9 @@ public class HoyaClient extends AbstractSliderLaunchedService implements RunServ
   }
 
   /**
-   * Create a cluster operations instance against a given cluster
+   * Create a cluster operations instance against a given cluster.
+   * If the AM proxy is the (cached) one of the last operations instance
+   * created, that instance is returned.
    * @param clustername cluster name
    * @return a bonded cluster operations instance
    * @throws YarnException YARN issues
@@ -1958,7 +2181,12 @@ public class HoyaClient extends AbstractSliderLaunchedService implements RunServ
                                                                             YarnException,
                                                                             IOException {
     HoyaClusterProtocol hoyaAM = bondToCluster(clustername);
-    return new HoyaClusterOperations(hoyaAM);
+    HoyaClusterOperations operations = lastClusterOperations;
+    if (operations == null || operations.getAppMaster() != hoyaAM) {
+      operations = new HoyaClusterOperations(hoyaAM);
+      lastClusterOperations = operations;
+    }
+    return operations;
   }
 
   /**
@@ -19,6 +19,7 @@
 package org.apache.hoya.yarn.client;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.protobuf.ByteString;
 import org.apache.hadoop.yarn.exceptions.YarnException;
 import org.apache.hoya.api.ClusterDescription;
 import org.apache.hoya.api.ClusterNode;
@@ -42,7 +43,9 @@ import java.util.Collection;
 import java.util.List;
 
 /**
- * Cluster operations at a slightly higher level than the RPC code
+ * Cluster operations at a slightly higher level than the RPC code.
+ * Instances hold no state other than the AM proxy, so can be reused
+ * across calls for as long as the proxy is valid.
  */
 public class HoyaClusterOperations {
   protected static final Logger
@@ -54,6 +57,14 @@ public class HoyaClusterOperations {
     this.appMaster = appMaster;
   }
 
+  /**
+   * Get the AM proxy these operations are bonded to
+   * @return the AM proxy
+   */
+  public HoyaClusterProtocol getAppMaster() {
+    return appMaster;
+  }
+
   /**
    * Get a node from the AM
    * @param appMaster AM
@@ -108,15 +119,17 @@ public class HoyaClusterOperations {
     throws YarnException, IOException {
     
     Messages.GetJSONClusterStatusRequestProto req =
-      Messages.GetJSONClusterStatusRequestProto.newBuilder().build();
+      Messages.GetJSONClusterStatusRequestProto.newBuilder()
+               .setCompact(true)
+               .build();
     Messages.GetJSONClusterStatusResponseProto resp =
       appMaster.getJSONClusterStatus(req);
-    String statusJson = resp.getClusterSpec();
+    ByteString statusJson = resp.getClusterSpecBytes();
     try {
-      return ClusterDescription.fromJson(statusJson);
+      return ClusterDescription.fromStream(statusJson.newInput());
     } catch (JsonParseException e) {
       log.error(
-        "Exception " + e + " parsing:\n" + statusJson,
+        "Exception " + e + " parsing:\n" + statusJson.toStringUtf8(),
         e);
       throw e;
     }
@@ -160,6 +173,29 @@ public class HoyaClusterOperations {
     return response.getSuccess();
   }
 
+  /**
+   * Start a rolling restart of a role. The AM replaces its instances
+   * a batch at a time; progress is in the role options of the
+   * cluster status
+   * @param role role to restart
+   * @param batchSize number of instances to replace at a time
+   * @return the number of instances to be replaced
+   * @throws YarnException
+   * @throws IOException
+   */
+  public int rollingRestart(String role, int batchSize) throws
+                                                         YarnException,
+                                                         IOException {
+    Messages.RollingRestartRequestProto req =
+      Messages.RollingRestartRequestProto.newBuilder()
+              .setRole(role)
+              .setBatchSize(batchSize)
+              .build();
+    Messages.RollingRestartResponseProto response =
+      appMaster.rollingRestart(req);
+    return response.getInstances();
+  }
+
   /**
    * List all node UUIDs in a role
    * @param role role name or "" for all
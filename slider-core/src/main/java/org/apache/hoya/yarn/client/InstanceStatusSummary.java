@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.client;
+
+import org.apache.hoya.api.ClusterDescription;
+import org.apache.hoya.api.ResourceKeys;
+import org.apache.hoya.api.RoleKeys;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A compact summary of the status of one application instance:
+ * the desired, actual and failed counts of each role, or
+ * the reason the status could not be retrieved.
+ */
+public class InstanceStatusSummary {
+
+  /**
+   * Role counts: desired, actual, failed
+   */
+  public static final class RoleCounts {
+    public final int desired;
+    public final int actual;
+    public final int failed;
+
+    public RoleCounts(int desired, int actual, int failed) {
+      this.desired = desired;
+      this.actual = actual;
+      this.failed = failed;
+    }
+
+    @Override
+    public String toString() {
+      return actual + "/" + desired +
+             (failed > 0 ? (" (failed " + failed + ")") : "");
+    }
+  }
+
+  public final String name;
+  public final String applicationId;
+  public final String yarnState;
+
+  /**
+   * Role name to counts; sorted by role name
+   */
+  public final Map<String, RoleCounts> roles =
+    new TreeMap<String, RoleCounts>();
+
+  /**
+   * Any failure retrieving the status; null if it was retrieved
+   */
+  public String failure;
+
+  public InstanceStatusSummary(String name,
+                               String applicationId,
+                               String yarnState) {
+    this.name = name;
+    this.applicationId = applicationId;
+    this.yarnState = yarnState;
+  }
+
+  /**
+   * Fill in the role counts from a status document
+   * @param status status of the instance
+   */
+  public void summarize(ClusterDescription status) {
+    for (Map.Entry<String, Map<String, String>> entry :
+        status.roles.entrySet()) {
+      Map<String, String> role = entry.getValue();
+      roles.put(entry.getKey(),
+                new RoleCounts(
+                  intOpt(role, ResourceKeys.COMPONENT_INSTANCES),
+                  intOpt(role, RoleKeys.ROLE_ACTUAL_INSTANCES),
+                  intOpt(role, RoleKeys.ROLE_FAILED_INSTANCES)));
+    }
+  }
+
+  private static int intOpt(Map<String, String> role, String key) {
+    String val = role.get(key);
+    if (val == null) {
+      return 0;
+    }
+    try {
+      return Integer.parseInt(val);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  public boolean isFailed() {
+    return failure != null;
+  }
+
+  /**
+   * A single line summary
+   * @return the instance, its state and the role counts
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(name).append(" ")
+           .append(applicationId).append(" ")
+           .append(yarnState);
+    if (failure != null) {
+      builder.append(" status unavailable: ").append(failure);
+    } else {
+      for (Map.Entry<String, RoleCounts> entry : roles.entrySet()) {
+        builder.append(" ").append(entry.getKey())
+               .append("=").append(entry.getValue());
+      }
+    }
+    return builder.toString();
+  }
+}
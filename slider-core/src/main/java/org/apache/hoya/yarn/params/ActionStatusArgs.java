@@ -31,11 +31,49 @@ public class ActionStatusArgs extends AbstractActionArgs {
     return HoyaActions.ACTION_STATUS;
   }
 
+  /**
+   * Default number of instances whose status is queried at the same
+   * time: {@value}
+   */
+  public static final int DEFAULT_THREADS = 8;
+
   @Parameter(names = {ARG_OUTPUT, ARG_OUTPUT_SHORT},
              description = "Output file for the configuration data")
   private String output;
 
+  @Parameter(names = {ARG_THREADS},
+             description = "Number of instances to query at the same time" +
+                           " when getting the status of many instances")
+  private int threads = DEFAULT_THREADS;
+
   public String getOutput() {
     return output;
   }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Is the status of more than one instance requested?
+   * That is the case if no instance, or more than one instance, is named
+   * @return true if a summary of many instances is required
+   */
+  public boolean isMultiInstance() {
+    return parameters.size() != 1;
+  }
+
+  /**
+   * Get the min #of params expected
+   * @return the min number of params in the {@link #parameters} field
+   */
+  @Override
+  public int getMinParams() {
+    return 0;
+  }
+
+  @Override
+  public int getMaxParams() {
+    return Integer.MAX_VALUE;
+  }
 }
@@ -57,6 +57,7 @@ public class ClientArgs extends CommonArgs {
     new ActionKillContainerArgs();
   private final ActionListArgs actionListArgs = new ActionListArgs();
   private final ActionRegistryArgs actionRegistryArgs = new ActionRegistryArgs();
+  private final ActionRestartArgs actionRestartArgs = new ActionRestartArgs();
   private final ActionStatusArgs actionStatusArgs = new ActionStatusArgs();
   private final ActionThawArgs actionThawArgs = new ActionThawArgs();
   private final ActionVersionArgs actionVersionArgs = new ActionVersionArgs();
@@ -86,6 +87,7 @@ public class ClientArgs extends CommonArgs {
       actionKillContainerArgs,
       actionListArgs,
       actionRegistryArgs,
+      actionRestartArgs,
       actionStatusArgs,
       actionThawArgs,
       actionHelpArgs,
@@ -156,6 +158,10 @@ public class ClientArgs extends CommonArgs {
     return actionRegistryArgs;
   }
 
+  public ActionRestartArgs getActionRestartArgs() {
+    return actionRestartArgs;
+  }
+
   public ActionStatusArgs getActionStatusArgs() {
     return actionStatusArgs;
   }
@@ -217,6 +223,9 @@ public class ClientArgs extends CommonArgs {
     } else if (HoyaActions.ACTION_REGISTRY.equals(action)) {
       bindCoreAction(actionRegistryArgs);
 
+    } else if (HoyaActions.ACTION_RESTART.equals(action)) {
+      bindCoreAction(actionRestartArgs);
+
     } else if (HoyaActions.ACTION_STATUS.equals(action)) {
       bindCoreAction(actionStatusArgs);
 
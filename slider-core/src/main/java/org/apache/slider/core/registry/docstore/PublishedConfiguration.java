@@ -21,10 +21,8 @@ package org.apache.slider.core.registry.docstore;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hoya.exceptions.BadConfigException;
 import org.apache.hoya.tools.ConfigHelper;
-import org.codehaus.jackson.JsonGenerationException;
 import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
-import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
 
 import java.io.IOException;
@@ -64,6 +62,13 @@ public class PublishedConfiguration {
   @JsonIgnore
   private Map<String, String> values = new HashMap<String, String>();
 
+  /**
+   * The rendered forms of the current values; rebuilt on demand
+   * after any change
+   */
+  @JsonIgnore
+  private RenderedConfiguration rendered;
+
   /**
    * Set the values from an iterable (this includes a Hadoop Configuration
    * and Java properties object).
@@ -71,19 +76,36 @@ public class PublishedConfiguration {
    * @param entries entries to put
    */
   @JsonIgnore
-  public void putValues(Iterable<Map.Entry<String, String>> entries) {
-    values = new HashMap<String, String>();
+  public synchronized void putValues(Iterable<Map.Entry<String, String>> entries) {
+    Map<String, String> newValues = new HashMap<String, String>();
     for (Map.Entry<String, String> entry : entries) {
-      values.put(entry.getKey(), entry.getValue());
+      newValues.put(entry.getKey(), entry.getValue());
+    }
+    values = newValues;
+    rendered = null;
+    setUpdated(System.currentTimeMillis());
+  }
+
+  /**
+   * Get the rendered forms of the configuration, rendering
+   * them if the values have changed since the last call
+   * @return the rendered configuration
+   * @throws IOException on any rendering failure
+   */
+  @JsonIgnore
+  public synchronized RenderedConfiguration render() throws IOException {
+    if (rendered == null) {
+      rendered = new RenderedConfiguration(values, description, this,
+                                           updated);
     }
-    
+    return rendered;
   }
 
   /**
    * Convert to Hadoop XML
    * @return
    */
-  public Configuration asConfiguration() {
+  public synchronized Configuration asConfiguration() {
     Configuration conf = new Configuration(false);
     try {
       ConfigHelper.addConfigMap(conf, values, "");
@@ -102,7 +124,7 @@ public class PublishedConfiguration {
    * Convert values to properties
    * @return a property file
    */
-  public Properties asProperties() {
+  public synchronized Properties asProperties() {
     Properties props = new Properties();
     props.putAll(values);
     return props;
@@ -113,9 +135,7 @@ public class PublishedConfiguration {
    * @return
    * @throws IOException
    */
-  public String asJson() throws IOException {
-    ObjectMapper mapper = new ObjectMapper();
-    String json = mapper.writeValueAsString(values);
-    return json;
+  public synchronized String asJson() throws IOException {
+    return RenderedConfiguration.MAPPER.writeValueAsString(values);
   }
 }
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.slider.core.registry.docstore;
+
+import org.apache.hoya.tools.ConfigHelper;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The immutable, pre-rendered forms of a {@link PublishedConfiguration}:
+ * the bytes of each output format, plain and gzipped, along with the
+ * entity tags and modification time needed for conditional GETs.
+ *
+ * A new instance is built whenever the configuration changes, so serving
+ * a request is a matter of writing out an existing byte array.
+ */
+public final class RenderedConfiguration {
+
+  /**
+   * The output formats
+   */
+  public enum Format {
+    JSON("json"),
+    XML("xml"),
+    PROPERTIES("properties");
+
+    private final String suffix;
+
+    Format(String suffix) {
+      this.suffix = suffix;
+    }
+
+    public String getSuffix() {
+      return suffix;
+    }
+  }
+
+  /**
+   * Mapper shared across renderings; thread safe once configured
+   */
+  static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final String hash;
+  private final long lastModified;
+  private final Map<Format, byte[]> plain =
+    new EnumMap<Format, byte[]>(Format.class);
+  private final Map<Format, byte[]> gzipped =
+    new EnumMap<Format, byte[]>(Format.class);
+
+  /**
+   * Render a configuration
+   * @param values the values
+   * @param description description, used as the properties file comment
+   * @param conf configuration builder for the XML output
+   * @param lastModified time of the last change
+   * @throws IOException on any rendering failure
+   */
+  RenderedConfiguration(Map<String, String> values,
+                        String description,
+                        PublishedConfiguration conf,
+                        long lastModified) throws IOException {
+    this.lastModified = lastModified;
+    Map<String, String> sorted = new TreeMap<String, String>(values);
+    byte[] json = MAPPER.writeValueAsBytes(sorted);
+    hash = sha1(json);
+    add(Format.JSON, json);
+    add(Format.XML,
+        ConfigHelper.toXml(conf.asConfiguration()).getBytes("UTF-8"));
+    Properties properties = new Properties();
+    properties.putAll(sorted);
+    ByteArrayOutputStream props = new ByteArrayOutputStream();
+    properties.store(props, description);
+    add(Format.PROPERTIES, props.toByteArray());
+  }
+
+  private void add(Format format, byte[] bytes) throws IOException {
+    plain.put(format, bytes);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    gzip.write(bytes);
+    gzip.close();
+    gzipped.put(format, out.toByteArray());
+  }
+
+  private static String sha1(byte[] bytes) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    byte[] sum = digest.digest(bytes);
+    StringBuilder builder = new StringBuilder(sum.length * 2);
+    for (byte b : sum) {
+      builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+      builder.append(Character.forDigit(b & 0xf, 16));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Get the rendered content. The array is shared: it must not be modified
+   * @param format format
+   * @param gzip true for the gzipped form
+   * @return the bytes
+   */
+  public byte[] getContent(Format format, boolean gzip) {
+    return gzip ? gzipped.get(format) : plain.get(format);
+  }
+
+  /**
+   * Get the entity tag of a format and encoding; this is derived from
+   * the values alone, so is stable across re-renderings of the same values
+   * @param format format
+   * @param gzip true for the gzipped form
+   * @return the tag value, without quotes
+   */
+  public String getETag(Format format, boolean gzip) {
+    return hash + "-" + format.getSuffix() + (gzip ? "-gz" : "");
+  }
+
+  /**
+   * Get the content hash of the values
+   * @return a hex SHA-1 string
+   */
+  public String getHash() {
+    return hash;
+  }
+
+  public long getLastModified() {
+    return lastModified;
+  }
+}
@@ -21,6 +21,8 @@ package org.apache.slider.server.services.curator;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.x.discovery.ServiceDiscovery;
 import org.apache.curator.x.discovery.ServiceInstance;
 import org.apache.curator.x.discovery.ServiceInstanceBuilder;
@@ -38,8 +40,13 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * YARN service for Curator service discovery; the discovery instance's
@@ -59,6 +66,25 @@ public class RegistryBinderService<Payload> extends CuratorService {
     new JsonSerDeser<CuratorServiceInstance<Payload>>(
       CuratorServiceInstance.class);
 
+  /**
+   * Default limit on the number of service names cached: {@value}
+   */
+  public static final int DEFAULT_MAX_INSTANCE_CACHES = 16;
+
+  /**
+   * Time in millis to wait for a batch of instance reads: {@value}
+   */
+  public static final int BATCH_READ_TIMEOUT = 60000;
+
+  /**
+   * Local caches of the instances of the service names registered through
+   * this service, in least-recently-used order. Guarded by itself.
+   */
+  private final LinkedHashMap<String, RegistryInstanceCache<Payload>> caches =
+    new LinkedHashMap<String, RegistryInstanceCache<Payload>>(16, 0.75f, true);
+
+  private int maxInstanceCaches = DEFAULT_MAX_INSTANCE_CACHES;
+
   /**
    * Create an instance
    * @param curator. Again, does not need to be started
@@ -86,6 +112,14 @@ public class RegistryBinderService<Payload> extends CuratorService {
 
   @Override
   protected void serviceStop() throws Exception {
+    List<RegistryInstanceCache<Payload>> closing;
+    synchronized (caches) {
+      closing = new ArrayList<RegistryInstanceCache<Payload>>(caches.values());
+      caches.clear();
+    }
+    for (RegistryInstanceCache<Payload> cache : closing) {
+      closeCuratorComponent(cache);
+    }
     closeCuratorComponent(discovery);
     super.serviceStop();
   }
@@ -132,6 +166,11 @@ public class RegistryBinderService<Payload> extends CuratorService {
     synchronized (this) {
       entries.put(id, instance);
     }
+    RegistryInstanceCache<Payload> cache = watchServiceType(name);
+    if (cache.isInitialized()) {
+      //make the entry visible locally without waiting for the watch
+      cache.refresh(id);
+    }
     return instance;
   }
 
@@ -163,7 +202,101 @@ public class RegistryBinderService<Payload> extends CuratorService {
   }
 
 
+  /**
+   * Set the limit on the number of service names cached; when it is
+   * exceeded the least recently used cache is closed
+   * @param maxInstanceCaches new limit
+   */
+  public void setMaxInstanceCaches(int maxInstanceCaches) {
+    Preconditions.checkArgument(maxInstanceCaches > 0,
+                                "limit must be positive");
+    synchronized (caches) {
+      this.maxInstanceCaches = maxInstanceCaches;
+    }
+  }
+
+  /**
+   * Get the cache of a service name registered through this service,
+   * creating and starting it if there is none. The cache is populated in
+   * the background; this does not wait for it.
+   * @param name service name
+   * @return the cache
+   * @throws Exception on any failure to start the cache
+   */
+  private RegistryInstanceCache<Payload> watchServiceType(String name) throws
+                                                                      Exception {
+    RegistryInstanceCache<Payload> cache;
+    List<RegistryInstanceCache<Payload>> evicted =
+      new ArrayList<RegistryInstanceCache<Payload>>();
+    synchronized (caches) {
+      cache = caches.get(name);
+      if (cache != null) {
+        return cache;
+      }
+      cache = new RegistryInstanceCache<Payload>(getCurator(), name,
+                                                 pathForName(name), deser);
+      caches.put(name, cache);
+      Iterator<RegistryInstanceCache<Payload>> lru =
+        caches.values().iterator();
+      while (caches.size() > maxInstanceCaches) {
+        evicted.add(lru.next());
+        lru.remove();
+      }
+    }
+    for (RegistryInstanceCache<Payload> old : evicted) {
+      log.debug("Closing registry cache of {}", old.getName());
+      closeCuratorComponent(old);
+    }
+    try {
+      cache.start();
+    } catch (Exception e) {
+      synchronized (caches) {
+        caches.remove(name);
+      }
+      closeCuratorComponent(cache);
+      throw e;
+    }
+    return cache;
+  }
+
+  /**
+   * Get the cache of a service name. Caches are only created for the
+   * service names registered through this service, never on a lookup.
+   * @param name service name
+   * @return the cache, which may not yet be populated; null if there
+   * is none
+   */
+  public RegistryInstanceCache<Payload> getInstanceCache(String name) {
+    synchronized (caches) {
+      return caches.get(name);
+    }
+  }
+
+  /**
+   * Get the cache of a service name if it is populated
+   * @param name service name
+   * @return the cache or null, in which case ZK must be read directly
+   */
+  private RegistryInstanceCache<Payload> getPopulatedCache(String name) {
+    RegistryInstanceCache<Payload> cache = getInstanceCache(name);
+    return cache != null && cache.isInitialized() ? cache : null;
+  }
+
   public List<String> instanceIDs(String servicename) throws Exception {
+    RegistryInstanceCache<Payload> cache = getPopulatedCache(servicename);
+    if (cache != null) {
+      return cache.instanceIDs();
+    }
+    return readInstanceIDs(servicename);
+  }
+
+  /**
+   * Read the instance IDs of a service name from ZK
+   * @param servicename service name
+   * @return the IDs
+   * @throws Exception errors
+   */
+  private List<String> readInstanceIDs(String servicename) throws Exception {
     List<String> instanceIds;
 
     try {
@@ -177,7 +310,9 @@ public class RegistryBinderService<Payload> extends CuratorService {
 
 
   /**
-   * Return a service instance POJO
+   * Return a service instance POJO. This is served from the
+   * cache of the service name if there is one, falling back to ZK if
+   * it is not (yet) in the cache.
    *
    * @param name name of the service
    * @param id ID of the instance
@@ -186,6 +321,23 @@ public class RegistryBinderService<Payload> extends CuratorService {
    */
   public CuratorServiceInstance<Payload> queryForInstance(String name, String id) throws
                                                                          Exception {
+    RegistryInstanceCache<Payload> cache = getPopulatedCache(name);
+    if (cache != null) {
+      CuratorServiceInstance<Payload> instance = cache.get(id);
+      return instance != null ? instance : cache.refresh(id);
+    }
+    return readInstance(name, id);
+  }
+
+  /**
+   * Read a service instance from ZK
+   * @param name name of the service
+   * @param id ID of the instance
+   * @return the instance or <code>null</code> if not found
+   * @throws Exception errors
+   */
+  private CuratorServiceInstance<Payload> readInstance(String name, String id)
+      throws Exception {
     String path = pathForInstance(name, id);
     try {
       byte[] bytes = getCurator().getData().forPath(path);
@@ -197,7 +349,9 @@ public class RegistryBinderService<Payload> extends CuratorService {
   }
 
   /**
-   * List all the instances
+   * List all the instances. This is an in-memory scan of the
+   * service name's cache if there is one; otherwise ZK is read,
+   * fetching all the instances in one batch
    * @param name name of the service
    * @return a list of instances and their payloads
    * @throws IOException any problem
@@ -205,16 +359,11 @@ public class RegistryBinderService<Payload> extends CuratorService {
   public List<CuratorServiceInstance<Payload>> listInstances(String name) throws
     IOException {
     try {
-      List<String> instanceIDs = instanceIDs(name);
-      List<CuratorServiceInstance<Payload>> instances =
-        new ArrayList<CuratorServiceInstance<Payload>>(
-          instanceIDs.size());
-      for (String instanceID : instanceIDs) {
-        CuratorServiceInstance<Payload> instance =
-          queryForInstance(name, instanceID);
-        instances.add(instance);
+      RegistryInstanceCache<Payload> cache = getPopulatedCache(name);
+      if (cache != null) {
+        return cache.listInstances();
       }
-      return instances;
+      return readInstances(name, readInstanceIDs(name));
     } catch (IOException e) {
       throw e;
     } catch (Exception e) {
@@ -222,5 +371,53 @@ public class RegistryBinderService<Payload> extends CuratorService {
     }
   }
 
+  /**
+   * Read service instances from ZK. The reads are all issued in the
+   * background, so they are pipelined down the one ZK connection, and
+   * then awaited together: the cost is one round trip, not one per
+   * instance. Instances deleted since they were listed are skipped.
+   * @param name name of the service
+   * @param ids IDs of the instances
+   * @return the instances found, in the order of their IDs
+   * @throws Exception errors, including a timeout
+   */
+  private List<CuratorServiceInstance<Payload>> readInstances(String name,
+      List<String> ids) throws Exception {
+    int count = ids.size();
+    final CountDownLatch done = new CountDownLatch(count);
+    final AtomicReferenceArray<CuratorEvent> results =
+      new AtomicReferenceArray<CuratorEvent>(count);
+    for (int i = 0; i < count; i++) {
+      final int index = i;
+      getCurator().getData().inBackground(new BackgroundCallback() {
+        @Override
+        public void processResult(CuratorFramework client,
+                                  CuratorEvent event) {
+          results.set(index, event);
+          done.countDown();
+        }
+      }).forPath(pathForInstance(name, ids.get(i)));
+    }
+    if (!done.await(BATCH_READ_TIMEOUT, TimeUnit.MILLISECONDS)) {
+      throw new IOException("Timed out reading the " + count
+                            + " instances of " + name);
+    }
+    List<CuratorServiceInstance<Payload>> instances =
+      new ArrayList<CuratorServiceInstance<Payload>>(count);
+    for (int i = 0; i < count; i++) {
+      CuratorEvent event = results.get(i);
+      KeeperException.Code code =
+        KeeperException.Code.get(event.getResultCode());
+      if (code == KeeperException.Code.NONODE) {
+        continue;
+      }
+      if (code != KeeperException.Code.OK) {
+        throw KeeperException.create(code, event.getPath());
+      }
+      instances.add(deser.fromBytes(event.getData()));
+    }
+    return instances;
+  }
+
 
 }
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.slider.server.services.curator;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.hoya.core.persist.JsonSerDeser;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A watch-driven local cache of the instances registered under one
+ * service name.
+ *
+ * It is built on a Curator {@link PathChildrenCache}: the initial
+ * population is read with asynchronous, pipelined reads of the child
+ * znodes, after which every change is pushed by a watch. The entries are
+ * kept deserialized, so listing the instances is an in-memory scan.
+ * @param <Payload> the payload of the instances
+ */
+public class RegistryInstanceCache<Payload>
+    implements PathChildrenCacheListener, Closeable {
+  protected static final Logger log =
+    LoggerFactory.getLogger(RegistryInstanceCache.class);
+
+  private final String name;
+  private final String path;
+  private final CuratorFramework curator;
+  private final PathChildrenCache cache;
+  private final JsonSerDeser<CuratorServiceInstance<Payload>> deser;
+
+  private final ConcurrentMap<String, CuratorServiceInstance<Payload>>
+    instances = new ConcurrentHashMap<String, CuratorServiceInstance<Payload>>();
+  private final CountDownLatch initialized = new CountDownLatch(1);
+  private final AtomicLong updates = new AtomicLong();
+  private volatile long lastUpdated;
+  private volatile long lastUpdateLag;
+
+  /**
+   * Create a cache; it must be started before use
+   * @param curator a started curator instance
+   * @param name service name
+   * @param path path of the service in ZK
+   * @param deser deserializer for the entries
+   */
+  public RegistryInstanceCache(CuratorFramework curator,
+                               String name,
+                               String path,
+                               JsonSerDeser<CuratorServiceInstance<Payload>> deser) {
+    this.curator = curator;
+    this.name = name;
+    this.path = path;
+    this.deser = deser;
+    cache = new PathChildrenCache(curator, path, true);
+  }
+
+  /**
+   * Start the cache; the initial population happens in the background
+   * @throws Exception on any failure to start the cache
+   */
+  public void start() throws Exception {
+    cache.getListenable().addListener(this);
+    cache.start(PathChildrenCache.StartMode.POST_INITIALIZED_EVENT);
+  }
+
+  @Override
+  public void close() throws IOException {
+    cache.close();
+  }
+
+  /**
+   * Wait for the initial population of the cache
+   * @param millis time to wait
+   * @return true if the cache is populated
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean awaitInitialized(long millis) throws InterruptedException {
+    return initialized.await(millis, TimeUnit.MILLISECONDS);
+  }
+
+  public boolean isInitialized() {
+    return initialized.getCount() == 0;
+  }
+
+  @Override
+  public void childEvent(CuratorFramework client,
+                         PathChildrenCacheEvent event) {
+    switch (event.getType()) {
+      case CHILD_ADDED:
+      case CHILD_UPDATED:
+        apply(event.getData());
+        break;
+      case CHILD_REMOVED:
+        instances.remove(idOf(event.getData()));
+        noteUpdate(0);
+        break;
+      case INITIALIZED:
+        log.debug("Registry cache of {} initialized with {} entries",
+                  name, instances.size());
+        initialized.countDown();
+        break;
+      default:
+        log.debug("Registry cache of {}: {}", name, event.getType());
+    }
+  }
+
+  private String idOf(ChildData data) {
+    return ZKPaths.getNodeFromPath(data.getPath());
+  }
+
+  private void apply(ChildData data) {
+    byte[] bytes = data.getData();
+    if (bytes == null) {
+      return;
+    }
+    String id = idOf(data);
+    try {
+      instances.put(id, deser.fromBytes(bytes));
+    } catch (IOException e) {
+      log.warn("Unparseable registry entry {}", data.getPath(), e);
+      return;
+    }
+    Stat stat = data.getStat();
+    noteUpdate(stat != null ? stat.getMtime() : 0);
+  }
+
+  /**
+   * Record an update and, if known, the lag from the znode's
+   * modification to the update reaching this cache
+   * @param modified modification time of the znode, or 0
+   */
+  private void noteUpdate(long modified) {
+    long now = System.currentTimeMillis();
+    if (modified > 0) {
+      lastUpdateLag = Math.max(0, now - modified);
+    }
+    lastUpdated = now;
+    updates.incrementAndGet();
+  }
+
+  /**
+   * Re-read a single entry from ZK, for a write to be visible to
+   * this process before the watch fires
+   * @param id instance ID
+   * @return the instance or null if there is no such entry
+   * @throws Exception on any failure
+   */
+  public CuratorServiceInstance<Payload> refresh(String id) throws Exception {
+    String instancePath = ZKPaths.makePath(path, id);
+    try {
+      CuratorServiceInstance<Payload> instance =
+        deser.fromBytes(curator.getData().forPath(instancePath));
+      instances.put(id, instance);
+      return instance;
+    } catch (KeeperException.NoNodeException e) {
+      instances.remove(id);
+      return null;
+    }
+  }
+
+  public CuratorServiceInstance<Payload> get(String id) {
+    return instances.get(id);
+  }
+
+  public List<String> instanceIDs() {
+    return new ArrayList<String>(instances.keySet());
+  }
+
+  public List<CuratorServiceInstance<Payload>> listInstances() {
+    return new ArrayList<CuratorServiceInstance<Payload>>(instances.values());
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int size() {
+    return instances.size();
+  }
+
+  /**
+   * Get the number of updates applied to the cache
+   * @return the update count
+   */
+  public long getUpdateCount() {
+    return updates.get();
+  }
+
+  /**
+   * Get the time of the last update
+   * @return time in millis; 0 if there have been none
+   */
+  public long getLastUpdated() {
+    return lastUpdated;
+  }
+
+  /**
+   * Get the lag between the last change to an entry in ZK
+   * and its arrival in the cache
+   * @return lag in millis
+   */
+  public long getLastUpdateLag() {
+    return lastUpdateLag;
+  }
+
+  @Override
+  public String toString() {
+    return "RegistryInstanceCache{" +
+           "name='" + name + '\'' +
+           ", size=" + instances.size() +
+           ", initialized=" + isInitialized() +
+           ", updates=" + updates +
+           ", lastUpdateLag=" + lastUpdateLag +
+           '}';
+  }
+}
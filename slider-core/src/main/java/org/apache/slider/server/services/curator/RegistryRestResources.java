@@ -43,7 +43,9 @@ import javax.ws.rs.core.Response;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 @Singleton
@@ -139,6 +141,39 @@ public class RegistryRestResources extends DiscoveryResource<ServiceInstanceData
     }
   }
 
+  /**
+   * Get the state of the local cache of a service name:
+   * its size, update count and the lag of the last update.
+   * Only the service names registered by this process are cached.
+   * @param name service name
+   * @return the statistics
+   */
+  @GET
+  @Path("v1/cache/{name}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getCacheStatistics(@PathParam("name") String name) {
+    try {
+      RegistryInstanceCache<ServiceInstanceData> cache =
+          registry.getInstanceCache(name);
+      if (cache == null) {
+        return Response.status(Response.Status.NOT_FOUND).build();
+      }
+      if (!cache.isInitialized()) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+      }
+      Map<String, Long> stats = new HashMap<String, Long>();
+      stats.put("size", (long) cache.size());
+      stats.put("updates", cache.getUpdateCount());
+      stats.put("lastUpdated", cache.getLastUpdated());
+      stats.put("lastUpdateLagMillis", cache.getLastUpdateLag());
+      return Response.ok(stats).build();
+    } catch (Exception e) {
+      log.error(String.format("Trying to get the cache of service (%s)", name),
+                e);
+      return Response.serverError().build();
+    }
+  }
+
   @Override
   @PUT
   @Path("v1/service/{name}/{id}")
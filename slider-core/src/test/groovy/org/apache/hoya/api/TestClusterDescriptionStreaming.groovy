@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.api
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.junit.Test
+
+import java.lang.management.ManagementFactory
+import java.lang.management.ThreadMXBean
+
+/**
+ * Test the streaming and compact JSON output of cluster descriptions,
+ * and log the bytes allocated per status document at scale
+ */
+@CompileStatic
+@Slf4j
+class TestClusterDescriptionStreaming {
+
+  public static final String ROLE = "worker"
+
+  /**
+   * Build a status document with the given number of live containers
+   * @param containers container count
+   * @return the description
+   */
+  ClusterDescription buildStatus(int containers) {
+    ClusterDescription cd = new ClusterDescription()
+    cd.name = "streaming"
+    cd.state = ClusterDescription.STATE_LIVE
+    cd.setRoleOpt(ROLE, ResourceKeys.COMPONENT_INSTANCES, containers)
+    Map<String, ClusterNode> nodes = new HashMap<String, ClusterNode>()
+    List<String> ids = []
+    for (int i = 0; i < containers; i++) {
+      ClusterNode node = new ClusterNode()
+      node.name = "container_1400000000000_0001_01_" + String.format("%06d", i)
+      node.role = ROLE
+      node.roleId = 1
+      node.host = "host" + (i % 500) + ".example.org"
+      node.state = ClusterDescription.STATE_LIVE
+      node.createTime = i
+      node.startTime = i
+      nodes.put(node.name, node)
+      ids << node.name
+    }
+    cd.instances.put(ROLE, ids)
+    cd.status = new HashMap<String, Object>()
+    cd.status.put(ClusterDescriptionKeys.KEY_CLUSTER_LIVE,
+                  [(ROLE): nodes] as Map<String, Object>)
+    return cd
+  }
+
+  @Test
+  public void testStreamedMatchesString() throws Throwable {
+    ClusterDescription cd = buildStatus(10)
+    ByteArrayOutputStream out = new ByteArrayOutputStream()
+    cd.writeJson(out, false)
+    assert cd.toJsonString() == out.toString("UTF-8")
+  }
+
+  @Test
+  public void testCompactRoundTrip() throws Throwable {
+    ClusterDescription cd = buildStatus(10)
+    String pretty = cd.toJsonString()
+    String compact = cd.toJsonString(true)
+    assert !compact.contains("\n")
+    assert compact.length() < pretty.length()
+    ClusterDescription parsed = ClusterDescription.fromJson(compact)
+    assert parsed.instances[ROLE].size() == 10
+    assert parsed.toJsonString() == ClusterDescription.fromJson(pretty).toJsonString()
+  }
+
+  @Test
+  public void testDeepCopyIsIndependent() throws Throwable {
+    ClusterDescription cd = buildStatus(3)
+    ClusterDescription copy = ClusterDescription.copy(cd)
+    assert copy.toJsonString() == cd.toJsonString()
+    copy.setRoleOpt(ROLE, ResourceKeys.COMPONENT_INSTANCES, 7)
+    assert cd.getRoleOpt(ROLE, ResourceKeys.COMPONENT_INSTANCES, "") == "3"
+    ClusterDescription clone = cd.deepClone()
+    assert clone.instances[ROLE] == cd.instances[ROLE]
+  }
+
+  @Test
+  public void testAllocationsAtScale() throws Throwable {
+    measure(1000)
+    measure(10000)
+  }
+
+  /**
+   * Log the size of the status documents and, where the JVM
+   * supports it, the bytes allocated to generate them through
+   * the string and streaming paths
+   * @param containers container count
+   */
+  void measure(int containers) {
+    ClusterDescription cd = buildStatus(containers)
+    // warm up the serializers
+    cd.toJsonString()
+    cd.writeJson(new ByteArrayOutputStream(), true)
+
+    long stringBytes = allocated {
+      cd.toJsonString().getBytes("UTF-8")
+    }
+    long prettyBytes = allocated {
+      cd.writeJson(new ByteArrayOutputStream(64 * 1024), false)
+    }
+    long compactBytes = allocated {
+      cd.writeJson(new ByteArrayOutputStream(64 * 1024), true)
+    }
+    int prettySize = cd.toJsonString().getBytes("UTF-8").length
+    int compactSize = cd.toJsonString(true).getBytes("UTF-8").length
+    log.info("$containers containers: document $prettySize bytes," +
+             " compact $compactSize bytes")
+    if (stringBytes >= 0) {
+      log.info("$containers containers allocated: string $stringBytes," +
+               " streamed $prettyBytes, streamed compact $compactBytes")
+    }
+    assert compactSize < prettySize
+  }
+
+  /**
+   * Measure the bytes allocated by this thread during an action
+   * @param action action to run
+   * @return the bytes allocated, or -1 if the JVM cannot tell
+   */
+  long allocated(Closure action) {
+    ThreadMXBean bean = ManagementFactory.threadMXBean
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      action.call()
+      return -1
+    }
+    com.sun.management.ThreadMXBean sunBean =
+        (com.sun.management.ThreadMXBean) bean
+    long tid = Thread.currentThread().id
+    long before = sunBean.getThreadAllocatedBytes(tid)
+    action.call()
+    return sunBean.getThreadAllocatedBytes(tid) - before
+  }
+}
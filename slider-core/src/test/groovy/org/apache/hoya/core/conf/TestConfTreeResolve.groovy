@@ -90,4 +90,53 @@ class TestConfTreeResolve extends Assert {
     assert worker["timeout"] == "1000"
 
   }
+
+  @Test
+  public void testResolveIsLayered() throws Throwable {
+    def orig = ExampleConfResources.loadResource(overridden)
+    ConfTreeOperations ops = new ConfTreeOperations(orig)
+    ops.validate()
+    ops.resolve()
+    assert ops.isResolved()
+
+    // the underlying component maps are not copied into
+    assert orig.components["simple"].isEmpty()
+    assert orig.components["worker"].size() == 3
+
+    def worker = ops.getMandatoryComponent("worker")
+    assert worker.isLayered()
+    assert worker.getOption("g2", null) == "b"
+    assert worker.containsKey("g2")
+
+    // global changes are visible through the view
+    ops.set("g3", "c")
+    assert worker["g3"] == "c"
+    assert ops.getComponentOpt("simple", "g3", null) == "c"
+
+    // writes only go to the component
+    worker["g2"] = "local"
+    assert worker["g2"] == "local"
+    assert ops.globalOptions["g2"] == "b"
+
+    // flattening is a resolved copy, leaving the tree untouched
+    ConfTree flattened = ops.flatten()
+    assert flattened.components["simple"] == ["g1": "a", "g2": "b", "g3": "c"]
+    assert flattened.components["worker"]["g1"] == "overridden-by-worker"
+    assert flattened.components["worker"]["g2"] == "local"
+    assert orig.components["simple"].isEmpty()
+    assert worker.flatten() == flattened.components["worker"]
+  }
+
+  @Test
+  public void testLayeredChain() throws Throwable {
+    def defaults = new MapOperations("defaults", ["d": "1", "g": "0"])
+    def global = new MapOperations("global", ["g": "2"], defaults)
+    def component = new MapOperations("component", ["c": "3"], global)
+    assert component["d"] == "1"
+    assert component["g"] == "2"
+    assert component["c"] == "3"
+    assert component.size() == 3
+    assert component.keySet() == ["c", "d", "g"] as Set
+    assert component.getOptionInt("missing", 4) == 4
+  }
 }
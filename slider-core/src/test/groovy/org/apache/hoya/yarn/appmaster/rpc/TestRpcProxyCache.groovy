@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.rpc
+
+import com.google.protobuf.BlockingService
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.ipc.Server
+import org.apache.hadoop.yarn.api.records.ApplicationId
+import org.apache.hadoop.yarn.api.records.ApplicationReport
+import org.apache.hadoop.yarn.api.records.YarnApplicationState
+import org.apache.hadoop.yarn.util.Records
+import org.apache.hoya.api.HoyaClusterProtocol
+import org.apache.hoya.api.proto.HoyaClusterAPI
+import org.apache.hoya.api.proto.Messages
+import org.junit.After
+import org.junit.Test
+
+import java.lang.reflect.InvocationHandler
+import java.lang.reflect.Method
+import java.lang.reflect.Proxy
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Test the caching of AM proxies against an in-process AM stub
+ * which only implements echo
+ */
+@CompileStatic
+@Slf4j
+class TestRpcProxyCache {
+
+  public static final int RPC_TIMEOUT = 5000
+  public static final int ITERATIONS = 200
+
+  Configuration conf = new Configuration()
+  AtomicInteger echoes = new AtomicInteger()
+  List<Server> servers = []
+  RpcProxyCache cache
+
+  @After
+  public void teardown() {
+    cache?.close()
+    servers.each { Server server -> server.stop() }
+  }
+
+  /**
+   * An AM stub which only supports echo
+   */
+  class EchoHandler implements InvocationHandler {
+    @Override
+    Object invoke(Object proxy, Method method, Object[] args) {
+      switch (method.name) {
+        case "echo":
+          echoes.incrementAndGet()
+          Messages.EchoRequestProto request = (Messages.EchoRequestProto) args[0]
+          return Messages.EchoResponseProto.newBuilder()
+                                           .setText(request.text)
+                                           .build()
+        case "getProtocolVersion":
+          return HoyaClusterProtocol.versionID
+        default:
+          throw new UnsupportedOperationException(method.name)
+      }
+    }
+  }
+
+  /**
+   * Start an AM stub
+   * @return the port it is listening on
+   */
+  int startAM() {
+    HoyaClusterProtocol stub = (HoyaClusterProtocol) Proxy.newProxyInstance(
+        HoyaClusterProtocol.classLoader,
+        [HoyaClusterProtocol] as Class[],
+        new EchoHandler())
+    BlockingService service =
+        HoyaClusterAPI.HoyaClusterProtocolPB.newReflectiveBlockingService(
+            new HoyaClusterProtocolPBImpl(stub))
+    Server server = RpcBinder.createProtobufServer(
+        new InetSocketAddress("127.0.0.1", 0), conf, null, 2, service, null)
+    server.start()
+    servers << server
+    return server.listenerAddress.port
+  }
+
+  ApplicationReport report(int port) {
+    ApplicationReport report = Records.newRecord(ApplicationReport)
+    report.applicationId = ApplicationId.newInstance(1400000000000L, 1)
+    report.name = "proxycache"
+    report.user = "user"
+    report.host = "127.0.0.1"
+    report.rpcPort = port
+    report.yarnApplicationState = YarnApplicationState.RUNNING
+    return report
+  }
+
+  String echo(HoyaClusterProtocol am, String text) {
+    return am.echo(Messages.EchoRequestProto.newBuilder()
+                                            .setText(text)
+                                            .build()).text
+  }
+
+  @Test
+  public void testProxyReused() throws Throwable {
+    int port = startAM()
+    cache = new RpcProxyCache(conf, RPC_TIMEOUT, 60000)
+    HoyaClusterProtocol am1 = cache.getProxy(null, report(port), 0)
+    HoyaClusterProtocol am2 = cache.getProxy(null, report(port), 0)
+    assert am1.is(am2)
+    assert cache.size() == 1
+    assert "hello" == echo(am1, "hello")
+    // no liveness checks within the interval
+    assert echoes.get() == 1
+  }
+
+  @Test
+  public void testLivenessChecked() throws Throwable {
+    int port = startAM()
+    cache = new RpcProxyCache(conf, RPC_TIMEOUT, 0)
+    HoyaClusterProtocol am1 = cache.getProxy(null, report(port), 0)
+    Thread.sleep(5)
+    HoyaClusterProtocol am2 = cache.getProxy(null, report(port), 0)
+    assert am1.is(am2)
+    assert echoes.get() == 1
+  }
+
+  @Test
+  public void testDeadProxyReplaced() throws Throwable {
+    int port = startAM()
+    cache = new RpcProxyCache(conf, RPC_TIMEOUT, 0)
+    HoyaClusterProtocol am1 = cache.getProxy(null, report(port), 0)
+    servers[0].stop()
+    Thread.sleep(5)
+    HoyaClusterProtocol am2 = cache.getProxy(null, report(port), 0)
+    assert !am1.is(am2)
+    assert cache.size() == 1
+  }
+
+  @Test
+  public void testAMRestartInvalidates() throws Throwable {
+    int port1 = startAM()
+    int port2 = startAM()
+    cache = new RpcProxyCache(conf, RPC_TIMEOUT, 60000)
+    HoyaClusterProtocol am1 = cache.getProxy(null, report(port1), 0)
+    HoyaClusterProtocol am2 = cache.getProxy(null, report(port2), 0)
+    assert !am1.is(am2)
+    assert cache.size() == 1
+    assert "restarted" == echo(am2, "restarted")
+    assert 0 == cache.invalidate(
+        ApplicationId.newInstance(1400000000001L, 1).toString())
+    assert 1 == cache.invalidate(report(port2).applicationId.toString())
+    assert cache.size() == 0
+  }
+
+  @Test
+  public void testIdleProxyEvicted() throws Throwable {
+    int port = startAM()
+    cache = new RpcProxyCache(conf, RPC_TIMEOUT, 60000, 1)
+    HoyaClusterProtocol am1 = cache.getProxy(null, report(port), 0)
+    Thread.sleep(5)
+    assert 1 == cache.evictIdle()
+    assert cache.size() == 0
+    HoyaClusterProtocol am2 = cache.getProxy(null, report(port), 0)
+    assert !am1.is(am2)
+  }
+
+  @Test
+  public void testFailedCallInvalidates() throws Throwable {
+    conf.setInt("ipc.client.connect.max.retries", 0)
+    int port = startAM()
+    cache = new RpcProxyCache(conf, RPC_TIMEOUT, 60000)
+    HoyaClusterProtocol am = cache.getProxy(null, report(port), 0)
+    assert "hello" == echo(am, "hello")
+    assert cache.size() == 1
+    servers[0].stop()
+    try {
+      echo(am, "unreachable")
+      assert false: "expected a failure"
+    } catch (IOException expected) {
+      log.info("Expected failure: $expected")
+    }
+    assert cache.size() == 0
+  }
+
+  @Test
+  public void testLatency() throws Throwable {
+    int port = startAM()
+    ApplicationReport report = report(port)
+    cache = new RpcProxyCache(conf, RPC_TIMEOUT, 60000)
+    // warm up both paths
+    echo(cache.getProxy(null, report, 0), "warmup")
+    HoyaClusterProtocolProxy fresh =
+        (HoyaClusterProtocolProxy) RpcBinder.getProxy(conf, report, RPC_TIMEOUT)
+    echo(fresh, "warmup")
+    fresh.close()
+
+    long start = System.nanoTime()
+    for (int i = 0; i < ITERATIONS; i++) {
+      HoyaClusterProtocolProxy am =
+          (HoyaClusterProtocolProxy) RpcBinder.getProxy(conf, report,
+                                                        RPC_TIMEOUT)
+      echo(am, "fresh")
+      am.close()
+    }
+    long freshNanos = System.nanoTime() - start
+
+    start = System.nanoTime()
+    for (int i = 0; i < ITERATIONS; i++) {
+      echo(cache.getProxy(null, report, 0), "cached")
+    }
+    long cachedNanos = System.nanoTime() - start
+    log.info("$ITERATIONS calls: fresh proxies ${freshNanos / 1000000} ms;" +
+             " cached proxy ${cachedNanos / 1000000} ms")
+    assert cache.size() == 1
+  }
+}
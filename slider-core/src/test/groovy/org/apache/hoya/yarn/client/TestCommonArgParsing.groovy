@@ -275,6 +275,31 @@ class TestCommonArgParsing implements HoyaActions, Arguments {
     assert ca.clusterName == CLUSTERNAME
     assert ca.coreAction instanceof ActionStatusArgs
   }
+
+  @Test
+  public void testGetStatusNoArgIsMultiInstance() throws Throwable {
+    ClientArgs ca = createClientArgs([
+        ACTION_STATUS,
+    ])
+    assert ca.clusterName == null
+    ActionStatusArgs statusArgs = (ActionStatusArgs) ca.coreAction
+    assert statusArgs.multiInstance
+    assert statusArgs.threads == ActionStatusArgs.DEFAULT_THREADS
+  }
+
+  @Test
+  public void testGetStatusManyArgs() throws Throwable {
+    ClientArgs ca = createClientArgs([
+        ACTION_STATUS,
+        "cluster1",
+        "cluster2",
+        ARG_THREADS, "3"
+    ])
+    ActionStatusArgs statusArgs = (ActionStatusArgs) ca.coreAction
+    assert statusArgs.multiInstance
+    assert statusArgs.parameters == ["cluster1", "cluster2"]
+    assert statusArgs.threads == 3
+  }
   
   @Test
   public void testExistsWorks1Arg() throws Throwable {
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.client
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.apache.hoya.api.ClusterDescription
+import org.apache.hoya.api.ResourceKeys
+import org.apache.hoya.api.RoleKeys
+import org.junit.Test
+
+/**
+ * Test the summaries built for the multi-instance status operation
+ */
+@CompileStatic
+@Slf4j
+class TestInstanceStatusSummary {
+
+  @Test
+  public void testSummarizeRoles() throws Throwable {
+    ClusterDescription cd = new ClusterDescription()
+    cd.setRoleOpt("worker", ResourceKeys.COMPONENT_INSTANCES, 4)
+    cd.setRoleOpt("worker", RoleKeys.ROLE_ACTUAL_INSTANCES, 3)
+    cd.setRoleOpt("worker", RoleKeys.ROLE_FAILED_INSTANCES, 2)
+    cd.setRoleOpt("master", ResourceKeys.COMPONENT_INSTANCES, 1)
+    InstanceStatusSummary summary = new InstanceStatusSummary("cluster1",
+        "application_1400000000000_0001", "RUNNING")
+    summary.summarize(cd)
+    assert !summary.failed
+    assert summary.roles.keySet().toList() == ["master", "worker"]
+    InstanceStatusSummary.RoleCounts worker = summary.roles["worker"]
+    assert worker.desired == 4
+    assert worker.actual == 3
+    assert worker.failed == 2
+    assert summary.roles["master"].actual == 0
+    String text = summary.toString()
+    log.info(text)
+    assert text.contains("worker=3/4 (failed 2)")
+    assert text.contains("master=0/1")
+  }
+
+  @Test
+  public void testFailedSummary() throws Throwable {
+    InstanceStatusSummary summary = new InstanceStatusSummary("cluster1",
+        "application_1400000000000_0001", "RUNNING")
+    summary.failure = "connection refused"
+    assert summary.failed
+    assert summary.toString().contains("status unavailable: connection refused")
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.appstate
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.yarn.api.records.Container
+import org.apache.hoya.api.ResourceKeys
+import org.apache.hoya.api.StatusKeys
+import org.apache.hoya.providers.PlacementPolicy
+import org.apache.hoya.providers.ProviderRole
+import org.apache.hoya.yarn.appmaster.state.AbstractRMOperation
+import org.apache.hoya.yarn.appmaster.state.AppState
+import org.apache.hoya.yarn.appmaster.state.ContainerAssignment
+import org.apache.hoya.yarn.appmaster.state.ContainerReleaseOperation
+import org.apache.hoya.yarn.appmaster.state.ContainerRequestOperation
+import org.apache.hoya.yarn.appmaster.state.RoleStatus
+import org.apache.hoya.yarn.model.mock.BaseMockAppStateTest
+import org.apache.hoya.yarn.model.mock.MockRecordFactory
+import org.apache.hoya.yarn.model.mock.MockRoles
+import org.apache.hoya.yarn.model.mock.MockYarnEngine
+import org.junit.Test
+
+/**
+ * Test that containers allocated in breach of the anti-affinity
+ * placement policy are released and re-requested
+ */
+@CompileStatic
+@Slf4j
+class TestAppStateAntiAffinity extends BaseMockAppStateTest
+    implements MockRoles {
+
+  public static final String ROLE_AA = "antiaffinity"
+
+  @Override
+  String getTestName() {
+    return "TestAppStateAntiAffinity"
+  }
+
+  /**
+   * Small cluster with multiple containers per node; the mock
+   * allocator fills up one node before moving to the next
+   * @return
+   */
+  @Override
+  MockYarnEngine createYarnEngine() {
+    return new MockYarnEngine(4, 4)
+  }
+
+  @Override
+  void initApp() {
+    super.initApp()
+    appState = new AppState(new MockRecordFactory())
+    appState.setContainerLimits(RM_MAX_RAM, RM_MAX_CORES)
+
+    def instance = factory.newInstanceDefinition(0, 0, 0)
+
+    def opts = [
+        (ResourceKeys.COMPONENT_INSTANCES): "2",
+        (ResourceKeys.COMPONENT_PRIORITY): "4",
+        (ResourceKeys.COMPONENT_PLACEMENT_POLICY):
+            Integer.toString(PlacementPolicy.ANTI_AFFINITY_REQUIRED),
+        (ResourceKeys.COMPONENT_PLACEMENT_MAX_PER_HOST): "1",
+    ]
+
+    instance.resourceOperations.components[ROLE_AA] = opts
+
+    appState.buildInstance(
+        instance,
+        new Configuration(false),
+        new ArrayList<ProviderRole>(factory.ROLES),
+        fs,
+        historyPath,
+        null, null)
+  }
+
+  @Test
+  public void testColocatedContainerReleasedAndRerequested() throws Throwable {
+    RoleStatus aaRole = appState.lookupRoleStatus(ROLE_AA)
+    assert aaRole.antiAffinityRequired
+    assert 1 == aaRole.maxInstancesPerHost
+
+    List<AbstractRMOperation> ops = appState.reviewRequestAndReleaseNodes()
+    List<Container> allocated = engine.execute(ops)
+    // the mock allocator puts both containers on the same host
+    assert 2 == allocated.size()
+    assert allocated[0].nodeId.host == allocated[1].nodeId.host
+
+    List<ContainerAssignment> assignments = [];
+    List<AbstractRMOperation> operations = []
+    appState.onContainersAllocated(allocated, assignments, operations)
+    assert 1 == assignments.size()
+    assert 2 == operations.size()
+    assert operations[0] instanceof ContainerReleaseOperation
+    assert operations[1] instanceof ContainerRequestOperation
+
+    assert 1 == aaRole.antiAffinityRerequests
+    assert 1 == aaRole.actual
+    assert 1 == aaRole.requested
+    assert 0 == aaRole.delta
+    assert 1 == aaRole.buildStatistics().get(
+        StatusKeys.STATISTICS_CONTAINERS_ANTI_AFFINITY_REREQUESTS)
+  }
+
+}
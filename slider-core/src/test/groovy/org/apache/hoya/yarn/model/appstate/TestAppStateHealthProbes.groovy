@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.appstate
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.apache.hoya.api.StatusKeys
+import org.apache.hoya.yarn.appmaster.state.AbstractRMOperation
+import org.apache.hoya.yarn.appmaster.state.AppState
+import org.apache.hoya.yarn.appmaster.state.ContainerReleaseOperation
+import org.apache.hoya.yarn.appmaster.state.ContainerRequestOperation
+import org.apache.hoya.yarn.appmaster.state.RoleInstance
+import org.apache.hoya.yarn.appmaster.state.RoleStatus
+import org.apache.hoya.yarn.model.mock.BaseMockAppStateTest
+import org.apache.hoya.yarn.model.mock.MockRoles
+import org.junit.Test
+
+/**
+ * Test that health probe failures lead to containers being
+ * released and replaced
+ */
+@CompileStatic
+@Slf4j
+class TestAppStateHealthProbes extends BaseMockAppStateTest
+    implements MockRoles {
+
+  @Override
+  String getTestName() {
+    return "TestAppStateHealthProbes"
+  }
+
+  @Test
+  public void testUnhealthyContainerReplaced() throws Throwable {
+    RoleStatus role0 = role0Status
+    role0.desired = 1
+    role0.healthProbePort = 8080
+    role0.healthProbeFailureThreshold = 2
+    role0.healthProbeBootstrapTime = 0
+    List<RoleInstance> instances = createAndStartNodes()
+    assert 1 == instances.size()
+    RoleInstance instance = instances[0]
+
+    assert appState.onContainerHealthProbe(instance.containerId, false).empty
+    assert 1 == instance.healthProbeFailures
+    List<AbstractRMOperation> ops =
+        appState.onContainerHealthProbe(instance.containerId, false)
+    assert 1 == ops.size()
+    assert ops[0] instanceof ContainerReleaseOperation
+    assert instance.released
+    assert 1 == role0.unhealthyReleased
+    assert 1 == role0.buildStatistics().get(
+        StatusKeys.STATISTICS_CONTAINERS_UNHEALTHY_RELEASED)
+
+    // further results are ignored while the release is in progress
+    assert appState.onContainerHealthProbe(instance.containerId, false).empty
+
+    AppState.NodeCompletionResult result = appState.onCompletedNode(
+        containerStatus(instance.containerId, 0))
+    assert !result.containerFailed
+    assert 0 == role0.actual
+
+    // and a replacement is requested
+    ops = appState.reviewRequestAndReleaseNodes()
+    assert 1 == ops.size()
+    assert ops[0] instanceof ContainerRequestOperation
+  }
+
+  @Test
+  public void testSuccessResetsFailureCount() throws Throwable {
+    RoleStatus role0 = role0Status
+    role0.desired = 1
+    role0.healthProbePort = 8080
+    role0.healthProbeFailureThreshold = 2
+    role0.healthProbeBootstrapTime = 0
+    RoleInstance instance = createAndStartNodes()[0]
+
+    assert appState.onContainerHealthProbe(instance.containerId, false).empty
+    assert appState.onContainerHealthProbe(instance.containerId, true).empty
+    assert 0 == instance.healthProbeFailures
+    assert appState.onContainerHealthProbe(instance.containerId, false).empty
+    assert !instance.released
+    assert 0 == role0.unhealthyReleased
+  }
+
+  @Test
+  public void testFailuresIgnoredWhileBootstrapping() throws Throwable {
+    RoleStatus role0 = role0Status
+    role0.desired = 1
+    role0.healthProbePort = 8080
+    role0.healthProbeFailureThreshold = 1
+    RoleInstance instance = createAndStartNodes()[0]
+
+    // within the default bootstrap time of the container starting
+    assert appState.onContainerHealthProbe(instance.containerId, false).empty
+    assert 0 == instance.healthProbeFailures
+    assert !instance.released
+  }
+
+  @Test
+  public void testFailuresIgnoredUntilComponentStarted() throws Throwable {
+    RoleStatus role0 = role0Status
+    role0.desired = 1
+    role0.healthProbePort = 8080
+    role0.healthProbeFailureThreshold = 1
+    role0.healthProbeBootstrapTime = 0
+    appState.componentStartsReported = true
+    RoleInstance instance = createAndStartNodes()[0]
+
+    assert appState.onContainerHealthProbe(instance.containerId, false).empty
+    assert !instance.released
+    appState.onComponentStarted(instance.id)
+    assert 1 == appState.onContainerHealthProbe(instance.containerId,
+                                                false).size()
+    assert instance.released
+  }
+
+  @Test
+  public void testWarmSpareNotReleased() throws Throwable {
+    RoleStatus role0 = role0Status
+    role0.desired = 1
+    role0.warmSpares = 1
+    role0.healthProbePort = 8080
+    role0.healthProbeFailureThreshold = 1
+    role0.healthProbeBootstrapTime = 0
+    RoleInstance spare = createAndStartNodes().find { RoleInstance ri ->
+      appState.isWarmSpare(ri.id)
+    }
+
+    assert appState.onContainerHealthProbe(spare.containerId, false).empty
+    assert !spare.released
+    assert 1 == role0.spares
+  }
+
+  @Test
+  public void testProbeOfUnknownContainerIgnored() throws Throwable {
+    RoleStatus role0 = role0Status
+    role0.desired = 1
+    RoleInstance instance = createAndStartNodes()[0]
+    appState.onCompletedNode(containerStatus(instance.containerId, 1))
+    assert appState.onContainerHealthProbe(instance.containerId, false).empty
+  }
+}
@@ -22,6 +22,7 @@ import groovy.transform.CompileStatic
 import groovy.util.logging.Slf4j
 import org.apache.hadoop.conf.Configuration
 import org.apache.hadoop.yarn.api.records.Container
+import org.apache.hoya.api.ClusterDescription
 import org.apache.hoya.api.StatusKeys
 import org.apache.hoya.yarn.appmaster.state.*
 import org.apache.hoya.yarn.model.mock.BaseMockAppStateTest
@@ -118,5 +119,44 @@ class TestAppStateRebuildOnAMRestart extends BaseMockAppStateTest
     assert restarted != null;
     //and that the count == 1 master + the region servers
     assert Integer.parseInt(restarted) == containers.size()
+    // and the rebuild was timed
+    String rebuildTime = status.getInfo(
+        StatusKeys.INFO_AM_RESTART_REBUILD_TIME_MILLIS)
+    assert rebuildTime != null
+    assert Long.parseLong(rebuildTime) >= 0
+  }
+
+  @Test
+  public void testRebuildRoleCounts() throws Throwable {
+    int r0 = 2
+    int r1 = 1
+    int r2 = 0
+    role0Status.desired = r0
+    role1Status.desired = r1
+    role2Status.desired = r2
+    List<RoleInstance> instances = createAndStartNodes()
+    List<Container> containers = instances.collect { RoleInstance elt ->
+      elt.container
+    }
+
+    appState = new AppState(new MockRecordFactory())
+    appState.buildInstance(
+        factory.newInstanceDefinition(r0, r1, r2),
+        new Configuration(false),
+        factory.ROLES,
+        fs,
+        historyPath,
+        containers, null)
+
+    RoleStatus role0 = appState.lookupRoleStatus(ROLE0)
+    assert role0.actual == r0
+    assert role0.started == r0
+    assert appState.lookupRoleStatus(ROLE1).actual == r1
+    assert appState.liveNodes.size() == r0 + r1
+    assert appState.roleHistory.outstandingRequestList.empty
+    // every restarted instance is live, not starting
+    appState.liveNodes.values().each { RoleInstance ri ->
+      assert ri.state == ClusterDescription.STATE_LIVE
+    }
   }
 }
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.appstate
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.apache.hadoop.yarn.api.records.ContainerId
+import org.apache.hoya.api.ClusterDescription
+import org.apache.hoya.api.RoleKeys
+import org.apache.hoya.exceptions.BadClusterStateException
+import org.apache.hoya.exceptions.BadCommandArgumentsException
+import org.apache.hoya.yarn.appmaster.state.AbstractRMOperation
+import org.apache.hoya.yarn.appmaster.state.RoleInstance
+import org.apache.hoya.yarn.appmaster.state.RoleStatus
+import org.apache.hoya.yarn.appmaster.state.RollingRestart
+import org.apache.hoya.yarn.model.mock.BaseMockAppStateTest
+import org.apache.hoya.yarn.model.mock.MockRoles
+import org.junit.Test
+
+/**
+ * Test rolling restarts: batches, the health gate between them,
+ * and the placement of replacements
+ */
+@CompileStatic
+@Slf4j
+class TestAppStateRollingRestart extends BaseMockAppStateTest
+    implements MockRoles {
+
+  @Override
+  String getTestName() {
+    return "TestAppStateRollingRestart"
+  }
+
+  @Test
+  public void testRestartInBatches() throws Throwable {
+    role0Status.desired = 3
+    List<RoleInstance> originals = createAndStartNodes()
+    assert 3 == originals.size()
+
+    RollingRestart restart = appState.startRollingRestart(ROLE0, 2, false)
+    assert 3 == restart.remaining
+    assert appState.rollingRestartInProgress
+
+    List<ContainerId> released = releaseBatch()
+    assert 2 == released.size()
+    // nothing more goes until the batch has been replaced
+    assert releaseBatch().empty
+    completeAll(released)
+
+    List<RoleInstance> replacements = createAndStartNodes()
+    assert 2 == replacements.size()
+    assert 2 == restart.restarted
+    assert 1 == restart.remaining
+
+    // the gate is open: the last original goes
+    released = releaseBatch()
+    assert 1 == released.size()
+    assert extractContainerIds(originals, 0).contains(released[0])
+    completeAll(released)
+    replacements.addAll(createAndStartNodes())
+    assert 3 == replacements.size()
+
+    assert releaseBatch().empty
+    assert restart.finished
+    assert 3 == restart.restarted
+    assert 2 == restart.batches
+    assert 0 == restart.remaining
+    assert !appState.rollingRestartInProgress
+
+    // the role history placed every replacement where its predecessor was
+    assert hostsOf(originals) == hostsOf(replacements)
+  }
+
+  @Test
+  public void testHealthGate() throws Throwable {
+    RoleStatus role0 = role0Status
+    role0.desired = 2
+    role0.healthProbePort = 8080
+    createAndStartNodes()
+
+    appState.startRollingRestart(ROLE0, 1, true)
+    List<ContainerId> released = releaseBatch()
+    assert 1 == released.size()
+    completeAll(released)
+    RoleInstance replacement = createAndStartNodes()[0]
+
+    // neither started nor probed
+    assert releaseBatch().empty
+    appState.onComponentStarted(replacement.id)
+    assert replacement.componentStarted
+    // started but not yet probed
+    assert releaseBatch().empty
+    assert appState.onContainerHealthProbe(replacement.containerId, true).empty
+    assert 1 == releaseBatch().size()
+  }
+
+  @Test
+  public void testFailedInstanceIsNotRestarted() throws Throwable {
+    role0Status.desired = 2
+    List<RoleInstance> originals = createAndStartNodes()
+    RollingRestart restart = appState.startRollingRestart(ROLE0, 1, false)
+    List<ContainerId> released = releaseBatch()
+    completeAll(released)
+
+    // the other original fails while the first is being replaced
+    ContainerId other = extractContainerIds(originals, 0).find {
+      it != released[0]
+    }
+    appState.onCompletedNode(containerStatus(other, 1))
+    assert 2 == createAndStartNodes().size()
+
+    assert releaseBatch().empty
+    assert restart.finished
+    assert 1 == restart.restarted
+  }
+
+  @Test
+  public void testRestartReportedInStatus() throws Throwable {
+    role0Status.desired = 2
+    createAndStartNodes()
+    appState.startRollingRestart(ROLE0, 1, false)
+    releaseBatch()
+    appState.refreshClusterStatus()
+    ClusterDescription cd = appState.clusterStatus
+    assert 2 == cd.getRoleOptInt(ROLE0,
+        RoleKeys.ROLE_RESTART_REMAINING_INSTANCES, -1)
+    assert 0 == cd.getRoleOptInt(ROLE0, RoleKeys.ROLE_RESTARTED_INSTANCES, -1)
+    assert -1 == cd.getRoleOptInt(ROLE1,
+        RoleKeys.ROLE_RESTART_REMAINING_INSTANCES, -1)
+  }
+
+  @Test
+  public void testInvalidRestarts() throws Throwable {
+    role0Status.desired = 1
+    createAndStartNodes()
+    try {
+      appState.startRollingRestart("unknown", 1, false)
+      fail("Expected an exception")
+    } catch (BadCommandArgumentsException expected) {
+      // expected
+    }
+    try {
+      appState.startRollingRestart(ROLE0, 0, false)
+      fail("Expected an exception")
+    } catch (BadCommandArgumentsException expected) {
+      // expected
+    }
+    appState.startRollingRestart(ROLE0, 1, false)
+    try {
+      appState.startRollingRestart(ROLE0, 1, false)
+      fail("Expected an exception")
+    } catch (BadClusterStateException expected) {
+      // expected
+    }
+  }
+
+  /**
+   * Review the state and execute the operations
+   * @return the containers released
+   */
+  List<ContainerId> releaseBatch() {
+    List<AbstractRMOperation> ops = appState.reviewRequestAndReleaseNodes()
+    List<ContainerId> released = []
+    engine.execute(ops, released)
+    return released
+  }
+
+  void completeAll(List<ContainerId> released) {
+    released.each { ContainerId cid ->
+      appState.onCompletedNode(containerStatus(cid, 0))
+    }
+  }
+
+  Set<String> hostsOf(List<RoleInstance> instances) {
+    Set<String> hosts = new HashSet<String>()
+    instances.each { RoleInstance instance ->
+      hosts << instance.container.nodeId.host
+    }
+    return hosts
+  }
+}
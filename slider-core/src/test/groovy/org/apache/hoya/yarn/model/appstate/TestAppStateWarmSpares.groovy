@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.appstate
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.apache.hoya.api.StatusKeys
+import org.apache.hoya.yarn.appmaster.state.AbstractRMOperation
+import org.apache.hoya.yarn.appmaster.state.AppState
+import org.apache.hoya.yarn.appmaster.state.ContainerReleaseOperation
+import org.apache.hoya.yarn.appmaster.state.ContainerRequestOperation
+import org.apache.hoya.yarn.appmaster.state.RoleInstance
+import org.apache.hoya.yarn.appmaster.state.RoleStatus
+import org.apache.hoya.yarn.model.mock.BaseMockAppStateTest
+import org.apache.hoya.yarn.model.mock.MockRoles
+import org.junit.Test
+
+/**
+ * Test the allocation, promotion and release of warm spare containers
+ */
+@CompileStatic
+@Slf4j
+class TestAppStateWarmSpares extends BaseMockAppStateTest
+    implements MockRoles {
+
+  @Override
+  String getTestName() {
+    return "TestAppStateWarmSpares"
+  }
+
+  @Test
+  public void testSpareAllocated() throws Throwable {
+    RoleStatus role0 = role0Status
+    role0.desired = 1
+    role0.warmSpares = 1
+    assert 2 == role0.delta
+
+    List<RoleInstance> instances = createAndStartNodes()
+    assert 2 == instances.size()
+    assert 1 == role0.spares
+    assert 2 == role0.actual
+    assert 0 == role0.delta
+    List<RoleInstance> spares = instances.findAll { RoleInstance ri ->
+      appState.isWarmSpare(ri.containerId.toString())
+    }
+    assert 1 == spares.size()
+    assert 1 == role0.buildStatistics().get(
+        StatusKeys.STATISTICS_CONTAINERS_WARM_SPARES)
+  }
+
+  @Test
+  public void testSparePromotedOnFailure() throws Throwable {
+    RoleStatus role0 = role0Status
+    role0.desired = 1
+    role0.warmSpares = 1
+    List<RoleInstance> instances = createAndStartNodes()
+    RoleInstance spare = instances.find { RoleInstance ri ->
+      appState.isWarmSpare(ri.containerId.toString())
+    }
+    RoleInstance primary = instances.find { RoleInstance ri ->
+      !appState.isWarmSpare(ri.containerId.toString())
+    }
+
+    AppState.NodeCompletionResult result = appState.onCompletedNode(
+        containerStatus(primary.containerId, 1))
+    assert result.containerFailed
+    assert result.promotedSpare != null
+    assert result.promotedSpare.containerId == spare.containerId
+    assert !appState.isWarmSpare(spare.containerId.toString())
+    assert 0 == role0.spares
+    assert 1 == role0.sparePromotions
+
+    appState.onComponentStarted(spare.containerId.toString())
+    assert role0.lastFailoverLatency >= 0
+
+    // a replacement spare is requested
+    List<AbstractRMOperation> ops = appState.reviewRequestAndReleaseNodes()
+    assert 1 == ops.size()
+    assert ops[0] instanceof ContainerRequestOperation
+  }
+
+  @Test
+  public void testSpareFailureIsNotPromoted() throws Throwable {
+    RoleStatus role0 = role0Status
+    role0.desired = 1
+    role0.warmSpares = 1
+    List<RoleInstance> instances = createAndStartNodes()
+    RoleInstance spare = instances.find { RoleInstance ri ->
+      appState.isWarmSpare(ri.containerId.toString())
+    }
+    AppState.NodeCompletionResult result = appState.onCompletedNode(
+        containerStatus(spare.containerId, 1))
+    assert result.containerFailed
+    assert result.promotedSpare == null
+    assert 0 == role0.spares
+    assert 0 == role0.sparePromotions
+  }
+
+  @Test
+  public void testSparesReleasedFirst() throws Throwable {
+    RoleStatus role0 = role0Status
+    role0.desired = 1
+    role0.warmSpares = 1
+    List<RoleInstance> instances = createAndStartNodes()
+    RoleInstance spare = instances.find { RoleInstance ri ->
+      appState.isWarmSpare(ri.containerId.toString())
+    }
+
+    role0.warmSpares = 0
+    List<AbstractRMOperation> ops = appState.reviewRequestAndReleaseNodes()
+    assert 1 == ops.size()
+    ContainerReleaseOperation release = (ContainerReleaseOperation) ops[0]
+    assert release.containerId == spare.containerId
+
+    appState.onCompletedNode(containerStatus(release.containerId))
+    assert 0 == role0.spares
+    assert 1 == role0.actual
+    assert 0 == role0.delta
+  }
+
+}
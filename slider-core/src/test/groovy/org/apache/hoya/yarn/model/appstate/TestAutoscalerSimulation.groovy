@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.appstate
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.apache.hadoop.yarn.api.records.Container
+import org.apache.hadoop.yarn.api.records.ContainerId
+import org.apache.hoya.api.ResourceKeys
+import org.apache.hoya.core.conf.ConfTreeOperations
+import org.apache.hoya.yarn.appmaster.autoscale.Autoscaler
+import org.apache.hoya.yarn.appmaster.autoscale.LoadForecaster
+import org.apache.hoya.yarn.appmaster.state.AbstractRMOperation
+import org.apache.hoya.yarn.appmaster.state.AutoscalePolicy
+import org.apache.hoya.yarn.appmaster.state.ContainerAssignment
+import org.apache.hoya.yarn.appmaster.state.RoleInstance
+import org.apache.hoya.yarn.model.mock.BaseMockAppStateTest
+import org.apache.hoya.yarn.model.mock.MockRoles
+import org.junit.Test
+
+/**
+ * Simulation harness for the autoscaler: load traces are replayed
+ * against the app state and mock YARN engine on a simulated clock,
+ * with every decision applied the way the AM applies them.
+ */
+@CompileStatic
+@Slf4j
+class TestAutoscalerSimulation extends BaseMockAppStateTest
+    implements MockRoles {
+
+  public static final long TICK = 60000
+  public static final long COOLDOWN_SECONDS = 60
+
+  /**
+   * Total load on role0 at each tick, in units of one instance's capacity
+   */
+  public static final double[] RISE_AND_FALL = [
+      1.0, 1.0, 1.5, 2.0, 3.0, 4.0, 5.0, 5.0, 5.0, 5.0,
+      4.0, 3.0, 2.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0
+  ] as double[]
+
+  long now = 1000000
+
+  @Override
+  String getTestName() {
+    return "TestAutoscalerSimulation"
+  }
+
+  /**
+   * Enable autoscaling of role0 through the resources, as a user would
+   * @param instances initial instance count
+   */
+  void enableAutoscaling(int instances) {
+    ConfTreeOperations resources = ConfTreeOperations.fromInstance(
+        appState.instanceDefinition.resources)
+    resources.setRoleOpt(ROLE0, ResourceKeys.COMPONENT_INSTANCES, instances)
+    resources.setRoleOpt(ROLE0, ResourceKeys.COMPONENT_AUTOSCALE_MIN, 1)
+    resources.setRoleOpt(ROLE0, ResourceKeys.COMPONENT_AUTOSCALE_MAX, 10)
+    resources.setRoleOpt(ROLE0,
+        ResourceKeys.COMPONENT_AUTOSCALE_TARGET_UTILIZATION, 70)
+    resources.setRoleOpt(ROLE0,
+        ResourceKeys.COMPONENT_AUTOSCALE_COOLDOWN, (int) COOLDOWN_SECONDS)
+    appState.updateResourceDefinitions(resources.confTree)
+    settle()
+  }
+
+  /**
+   * Execute the review operations against the mock engine: allocate
+   * and start new containers, complete released ones
+   */
+  void settle() {
+    List<AbstractRMOperation> ops = appState.reviewRequestAndReleaseNodes()
+    List<ContainerId> released = []
+    List<Container> allocated = engine.execute(ops, released)
+    List<ContainerAssignment> assignments = []
+    List<AbstractRMOperation> operations = []
+    appState.onContainersAllocated(allocated, assignments, operations)
+    for (ContainerAssignment assigned : assignments) {
+      RoleInstance ri = roleInstance(assigned)
+      appState.containerStartSubmitted(assigned.container, ri)
+      assert appState.onNodeManagerContainerStarted(ri.containerId)
+    }
+    for (ContainerId cid : released) {
+      appState.onCompletedNode(containerStatus(cid))
+    }
+  }
+
+  /**
+   * Report a total load spread evenly across the live instances of role0
+   * @param total total load
+   */
+  void reportLoad(double total) {
+    List<RoleInstance> live = appState.cloneLiveContainerInfoList().findAll {
+      RoleInstance ri -> ri.roleId == role0Status.key && !ri.released
+    }
+    for (RoleInstance ri : live) {
+      ri.load = total / live.size()
+      ri.loadTimestamp = now
+    }
+  }
+
+  /**
+   * Replay a trace
+   * @param autoscaler autoscaler
+   * @param trace total load at each tick
+   * @return the number of live role0 instances after each tick
+   */
+  List<Integer> replay(Autoscaler autoscaler, double[] trace) {
+    List<Integer> sizes = []
+    for (double load : trace) {
+      now += TICK
+      reportLoad(load)
+      Map<String, Integer> decisions = autoscaler.review(now)
+      if (!decisions.isEmpty()) {
+        ConfTreeOperations resources = ConfTreeOperations.fromInstance(
+            appState.instanceDefinition.resources)
+        Autoscaler.applyDecisions(resources, decisions)
+        appState.updateResourceDefinitions(resources.confTree)
+      }
+      settle()
+      sizes << role0Status.actual
+      log.info("load $load: desired ${role0Status.desired}," +
+               " actual ${role0Status.actual}")
+    }
+    return sizes
+  }
+
+  @Test
+  public void testPolicyFromResources() throws Throwable {
+    enableAutoscaling(2)
+    AutoscalePolicy policy = role0Status.autoscalePolicy
+    assert policy.enabled
+    assert policy.min == 1
+    assert policy.max == 10
+    assert policy.cooldown == COOLDOWN_SECONDS * 1000
+    assert !role1Status.autoscalePolicy.enabled
+    assert role0Status.actual == 2
+  }
+
+  @Test
+  public void testRiseAndFall() throws Throwable {
+    enableAutoscaling(2)
+    Autoscaler autoscaler = new Autoscaler(appState, 2 * TICK)
+    List<Integer> sizes = replay(autoscaler, RISE_AND_FALL)
+    int peak = sizes.max()
+    // 5 units of load at 70% utilization needs 8 instances
+    assert peak >= 8
+    assert peak <= 10
+    // the forecast grows the role before the load peaks
+    int firstPeak = RISE_AND_FALL.findIndexOf { double d -> d == 5.0d }
+    assert sizes[firstPeak - 1] >= 6
+    // and it shrinks back once the load has gone
+    assert sizes.last() <= 2
+    assert sizes.every { int size -> size >= 1 }
+  }
+
+  @Test
+  public void testStaleLoadIgnored() throws Throwable {
+    enableAutoscaling(2)
+    Autoscaler autoscaler = new Autoscaler(appState, TICK)
+    reportLoad(10.0)
+    now += 2 * TICK
+    assert autoscaler.review(now).isEmpty()
+    assert autoscaler.getForecaster(ROLE0) == null
+  }
+
+  @Test
+  public void testForecasterFollowsTrend() throws Throwable {
+    LoadForecaster forecaster = new LoadForecaster()
+    assert forecaster.forecast(0) == 0.0d
+    for (int i = 0; i < 10; i++) {
+      forecaster.observe(i * 1000, i * 0.1d)
+    }
+    double ahead = forecaster.forecast(12000)
+    assert ahead > 0.9d
+    assert ahead < 1.3d
+  }
+
+  @Test
+  public void testPolicyBounds() throws Throwable {
+    AutoscalePolicy policy = new AutoscalePolicy(2, 6, 0.5d, 0)
+    assert policy.instancesFor(2.0d) == 4
+    assert policy.instancesFor(1.6d) == 4
+    assert policy.instancesFor(4.0d) == 6
+    assert policy.instancesFor(0.0d) == 2
+    assert !AutoscalePolicy.DISABLED.enabled
+  }
+}
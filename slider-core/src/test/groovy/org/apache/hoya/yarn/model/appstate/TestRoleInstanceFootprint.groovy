@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.appstate
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId
+import org.apache.hadoop.yarn.api.records.ApplicationId
+import org.apache.hadoop.yarn.api.records.Container
+import org.apache.hadoop.yarn.api.records.ContainerId
+import org.apache.hadoop.yarn.api.records.NodeId
+import org.apache.hadoop.yarn.api.records.Priority
+import org.apache.hadoop.yarn.api.records.Resource
+import org.apache.hoya.yarn.appmaster.state.RoleInstance
+import org.apache.hoya.yarn.appmaster.state.RoleInstanceHistory
+import org.junit.Test
+
+/**
+ * Heap benchmark of the per-container state held by the AM.
+ * It measures the bytes per container of instances holding their own copy
+ * of the launch details, of instances sharing them, and of
+ * compacted history entries.
+ */
+@CompileStatic
+@Slf4j
+class TestRoleInstanceFootprint {
+
+  public static final int CONTAINERS = 10000
+  public static final int ENV_SIZE = 40
+
+  ApplicationAttemptId attemptId = ApplicationAttemptId.newInstance(
+      ApplicationId.newInstance(System.currentTimeMillis(), 1), 1)
+
+  Container newContainer(int i) {
+    ContainerId cid = ContainerId.newInstance(attemptId, i)
+    NodeId nodeId = NodeId.newInstance("host" + (i % 1000), 45454)
+    return Container.newInstance(cid, nodeId, "host" + (i % 1000) + ":8042",
+        Resource.newInstance(256, 1), Priority.newInstance(1), null)
+  }
+
+  /**
+   * Build the launch command: each launch builds its own string
+   * @return a new string
+   */
+  String command() {
+    return new StringBuilder("java -Xmx256m org.example.Server")
+        .append(" --config \$PWD/conf --log-dir \$LOG_DIRS").toString()
+  }
+
+  String[] environment() {
+    String[] env = new String[ENV_SIZE]
+    for (int e = 0; e < ENV_SIZE; e++) {
+      env[e] = new StringBuilder("VARIABLE_").append(e)
+          .append("=/var/lib/app/value/for/this/variable").toString()
+    }
+    return env
+  }
+
+  long usedHeap() {
+    Runtime runtime = Runtime.runtime
+    for (int i = 0; i < 4; i++) {
+      System.gc()
+      Thread.sleep(50)
+    }
+    return runtime.totalMemory() - runtime.freeMemory()
+  }
+
+  long bytesPerContainer(long before, long after, int count) {
+    return (long) ((after - before) / count)
+  }
+
+  @Test
+  public void testFootprint() throws Throwable {
+    long base = usedHeap()
+    List<RoleInstance> unshared = new ArrayList<RoleInstance>(CONTAINERS)
+    for (int i = 0; i < CONTAINERS; i++) {
+      RoleInstance instance = new RoleInstance(newContainer(i))
+      instance.command = command()
+      instance.environment = environment()
+      unshared << instance
+    }
+    long unsharedBytes = bytesPerContainer(base, usedHeap(), CONTAINERS)
+    unshared.clear()
+
+    base = usedHeap()
+    List<RoleInstance> shared = new ArrayList<RoleInstance>(CONTAINERS)
+    for (int i = 0; i < CONTAINERS; i++) {
+      RoleInstance instance = new RoleInstance(newContainer(i))
+      instance.setLaunchDetails(command(), environment())
+      shared << instance
+    }
+    long sharedBytes = bytesPerContainer(base, usedHeap(), CONTAINERS)
+    shared.clear()
+
+    base = usedHeap()
+    List<RoleInstance> compacted = new ArrayList<RoleInstance>(CONTAINERS)
+    for (int i = 0; i < CONTAINERS; i++) {
+      RoleInstance instance = new RoleInstance(newContainer(i))
+      instance.setLaunchDetails(command(), environment())
+      instance.compact()
+      compacted << instance
+    }
+    long compactedBytes = bytesPerContainer(base, usedHeap(), CONTAINERS)
+
+    log.info("Bytes per container: unshared launch details: {};" +
+             " shared launch details: {}; compacted: {}",
+             unsharedBytes, sharedBytes, compactedBytes)
+    assert sharedBytes < unsharedBytes
+    assert compactedBytes < unsharedBytes
+
+    // the history only retains its limit, however many containers complete
+    RoleInstanceHistory history = new RoleInstanceHistory(1000)
+    for (RoleInstance instance : compacted) {
+      history.put(instance.getId(), instance)
+    }
+    assert 1000 == history.size()
+    assert CONTAINERS - 1000 == history.evicted
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.appstate
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.apache.hadoop.yarn.api.records.ContainerId
+import org.apache.hoya.yarn.appmaster.state.RoleInstance
+import org.apache.hoya.yarn.appmaster.state.RoleInstanceHistory
+import org.apache.hoya.yarn.model.mock.MockContainer
+import org.apache.hoya.yarn.model.mock.MockFactory
+import org.apache.hoya.yarn.model.mock.MockNodeId
+import org.junit.Test
+
+/**
+ * Test the bounded instance history and the compaction of role instances
+ */
+@CompileStatic
+@Slf4j
+class TestRoleInstanceHistory {
+
+  MockFactory factory = new MockFactory()
+
+  RoleInstance newInstance() {
+    MockContainer container = factory.newContainer()
+    container.nodeId = new MockNodeId("host1")
+    RoleInstance instance = new RoleInstance(container)
+    instance.role = MockFactory.ROLE0
+    return instance
+  }
+
+  @Test
+  public void testHistoryIsBounded() throws Throwable {
+    RoleInstanceHistory history = new RoleInstanceHistory(4)
+    List<RoleInstance> instances = []
+    10.times {
+      RoleInstance instance = newInstance()
+      instances << instance
+      history.put(instance.getId(), instance)
+    }
+    assert 4 == history.size()
+    assert 6 == history.evicted
+    // the oldest are evicted first
+    assert !history.containsKey(instances[5].getId())
+    assert history.containsKey(instances[6].getId())
+    assert history.containsKey(instances[9].getId())
+  }
+
+  @Test
+  public void testRetentionReduction() throws Throwable {
+    RoleInstanceHistory history = new RoleInstanceHistory(8)
+    8.times {
+      RoleInstance instance = newInstance()
+      history.put(instance.getId(), instance)
+    }
+    history.retention = 2
+    RoleInstance instance = newInstance()
+    history.put(instance.getId(), instance)
+    assert 2 == history.size()
+    assert history.containsKey(instance.getId())
+  }
+
+  @Test(expected = IllegalArgumentException)
+  public void testInvalidRetention() throws Throwable {
+    new RoleInstanceHistory(0)
+  }
+
+  @Test
+  public void testCompaction() throws Throwable {
+    RoleInstance instance = newInstance()
+    ContainerId cid = instance.getId()
+    instance.setLaunchDetails("launch", ["A=1", "B=2"] as String[])
+    instance.output = ["out"] as String[]
+    instance.compact()
+    assert instance.container == null
+    assert instance.command == null
+    assert instance.environment == null
+    assert instance.output == null
+    assert cid == instance.getId()
+    assert cid == instance.containerId
+    assert "host1" == instance.host
+    assert cid.toString() == instance.toProtobuf().name
+    assert cid.toString() == instance.toClusterNode().name
+  }
+
+  @Test
+  public void testLaunchDetailsShared() throws Throwable {
+    RoleInstance i1 = newInstance()
+    RoleInstance i2 = newInstance()
+    i1.setLaunchDetails(new String("launch"), [new String("A=1")] as String[])
+    i2.setLaunchDetails(new String("launch"), [new String("A=1")] as String[])
+    assert i1.command.is(i2.command)
+    assert i1.environment[0].is(i2.environment[0])
+  }
+
+}
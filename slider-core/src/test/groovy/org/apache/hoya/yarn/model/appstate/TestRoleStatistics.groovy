@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.appstate
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.apache.hoya.api.StatusKeys
+import org.apache.hoya.yarn.appmaster.state.RoleStatistics
+import org.apache.hoya.yarn.appmaster.state.RoleStatus
+import org.apache.hoya.yarn.model.mock.MockFactory
+import org.junit.Test
+
+/**
+ * Test the array-backed role statistics and their map views
+ */
+@CompileStatic
+@Slf4j
+class TestRoleStatistics {
+
+  @Test
+  public void testViewIsLive() throws Throwable {
+    RoleStatus status = new RoleStatus(MockFactory.PROVIDER_ROLE0)
+    Map<String, Integer> view = status.buildStatistics()
+    assert 0 == view.get(StatusKeys.STATISTICS_CONTAINERS_REQUESTED)
+    status.incRequested()
+    status.incRequested()
+    assert 2 == view.get(StatusKeys.STATISTICS_CONTAINERS_REQUESTED)
+    assert 2 == status.totalRequested
+    status.decRequested()
+    assert 1 == status.requested
+    assert 2 == status.totalRequested
+    assert view.is(status.buildStatistics())
+  }
+
+  @Test
+  public void testViewIsReadOnly() throws Throwable {
+    RoleStatistics stats = new RoleStatistics()
+    try {
+      stats.asMap().put(StatusKeys.STATISTICS_CONTAINERS_FAILED, 3)
+      assert false: "expected the view to be read-only"
+    } catch (UnsupportedOperationException expected) {
+    }
+    assert null == stats.asMap().get("no-such-key")
+  }
+
+  @Test
+  public void testSnapshotIsCopied() throws Throwable {
+    RoleStatistics stats = new RoleStatistics()
+    stats.set(RoleStatistics.DESIRED, 4)
+    Map<String, Integer> snapshot = stats.toMap()
+    stats.increment(RoleStatistics.DESIRED)
+    assert 4 == snapshot.get(StatusKeys.STATISTICS_CONTAINERS_DESIRED)
+    assert 5 == stats.asMap().get(StatusKeys.STATISTICS_CONTAINERS_DESIRED)
+    assert snapshot.keySet() == stats.asMap().keySet()
+    assert snapshot.size() == stats.asMap().size()
+  }
+
+  @Test
+  public void testDecrementFloor() throws Throwable {
+    RoleStatus status = new RoleStatus(MockFactory.PROVIDER_ROLE0)
+    assert 0 == status.decActual()
+    assert 0 == status.decReleasing()
+    assert 0 == status.decSpares()
+    status.incActual()
+    assert 0 == status.decActual()
+    assert 0 == status.actual
+  }
+
+  @Test
+  public void testCloneIsIndependent() throws Throwable {
+    RoleStatus status = new RoleStatus(MockFactory.PROVIDER_ROLE0)
+    status.desired = 3
+    status.incActual()
+    RoleStatus cloned = (RoleStatus) status.clone()
+    status.incActual()
+    status.desired = 1
+    assert 1 == cloned.actual
+    assert 3 == cloned.desired
+    assert 2 == status.actual
+  }
+}
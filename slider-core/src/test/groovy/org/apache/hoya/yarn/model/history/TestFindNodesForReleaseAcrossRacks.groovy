@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.history
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.apache.hadoop.net.DNSToSwitchMapping
+import org.apache.hadoop.net.NetworkTopology
+import org.apache.hoya.yarn.appmaster.state.NodeInstance
+import org.apache.hoya.yarn.appmaster.state.NodeMap
+import org.apache.hoya.yarn.appmaster.state.RoleHistory
+import org.apache.hoya.yarn.model.mock.BaseMockAppStateTest
+import org.apache.hoya.yarn.model.mock.MockFactory
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Test that releases keep instances spread across racks, and
+ * the resolution of the racks of nodes
+ */
+@Slf4j
+@CompileStatic
+class TestFindNodesForReleaseAcrossRacks extends BaseMockAppStateTest {
+
+  @Override
+  String getTestName() {
+    return "TestFindNodesForReleaseAcrossRacks"
+  }
+
+  NodeInstance rack1Node1 = nodeInstance(1, 1, 0, 0)
+  NodeInstance rack1Node2 = nodeInstance(2, 1, 0, 0)
+  NodeInstance rack1Node3 = nodeInstance(3, 1, 0, 0)
+  NodeInstance rack2Node1 = nodeInstance(4, 2, 0, 0)
+
+  List<NodeInstance> rack1 = [rack1Node1, rack1Node2, rack1Node3]
+  NodeMap nodeMap = new NodeMap(MockFactory.ROLE_COUNT);
+
+  @Before
+  public void setupNodeMap() {
+    rack1.each { NodeInstance node -> node.rack = "/rack1" }
+    rack2Node1.rack = "/rack2"
+    nodeMap.insert(rack1 + [rack2Node1])
+  }
+
+  @Test
+  public void testReleaseFromMostLoadedRack() throws Throwable {
+    // a host-level choice would release the second instance on rack2
+    List<NodeInstance> released = nodeMap.findNodesForRelease(0, 1)
+    assert 1 == released.size()
+    assert rack1.contains(released[0])
+  }
+
+  @Test
+  public void testReleaseAlternatesBetweenBalancedRacks() throws Throwable {
+    List<NodeInstance> released = nodeMap.findNodesForRelease(0, 4)
+    assert 4 == released.size()
+    assert released.collect { NodeInstance node -> node.rack } ==
+           ["/rack1", "/rack1", "/rack2", "/rack1"]
+    // all three nodes of rack1 are different
+    assert 3 == new HashSet<NodeInstance>(
+        released.findAll { NodeInstance node -> node.rack == "/rack1" }).size()
+  }
+
+  @Test
+  public void testReleaseAll() throws Throwable {
+    List<NodeInstance> released = nodeMap.findNodesForRelease(0, 10)
+    assert 5 == released.size()
+    assert 2 == released.count(rack2Node1)
+  }
+
+  @Test
+  public void testNewNodesOnDefaultRack() throws Throwable {
+    assert NetworkTopology.DEFAULT_RACK == nodeMap.getOrCreate("host1").rack
+    // existing nodes are left alone
+    assert "/rack1" == nodeMap.getOrCreate(rack1Node1.hostname).rack
+  }
+
+  @Test
+  public void testRacksResolved() throws Throwable {
+    RoleHistory roleHistory = new RoleHistory(MockFactory.ROLES)
+    roleHistory.getOrCreateNodeInstance("unknown2").rack = "/rack1"
+    roleHistory.topology = new PrefixMapping()
+    assert 1 == roleHistory.resolveRacks(["host1", "unknown1", "host1"])
+    assert "/rack-host1" == roleHistory.getExistingNodeInstance("host1").rack
+    assert NetworkTopology.DEFAULT_RACK ==
+           roleHistory.getExistingNodeInstance("unknown1").rack
+    // a node the topology cannot place keeps its saved rack
+    assert 0 == roleHistory.resolveRacks(["unknown2"])
+    assert "/rack1" == roleHistory.getExistingNodeInstance("unknown2").rack
+  }
+
+  /**
+   * Maps every host to a rack named after it, other than those
+   * whose name starts with "unknown", which are on the default rack
+   */
+  static class PrefixMapping implements DNSToSwitchMapping {
+
+    @Override
+    List<String> resolve(List<String> names) {
+      return names.collect { String name ->
+        name.startsWith("unknown") ? NetworkTopology.DEFAULT_RACK
+                                   : "/rack-" + name
+      }
+    }
+
+    @Override
+    void reloadCachedMappings() {
+    }
+
+    @Override
+    void reloadCachedMappings(List<String> names) {
+    }
+  }
+}
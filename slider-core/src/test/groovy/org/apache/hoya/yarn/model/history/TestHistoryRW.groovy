@@ -22,6 +22,7 @@ import groovy.transform.CompileStatic
 import groovy.util.logging.Slf4j
 import org.apache.hadoop.fs.FSDataOutputStream
 import org.apache.hadoop.fs.Path
+import org.apache.hadoop.net.NetworkTopology
 import org.apache.hoya.avro.RoleHistoryWriter
 import org.apache.hoya.yarn.appmaster.state.NodeEntry
 import org.apache.hoya.yarn.appmaster.state.NodeInstance
@@ -255,4 +256,41 @@ class TestHistoryRW extends BaseMockAppStateTest {
     assert fs.exists(badfile )
   }
 
+  @Test
+  public void testWriteReadRack() throws Throwable {
+    RoleHistory roleHistory = new RoleHistory(MockFactory.ROLES)
+    roleHistory.onStart(fs, historyPath)
+    NodeInstance instance = roleHistory.getOrCreateNodeInstance("rack1server5")
+    instance.rack = "/rack1"
+    instance.getOrCreate(0).lastUsed = 0xf00d
+    NodeInstance unracked = roleHistory.getOrCreateNodeInstance("localhost")
+    unracked.getOrCreate(0).lastUsed = 0xf00d
+
+    Path history = roleHistory.saveHistory(time++)
+    RoleHistory rh2 = new RoleHistory(MockFactory.ROLES)
+    assert 2 == new RoleHistoryWriter().read(fs, history, rh2)
+    assert "/rack1" == rh2.getExistingNodeInstance("rack1server5").rack
+    assert NetworkTopology.DEFAULT_RACK ==
+           rh2.getExistingNodeInstance("localhost").rack
+  }
+
+  @Test
+  public void testReadVersion1() throws Throwable {
+    // a history saved before racks were recorded
+    String v1 = """\
+{"entry":{"org.apache.hoya.avro.RoleHistoryHeader":{"version":1,"saved":1384183475949,"savedx":"14247c3aeed","savedate":"Mon, 11 Nov 2013 15:24:35 GMT","roles":3}}}
+{"entry":{"org.apache.hoya.avro.NodeEntryRecord":{"host":"192.168.1.85","role":1,"active":true,"last_used":0}}}
+{"entry":{"org.apache.hoya.avro.RoleHistoryFooter":{"count":1}}}
+"""
+    Path history = new Path(historyPath, "history-v1.json")
+    FSDataOutputStream out = fs.create(history, true)
+    out.write(v1.getBytes("UTF-8"))
+    out.close()
+    RoleHistory roleHistory = new RoleHistory(MockFactory.ROLES)
+    assert 1 == new RoleHistoryWriter().read(fs, history, roleHistory)
+    NodeInstance instance = roleHistory.getExistingNodeInstance("192.168.1.85")
+    assert NetworkTopology.DEFAULT_RACK == instance.rack
+    assert 1384183475949L == instance.get(1).lastUsed
+  }
+
 }
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.history
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.apache.hoya.providers.PlacementPolicy
+import org.apache.hoya.providers.ProviderRole
+import org.apache.hoya.yarn.appmaster.state.NodeInstance
+import org.apache.hoya.yarn.appmaster.state.RoleHistory
+import org.apache.hoya.yarn.appmaster.state.RoleStatus
+import org.apache.hoya.yarn.model.mock.BaseMockAppStateTest
+import org.apache.hoya.yarn.model.mock.MockFactory
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Measure the cost of rack-aware release and placement selection in
+ * a large cluster, and check the racks are kept balanced.
+ * Half the hosts on each rack run the role and are used for release;
+ * the others are available for placement. The hosts on the first half of
+ * the racks run two instances each, the others one.
+ */
+@Slf4j
+@CompileStatic
+class TestRackAwareSelectionCost extends BaseMockAppStateTest {
+
+  public static final int HOSTS = 10000
+  public static final int RACKS = 40
+  public static final int SELECTIONS = 1000
+
+  /**
+   * Generous upper limit on the time for all the selections
+   * of one kind, to catch a change in complexity rather than to
+   * measure the host
+   */
+  public static final long LIMIT = 30000
+
+  RoleHistory roleHistory = new RoleHistory(MockFactory.ROLES)
+
+  @Override
+  String getTestName() {
+    return "TestRackAwareSelectionCost"
+  }
+
+  @Before
+  public void setupNodeMap() {
+    List<NodeInstance> nodes = new ArrayList<NodeInstance>(HOSTS)
+    for (int i = 0; i < HOSTS; i++) {
+      NodeInstance node = new NodeInstance("host" + i, MockFactory.ROLE_COUNT)
+      int rack = i % RACKS
+      node.rack = "/rack" + rack
+      if (i.intdiv(RACKS) % 2 == 0) {
+        node.getOrCreate(0).live = rack < RACKS / 2 ? 2 : 1
+      }
+      node.getOrCreate(0).lastUsed = i
+      nodes << node
+    }
+    roleHistory.insert(nodes)
+    roleHistory.buildAvailableNodeLists()
+  }
+
+  @Test
+  public void testReleaseSelectionCost() throws Throwable {
+    long start = System.currentTimeMillis()
+    List<NodeInstance> released =
+      roleHistory.findNodesForRelease(0, SELECTIONS)
+    long duration = System.currentTimeMillis() - start
+    log.info("Selected $SELECTIONS nodes for release from $HOSTS hosts" +
+             " on $RACKS racks in $duration ms")
+    assert SELECTIONS == released.size()
+    assert duration < LIMIT
+
+    // only the more loaded racks lose instances, all equally
+    Map<String, Integer> releasedPerRack = countPerRack(released)
+    assert RACKS / 2 == releasedPerRack.size()
+    releasedPerRack.each { String rack, Integer count ->
+      assert rack.substring(5).toInteger() < RACKS / 2
+      assert SELECTIONS / (RACKS / 2) == count
+    }
+  }
+
+  @Test
+  public void testPlacementSelectionCost() throws Throwable {
+    RoleStatus role = new RoleStatus(
+        new ProviderRole(ROLE0, 0, PlacementPolicy.RACK_SPREAD))
+    List<NodeInstance> placed = []
+    long start = System.currentTimeMillis()
+    for (int i = 0; i < SELECTIONS; i++) {
+      NodeInstance node = roleHistory.findNodeForNewInstance(role)
+      assert node != null
+      node.getOrCreate(0).onStarting()
+      placed << node
+    }
+    long duration = System.currentTimeMillis() - start
+    log.info("Selected $SELECTIONS nodes for placement from $HOSTS hosts" +
+             " on $RACKS racks in $duration ms")
+    assert duration < LIMIT
+
+    // only the less loaded racks gain instances, all equally
+    Map<String, Integer> placedPerRack = countPerRack(placed)
+    assert RACKS / 2 == placedPerRack.size()
+    placedPerRack.each { String rack, Integer count ->
+      assert rack.substring(5).toInteger() >= RACKS / 2
+      assert SELECTIONS / (RACKS / 2) == count
+    }
+  }
+
+  Map<String, Integer> countPerRack(List<NodeInstance> nodes) {
+    Map<String, Integer> perRack = [:]
+    nodes.each { NodeInstance node ->
+      Integer count = perRack[node.rack]
+      perRack[node.rack] = (count ?: 0) + 1
+    }
+    return perRack
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.history
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.FileStatus
+import org.apache.hadoop.fs.Path
+import org.apache.hoya.HoyaKeys
+import org.apache.hoya.HoyaXmlConfKeys
+import org.apache.hoya.api.StatusKeys
+import org.apache.hoya.avro.NodeEntryRecord
+import org.apache.hoya.yarn.appmaster.history.RoleHistoryCheckpointService
+import org.apache.hoya.yarn.appmaster.state.ContainerPriority
+import org.apache.hoya.yarn.appmaster.state.NodeEntry
+import org.apache.hoya.yarn.appmaster.state.NodeInstance
+import org.apache.hoya.yarn.appmaster.state.RoleHistory
+import org.apache.hoya.yarn.appmaster.state.RoleHistoryCheckpoint
+import org.apache.hoya.yarn.model.mock.BaseMockAppStateTest
+import org.apache.hoya.yarn.model.mock.MockContainer
+import org.apache.hoya.yarn.model.mock.MockFactory
+import org.apache.hoya.yarn.model.mock.MockNodeId
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Test the checkpointing of the role history: deltas of the changed
+ * entries, full checkpoints, and the service which writes them
+ */
+@Slf4j
+@CompileStatic
+class TestRoleHistoryCheckpoint extends BaseMockAppStateTest {
+
+  RoleHistory roleHistory
+
+  @Override
+  String getTestName() {
+    return "TestRoleHistoryCheckpoint"
+  }
+
+  @Before
+  public void setupHistory() {
+    roleHistory = new RoleHistory(MockFactory.ROLES)
+    assert !roleHistory.onStart(fs, historyPath)
+    NodeInstance host1 = roleHistory.getOrCreateNodeInstance("host1")
+    host1.getOrCreate(0).lastUsed = 0x10
+    NodeInstance host2 = roleHistory.getOrCreateNodeInstance("host2")
+    host2.getOrCreate(1).lastUsed = 0x20
+  }
+
+  /**
+   * Start a container of a role on a host
+   * @param host hostname
+   * @param role role
+   */
+  void startContainer(String host, int role) {
+    MockContainer container = factory.newContainer()
+    container.nodeId = new MockNodeId(host)
+    container.priority = ContainerPriority.createPriority(role, false)
+    roleHistory.onContainerStarted(container)
+  }
+
+  List<Path> listHistory(String suffix) {
+    List<Path> paths = []
+    for (FileStatus status : fs.listStatus(historyPath)) {
+      if (status.path.name.endsWith("." + suffix)) {
+        paths << status.path
+      }
+    }
+    return paths
+  }
+
+  @Test
+  public void testDeltaHoldsOnlyChangedEntries() throws Throwable {
+    assert !roleHistory.dirty
+    assert null == roleHistory.prepareCheckpoint(false)
+
+    startContainer("host1", 0)
+    assert roleHistory.dirty
+    RoleHistoryCheckpoint delta = roleHistory.prepareCheckpoint(false)
+    assert !delta.full
+    assert delta.records.size() == 1
+    NodeEntryRecord record = delta.records[0]
+    assert record.host.toString() == "host1"
+    assert record.role == 0
+    assert record.active
+
+    // the changes have been taken
+    assert !roleHistory.dirty
+    assert null == roleHistory.prepareCheckpoint(false)
+  }
+
+  @Test
+  public void testWholeHistoryChangeForcesFullCheckpoint() throws Throwable {
+    roleHistory.touch()
+    RoleHistoryCheckpoint checkpoint = roleHistory.prepareCheckpoint(false)
+    assert checkpoint.full
+    assert checkpoint.records.size() == 2
+  }
+
+  @Test
+  public void testDeltaReplayedOnLoad() throws Throwable {
+    RoleHistoryCheckpoint full = roleHistory.prepareCheckpoint(true)
+    roleHistory.writeCheckpoint(full)
+    startContainer("host2", 2)
+    RoleHistoryCheckpoint delta = roleHistory.prepareCheckpoint(false)
+    Path deltaPath = roleHistory.writeCheckpoint(delta)
+    assert delta.time > full.time
+    assert listHistory(HoyaKeys.HISTORY_FILENAME_SUFFIX).size() == 1
+    assert listHistory(HoyaKeys.HISTORY_DELTA_FILENAME_SUFFIX) == [deltaPath]
+
+    RoleHistory rh2 = new RoleHistory(MockFactory.ROLES)
+    assert rh2.onStart(fs, historyPath)
+    NodeInstance host1 = rh2.getExistingNodeInstance("host1")
+    assert host1.get(0).lastUsed == 0x10
+    NodeInstance host2 = rh2.getExistingNodeInstance("host2")
+    assert host2.get(1).lastUsed == 0x20
+    // active at the time of the delta
+    NodeEntry started = host2.get(2)
+    assert started != null
+    assert started.lastUsed == delta.time
+  }
+
+  @Test
+  public void testFullCheckpointPurgesDeltas() throws Throwable {
+    roleHistory.writeCheckpoint(roleHistory.prepareCheckpoint(true))
+    startContainer("host1", 1)
+    roleHistory.writeCheckpoint(roleHistory.prepareCheckpoint(false))
+    startContainer("host2", 1)
+    roleHistory.writeCheckpoint(roleHistory.prepareCheckpoint(false))
+    assert listHistory(HoyaKeys.HISTORY_DELTA_FILENAME_SUFFIX).size() == 2
+
+    Path latest = roleHistory.writeCheckpoint(
+        roleHistory.prepareCheckpoint(true))
+    assert listHistory(HoyaKeys.HISTORY_FILENAME_SUFFIX) == [latest]
+    assert listHistory(HoyaKeys.HISTORY_DELTA_FILENAME_SUFFIX).empty
+  }
+
+  @Test
+  public void testCheckpointDue() throws Throwable {
+    RoleHistoryCheckpointService service =
+        new RoleHistoryCheckpointService("checkpoints", roleHistory)
+    Configuration conf = new Configuration(false)
+    conf.setInt(HoyaXmlConfKeys.KEY_HISTORY_CHECKPOINT_INTERVAL, 1000)
+    conf.setInt(HoyaXmlConfKeys.KEY_HISTORY_CHECKPOINT_MAX_DELAY, 5000)
+    service.init(conf)
+    long now = System.currentTimeMillis()
+    assert !service.isCheckpointDue(now + 10000)
+
+    startContainer("host1", 0)
+    long changed = roleHistory.lastChangeTime
+    assert roleHistory.firstChangeTime == changed
+    assert !service.isCheckpointDue(changed + 999)
+    assert service.isCheckpointDue(changed + 1000)
+  }
+
+  @Test
+  public void testServiceWritesCheckpoints() throws Throwable {
+    RoleHistoryCheckpointService service =
+        new RoleHistoryCheckpointService("checkpoints", roleHistory)
+    Configuration conf = new Configuration(false)
+    conf.setInt(HoyaXmlConfKeys.KEY_HISTORY_CHECKPOINT_INTERVAL, 50)
+    conf.setInt(HoyaXmlConfKeys.KEY_HISTORY_CHECKPOINT_MAX_DELAY, 200)
+    conf.setInt(HoyaXmlConfKeys.KEY_HISTORY_CHECKPOINT_DELTAS, 1)
+    service.init(conf)
+    service.start()
+    try {
+      startContainer("host1", 0)
+      long timeout = System.currentTimeMillis() + 10000
+      while (roleHistory.dirty && System.currentTimeMillis() < timeout) {
+        Thread.sleep(20)
+      }
+      assert !roleHistory.dirty
+      // a change left when the service stops is written then
+      startContainer("host2", 0)
+    } finally {
+      service.stop()
+    }
+    assert !roleHistory.dirty
+
+    Map<String, Integer> stats = [:]
+    service.addStatistics(stats)
+    log.info("Statistics: {}", stats)
+    assert stats[StatusKeys.STATISTICS_HISTORY_CHECKPOINTS] == 2
+    // the first is always full; the second is a delta
+    assert stats[StatusKeys.STATISTICS_HISTORY_CHECKPOINTS_FULL] == 1
+    assert stats[StatusKeys.STATISTICS_HISTORY_CHECKPOINTS_FAILED] == 0
+    assert stats[StatusKeys.STATISTICS_HISTORY_CHECKPOINT_ENTRIES_LAST] == 1
+    assert stats[StatusKeys.STATISTICS_HISTORY_CHECKPOINT_ENTRIES_MAX] == 2
+    assert listHistory(HoyaKeys.HISTORY_DELTA_FILENAME_SUFFIX).size() == 1
+  }
+}
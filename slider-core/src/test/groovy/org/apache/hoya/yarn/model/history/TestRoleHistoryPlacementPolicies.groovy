@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.history
+
+import org.apache.hadoop.yarn.api.records.Resource
+import org.apache.hadoop.yarn.client.api.AMRMClient
+import org.apache.hoya.providers.PlacementPolicy
+import org.apache.hoya.providers.ProviderRole
+import org.apache.hoya.yarn.appmaster.state.NodeInstance
+import org.apache.hoya.yarn.appmaster.state.OutstandingRequest
+import org.apache.hoya.yarn.appmaster.state.RoleHistory
+import org.apache.hoya.yarn.appmaster.state.RoleStatus
+import org.apache.hoya.yarn.model.mock.BaseMockAppStateTest
+import org.apache.hoya.yarn.model.mock.MockContainer
+import org.apache.hoya.yarn.model.mock.MockFactory
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Test the placement policies in the role history: node selection
+ * and the review of allocated containers
+ */
+class TestRoleHistoryPlacementPolicies extends BaseMockAppStateTest {
+
+  NodeInstance rack1Node1 = nodeInstance(4, 0, 0, 0)
+  NodeInstance rack1Node2 = nodeInstance(3, 0, 0, 0)
+  NodeInstance rack2Node1 = nodeInstance(2, 0, 0, 0)
+  NodeInstance rack2Node2 = nodeInstance(1, 0, 0, 0)
+
+  List<NodeInstance> nodes = [rack1Node1, rack1Node2, rack2Node1, rack2Node2]
+  ClockedRoleHistory roleHistory = new ClockedRoleHistory()
+  Resource resource = Resource.newInstance(1, 1)
+
+  @Override
+  String getTestName() {
+    return "TestRoleHistoryPlacementPolicies"
+  }
+
+  @Before
+  public void setupNodeMap() {
+    rack1Node1.rack = "/rack1"
+    rack1Node2.rack = "/rack1"
+    rack2Node1.rack = "/rack2"
+    rack2Node2.rack = "/rack2"
+    roleHistory.insert(nodes)
+    roleHistory.buildAvailableNodeLists();
+  }
+
+  RoleStatus roleStatus(int policy) {
+    return new RoleStatus(new ProviderRole(ROLE0, 0, policy))
+  }
+
+  @Test
+  public void testStartingNodeSkippedUnderAntiAffinity() throws Throwable {
+    RoleStatus role = roleStatus(PlacementPolicy.ANTI_AFFINITY_REQUIRED)
+    rack1Node1.getOrCreate(0).onStarting()
+    NodeInstance ni = roleHistory.findNodeForNewInstance(role)
+    assert rack1Node2 == ni
+  }
+
+  @Test
+  public void testMaxPerHostAllowsSecondInstance() throws Throwable {
+    RoleStatus role = roleStatus(PlacementPolicy.ANTI_AFFINITY_REQUIRED)
+    role.maxInstancesPerHost = 2
+    rack1Node1.getOrCreate(0).onStarting()
+    NodeInstance ni = roleHistory.findNodeForNewInstance(role)
+    assert rack1Node1 == ni
+  }
+
+  @Test
+  public void testAntiAffinityViolationOnAllocation() throws Throwable {
+    RoleStatus role = roleStatus(PlacementPolicy.ANTI_AFFINITY_REQUIRED)
+    AMRMClient.ContainerRequest req = roleHistory.requestNode(role, resource)
+    MockContainer first = factory.newContainer(req, rack1Node1.hostname)
+    assert PlacementPolicy.DEFAULT ==
+           roleHistory.checkPlacement(first, role, true, 2)
+    roleHistory.onContainerAssigned(first)
+    MockContainer second = factory.newContainer(req, rack1Node1.hostname)
+    assert PlacementPolicy.ANTI_AFFINITY_REQUIRED ==
+           roleHistory.checkPlacement(second, role, false, 1)
+  }
+
+  @Test
+  public void testRackSpreadSelectsLeastLoadedRack() throws Throwable {
+    RoleStatus role = roleStatus(PlacementPolicy.RACK_SPREAD)
+    rack1Node1.getOrCreate(0).live = 1
+    roleHistory.buildAvailableNodeLists();
+    NodeInstance ni = roleHistory.findNodeForNewInstance(role)
+    assert "/rack2" == ni.rack
+  }
+
+  @Test
+  public void testRackSpreadViolationOnAllocation() throws Throwable {
+    RoleStatus role = roleStatus(PlacementPolicy.RACK_SPREAD)
+    rack1Node1.getOrCreate(0).live = 2
+    AMRMClient.ContainerRequest req = roleHistory.requestNode(role, resource)
+    MockContainer onRack1 = factory.newContainer(req, rack1Node2.hostname)
+    assert PlacementPolicy.RACK_SPREAD ==
+           roleHistory.checkPlacement(onRack1, role, false, 1)
+    MockContainer onRack2 = factory.newContainer(req, rack2Node2.hostname)
+    assert PlacementPolicy.DEFAULT ==
+           roleHistory.checkPlacement(onRack2, role, false, 1)
+  }
+
+  @Test
+  public void testRackSpreadToleratesImbalanceOfOne() throws Throwable {
+    RoleStatus role = roleStatus(PlacementPolicy.RACK_SPREAD)
+    rack1Node1.getOrCreate(0).live = 1
+    AMRMClient.ContainerRequest req = roleHistory.requestNode(role, resource)
+    MockContainer onRack1 = factory.newContainer(req, rack1Node2.hostname)
+    assert PlacementPolicy.DEFAULT ==
+           roleHistory.checkPlacement(onRack1, role, false, 1)
+  }
+
+  @Test
+  public void testRackSpreadIgnoresRacksWithoutUsableNodes() throws Throwable {
+    RoleStatus role = roleStatus(PlacementPolicy.RACK_SPREAD)
+    rack1Node1.getOrCreate(0).live = 2
+    rack2Node1.usable = false
+    rack2Node2.usable = false
+    AMRMClient.ContainerRequest req = roleHistory.requestNode(role, resource)
+    MockContainer onRack1 = factory.newContainer(req, rack1Node2.hostname)
+    assert PlacementPolicy.DEFAULT ==
+           roleHistory.checkPlacement(onRack1, role, false, 1)
+  }
+
+  @Test
+  public void testStrictHistoryRequestsAreNotRelaxed() throws Throwable {
+    RoleStatus role = roleStatus(PlacementPolicy.STRICT_HISTORY)
+    AMRMClient.ContainerRequest req = roleHistory.requestNode(role, resource)
+    assert req.nodes[0] == rack1Node1.hostname
+    assert !req.relaxLocality
+    MockContainer elsewhere = factory.newContainer(req, "elsewhere")
+    assert PlacementPolicy.STRICT_HISTORY ==
+           roleHistory.checkPlacement(elsewhere, role, false, 1)
+    // with another instance wanted, the request can still be satisfied
+    assert PlacementPolicy.DEFAULT ==
+           roleHistory.checkPlacement(elsewhere, role, false, 2)
+  }
+
+  @Test
+  public void testStrictHistoryRequestsExpire() throws Throwable {
+    RoleStatus role = roleStatus(PlacementPolicy.STRICT_HISTORY)
+    role.strictPlacementTimeout = 60000
+    AMRMClient.ContainerRequest req = roleHistory.requestNode(role, resource)
+    assert 1 == roleHistory.countOutstandingRequests(0)
+    roleHistory.time += 60000
+    assert roleHistory.expireStrictRequests(role).empty
+    roleHistory.time += 1
+    List<OutstandingRequest> expired = roleHistory.expireStrictRequests(role)
+    assert 1 == expired.size()
+    assert expired[0].issuedRequest.is(req)
+    assert 0 == roleHistory.countOutstandingRequests(0)
+    MockContainer elsewhere = factory.newContainer(req, "elsewhere")
+    assert PlacementPolicy.DEFAULT ==
+           roleHistory.checkPlacement(elsewhere, role, false, 1)
+  }
+
+  @Test
+  public void testOverloadedNodesAreMisplaced() throws Throwable {
+    RoleStatus role = roleStatus(PlacementPolicy.ANTI_AFFINITY_REQUIRED)
+    rack2Node1.getOrCreate(0).live = 3
+    rack2Node2.getOrCreate(0).live = 1
+    List<NodeInstance> misplaced = roleHistory.findMisplacedNodes(role)
+    assertListEquals([rack2Node1], misplaced)
+    assert roleHistory.findMisplacedNodes(roleStatus(0)).empty
+  }
+
+  /**
+   * Role history with a clock set by the test
+   */
+  static class ClockedRoleHistory extends RoleHistory {
+    long time = 1000
+
+    ClockedRoleHistory() {
+      super(MockFactory.ROLES)
+    }
+
+    @Override
+    protected long now() {
+      return time
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.history
+
+import groovy.util.logging.Slf4j
+import org.apache.hadoop.yarn.api.records.Resource
+import org.apache.hoya.providers.ProviderRole
+import org.apache.hoya.yarn.appmaster.state.NodeInstance
+import org.apache.hoya.yarn.appmaster.state.RoleHistory
+import org.apache.hoya.yarn.appmaster.state.RoleStatus
+import org.apache.hoya.yarn.appmaster.web.rest.history.RoleHistoryStream
+import org.apache.hoya.yarn.model.mock.BaseMockAppStateTest
+import org.apache.hoya.yarn.model.mock.MockFactory
+import org.codehaus.jackson.map.ObjectMapper
+import org.junit.Before
+import org.junit.Test
+
+import java.util.zip.GZIPInputStream
+
+/**
+ * Test the streaming of the role history and its filters
+ */
+@Slf4j
+class TestRoleHistoryStream extends BaseMockAppStateTest {
+
+  NodeInstance age1Active4 = nodeInstance(1, 4, 0, 0)
+  NodeInstance age2Active2 = nodeInstance(2, 2, 0, 1)
+  NodeInstance age3Active0 = nodeInstance(3, 0, 0, 0)
+
+  List<NodeInstance> nodes = [age1Active4, age2Active2, age3Active0]
+  RoleHistory roleHistory = new RoleHistory(MockFactory.ROLES)
+  Map<Integer, String> roleNames = [:]
+  RoleStatus roleStatus = new RoleStatus(new ProviderRole("test", 0))
+
+  @Override
+  String getTestName() {
+    return "TestRoleHistoryStream"
+  }
+
+  @Before
+  public void setupNodeMap() {
+    roleHistory.insert(nodes)
+    roleHistory.buildAvailableNodeLists();
+    MockFactory.ROLES.each { ProviderRole role ->
+      roleNames[role.id] = role.name
+    }
+    // an outstanding request on the idle node
+    roleHistory.requestNode(roleStatus, Resource.newInstance(1, 1))
+  }
+
+  public Map stream(List<String> hosts, List<Integer> roles,
+                    boolean gzip = false) {
+    def out = new ByteArrayOutputStream()
+    new RoleHistoryStream(roleHistory, roleNames, hosts, roles, gzip)
+        .write(out)
+    InputStream input = new ByteArrayInputStream(out.toByteArray())
+    if (gzip) {
+      input = new GZIPInputStream(input)
+    }
+    Map json = new ObjectMapper().readValue(input, Map)
+    log.info("$json")
+    return json
+  }
+
+  @Test
+  public void testStreamEverything() throws Throwable {
+    Map json = stream([], [])
+    List<Map> streamed = json[RoleHistoryStream.FIELD_NODES]
+    assert 3 == streamed.size()
+    Map node = streamed.find {
+      it[RoleHistoryStream.FIELD_HOST] == age2Active2.hostname
+    }
+    assert node[RoleHistoryStream.FIELD_RACK] == age2Active2.rack
+    List<Map> roles = node[RoleHistoryStream.FIELD_ROLES]
+    assert 2 == roles.size()
+    Map role2 = roles.find { it[RoleHistoryStream.FIELD_ID] == 2 }
+    assert role2[RoleHistoryStream.FIELD_ROLE] == MockFactory.PROVIDER_ROLE2.name
+    assert 1 == role2[RoleHistoryStream.FIELD_LIVE]
+
+    List<Map> outstanding = json[RoleHistoryStream.FIELD_OUTSTANDING]
+    assert 1 == outstanding.size()
+    assert age3Active0.hostname == outstanding[0][RoleHistoryStream.FIELD_HOST]
+  }
+
+  @Test
+  public void testStreamGzipped() throws Throwable {
+    assert stream([], [], true)[RoleHistoryStream.FIELD_NODES].size() == 3
+  }
+
+  @Test
+  public void testHostFilter() throws Throwable {
+    Map json = stream([age1Active4.hostname, "unknown"], [])
+    List<Map> streamed = json[RoleHistoryStream.FIELD_NODES]
+    assert 1 == streamed.size()
+    assert age1Active4.hostname == streamed[0][RoleHistoryStream.FIELD_HOST]
+    assert json[RoleHistoryStream.FIELD_OUTSTANDING].empty
+  }
+
+  @Test
+  public void testRoleFilter() throws Throwable {
+    Map json = stream([], [2])
+    List<Map> streamed = json[RoleHistoryStream.FIELD_NODES]
+    assert 1 == streamed.size()
+    assert age2Active2.hostname == streamed[0][RoleHistoryStream.FIELD_HOST]
+    List<Map> roles = streamed[0][RoleHistoryStream.FIELD_ROLES]
+    assert 1 == roles.size()
+    assert 2 == roles[0][RoleHistoryStream.FIELD_ID]
+    assert json[RoleHistoryStream.FIELD_OUTSTANDING].empty
+  }
+}
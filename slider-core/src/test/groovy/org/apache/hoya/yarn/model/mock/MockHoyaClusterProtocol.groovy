@@ -94,6 +94,13 @@ class MockHoyaClusterProtocol implements HoyaClusterProtocol {
     return null;
   }
 
+  @Override
+  Messages.RollingRestartResponseProto rollingRestart(
+      Messages.RollingRestartRequestProto request)
+  throws IOException, YarnException {
+    return null
+  }
+
   @Override
   public AMSuicideResponseProto amSuicide(AMSuicideRequestProto request) throws IOException, YarnException {
     return null;
@@ -19,11 +19,13 @@
 package org.apache.hoya.yarn.model.mock
 
 import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.FileSystem
 import org.apache.hadoop.fs.Path
 import org.apache.hadoop.service.LifecycleEvent
 import org.apache.hadoop.service.Service.STATE
 import org.apache.hadoop.service.ServiceStateChangeListener
 import org.apache.hadoop.yarn.api.records.Container
+import org.apache.hadoop.yarn.api.records.ContainerId
 import org.apache.hadoop.yarn.api.records.ContainerLaunchContext
 import org.apache.hoya.api.ClusterDescription
 import org.apache.hoya.core.conf.AggregateConf
@@ -192,11 +194,20 @@ class MockProviderService implements ProviderService {
     return null;
   }
 
+  @Override
+  void setStateDirectory(FileSystem fs, Path stateDir) {
+
+  }
+
   @Override
   void bind(
       StateAccessForProviders stateAccessor,
       RegistryBinderService<ServiceInstanceData> registry) {
 
+  }
+
+  @Override
+  void notifyContainerCompleted(ContainerId containerId) {
   }
 
     @Override
@@ -215,6 +226,25 @@ class MockProviderService implements ProviderService {
                 // dummy impl
                 return new HeartBeatResponse();
             }
+
+            @Override
+            public long admitHeartBeat() {
+                return 0;
+            }
+
+            @Override
+            public HeartBeatResponse pollHeartBeat(HeartBeat heartBeat) {
+                return new HeartBeatResponse();
+            }
+
+            @Override
+            public boolean awaitCommands(String label, Runnable listener) {
+                return false;
+            }
+
+            @Override
+            public void notifyCommandsPending(String containerId, String role) {
+            }
         }
     }
 
@@ -22,6 +22,7 @@ import groovy.util.logging.Slf4j
 import org.apache.hadoop.yarn.api.records.ContainerId
 import org.apache.hadoop.yarn.client.api.AMRMClient
 import org.apache.hoya.yarn.appmaster.state.AbstractRMOperation
+import org.apache.hoya.yarn.appmaster.state.CancelRequestOperation
 import org.apache.hoya.yarn.appmaster.state.ContainerReleaseOperation
 import org.apache.hoya.yarn.appmaster.state.ContainerRequestOperation
 import org.apache.hoya.yarn.appmaster.state.RMOperationHandler
@@ -42,6 +43,12 @@ class MockRMOperationHandler extends RMOperationHandler {
     log.info("Requesting container role #" + req.priority);
   }
 
+  @Override
+  public void removeContainerRequest(AMRMClient.ContainerRequest req) {
+    operations.add(new CancelRequestOperation(req))
+    log.info("Cancelling request for container role #" + req.priority);
+  }
+
   /**
    * clear the history
    */
@@ -39,6 +39,9 @@ import org.apache.hadoop.yarn.api.records.NodeId
  * simulate it enough for Hoya to explore node re-use and its handling
  * of successful and unsuccessful allocations.
  *
+ * Nodes are grouped into racks of a fixed size, so that the loss
+ * of a whole rack can be simulated.
+ *
  * There is little or no checking of valid parameters in here -this is for
  * test use, not production.
  */
@@ -48,11 +51,17 @@ public class MockYarnCluster {
 
   final int clusterSize;
   final int containersPerNode;
+  final int nodesPerRack;
   MockYarnClusterNode[] nodes;
 
   MockYarnCluster(int clusterSize, int containersPerNode) {
+    this(clusterSize, containersPerNode, clusterSize)
+  }
+
+  MockYarnCluster(int clusterSize, int containersPerNode, int nodesPerRack) {
     this.clusterSize = clusterSize
     this.containersPerNode = containersPerNode
+    this.nodesPerRack = nodesPerRack
     build();
   }
 
@@ -63,6 +72,7 @@ public class MockYarnCluster {
     nodes = new MockYarnClusterNode[clusterSize]
     for (int i = 0; i < clusterSize; i++) {
       nodes[i] = new MockYarnClusterNode(i, containersPerNode)
+      nodes[i].rack = rackName(i.intdiv(nodesPerRack) as int)
     }
   }
 
@@ -70,6 +80,28 @@ public class MockYarnCluster {
     return nodes[index]
   }
 
+  int rackCount() {
+    return (clusterSize + nodesPerRack - 1).intdiv(nodesPerRack) as int
+  }
+
+  static String rackName(int rack) {
+    return "/rack" + rack
+  }
+
+  /**
+   * Get the nodes in a rack
+   * @param rack rack index
+   * @return the nodes
+   */
+  List<MockYarnClusterNode> nodesInRack(int rack) {
+    List<MockYarnClusterNode> members = []
+    int end = Math.min(clusterSize, (rack + 1) * nodesPerRack)
+    for (int i = rack * nodesPerRack; i < end; i++) {
+      members << nodes[i]
+    }
+    return members
+  }
+
   MockYarnClusterNode lookup(String hostname) {
     int index = Integer.valueOf(hostname, 16)
     return nodeAt(index)
@@ -149,6 +181,7 @@ public class MockYarnCluster {
     public final String hostname;
     public final MockNodeId nodeId;
     public final MockYarnClusterContainer[] containers;
+    public String rack;
     private boolean offline;
 
     public MockYarnClusterNode(int index, int size) {
@@ -182,6 +215,24 @@ public class MockYarnCluster {
       offline = false;
     }
 
+    public boolean isOffline() {
+      return offline
+    }
+
+    /**
+     * Get the IDs of the containers in use
+     * @return the busy container IDs
+     */
+    public List<MockContainerId> busyContainers() {
+      List<MockContainerId> busy = []
+      containers.each { MockYarnClusterContainer cont ->
+        if (cont.busy) {
+          busy << cont.cid
+        }
+      }
+      return busy
+    }
+
     /**
      * allocate a container -if one is available 
      * @return the container or null for none free
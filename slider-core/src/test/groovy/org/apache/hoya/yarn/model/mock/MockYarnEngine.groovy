@@ -26,6 +26,7 @@ import org.apache.hadoop.yarn.api.records.Container
 import org.apache.hadoop.yarn.api.records.ContainerId
 import org.apache.hadoop.yarn.client.api.AMRMClient
 import org.apache.hoya.yarn.appmaster.state.AbstractRMOperation
+import org.apache.hoya.yarn.appmaster.state.CancelRequestOperation
 import org.apache.hoya.yarn.appmaster.state.ContainerReleaseOperation
 import org.apache.hoya.yarn.appmaster.state.ContainerRequestOperation
 
@@ -59,6 +60,11 @@ class MockYarnEngine {
     allocator = new Allocator(cluster)
   }
 
+  MockYarnEngine(int clusterSize, int containersPerNode, int nodesPerRack) {
+    cluster = new MockYarnCluster(clusterSize, containersPerNode, nodesPerRack)
+    allocator = new Allocator(cluster)
+  }
+
 /**
  * Allocate a container from a request. The containerID will be
  * unique, nodeId and other fields chosen internally with
@@ -108,6 +114,11 @@ class MockYarnEngine {
         ContainerId cid = cro.containerId
         releaseContainer(cid);
         released.add(cid)
+      } else if (op instanceof CancelRequestOperation) {
+        CancelRequestOperation cancel = (CancelRequestOperation) op
+        pending.removeAll { ContainerRequestOperation req ->
+          req.request.is(cancel.request)
+        }
       } else {
         ContainerRequestOperation req = (ContainerRequestOperation) op
         Container container = allocateContainer(req.request)
@@ -0,0 +1,389 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.simulation
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.FileSystem as HadoopFS
+import org.apache.hadoop.fs.Path
+import org.apache.hadoop.yarn.api.records.Container
+import org.apache.hadoop.yarn.api.records.ContainerExitStatus
+import org.apache.hadoop.yarn.api.records.ContainerId
+import org.apache.hadoop.yarn.api.records.ContainerState
+import org.apache.hadoop.yarn.api.records.ContainerStatus
+import org.apache.hadoop.yarn.service.launcher.LauncherExitCodes
+import org.apache.hoya.api.OptionKeys
+import org.apache.hoya.core.conf.AggregateConf
+import org.apache.hoya.yarn.appmaster.state.AbstractRMOperation
+import org.apache.hoya.yarn.appmaster.state.AppState
+import org.apache.hoya.yarn.appmaster.state.CancelRequestOperation
+import org.apache.hoya.yarn.appmaster.state.ContainerAssignment
+import org.apache.hoya.yarn.appmaster.state.ContainerReleaseOperation
+import org.apache.hoya.yarn.appmaster.state.ContainerRequestOperation
+import org.apache.hoya.yarn.appmaster.state.RoleInstance
+import org.apache.hoya.yarn.appmaster.state.RoleStatus
+import org.apache.hoya.yarn.model.mock.BaseMockAppStateTest
+import org.apache.hoya.yarn.model.mock.MockContainerId
+import org.apache.hoya.yarn.model.mock.MockFactory
+import org.apache.hoya.yarn.model.mock.MockRecordFactory
+import org.apache.hoya.yarn.model.mock.MockYarnCluster
+import org.apache.hoya.yarn.model.mock.MockYarnEngine
+
+import java.lang.management.ManagementFactory
+import java.lang.management.ThreadMXBean
+
+/**
+ * A discrete event simulator which drives a real {@link AppState} and its
+ * role history against a {@link MockYarnEngine} in virtual time.
+ *
+ * Each AM-RM heartbeat delivers the container events which are due,
+ * reviews the state, and hands the resulting requests to the mock RM;
+ * containers are started a launch latency after their allocation, and
+ * released containers complete a release latency after the release.
+ * Requests which cannot be satisfied are retried on every heartbeat,
+ * as the RM would.
+ *
+ * The simulation is divided into phases -thaw, flex, node and rack
+ * loss, AM restart- each of which runs until the cluster has
+ * converged on its desired state, and is measured in a {@link PhaseReport}.
+ */
+@CompileStatic
+@Slf4j
+class AppStateSimulator {
+
+  /** simulated milliseconds between AM-RM heartbeats */
+  long heartbeatInterval = 1000
+
+  /** simulated milliseconds from allocation to the NM reporting a start */
+  long launchLatency = 3000
+
+  /** simulated milliseconds from release to the completion event */
+  long releaseLatency = 2000
+
+  /** heartbeats after which a phase is declared as not converging */
+  int maxHeartbeats = 1000
+
+  final VirtualClock clock = new VirtualClock(1000000)
+  final MockYarnEngine engine
+  final MockFactory factory = new MockFactory()
+  final List<PhaseReport> reports = []
+  AppState appState
+
+  private final HadoopFS fs
+  private final Path historyPath
+  private final PriorityQueue<SimulationEvent> events =
+      new PriorityQueue<SimulationEvent>()
+  private long eventCount
+
+  /** outstanding requests which the mock RM has not yet satisfied */
+  private final LinkedList<ContainerRequestOperation> pendingRequests =
+      new LinkedList<ContainerRequestOperation>()
+
+  /** allocated containers which have not completed, by container ID */
+  private final Map<Integer, Container> containers =
+      new HashMap<Integer, Container>()
+
+  private PhaseReport current
+
+  AppStateSimulator(int clusterSize,
+                    int containersPerNode,
+                    int nodesPerRack,
+                    HadoopFS fs,
+                    Path historyPath) {
+    engine = new MockYarnEngine(clusterSize, containersPerNode, nodesPerRack)
+    this.fs = fs
+    this.historyPath = historyPath
+  }
+
+  /**
+   * Thaw: build a new app state with the given role sizes and
+   * bring the cluster up
+   */
+  PhaseReport thaw(int r0, int r1, int r2) {
+    return phase("thaw") {
+      buildAppState(r0, r1, r2, null)
+    }
+  }
+
+  /**
+   * Flex the cluster to new role sizes through the resources
+   */
+  PhaseReport flex(String name, int r0, int r1, int r2) {
+    return phase(name) {
+      timed {
+        appState.updateResourceDefinitions(factory.newConfTree(r0, r1, r2))
+      }
+    }
+  }
+
+  /**
+   * Take nodes out of the cluster, failing their containers. The nodes
+   * are spread evenly across the cluster.
+   * @param count number of nodes to lose
+   */
+  PhaseReport loseNodes(int count) {
+    return phase("lose $count nodes") {
+      int clusterSize = engine.cluster.clusterSize
+      int stride = Math.max(1, clusterSize.intdiv(count) as int)
+      int lost = 0
+      for (int i = 0; i < clusterSize && lost < count; i += stride) {
+        MockYarnCluster.MockYarnClusterNode node = engine.cluster.nodeAt(i)
+        if (!node.offline) {
+          loseNode(node)
+          lost++
+        }
+      }
+    }
+  }
+
+  /**
+   * Take a whole rack out of the cluster
+   * @param rack rack index
+   */
+  PhaseReport loseRack(int rack) {
+    return phase("lose rack $rack") {
+      engine.cluster.nodesInRack(rack).each {
+        MockYarnCluster.MockYarnClusterNode node ->
+          loseNode(node)
+      }
+    }
+  }
+
+  /**
+   * Restart the AM: build a new app state from the live containers,
+   * as a new attempt would, then let it converge
+   */
+  PhaseReport restartAM() {
+    return phase("AM restart") {
+      Map<String, RoleStatus> sizes = [:]
+      appState.roleStatusMap.values().each { RoleStatus role ->
+        sizes[role.name] = role
+      }
+      List<Container> live = appState.cloneLiveContainerInfoList().collect {
+        RoleInstance instance -> instance.container
+      }
+      buildAppState(sizes[MockFactory.PROVIDER_ROLE0.name].desired,
+                    sizes[MockFactory.PROVIDER_ROLE1.name].desired,
+                    sizes[MockFactory.PROVIDER_ROLE2.name].desired,
+                    live)
+    }
+  }
+
+  /**
+   * Run a phase: apply its action, then simulate heartbeats until the
+   * cluster converges or the heartbeat limit is reached
+   * @param name phase name
+   * @param action action starting the phase
+   * @return the report
+   */
+  PhaseReport phase(String name, Closure action) {
+    current = new PhaseReport(name)
+    long startTime = clock.now()
+    ThreadMXBean bean = ManagementFactory.threadMXBean
+    com.sun.management.ThreadMXBean sunBean =
+        bean instanceof com.sun.management.ThreadMXBean ?
+            (com.sun.management.ThreadMXBean) bean : null
+    long tid = Thread.currentThread().id
+    long allocatedBefore = sunBean != null ?
+        sunBean.getThreadAllocatedBytes(tid) : 0
+    long wallStart = System.nanoTime()
+
+    action.call()
+    while (current.heartbeats < maxHeartbeats) {
+      heartbeat()
+      if (converged) {
+        current.converged = true
+        break
+      }
+      clock.advance(heartbeatInterval)
+    }
+
+    current.wallNanos = System.nanoTime() - wallStart
+    if (sunBean != null) {
+      current.bytesAllocated =
+          sunBean.getThreadAllocatedBytes(tid) - allocatedBefore
+    }
+    current.virtualMillis = clock.now() - startTime
+    current.liveContainers = appState.liveNodes.size()
+    System.gc()
+    current.heapUsed =
+        ManagementFactory.memoryMXBean.heapMemoryUsage.used
+    log.info("{}", current)
+    reports << current
+    return current
+  }
+
+  /**
+   * Has the cluster reached its desired state: nothing outstanding,
+   * and every role at its desired size
+   */
+  boolean isConverged() {
+    if (!events.empty || !pendingRequests.empty) {
+      return false
+    }
+    for (RoleStatus role : appState.roleStatusMap.values()) {
+      if (role.requested != 0 || role.releasing != 0 || role.delta != 0) {
+        return false
+      }
+    }
+    return true
+  }
+
+  /**
+   * One AM-RM heartbeat
+   */
+  void heartbeat() {
+    current.heartbeats++
+    while (!events.empty && events.peek().time <= clock.now()) {
+      events.poll().action.call()
+    }
+    List<AbstractRMOperation> operations = (List<AbstractRMOperation>) timed {
+      appState.reviewRequestAndReleaseNodes()
+    }
+    execute(operations)
+
+    // the mock RM satisfies what it can of the outstanding requests
+    List<Container> allocated = []
+    Iterator<ContainerRequestOperation> requests = pendingRequests.iterator()
+    while (requests.hasNext()) {
+      Container container = engine.allocateContainer(requests.next().request)
+      if (container == null) {
+        continue
+      }
+      requests.remove()
+      containers[container.id.id] = container
+      allocated << container
+    }
+    if (allocated.empty) {
+      return
+    }
+    current.containersAllocated += allocated.size()
+    List<ContainerAssignment> assignments = []
+    List<AbstractRMOperation> releases = []
+    timed {
+      appState.onContainersAllocated(allocated, assignments, releases)
+    }
+    execute(releases)
+    for (ContainerAssignment assigned : assignments) {
+      RoleInstance instance = new RoleInstance(assigned.container)
+      instance.role = assigned.role.name
+      instance.roleId = assigned.role.key
+      timed {
+        appState.containerStartSubmitted(assigned.container, instance)
+      }
+      ContainerId id = assigned.container.id
+      schedule(launchLatency) {
+        // the container may have been lost before it started
+        if (containers.containsKey(id.id)) {
+          timed { appState.onNodeManagerContainerStarted(id) }
+        }
+      }
+    }
+  }
+
+  /**
+   * Execute operations from the app state: queue requests for the RM,
+   * and schedule the completion of releases
+   */
+  void execute(List<AbstractRMOperation> operations) {
+    for (AbstractRMOperation operation : operations) {
+      if (operation instanceof ContainerReleaseOperation) {
+        ContainerId id = ((ContainerReleaseOperation) operation).containerId
+        current.containersReleased++
+        schedule(releaseLatency) {
+          if (containers.remove(id.id) != null) {
+            engine.releaseContainer(id)
+            complete(id, LauncherExitCodes.EXIT_CLIENT_INITIATED_SHUTDOWN)
+          }
+        }
+      } else if (operation instanceof CancelRequestOperation) {
+        CancelRequestOperation cancel = (CancelRequestOperation) operation
+        pendingRequests.removeAll { ContainerRequestOperation req ->
+          req.request.is(cancel.request)
+        }
+      } else {
+        pendingRequests << (ContainerRequestOperation) operation
+      }
+    }
+  }
+
+  /**
+   * Lose a node: its containers fail
+   */
+  void loseNode(MockYarnCluster.MockYarnClusterNode node) {
+    List<MockContainerId> busy = node.busyContainers()
+    node.goOffline()
+    for (MockContainerId cid : busy) {
+      Container container = containers.remove(cid.id)
+      if (container != null) {
+        current.containersFailed++
+        complete(container.id, ContainerExitStatus.ABORTED)
+      }
+    }
+  }
+
+  void complete(ContainerId id, int exitCode) {
+    ContainerStatus status = ContainerStatus.newInstance(
+        id, ContainerState.COMPLETE, "", exitCode)
+    timed { appState.onCompletedNode(status) }
+  }
+
+  void schedule(long delay, Closure action) {
+    events.add(new SimulationEvent(clock.now() + delay, eventCount++, action))
+  }
+
+  /**
+   * Call the app state, recording the time spent in the call as
+   * lock hold time
+   */
+  Object timed(Closure call) {
+    long start = System.nanoTime()
+    try {
+      return call.call()
+    } finally {
+      current.lockHeld(System.nanoTime() - start)
+    }
+  }
+
+  /**
+   * Build the app state, as an AM does on startup
+   * @param liveContainers containers from a previous attempt, or null
+   */
+  void buildAppState(int r0, int r1, int r2, List<Container> liveContainers) {
+    AggregateConf instance = factory.newInstanceDefinition(r0, r1, r2)
+    // losing nodes and racks must not trigger a teardown
+    instance.internal.global.put(OptionKeys.INTERNAL_CONTAINER_FAILURE_THRESHOLD,
+                                 Integer.toString(Integer.MAX_VALUE))
+    appState = new SimulatedAppState(new MockRecordFactory(), clock)
+    appState.setContainerLimits(BaseMockAppStateTest.RM_MAX_RAM,
+                                BaseMockAppStateTest.RM_MAX_CORES)
+    timed {
+      appState.buildInstance(instance,
+          new Configuration(false),
+          new ArrayList(MockFactory.ROLES),
+          fs,
+          historyPath,
+          liveContainers,
+          null)
+    }
+    // requests outstanding with the RM are lost with the AM
+    pendingRequests.clear()
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.simulation
+
+import groovy.transform.CompileStatic
+
+/**
+ * The measurements of one phase of a simulation.
+ * The simulator calls the app state from a single thread, so the time
+ * spent in its (synchronized) methods is the time its lock is held.
+ */
+@CompileStatic
+class PhaseReport {
+
+  final String name
+
+  /** did the cluster reach its desired state within the heartbeat limit */
+  boolean converged
+
+  /** AM-RM heartbeats simulated */
+  int heartbeats
+
+  long virtualMillis
+  long wallNanos
+
+  /** calls into the app state, and the time spent in them */
+  int lockAcquisitions
+  long lockHeldNanos
+  long maxLockHeldNanos
+
+  int containersAllocated
+  int containersReleased
+  int containersFailed
+
+  /** live containers at the end of the phase */
+  int liveContainers
+
+  /** bytes allocated by the simulation thread; -1 if unknown */
+  long bytesAllocated = -1
+
+  /** heap in use after the phase, after a GC */
+  long heapUsed
+
+  PhaseReport(String name) {
+    this.name = name
+  }
+
+  void lockHeld(long nanos) {
+    lockAcquisitions++
+    lockHeldNanos += nanos
+    maxLockHeldNanos = Math.max(maxLockHeldNanos, nanos)
+  }
+
+  long getWallMillis() {
+    return wallNanos.intdiv(1000000L) as long
+  }
+
+  long getLockHeldMillis() {
+    return lockHeldNanos.intdiv(1000000L) as long
+  }
+
+  /**
+   * Containers allocated per second of simulated time
+   */
+  double getAllocationRate() {
+    return virtualMillis > 0 ? containersAllocated * 1000d / virtualMillis : 0d
+  }
+
+  /**
+   * Containers allocated per second of wall time: the rate the AM
+   * could keep up with
+   */
+  double getWallAllocationRate() {
+    return wallNanos > 0 ? containersAllocated * 1e9d / wallNanos : 0d
+  }
+
+  @Override
+  String toString() {
+    return String.format(Locale.ENGLISH,
+        "%-16s %s heartbeats=%d virtual=%ds wall=%dms" +
+        " lock=%dms in %d calls (max %.2fms)" +
+        " allocated=%d (%.1f/s virtual, %.0f/s wall)" +
+        " released=%d failed=%d live=%d" +
+        " allocatedBytes=%dMB heap=%dMB",
+        name,
+        converged ? "converged" : "NOT CONVERGED",
+        heartbeats,
+        virtualMillis.intdiv(1000L) as long,
+        wallMillis,
+        lockHeldMillis,
+        lockAcquisitions,
+        maxLockHeldNanos / 1e6d,
+        containersAllocated,
+        allocationRate,
+        wallAllocationRate,
+        containersReleased,
+        containersFailed,
+        liveContainers,
+        bytesAllocated >= 0 ? (bytesAllocated >> 20) : -1L,
+        heapUsed >> 20)
+  }
+}
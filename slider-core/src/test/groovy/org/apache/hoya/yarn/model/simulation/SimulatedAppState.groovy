@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.simulation
+
+import groovy.transform.CompileStatic
+import org.apache.hoya.yarn.appmaster.state.AbstractRecordFactory
+import org.apache.hoya.yarn.model.mock.MockAppState
+
+/**
+ * App state whose notion of time comes from a virtual clock, so that
+ * container lifespans and timestamps follow simulated time
+ */
+@CompileStatic
+class SimulatedAppState extends MockAppState {
+
+  final VirtualClock clock
+
+  SimulatedAppState(AbstractRecordFactory recordFactory, VirtualClock clock) {
+    super(recordFactory)
+    this.clock = clock
+  }
+
+  @Override
+  protected long now() {
+    return clock.now()
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.simulation
+
+import groovy.transform.CompileStatic
+
+/**
+ * An event in the simulation: an action to run at a virtual time.
+ * Events at the same time run in the order they were scheduled.
+ */
+@CompileStatic
+class SimulationEvent implements Comparable<SimulationEvent> {
+
+  final long time
+  final long sequence
+  final Closure action
+
+  SimulationEvent(long time, long sequence, Closure action) {
+    this.time = time
+    this.sequence = sequence
+    this.action = action
+  }
+
+  @Override
+  int compareTo(SimulationEvent that) {
+    if (time != that.time) {
+      return time < that.time ? -1 : 1
+    }
+    return sequence < that.sequence ? -1 : (sequence == that.sequence ? 0 : 1)
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.model.simulation
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.apache.hadoop.fs.FileSystem as HadoopFS
+import org.apache.hadoop.fs.Path
+import org.apache.hadoop.yarn.conf.YarnConfiguration
+import org.apache.hoya.testtools.KeysForTests
+import org.apache.hoya.tools.HoyaUtils
+import org.apache.hoya.yarn.HoyaTestBase
+import org.junit.Test
+
+/**
+ * Drive the app state through a cluster lifecycle with the simulator.
+ * A small cluster is always simulated; the 10k node, 50k container
+ * simulation is enabled with {@link KeysForTests#KEY_TEST_SCALE_ENABLED}.
+ * The phase reports are logged, so that runs can be compared.
+ */
+@CompileStatic
+@Slf4j
+class TestAppStateScaleSimulation extends HoyaTestBase {
+
+  @Test
+  public void testSimulatedLifecycle() throws Throwable {
+    AppStateSimulator simulator = createSimulator(
+        "TestAppStateScaleSimulation", 500, 8, 50)
+    runLifecycle(simulator, 5, 1000, 1495)
+  }
+
+  @Test
+  public void testLargeScaleSimulation() throws Throwable {
+    YarnConfiguration conf = HoyaUtils.createConfiguration()
+    conf.addResource(KeysForTests.SLIDER_TEST_XML)
+    assumeBoolOption(conf, KeysForTests.KEY_TEST_SCALE_ENABLED, false)
+    AppStateSimulator simulator = createSimulator(
+        "TestAppStateLargeScaleSimulation", 10000, 8, 40)
+    runLifecycle(simulator, 10, 25000, 24990)
+  }
+
+  AppStateSimulator createSimulator(String name,
+                                    int clusterSize,
+                                    int containersPerNode,
+                                    int nodesPerRack) {
+    HadoopFS fs = HadoopFS.get(new URI("file:///"),
+                               HoyaUtils.createConfiguration())
+    Path historyPath = new Path(new File("target/history", name).toURI())
+    fs.delete(historyPath, true)
+    return new AppStateSimulator(clusterSize,
+                                 containersPerNode,
+                                 nodesPerRack,
+                                 fs,
+                                 historyPath)
+  }
+
+  /**
+   * Thaw, flex up and down, lose nodes and a rack, then restart the AM;
+   * every phase must converge on the desired cluster size
+   */
+  void runLifecycle(AppStateSimulator simulator, int r0, int r1, int r2) {
+    int total = r0 + r1 + r2
+    int clusterSize = simulator.engine.cluster.clusterSize
+
+    PhaseReport thaw = simulator.thaw(r0, r1, r2)
+    assertConverged(thaw, total)
+    assert thaw.containersAllocated >= total
+
+    int extra = r1.intdiv(10) as int
+    assertConverged(simulator.flex("flex up", r0, r1 + extra, r2),
+                    total + extra)
+    PhaseReport down = simulator.flex("flex down", r0, r1, r2)
+    assertConverged(down, total)
+    assert down.containersReleased >= extra
+
+    PhaseReport nodeLoss = simulator.loseNodes(clusterSize.intdiv(100) as int)
+    assertConverged(nodeLoss, total)
+    assert nodeLoss.containersFailed > 0
+    assert nodeLoss.containersAllocated >= nodeLoss.containersFailed
+
+    PhaseReport rackLoss = simulator.loseRack(1)
+    assertConverged(rackLoss, total)
+    assert rackLoss.containersFailed > 0
+
+    // a restarted AM adopts the live containers, and asks for nothing
+    PhaseReport restart = simulator.restartAM()
+    assertConverged(restart, total)
+    assert 0 == restart.containersAllocated
+
+    log.info("Simulation of {} containers on {} nodes:", total, clusterSize)
+    simulator.reports.each { PhaseReport report ->
+      log.info("  {}", report)
+    }
+  }
+
+  void assertConverged(PhaseReport report, int expected) {
+    assert report.converged, "did not converge: $report"
+    assert expected == report.liveContainers, "wrong size: $report"
+  }
+}
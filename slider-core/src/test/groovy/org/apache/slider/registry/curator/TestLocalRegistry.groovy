@@ -157,4 +157,74 @@ class TestLocalRegistry {
     
   }
 
+  @Test
+  public void testCachedListingSeesRemoteRegistrations() throws Throwable {
+    registryBinder.register(HoyaKeys.APP_TYPE, "instance1",
+        new URL("http", "localhost", 80, "/"),
+        null)
+    def cache = registryBinder.getInstanceCache(HoyaKeys.APP_TYPE)
+    assert cache.awaitInitialized(10000)
+    assert registryBinder.listInstances(HoyaKeys.APP_TYPE).size() == 1
+
+    // a registration through another binder arrives via the watch
+    RegistryBinderService<ServiceInstanceData> registry2 = createRegistry()
+    try {
+      registry2.register(HoyaKeys.APP_TYPE, "instance2",
+          new URL("http", "localhost", 8090, "/"),
+          null)
+      long endTime = System.currentTimeMillis() + 10000
+      while (cache.size() < 2 && System.currentTimeMillis() < endTime) {
+        Thread.sleep(50)
+      }
+      def instances = registryBinder.listInstances(HoyaKeys.APP_TYPE)
+      assert instances.size() == 2
+      assert cache.updateCount >= 2
+      assert cache.lastUpdated > 0
+      assert registryBinder.queryForInstance(HoyaKeys.APP_TYPE,
+          "instance2").port == 8090
+    } finally {
+      registry2.stop()
+    }
+  }
+
+  @Test
+  public void testUncachedListingReadsAllInstances() throws Throwable {
+    (1..5).each { int i ->
+      registryBinder.register(HoyaKeys.APP_TYPE, "instance" + i,
+          new URL("http", "localhost", 8080 + i, "/"),
+          null)
+    }
+    // a client binder has no cache, so reads the instances in one batch
+    RegistryBinderService<ServiceInstanceData> client = createRegistry()
+    try {
+      assert client.getInstanceCache(HoyaKeys.APP_TYPE) == null
+      def instances = client.listInstances(HoyaKeys.APP_TYPE)
+      assert instances.size() == 5
+      assert instances*.port.sort() == (8081..8085).toList()
+    } finally {
+      client.stop()
+    }
+  }
+
+  @Test
+  public void testOnlyRegisteredServiceTypesCached() throws Throwable {
+    // lookups read ZK directly, and never create a cache
+    assert registryBinder.listInstances("unknown").empty
+    assert registryBinder.queryForInstance("unknown", "instance1") == null
+    assert registryBinder.getInstanceCache("unknown") == null
+
+    // the least recently used cache is closed when the limit is reached
+    registryBinder.maxInstanceCaches = 1
+    registryBinder.register("type1", "instance1",
+        new URL("http", "localhost", 80, "/"),
+        null)
+    assert registryBinder.getInstanceCache("type1") != null
+    registryBinder.register("type2", "instance2",
+        new URL("http", "localhost", 8090, "/"),
+        null)
+    assert registryBinder.getInstanceCache("type1") == null
+    assert registryBinder.getInstanceCache("type2") != null
+    assert registryBinder.queryForInstance("type1", "instance1").port == 80
+  }
+
 }
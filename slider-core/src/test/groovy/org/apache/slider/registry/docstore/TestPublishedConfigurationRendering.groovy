@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.slider.registry.docstore
+
+import groovy.util.logging.Slf4j
+import org.apache.slider.core.registry.docstore.PublishedConfiguration
+import org.apache.slider.core.registry.docstore.RenderedConfiguration
+import org.junit.Test
+
+import java.util.zip.GZIPInputStream
+
+import static org.apache.slider.core.registry.docstore.RenderedConfiguration.Format.*
+
+/**
+ * Test the pre-rendering of published configurations
+ */
+@Slf4j
+class TestPublishedConfigurationRendering {
+
+  PublishedConfiguration create(Map<String, String> values) {
+    PublishedConfiguration conf = new PublishedConfiguration()
+    conf.description = "test"
+    conf.putValues(values.entrySet())
+    return conf
+  }
+
+  @Test
+  public void testRenderedOnceUntilChanged() throws Throwable {
+    PublishedConfiguration conf = create(["a": "1", "b": "2"])
+    RenderedConfiguration rendered = conf.render()
+    assert rendered.is(conf.render())
+    assert conf.updated > 0
+    assert rendered.lastModified == conf.updated
+
+    conf.putValues(["a": "3"].entrySet())
+    RenderedConfiguration updated = conf.render()
+    assert !updated.is(rendered)
+    assert updated.hash != rendered.hash
+  }
+
+  @Test
+  public void testETagsStableAcrossRenderings() throws Throwable {
+    RenderedConfiguration r1 = create(["a": "1", "b": "2"]).render()
+    RenderedConfiguration r2 = create(["b": "2", "a": "1"]).render()
+    assert r1.getETag(JSON, false) == r2.getETag(JSON, false)
+    assert r1.getETag(JSON, false) != r1.getETag(XML, false)
+    assert r1.getETag(JSON, false) != r1.getETag(JSON, true)
+  }
+
+  @Test
+  public void testFormats() throws Throwable {
+    PublishedConfiguration conf = create(["key": "value"])
+    RenderedConfiguration rendered = conf.render()
+    String json = new String(rendered.getContent(JSON, false), "UTF-8")
+    assert json == conf.asJson()
+    String xml = new String(rendered.getContent(XML, false), "UTF-8")
+    assert xml.contains("<name>key</name>")
+    Properties props = new Properties()
+    props.load(new ByteArrayInputStream(rendered.getContent(PROPERTIES, false)))
+    assert props.getProperty("key") == "value"
+  }
+
+  @Test
+  public void testGzippedContentMatches() throws Throwable {
+    RenderedConfiguration rendered = create(["key": "value"]).render()
+    byte[] gzipped = rendered.getContent(XML, true)
+    byte[] unzipped = new GZIPInputStream(
+        new ByteArrayInputStream(gzipped)).bytes
+    assert Arrays.equals(unzipped, rendered.getContent(XML, false))
+  }
+}
@@ -19,6 +19,7 @@
 package org.apache.hoya.providers.agent;
 
 import junit.framework.TestCase;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FilterFileSystem;
 import org.apache.hadoop.fs.Path;
@@ -26,6 +27,7 @@ import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerLaunchContext;
 import org.apache.hadoop.yarn.api.records.LocalResource;
 import org.apache.hadoop.yarn.api.records.LocalResourceType;
+import org.apache.hoya.HoyaXmlConfKeys;
 import org.apache.hoya.api.ClusterDescription;
 import org.apache.hoya.api.OptionKeys;
 import org.apache.hoya.api.StatusKeys;
@@ -35,12 +37,14 @@ import org.apache.hoya.core.conf.ConfTreeOperations;
 import org.apache.hoya.core.conf.MapOperations;
 import org.apache.hoya.exceptions.SliderException;
 import org.apache.hoya.tools.HoyaFileSystem;
+import org.apache.hoya.yarn.appmaster.state.RoleInstance;
 import org.apache.hoya.yarn.appmaster.state.StateAccessForProviders;
 import org.apache.hoya.yarn.appmaster.web.rest.agent.HeartBeat;
 import org.apache.hoya.yarn.appmaster.web.rest.agent.HeartBeatResponse;
 import org.apache.hoya.yarn.appmaster.web.rest.agent.Register;
 import org.apache.hoya.yarn.appmaster.web.rest.agent.RegistrationResponse;
 import org.apache.hoya.yarn.appmaster.web.rest.agent.RegistrationStatus;
+import org.apache.hoya.yarn.model.mock.MockContainer;
 import org.apache.hoya.yarn.model.mock.MockContainerId;
 import org.apache.hoya.yarn.model.mock.MockFileSystem;
 import org.apache.hoya.yarn.model.mock.MockNodeId;
@@ -50,8 +54,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.createNiceMock;
@@ -115,6 +121,7 @@ public class AgentProviderServiceTest {
     ClusterDescription desc = new ClusterDescription();
     desc.setInfo(StatusKeys.INFO_AM_HOSTNAME, "host1");
     desc.setInfo(StatusKeys.INFO_AM_WEB_PORT, "8088");
+    desc.setInfo(StatusKeys.INFO_AM_AGENT_PORT, "8089");
     desc.setInfo(OptionKeys.APPLICATION_NAME, "HBASE");
     desc.getOrAddRole("HBASE_MASTER").put(AgentKeys.COMPONENT_SCRIPT, "scripts/hbase_master.py");
     expect(access.getClusterStatus()).andReturn(desc).anyTimes();
@@ -155,6 +162,265 @@ public class AgentProviderServiceTest {
     TestCase.assertEquals(2, hbr.getResponseId());
   }
 
+  @Test
+  public void testLongPollWakeup() throws Exception {
+    StateAccessForProviders access =
+        createNiceMock(StateAccessForProviders.class);
+    AgentProviderService mockAps = Mockito.spy(new AgentProviderService());
+    doReturn(access).when(mockAps).getStateAccessor();
+    replay(access);
+
+    String label = "mockcontainer_1___HBASE_MASTER";
+    RegisteredAgent agent = mockAps.getAgentRegistry().register(label,
+        "HBASE_MASTER", "mockcontainer_1", "application_1");
+    agent.updateTargetState(State.STARTED);
+
+    final AtomicInteger wakeups = new AtomicInteger();
+    Runnable listener = new Runnable() {
+      @Override
+      public void run() {
+        wakeups.incrementAndGet();
+      }
+    };
+    TestCase.assertTrue(mockAps.awaitCommands(label, listener));
+    mockAps.notifyCommandsPending("mockcontainer_1", "HBASE_MASTER");
+    TestCase.assertEquals(1, wakeups.get());
+
+    // a listener is only invoked once
+    mockAps.notifyCommandsPending("mockcontainer_1", "HBASE_MASTER");
+    TestCase.assertEquals(1, wakeups.get());
+
+    // no waiting for unknown agents
+    TestCase.assertFalse(mockAps.awaitCommands("unknown", listener));
+    TestCase.assertTrue(mockAps.awaitCommands(label, listener));
+    mockAps.notifyCommandsPending("mockcontainer_1", "HBASE_MASTER");
+    TestCase.assertEquals(2, wakeups.get());
+  }
+
+  @Test
+  public void testCompletedContainerAgentsRemoved() throws Exception {
+    StateAccessForProviders access =
+        createNiceMock(StateAccessForProviders.class);
+    AgentProviderService mockAps = Mockito.spy(new AgentProviderService());
+    doReturn(access).when(mockAps).getStateAccessor();
+    replay(access);
+
+    AgentRegistry registry = mockAps.getAgentRegistry();
+    String label = "mockcontainer_1___HBASE_MASTER";
+    RegisteredAgent agent = registry.register(label,
+        "HBASE_MASTER", "mockcontainer_1", "application_1");
+    agent.updateTargetState(State.STARTED);
+    registry.register("mockcontainer_2___HBASE_MASTER",
+        "HBASE_MASTER", "mockcontainer_2", "application_1");
+    registry.setSettled(agent, true);
+
+    final AtomicInteger wakeups = new AtomicInteger();
+    Runnable listener = new Runnable() {
+      @Override
+      public void run() {
+        wakeups.incrementAndGet();
+      }
+    };
+    TestCase.assertTrue(mockAps.awaitCommands(label, listener));
+
+    // the agent is dropped, and its long-poll released
+    mockAps.notifyContainerCompleted(new MockContainerId(1));
+    TestCase.assertFalse(registry.contains(label));
+    TestCase.assertEquals(1, registry.size());
+    TestCase.assertEquals(0, registry.getSettledCount());
+    TestCase.assertEquals(1, wakeups.get());
+
+    // unknown containers are ignored
+    mockAps.notifyContainerCompleted(new MockContainerId(3));
+    TestCase.assertEquals(1, registry.size());
+  }
+
+  @Test
+  public void testRetransmittedHeartbeatGetsSameResponse() throws Exception {
+    AggregateConf aggConf = new AggregateConf();
+    aggConf.getAppConfOperations().getOrAddComponent("HBASE_MASTER")
+        .put(AgentKeys.COMPONENT_SCRIPT, "scripts/hbase_master.py");
+    StateAccessForProviders access =
+        Mockito.mock(StateAccessForProviders.class);
+    Mockito.when(access.getInstanceDefinitionSnapshot()).thenReturn(aggConf);
+    AgentProviderService mockAps = Mockito.spy(new AgentProviderService());
+    doReturn(access).when(mockAps).getStateAccessor();
+    doNothing().when(mockAps).addInstallCommand(
+        eq("HBASE_MASTER"),
+        any(HeartBeatResponse.class),
+        eq("scripts/hbase_master.py"));
+
+    String label = "mockcontainer_1___HBASE_MASTER";
+    RegisteredAgent agent = mockAps.getAgentRegistry().register(label,
+        "HBASE_MASTER", "mockcontainer_1", "application_1");
+    HeartBeat hb = new HeartBeat();
+    hb.setResponseId(0);
+    hb.setHostname(label);
+    HeartBeatResponse install = mockAps.handleHeartBeat(hb);
+    TestCase.assertEquals(1, install.getResponseId());
+    TestCase.assertEquals(State.INSTALLING, agent.getComponentState().getState());
+
+    // the response was lost: the retransmission gets it again,
+    // and the command is not issued a second time
+    TestCase.assertSame(install, mockAps.handleHeartBeat(hb));
+    Mockito.verify(mockAps, Mockito.times(1)).addInstallCommand(
+        eq("HBASE_MASTER"),
+        any(HeartBeatResponse.class),
+        eq("scripts/hbase_master.py"));
+
+    // a long-poll of the abandoned request does not issue commands
+    TestCase.assertNotSame(install, mockAps.pollHeartBeat(hb));
+
+    // the next heartbeat gets a response of its own
+    hb.setResponseId(1);
+    HeartBeatResponse next = mockAps.handleHeartBeat(hb);
+    TestCase.assertNotSame(install, next);
+    TestCase.assertEquals(2, next.getResponseId());
+  }
+
+  @Test
+  public void testHeartbeatIntervalSizing() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_INTERVAL, 10000);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_INTERVAL_ACTIVE, 1000);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_BUDGET, 100);
+    AgentProviderService aps = new AgentProviderService();
+    aps.init(conf);
+    AgentRegistry registry = aps.getAgentRegistry();
+    RegisteredAgent[] agents = new RegisteredAgent[2000];
+    for (int i = 0; i < agents.length; i++) {
+      agents[i] = registry.register("container_" + i + "___HBASE_MASTER",
+          "HBASE_MASTER", "container_" + i, "application_1");
+    }
+
+    // all active: they share half the budget
+    TestCase.assertEquals(40000, aps.getHeartbeatInterval(false));
+
+    // 100 active agents use 50 heartbeats/second, leaving 50 for the rest
+    for (int i = 100; i < agents.length; i++) {
+      registry.setSettled(agents[i], true);
+    }
+    TestCase.assertEquals(2000, aps.getHeartbeatInterval(false));
+    TestCase.assertEquals(38000, aps.getHeartbeatInterval(true));
+
+    // all settled: they share the whole budget
+    for (int i = 0; i < 100; i++) {
+      registry.setSettled(agents[i], true);
+    }
+    TestCase.assertEquals(1000, aps.getHeartbeatInterval(false));
+    TestCase.assertEquals(20000, aps.getHeartbeatInterval(true));
+
+    // small instances get the configured minimums
+    for (int i = 10; i < agents.length; i++) {
+      registry.remove(agents[i].getLabel());
+    }
+    TestCase.assertEquals(1000, aps.getHeartbeatInterval(false));
+    TestCase.assertEquals(10000, aps.getHeartbeatInterval(true));
+    aps.close();
+  }
+
+  @Test
+  public void testHeartbeatIntervalsRecoverAfterCompletions() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_INTERVAL, 10000);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_INTERVAL_ACTIVE, 1000);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_BUDGET, 100);
+    AgentProviderService aps = new AgentProviderService();
+    aps.init(conf);
+    AgentRegistry registry = aps.getAgentRegistry();
+    RegisteredAgent[] agents = new RegisteredAgent[2000];
+    for (int i = 0; i < agents.length; i++) {
+      agents[i] = registry.register("mockcontainer_" + i + "___HBASE_MASTER",
+          "HBASE_MASTER", "mockcontainer_" + i, "application_1");
+    }
+    for (int i = 1000; i < agents.length; i++) {
+      registry.setSettled(agents[i], true);
+    }
+    TestCase.assertEquals(20000, aps.getHeartbeatInterval(false));
+    TestCase.assertEquals(20000, aps.getHeartbeatInterval(true));
+
+    // the containers of the active agents are lost
+    for (int i = 0; i < 1000; i++) {
+      aps.notifyContainerCompleted(new MockContainerId(i));
+    }
+    TestCase.assertEquals(1000, registry.size());
+    TestCase.assertEquals(1000, aps.getHeartbeatInterval(false));
+    TestCase.assertEquals(10000, aps.getHeartbeatInterval(true));
+
+    // then most of the settled ones
+    for (int i = 1000; i < 1990; i++) {
+      aps.notifyContainerCompleted(new MockContainerId(i));
+    }
+    TestCase.assertEquals(10, registry.getSettledCount());
+    TestCase.assertEquals(1000, aps.getHeartbeatInterval(false));
+    TestCase.assertEquals(10000, aps.getHeartbeatInterval(true));
+    aps.close();
+  }
+
+  @Test
+  public void testRestoreAfterAMRestart() throws Exception {
+    // the state saved by the previous AM: one started component whose
+    // container survived, and one whose container was lost
+    AgentStateSnapshot snapshot = new AgentStateSnapshot();
+    snapshot.agents.add(savedState("mockcontainer_1", State.STARTED));
+    snapshot.agents.add(savedState("mockcontainer_2", State.STARTED));
+
+    MockContainer container = new MockContainer();
+    container.setId(new MockContainerId(1));
+    container.setNodeId(new MockNodeId("host1"));
+    AggregateConf aggConf = new AggregateConf();
+    aggConf.getAppConfOperations().getOrAddComponent("HBASE_MASTER")
+        .put(AgentKeys.COMPONENT_SCRIPT, "scripts/hbase_master.py");
+    StateAccessForProviders access =
+        Mockito.mock(StateAccessForProviders.class);
+    Mockito.when(access.cloneLiveContainerInfoList())
+        .thenReturn(Arrays.asList(new RoleInstance(container)));
+    Mockito.when(access.getInstanceDefinitionSnapshot()).thenReturn(aggConf);
+
+    AgentProviderService aps = new AgentProviderService();
+    aps.setStateAccessor(access);
+    aps.restoreAgents(snapshot);
+    String label = "mockcontainer_1___HBASE_MASTER";
+    TestCase.assertEquals(1, aps.getAgentRegistry().size());
+    TestCase.assertEquals("1",
+        aps.buildProviderStatus().get(AgentKeys.INFO_AGENTS_RESTORED));
+    TestCase.assertEquals("host1",
+        aps.getAgentRegistry().getHostsForRole("HBASE_MASTER").get(0));
+    Mockito.verify(access).onComponentStarted("mockcontainer_1");
+
+    // the agent is told to register again
+    HeartBeat hb = new HeartBeat();
+    hb.setResponseId(57);
+    hb.setHostname(label);
+    HeartBeatResponse hbr = aps.handleHeartBeat(hb);
+    TestCase.assertEquals(58, hbr.getResponseId());
+    TestCase.assertNotNull(hbr.getRegistrationCommand());
+
+    Register reg = new Register();
+    reg.setHostname(label);
+    TestCase.assertEquals(RegistrationStatus.OK,
+        aps.handleRegistration(reg).getResponseStatus());
+
+    // then carries on without being installed or started again
+    hb.setResponseId(0);
+    hbr = aps.handleHeartBeat(hb);
+    TestCase.assertEquals(1, hbr.getResponseId());
+    TestCase.assertNull(hbr.getRegistrationCommand());
+    TestCase.assertTrue(hbr.getExecutionCommands().isEmpty());
+    aps.close();
+  }
+
+  private AgentStateRecord savedState(String containerId, State state) {
+    AgentStateRecord record = new AgentStateRecord();
+    record.label = containerId + "___HBASE_MASTER";
+    record.role = "HBASE_MASTER";
+    record.containerId = containerId;
+    record.applicationId = "HBASE";
+    record.state = state;
+    record.lastCommand = Command.START;
+    return record;
+  }
+
   @Test
   public void testRoleHostMapping() throws Exception {
     AgentProviderService aps = new AgentProviderService();
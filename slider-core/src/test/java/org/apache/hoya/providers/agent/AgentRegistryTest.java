@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.providers.agent;
+
+import junit.framework.TestCase;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.HeartBeatResponse;
+import org.junit.Test;
+
+public class AgentRegistryTest {
+
+  @Test
+  public void testRegisterAndLookup() {
+    AgentRegistry registry = new AgentRegistry(4);
+    RegisteredAgent agent =
+        registry.register("CID_001___HBASE_MASTER", "HBASE_MASTER", "CID_001", "AID_001");
+    TestCase.assertSame(agent, registry.get("CID_001___HBASE_MASTER"));
+    TestCase.assertEquals(1, registry.size());
+    TestCase.assertEquals("CID_001", agent.getContainerId());
+    TestCase.assertEquals(Command.INSTALL, agent.getNextCommand());
+    TestCase.assertNull(registry.get("CID_002___HBASE_MASTER"));
+  }
+
+  @Test
+  public void testHeartbeatSequence() {
+    RegisteredAgent agent =
+        new RegisteredAgent("CID_001___HBASE_MASTER", "HBASE_MASTER", "CID_001", "AID_001");
+    TestCase.assertTrue(agent.onHeartbeat(0));
+    TestCase.assertTrue(agent.onHeartbeat(1));
+    // a retransmission
+    TestCase.assertFalse(agent.onHeartbeat(1));
+    TestCase.assertEquals(3, agent.getHeartbeats());
+    // re-registration restarts the sequence
+    agent.onRegistration();
+    TestCase.assertTrue(agent.onHeartbeat(0));
+  }
+
+  @Test
+  public void testNextCommandSlot() {
+    RegisteredAgent agent =
+        new RegisteredAgent("CID_001___HBASE_MASTER", "HBASE_MASTER", "CID_001", "AID_001");
+    ComponentInstanceState state = agent.getComponentState();
+    state.commandIssued(Command.INSTALL);
+    state.applyCommandResult(CommandResult.COMPLETED, Command.INSTALL);
+    // the slot is only updated on a refresh
+    TestCase.assertEquals(Command.INSTALL, agent.getNextCommand());
+    TestCase.assertEquals(Command.START, agent.refreshNextCommand());
+    TestCase.assertTrue(agent.updateTargetState(State.INSTALLED));
+    TestCase.assertFalse(agent.updateTargetState(State.INSTALLED));
+    TestCase.assertEquals(Command.NOP, agent.refreshNextCommand());
+  }
+
+  @Test
+  public void testIdleResponsesNotShared() {
+    RegisteredAgent agent =
+        new RegisteredAgent("CID_001___HBASE_MASTER", "HBASE_MASTER", "CID_001", "AID_001");
+    HeartBeatResponse r1 = agent.idleResponse(5, 1000);
+    HeartBeatResponse r2 = agent.idleResponse(6, 10000);
+    TestCase.assertNotSame(r1, r2);
+    TestCase.assertEquals(5, r1.getResponseId());
+    TestCase.assertEquals(1000, r1.getHeartbeatInterval());
+    TestCase.assertEquals(6, r2.getResponseId());
+    TestCase.assertEquals(10000, r2.getHeartbeatInterval());
+    TestCase.assertTrue(r2.getExecutionCommands().isEmpty());
+  }
+
+  @Test
+  public void testResendLastResponse() {
+    RegisteredAgent agent =
+        new RegisteredAgent("CID_001___HBASE_MASTER", "HBASE_MASTER", "CID_001", "AID_001");
+    TestCase.assertTrue(agent.onHeartbeat(3));
+    TestCase.assertNull(agent.resendLastResponse(3));
+    HeartBeatResponse response = agent.idleResponse(4, 1000);
+    agent.setLastResponse(response);
+    TestCase.assertFalse(agent.isLastResponseResent());
+    // only the last heartbeat gets its response again
+    TestCase.assertNull(agent.resendLastResponse(2));
+    TestCase.assertSame(response, agent.resendLastResponse(3));
+    TestCase.assertTrue(agent.isLastResponseResent());
+    // a new response, and re-registration, forget the old one
+    agent.setLastResponse(agent.idleResponse(4, 1000));
+    TestCase.assertFalse(agent.isLastResponseResent());
+    agent.onRegistration();
+    TestCase.assertNull(agent.resendLastResponse(3));
+  }
+
+  @Test
+  public void testAppliedConfigurationHash() {
+    RegisteredAgent agent =
+        new RegisteredAgent("CID_001___HBASE_MASTER", "HBASE_MASTER", "CID_001", "AID_001");
+    agent.setAppliedConfigurationHash("abc");
+    TestCase.assertEquals("abc", agent.getAppliedConfigurationHash());
+    // a restarted agent reports no hash, and holds no configurations
+    agent.setAppliedConfigurationHash(null);
+    TestCase.assertNull(agent.getAppliedConfigurationHash());
+  }
+
+  @Test
+  public void testSettledCount() {
+    AgentRegistry registry = new AgentRegistry();
+    RegisteredAgent first =
+        registry.register("CID_001___HBASE_MASTER", "HBASE_MASTER", "CID_001", "AID_001");
+    RegisteredAgent second =
+        registry.register("CID_002___HBASE_MASTER", "HBASE_MASTER", "CID_002", "AID_001");
+    registry.setSettled(first, true);
+    registry.setSettled(first, true);
+    registry.setSettled(second, true);
+    TestCase.assertEquals(2, registry.getSettledCount());
+    registry.setSettled(second, false);
+    TestCase.assertEquals(1, registry.getSettledCount());
+    // removing or replacing a settled agent drops it from the count
+    registry.remove("CID_002___HBASE_MASTER");
+    TestCase.assertEquals(1, registry.getSettledCount());
+    registry.register("CID_001___HBASE_MASTER", "HBASE_MASTER", "CID_001", "AID_001");
+    TestCase.assertEquals(0, registry.getSettledCount());
+    TestCase.assertFalse(first.isSettled());
+  }
+
+  @Test
+  public void testRoleHosts() {
+    AgentRegistry registry = new AgentRegistry();
+    registry.addRoleHost("FIRST_ROLE", "FIRST_HOST");
+    registry.addRoleHost("FIRST_ROLE", "SECOND_HOST");
+    TestCase.assertEquals(2, registry.getHostsForRole("FIRST_ROLE").size());
+    TestCase.assertNull(registry.getHostsForRole("SECOND_ROLE"));
+    TestCase.assertEquals(1, registry.getRoleHostMapping().size());
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.providers.agent;
+
+import junit.framework.TestCase;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hoya.HoyaXmlConfKeys;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+public class AgentStateStoreTest {
+
+  private FileSystem fs;
+  private Path stateDir;
+  private AgentRegistry registry;
+  private AgentStateStore store;
+
+  @Before
+  public void setup() throws Exception {
+    Configuration conf = new Configuration();
+    fs = FileSystem.getLocal(conf);
+    stateDir = new Path(new File("target/agentstate").toURI());
+    fs.delete(stateDir, true);
+    registry = new AgentRegistry();
+    store = new AgentStateStore("AgentStateStore", registry, fs, stateDir);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_STATE_SAVE_INTERVAL, 100);
+    store.init(conf);
+  }
+
+  @After
+  public void teardown() {
+    store.stop();
+  }
+
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    TestCase.assertNull(store.load());
+    RegisteredAgent agent = registry.register("CID_001___HBASE_MASTER",
+        "HBASE_MASTER", "CID_001", "AID_001");
+    agent.getComponentState().commandIssued(Command.INSTALL);
+    agent.setAppliedConfigurationHash("abc");
+    registry.register("CID_002___HBASE_MASTER",
+        "HBASE_MASTER", "CID_002", "AID_001");
+    store.save();
+
+    AgentStateSnapshot snapshot = store.load();
+    TestCase.assertEquals(2, snapshot.agents.size());
+    AgentStateRecord record = null;
+    for (AgentStateRecord r : snapshot.agents) {
+      if (r.label.equals("CID_001___HBASE_MASTER")) {
+        record = r;
+      }
+    }
+    TestCase.assertNotNull(record);
+    TestCase.assertEquals("HBASE_MASTER", record.role);
+    TestCase.assertEquals("CID_001", record.containerId);
+    TestCase.assertEquals(State.INSTALLING, record.state);
+    TestCase.assertEquals(Command.INSTALL, record.lastCommand);
+    TestCase.assertEquals("abc", record.configurationHash);
+
+    // saves replace the earlier state
+    registry.remove("CID_002___HBASE_MASTER");
+    store.save();
+    TestCase.assertEquals(1, store.load().agents.size());
+    TestCase.assertEquals(2, store.getSaves());
+  }
+
+  @Test
+  public void testSavedInBackgroundWhenDirty() throws Exception {
+    registry.register("CID_001___HBASE_MASTER",
+        "HBASE_MASTER", "CID_001", "AID_001");
+    store.start();
+    store.markDirty();
+    long end = System.currentTimeMillis() + 10000;
+    while (store.getSaves() == 0 && System.currentTimeMillis() < end) {
+      Thread.sleep(50);
+    }
+    TestCase.assertEquals(1, store.getSaves());
+    TestCase.assertFalse(store.isDirty());
+    // nothing changed, nothing saved
+    Thread.sleep(300);
+    TestCase.assertEquals(1, store.getSaves());
+    // a final save on stop
+    store.markDirty();
+    store.stop();
+    TestCase.assertEquals(2, store.getSaves());
+  }
+
+  @Test
+  public void testLoadFallsBackToTempFile() throws Exception {
+    registry.register("CID_001___HBASE_MASTER",
+        "HBASE_MASTER", "CID_001", "AID_001");
+    store.save();
+    // as if the AM failed between the delete and the rename
+    fs.rename(store.getStatePath(),
+              new Path(stateDir, AgentStateStore.TEMP_FILENAME));
+    TestCase.assertEquals(1, store.load().agents.size());
+  }
+
+  @Test
+  public void testUnreadableStateIgnored() throws Exception {
+    fs.mkdirs(stateDir);
+    FSDataOutputStream out = fs.create(store.getStatePath(), true);
+    out.write("not json".getBytes("UTF-8"));
+    out.close();
+    TestCase.assertNull(store.load());
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.providers.agent;
+
+import junit.framework.TestCase;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.AgentCommandType;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.ExecutionCommand;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.HeartBeatResponse;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class CommandConfigurationsTest {
+
+  private Map<String, Map<String, String>> configurations(String value) {
+    Map<String, Map<String, String>> configurations =
+        new TreeMap<String, Map<String, String>>();
+    Map<String, String> global = new HashMap<String, String>();
+    global.put("a", "1");
+    global.put("b", value);
+    configurations.put("global", global);
+    return configurations;
+  }
+
+  @Test
+  public void testHashIgnoresOrdering() {
+    Map<String, Map<String, String>> c1 = configurations("2");
+    Map<String, String> reordered = new LinkedHashMap<String, String>();
+    reordered.put("b", "2");
+    reordered.put("a", "1");
+    Map<String, Map<String, String>> c2 = new HashMap<String, Map<String, String>>();
+    c2.put("global", reordered);
+    TestCase.assertEquals(CommandConfigurations.hashOf(c1),
+                          CommandConfigurations.hashOf(c2));
+    TestCase.assertFalse(CommandConfigurations.hashOf(c1).equals(
+        CommandConfigurations.hashOf(configurations("3"))));
+  }
+
+  @Test
+  public void testCurrency() {
+    Object source = new Object();
+    CommandConfigurations configurations =
+        new CommandConfigurations(source, 1, configurations("2"));
+    TestCase.assertTrue(configurations.isCurrent(source, 1));
+    TestCase.assertFalse(configurations.isCurrent(source, 2));
+    TestCase.assertFalse(configurations.isCurrent(new Object(), 1));
+  }
+
+  @Test
+  public void testDeliveryByReference() {
+    AgentProviderService aps = new AgentProviderService();
+    Map<String, Map<String, String>> config = configurations("2");
+    String hash = CommandConfigurations.hashOf(config);
+
+    // the agent holds no configurations: send them in full
+    HeartBeatResponse response = new HeartBeatResponse();
+    ExecutionCommand start = new ExecutionCommand(AgentCommandType.EXECUTION_COMMAND);
+    start.setConfigurations(config);
+    response.addExecutionCommand(start);
+    aps.deliverConfigurations(response, null);
+    TestCase.assertNotNull(start.getConfigurations());
+    TestCase.assertEquals(hash, start.getConfigurationHash());
+
+    // the agent has applied the configurations: send a reference only
+    response = new HeartBeatResponse();
+    start = new ExecutionCommand(AgentCommandType.EXECUTION_COMMAND);
+    start.setConfigurations(config);
+    response.addExecutionCommand(start);
+    aps.deliverConfigurations(response, hash);
+    TestCase.assertNull(start.getConfigurations());
+    TestCase.assertEquals(hash, start.getConfigurationHash());
+
+    // the agent holds other configurations
+    response = new HeartBeatResponse();
+    start = new ExecutionCommand(AgentCommandType.EXECUTION_COMMAND);
+    start.setConfigurations(config);
+    response.addExecutionCommand(start);
+    aps.deliverConfigurations(response,
+        CommandConfigurations.hashOf(configurations("3")));
+    TestCase.assertNotNull(start.getConfigurations());
+    aps.close();
+  }
+}
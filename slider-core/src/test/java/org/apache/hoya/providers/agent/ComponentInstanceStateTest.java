@@ -107,6 +107,25 @@ public class ComponentInstanceStateTest {
     TestCase.assertEquals(State.STARTED, componentInstanceState.getState());
   }
 
+  @Test
+  public void validateWarmSpareHeldAtInstalled() {
+    ComponentInstanceState componentInstanceState = new ComponentInstanceState("HBASE_MASTER", "CID_001", "AID_001");
+    componentInstanceState.setTargetState(State.INSTALLED);
+    TestCase.assertEquals(Command.INSTALL, componentInstanceState.getNextCommand());
+    componentInstanceState.commandIssued(Command.INSTALL);
+    componentInstanceState.applyCommandResult(CommandResult.COMPLETED, Command.INSTALL);
+    TestCase.assertEquals(State.INSTALLED, componentInstanceState.getState());
+    TestCase.assertEquals(false, componentInstanceState.hasPendingCommand());
+    TestCase.assertEquals(Command.NOP, componentInstanceState.getNextCommand());
+
+    // promotion
+    componentInstanceState.setTargetState(State.STARTED);
+    TestCase.assertEquals(Command.START, componentInstanceState.getNextCommand());
+    componentInstanceState.commandIssued(Command.START);
+    componentInstanceState.applyCommandResult(CommandResult.COMPLETED, Command.START);
+    TestCase.assertEquals(State.STARTED, componentInstanceState.getState());
+  }
+
   @Test
   public void validateStateTransitionScenario2() {
     ComponentInstanceState componentInstanceState = new ComponentInstanceState("HBASE_MASTER", "CID_001", "AID_001");
@@ -261,6 +280,29 @@ public class ComponentInstanceStateTest {
     }
   }
 
+  @Test
+  public void testRestore() {
+    ComponentInstanceState state =
+        new ComponentInstanceState("HBASE_MASTER", "CID_001", "AID_001");
+    state.commandIssued(Command.INSTALL);
+    TestCase.assertEquals(Command.INSTALL, state.getLastCommand());
+
+    // settled states carry on
+    state.restore(State.STARTED, Command.START, 0);
+    TestCase.assertEquals(State.STARTED, state.getState());
+    TestCase.assertEquals(Command.START, state.getLastCommand());
+    TestCase.assertEquals(Command.NOP, state.getNextCommand());
+
+    // commands in progress are issued again
+    state.restore(State.STARTING, Command.START, 1);
+    TestCase.assertEquals(State.INSTALLED, state.getState());
+    TestCase.assertEquals(1, state.getFailuresSeen());
+    TestCase.assertEquals(Command.START, state.getNextCommand());
+    state.restore(State.INSTALLING, Command.INSTALL, 0);
+    TestCase.assertEquals(State.INIT, state.getState());
+    TestCase.assertEquals(Command.INSTALL, state.getNextCommand());
+  }
+
   private <T extends Throwable> void expectExceptionOnGetNextForResult(
       Class<T> expected, State state, CommandResult result) {
     try {
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.providers.agent;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+  @Test
+  public void testBurstThenRate() {
+    // 10 per second, bursts of 3
+    TokenBucket bucket = new TokenBucket(10, 3);
+    long now = 1000;
+    for (int i = 0; i < 3; i++) {
+      TestCase.assertEquals(0, bucket.tryAcquire(now));
+    }
+    // empty: the next token is 100ms away
+    TestCase.assertEquals(100, bucket.tryAcquire(now));
+    TestCase.assertEquals(40, bucket.tryAcquire(now + 60));
+    TestCase.assertEquals(0, bucket.tryAcquire(now + 100));
+    TestCase.assertEquals(4, bucket.getAdmitted());
+    TestCase.assertEquals(2, bucket.getDeferred());
+  }
+
+  @Test
+  public void testRefillIsCapped() {
+    TokenBucket bucket = new TokenBucket(10, 2);
+    TestCase.assertEquals(0, bucket.tryAcquire(0));
+    // a long idle period refills no more than the capacity
+    long later = 60000;
+    TestCase.assertEquals(0, bucket.tryAcquire(later));
+    TestCase.assertEquals(0, bucket.tryAcquire(later));
+    TestCase.assertTrue(bucket.tryAcquire(later) > 0);
+  }
+
+  @Test
+  public void testClockGoingBackwards() {
+    TokenBucket bucket = new TokenBucket(1, 1);
+    TestCase.assertEquals(0, bucket.tryAcquire(5000));
+    // an earlier time adds no tokens
+    TestCase.assertEquals(1000, bucket.tryAcquire(4000));
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.servicemonitor;
+
+import junit.framework.Assert;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncProbeSchedulerTest extends Assert {
+
+  private AsyncProbeScheduler scheduler;
+  private RecordingListener listener;
+  private ServerSocket server;
+
+  @Before
+  public void setup() throws Throwable {
+    Configuration conf = new Configuration(false);
+    conf.setInt(MonitorKeys.ASYNC_PROBE_INTERVAL, 200);
+    conf.setInt(MonitorKeys.ASYNC_PROBE_TIMEOUT, 1000);
+    conf.setInt(MonitorKeys.ASYNC_PROBE_TICK, 10);
+    listener = new RecordingListener();
+    scheduler = new AsyncProbeScheduler("test", listener);
+    scheduler.init(conf);
+    scheduler.start();
+  }
+
+  @After
+  public void teardown() throws Throwable {
+    scheduler.stop();
+    if (server != null) {
+      server.close();
+    }
+  }
+
+  @Test
+  public void testPortProbeOpenPort() throws Throwable {
+    server = new ServerSocket(0);
+    listener.expect(2);
+    scheduler.addTarget("open", "127.0.0.1", server.getLocalPort(), null);
+    assertTrue("no results", listener.await());
+    assertTrue(listener.results.get("open").isSuccess());
+    assertEquals(0, scheduler.getProbesFailed());
+  }
+
+  @Test
+  public void testPortProbeFailsClosedPort() throws Throwable {
+    listener.expect(1);
+    scheduler.addTarget("closed", "127.0.0.1", 65500, null);
+    assertTrue("no results", listener.await());
+    assertFalse(listener.results.get("closed").isSuccess());
+    assertTrue(scheduler.getProbesFailed() > 0);
+  }
+
+  @Test
+  public void testHttpProbe() throws Throwable {
+    server = new ServerSocket(0);
+    Thread responder = new Thread(new Responder(server, "HTTP/1.1 200 OK"));
+    responder.setDaemon(true);
+    responder.start();
+    listener.expect(1);
+    scheduler.addTarget("http", "127.0.0.1", server.getLocalPort(), "/ping");
+    assertTrue("no results", listener.await());
+    ProbeStatus status = listener.results.get("http");
+    assertTrue(status.toString(), status.isSuccess());
+  }
+
+  @Test
+  public void testHttpProbeFailsOnErrorCode() throws Throwable {
+    server = new ServerSocket(0);
+    Thread responder = new Thread(new Responder(server,
+                                                "HTTP/1.1 503 Unavailable"));
+    responder.setDaemon(true);
+    responder.start();
+    listener.expect(1);
+    scheduler.addTarget("http", "127.0.0.1", server.getLocalPort(), "/ping");
+    assertTrue("no results", listener.await());
+    assertFalse(listener.results.get("http").isSuccess());
+  }
+
+  @Test
+  public void testRemovedTargetNotProbed() throws Throwable {
+    scheduler.addTarget("removed", "127.0.0.1", 65500, null);
+    assertTrue(scheduler.removeTarget("removed"));
+    assertFalse(scheduler.hasTarget("removed"));
+    assertEquals(0, scheduler.getTargetCount());
+    Thread.sleep(500);
+    assertNull(listener.results.get("removed"));
+  }
+
+  /**
+   * Listener which counts down a latch on every result
+   */
+  private static class RecordingListener implements ProbeResultListener {
+    final Map<String, ProbeStatus> results =
+      new ConcurrentHashMap<String, ProbeStatus>();
+    private volatile CountDownLatch latch = new CountDownLatch(0);
+
+    void expect(int count) {
+      latch = new CountDownLatch(count);
+    }
+
+    boolean await() throws InterruptedException {
+      return latch.await(10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void onProbeResult(String key, ProbeStatus status) {
+      results.put(key, status);
+      latch.countDown();
+    }
+  }
+
+  /**
+   * Answer every connection with the same status line
+   */
+  private static class Responder implements Runnable {
+    private final ServerSocket server;
+    private final String statusLine;
+
+    private Responder(ServerSocket server, String statusLine) {
+      this.server = server;
+      this.statusLine = statusLine;
+    }
+
+    @Override
+    public void run() {
+      while (!server.isClosed()) {
+        Socket socket = null;
+        try {
+          socket = server.accept();
+          InputStream in = socket.getInputStream();
+          in.read(new byte[1024]);
+          OutputStream out = socket.getOutputStream();
+          out.write((statusLine + "\r\n\r\n").getBytes("US-ASCII"));
+          out.flush();
+        } catch (IOException e) {
+          return;
+        } finally {
+          IOUtils.closeSocket(socket);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.servicemonitor;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TimerWheelTest extends Assert {
+
+  @Test
+  public void testExpiryInOrderOfTicks() throws Throwable {
+    TimerWheel<String> wheel = new TimerWheel<String>(8, 10, 0);
+    wheel.schedule("late", 55);
+    wheel.schedule("early", 15);
+    List<String> expired = new ArrayList<String>();
+    assertEquals(0, wheel.advance(10, expired));
+    assertEquals(1, wheel.advance(20, expired));
+    assertEquals("early", expired.get(0));
+    expired.clear();
+    assertEquals(1, wheel.advance(60, expired));
+    assertEquals("late", expired.get(0));
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void testDeadlineBeyondOneRotation() throws Throwable {
+    TimerWheel<String> wheel = new TimerWheel<String>(4, 10, 0);
+    wheel.schedule("far", 105);
+    List<String> expired = new ArrayList<String>();
+    assertEquals(0, wheel.advance(100, expired));
+    assertEquals(1, wheel.advance(110, expired));
+  }
+
+  @Test
+  public void testCancelledEntryDiscarded() throws Throwable {
+    TimerWheel<String> wheel = new TimerWheel<String>(4, 10, 0);
+    TimerWheel.Entry<String> entry = wheel.schedule("cancelled", 20);
+    entry.cancel();
+    List<String> expired = new ArrayList<String>();
+    assertEquals(0, wheel.advance(50, expired));
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void testPastDeadlineFiresOnNextTick() throws Throwable {
+    TimerWheel<String> wheel = new TimerWheel<String>(4, 10, 0);
+    List<String> expired = new ArrayList<String>();
+    wheel.advance(30, expired);
+    wheel.schedule("overdue", 5);
+    assertEquals(1, wheel.advance(40, expired));
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hoya.yarn.appmaster.web;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hoya.HoyaXmlConfKeys;
+import org.apache.hoya.api.StatusKeys;
+import org.apache.hoya.yarn.appmaster.web.rest.RestPaths;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.AgentRequestMetrics;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.AgentRestOperations;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.AgentServlet;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.HeartBeat;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.HeartBeatResponse;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.Register;
+import org.apache.hoya.yarn.appmaster.web.rest.agent.RegistrationResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the dedicated agent request server and its thread pool
+ */
+public class TestAgentWebService {
+
+  private static final String AGENT = "container_1___ROLE";
+
+  private AgentWebService service;
+  private AgentRestOperations ops;
+
+  @Before
+  public void setup() {
+    ops = mock(AgentRestOperations.class);
+    when(ops.handleRegistration(any(Register.class)))
+      .thenReturn(new RegistrationResponse());
+    when(ops.handleHeartBeat(any(HeartBeat.class)))
+      .thenReturn(new HeartBeatResponse());
+    WebAppApi slider = mock(WebAppApi.class);
+    when(slider.getAgentRestOperations()).thenReturn(ops);
+
+    Configuration conf = new Configuration(false);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_WEB_THREADS, 2);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_WEB_QUEUE, 4);
+    service = new AgentWebService("AgentWeb", slider);
+    service.init(conf);
+    service.start();
+  }
+
+  @After
+  public void teardown() {
+    if (service != null) {
+      service.stop();
+    }
+  }
+
+  @Test
+  public void testRequestsServedAndMeasured() throws Throwable {
+    assertEquals(200, post("register", "{\"responseId\":0}"));
+    assertEquals(200, post("heartbeat", "{\"responseId\":1}"));
+    assertEquals(200, post("heartbeat/poll?wait=0", "{\"responseId\":2}"));
+    assertEquals(400, post("heartbeat", "not json"));
+    assertEquals(404, post("unknown", "{}"));
+
+    AgentRequestMetrics metrics = service.getMetrics();
+    assertEquals(1, metrics.getRequests(AgentServlet.ENDPOINT_REGISTER));
+    assertEquals(2, metrics.getRequests(AgentServlet.ENDPOINT_HEARTBEAT));
+    assertEquals(1, metrics.getFailures(AgentServlet.ENDPOINT_HEARTBEAT));
+    assertEquals(1, metrics.getRequests(AgentServlet.ENDPOINT_POLL));
+
+    Map<String, Integer> stats = new HashMap<String, Integer>();
+    service.addStatistics(stats);
+    assertEquals(2, (int) stats.get(AgentServlet.ENDPOINT_HEARTBEAT
+                                    + AgentRequestMetrics.REQUESTS));
+    assertEquals(0, (int) stats.get(StatusKeys.STATISTICS_AGENT_WEB_REJECTED));
+  }
+
+  @Test
+  public void testThreadPoolRefusesWhenQueueFull() throws Throwable {
+    AgentRequestThreadPool pool = new AgentRequestThreadPool("test", 1, 1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch running = new CountDownLatch(1);
+    Runnable blocker = new Runnable() {
+      @Override
+      public void run() {
+        running.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ignored) {
+          // exit
+        }
+      }
+    };
+    try {
+      assertTrue(pool.dispatch(blocker));
+      assertTrue(running.await(10, TimeUnit.SECONDS));
+      // one job queued, the next refused
+      assertTrue(pool.dispatch(blocker));
+      assertEquals(1, pool.getQueued());
+      assertTrue(pool.isLowOnThreads());
+      assertTrue(!pool.dispatch(blocker));
+      assertEquals(1, pool.getRejected());
+    } finally {
+      release.countDown();
+      pool.stop();
+    }
+  }
+
+  private int post(String subpath, String body) throws IOException {
+    URL url = new URL("http://localhost:" + service.getPort()
+                      + RestPaths.SLIDER_PATH_AGENTS + "/" + AGENT + "/"
+                      + subpath);
+    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    try {
+      conn.setRequestMethod("POST");
+      conn.setDoOutput(true);
+      conn.setRequestProperty("Content-Type", "application/json");
+      OutputStream out = conn.getOutputStream();
+      out.write(body.getBytes("UTF-8"));
+      out.close();
+      return conn.getResponseCode();
+    } finally {
+      conn.disconnect();
+    }
+  }
+}
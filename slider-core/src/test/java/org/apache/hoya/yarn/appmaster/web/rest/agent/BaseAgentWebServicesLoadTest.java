@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.web.rest.agent;
+
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.servlet.GuiceServletContextListener;
+import com.google.inject.servlet.ServletModule;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.api.client.config.DefaultClientConfig;
+import com.sun.jersey.api.json.JSONConfiguration;
+import com.sun.jersey.guice.spi.container.servlet.GuiceContainer;
+import com.sun.jersey.test.framework.JerseyTest;
+import com.sun.jersey.test.framework.WebAppDescriptor;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.yarn.webapp.GenericExceptionHandler;
+import org.apache.hoya.core.conf.AggregateConf;
+import org.apache.hoya.exceptions.SliderException;
+import org.apache.hoya.providers.agent.AgentKeys;
+import org.apache.hoya.providers.agent.AgentProviderService;
+import org.apache.hoya.providers.agent.Command;
+import org.apache.hoya.yarn.appmaster.state.AppState;
+import org.apache.hoya.yarn.appmaster.web.WebAppApi;
+import org.apache.hoya.yarn.appmaster.web.WebAppApiImpl;
+import org.apache.hoya.yarn.appmaster.web.rest.AMWebServices;
+import org.apache.hoya.yarn.appmaster.web.rest.SliderJacksonJaxbJsonProvider;
+import org.apache.hoya.yarn.model.mock.MockFactory;
+import org.apache.hoya.yarn.model.mock.MockHoyaClusterProtocol;
+import org.apache.hoya.yarn.model.mock.MockRecordFactory;
+
+import javax.ws.rs.Path;
+import java.io.File;
+import java.net.URI;
+
+/**
+ * Base class of the tests which drive many simulated agents through the
+ * agent REST API of an AM served in-process. Each test builds an
+ * application with a single agent role, and a provider configured with
+ * the test's own settings; any failure to set them up fails the test.
+ */
+public abstract class BaseAgentWebServicesLoadTest extends JerseyTest {
+
+  public static final int RM_MAX_RAM = 4096;
+  public static final int RM_MAX_CORES = 64;
+  public static final String AGENT_URL =
+    "http://localhost:9998/hoyaam/ws/v1/slider/agents/";
+
+  static MockFactory factory = new MockFactory();
+
+  /**
+   * The injector of the test being set up, for the servlet context
+   * listener, which the web container instantiates
+   */
+  private static volatile Injector injector;
+
+  protected final LoadTestProviderService provider;
+
+  public static class GuiceServletConfig extends GuiceServletContextListener {
+
+    @Override
+    protected Injector getInjector() {
+      return injector;
+    }
+  }
+
+  @Path("/ws/v1/slider")
+  public static class MockAMWebServices extends AMWebServices {
+
+    @Inject
+    public MockAMWebServices(WebAppApi slider) {
+      super(slider);
+    }
+  }
+
+  /**
+   * Agent provider whose commands carry no configuration, so that
+   * the tests measure the heartbeat handling rather than command building
+   */
+  public static class LoadTestProviderService extends AgentProviderService {
+
+    @Override
+    protected void addInstallCommand(String roleName,
+                                     HeartBeatResponse response,
+                                     String scriptPath) throws SliderException {
+      response.addExecutionCommand(command(roleName, Command.INSTALL));
+    }
+
+    @Override
+    protected void addStartCommand(String roleName,
+                                   HeartBeatResponse response,
+                                   String scriptPath) throws SliderException {
+      response.addExecutionCommand(command(roleName, Command.START));
+    }
+
+    private ExecutionCommand command(String roleName, Command command) {
+      ExecutionCommand cmd =
+        new ExecutionCommand(AgentCommandType.EXECUTION_COMMAND);
+      cmd.setRole(roleName);
+      cmd.setRoleCommand(command.toString());
+      return cmd;
+    }
+  }
+
+  /**
+   * Create the application and its web services
+   * @param role name of the agent role
+   * @param conf configuration of the provider and the web services
+   * @throws Exception on any failure to set up the application
+   */
+  protected BaseAgentWebServicesLoadTest(String role, Configuration conf)
+      throws Exception {
+    this(createAppState(role, conf), conf);
+  }
+
+  private BaseAgentWebServicesLoadTest(AppState appState,
+                                       Configuration conf) {
+    this(appState, createProvider(appState, conf), conf);
+  }
+
+  private BaseAgentWebServicesLoadTest(AppState appState,
+                                       LoadTestProviderService provider,
+                                       Configuration conf) {
+    super(createDescriptor(appState, provider, conf));
+    this.provider = provider;
+  }
+
+  private static AppState createAppState(String role, Configuration conf)
+      throws Exception {
+    AppState appState = new AppState(new MockRecordFactory());
+    FileSystem fs = FileSystem.get(new URI("file:///"), conf);
+    File historyWorkDir = new File("target/history", role);
+    org.apache.hadoop.fs.Path historyPath =
+      new org.apache.hadoop.fs.Path(historyWorkDir.toURI());
+    fs.delete(historyPath, true);
+    appState.setContainerLimits(RM_MAX_RAM, RM_MAX_CORES);
+    AggregateConf instance = factory.newInstanceDefinition(0, 0, 0);
+    instance.getAppConfOperations().getOrAddComponent(role)
+            .put(AgentKeys.COMPONENT_SCRIPT, "scripts/" + role + ".py");
+    appState.buildInstance(
+      instance,
+      new Configuration(false),
+      factory.ROLES,
+      fs,
+      historyPath,
+      null, null);
+    return appState;
+  }
+
+  private static LoadTestProviderService createProvider(AppState appState,
+                                                        Configuration conf) {
+    LoadTestProviderService provider = new LoadTestProviderService();
+    provider.init(conf);
+    provider.bind(appState, null);
+    return provider;
+  }
+
+  private static WebAppDescriptor createDescriptor(AppState appState,
+      LoadTestProviderService provider,
+      final Configuration conf) {
+    final WebAppApi slider = new WebAppApiImpl(new MockHoyaClusterProtocol(),
+                                               appState, provider);
+    injector = Guice.createInjector(new ServletModule() {
+      @Override
+      protected void configureServlets() {
+        bind(SliderJacksonJaxbJsonProvider.class);
+        bind(GenericExceptionHandler.class);
+        bind(MockAMWebServices.class);
+        bind(WebAppApi.class).toInstance(slider);
+        bind(Configuration.class).toInstance(conf);
+        serve("/*").with(GuiceContainer.class);
+      }
+    });
+    return new WebAppDescriptor.Builder(
+      "org.apache.hadoop.yarn.appmaster.web")
+            .contextListenerClass(GuiceServletConfig.class)
+            .filterClass(com.google.inject.servlet.GuiceFilter.class)
+            .initParam("com.sun.jersey.api.json.POJOMappingFeature", "true")
+            .contextPath("hoyaam").servletPath("/").build();
+  }
+
+  protected Client createTestClient() {
+    ClientConfig clientConfig = new DefaultClientConfig();
+    clientConfig.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING,
+                                   Boolean.TRUE);
+    return Client.create(clientConfig);
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.web.rest.agent;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.UniformInterfaceException;
+import com.sun.jersey.api.client.WebResource;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hoya.HoyaXmlConfKeys;
+import org.apache.hoya.providers.agent.AgentRegistry;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.MediaType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Soak test of agent admission control: every agent of a large instance
+ * registers at once through the REST API, as happens when the instance
+ * thaws. Registrations and heartbeats above the admitted rates are
+ * deferred, and the simulated agents retry them after the time they are
+ * given, with jitter, as the real agent does.
+ */
+public class TestAMAgentRegistrationStorm extends BaseAgentWebServicesLoadTest {
+  protected static final Logger log =
+    LoggerFactory.getLogger(TestAMAgentRegistrationStorm.class);
+
+  public static final String ROLE = "stormrole";
+  public static final int AGENTS = 1000;
+  public static final int THREADS = 64;
+  public static final int REGISTRATION_RATE = 500;
+  public static final int REGISTRATION_BURST = 50;
+  public static final int HEARTBEAT_RATE = 1000;
+  public static final int HEARTBEAT_BURST = 100;
+  public static final int HEARTBEAT_INTERVAL = 10000;
+  public static final int ACTIVE_HEARTBEAT_INTERVAL = 1000;
+  public static final int HEARTBEAT_BUDGET = 500;
+
+  /**
+   * Retry delay of a deferred heartbeat with no Retry-After header
+   */
+  public static final int DEFAULT_RETRY = 100;
+
+  public TestAMAgentRegistrationStorm() throws Exception {
+    super(ROLE, createConfiguration());
+  }
+
+  private static Configuration createConfiguration() {
+    Configuration conf = new Configuration();
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_REGISTRATION_RATE,
+                REGISTRATION_RATE);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_REGISTRATION_BURST,
+                REGISTRATION_BURST);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_RATE, HEARTBEAT_RATE);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_BURST,
+                HEARTBEAT_BURST);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_INTERVAL,
+                HEARTBEAT_INTERVAL);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_INTERVAL_ACTIVE,
+                ACTIVE_HEARTBEAT_INTERVAL);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_BUDGET,
+                HEARTBEAT_BUDGET);
+    return conf;
+  }
+
+  /**
+   * What one simulated agent saw
+   */
+  private static class Outcome {
+    int deferredRegistrations;
+    int deferredHeartbeats;
+    long heartbeatInterval;
+    long activeInterval;
+    long responseId;
+  }
+
+  /**
+   * A simulated agent: it registers, retrying while deferred,
+   * then sends its first heartbeat, again retrying while deferred
+   */
+  private static class SimulatedAgent implements Callable<Outcome> {
+    private final Client client;
+    private final String label;
+    private final Random random = new Random();
+
+    private SimulatedAgent(Client client, String label) {
+      this.client = client;
+      this.label = label;
+    }
+
+    @Override
+    public Outcome call() throws Exception {
+      Outcome outcome = new Outcome();
+      WebResource register = client.resource(AGENT_URL + "agent/register");
+      RegistrationResponse registered;
+      while (true) {
+        Register registration = new Register();
+        registration.setResponseId(-1);
+        registration.setTimestamp(System.currentTimeMillis());
+        registration.setHostname(label);
+        registered = register
+          .type(MediaType.APPLICATION_JSON)
+          .post(RegistrationResponse.class, registration);
+        if (registered.getRetryAfter() <= 0) {
+          break;
+        }
+        outcome.deferredRegistrations++;
+        backoff(registered.getRetryAfter());
+      }
+      assertEquals(RegistrationStatus.OK, registered.getResponseStatus());
+      outcome.heartbeatInterval = registered.getHeartbeatInterval();
+
+      WebResource heartbeat = client.resource(AGENT_URL + "agent/heartbeat");
+      HeartBeat hb = new HeartBeat();
+      hb.setResponseId(0);
+      hb.setHostname(label);
+      while (outcome.responseId == 0) {
+        hb.setTimestamp(System.currentTimeMillis());
+        try {
+          HeartBeatResponse response = heartbeat
+            .type(MediaType.APPLICATION_JSON)
+            .post(HeartBeatResponse.class, hb);
+          outcome.responseId = response.getResponseId();
+          outcome.activeInterval = response.getHeartbeatInterval();
+        } catch (UniformInterfaceException e) {
+          ClientResponse response = e.getResponse();
+          assertEquals(503, response.getStatus());
+          outcome.deferredHeartbeats++;
+          String retryAfter =
+            response.getHeaders().getFirst(AgentServlet.RETRY_AFTER);
+          backoff(retryAfter != null
+                  ? Long.parseLong(retryAfter) * 1000 : DEFAULT_RETRY);
+        }
+      }
+      return outcome;
+    }
+
+    /**
+     * Sleep for the retry time plus up to as much again
+     * @param retryAfter millis to retry after
+     */
+    private void backoff(long retryAfter) throws InterruptedException {
+      Thread.sleep(retryAfter + (long) (random.nextDouble() * retryAfter));
+    }
+  }
+
+  @Test
+  public void testRegistrationStorm() throws Throwable {
+    AgentRegistry registry = provider.getAgentRegistry();
+    List<String> labels = new ArrayList<String>(AGENTS);
+    for (int i = 0; i < AGENTS; i++) {
+      String label = "container_" + i + "___" + ROLE;
+      registry.register(label, ROLE, "container_" + i, "storm");
+      labels.add(label);
+    }
+
+    Client client = createTestClient();
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    long start = System.currentTimeMillis();
+    List<Future<Outcome>> results = new ArrayList<Future<Outcome>>(AGENTS);
+    for (String label : labels) {
+      results.add(executor.submit(new SimulatedAgent(client, label)));
+    }
+    int deferredRegistrations = 0;
+    int deferredHeartbeats = 0;
+    // none of the agents settle, as each is issued an install command;
+    // together they may use half the heartbeat budget
+    long expectedInterval = Math.max(ACTIVE_HEARTBEAT_INTERVAL,
+                                     2000L * AGENTS / HEARTBEAT_BUDGET);
+    for (Future<Outcome> result : results) {
+      Outcome outcome = result.get();
+      deferredRegistrations += outcome.deferredRegistrations;
+      deferredHeartbeats += outcome.deferredHeartbeats;
+      assertEquals(expectedInterval, outcome.heartbeatInterval);
+      assertEquals(expectedInterval, outcome.activeInterval);
+      assertEquals(1, outcome.responseId);
+    }
+    long duration = System.currentTimeMillis() - start;
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+
+    log.info("{} agents registered in {} ms;" +
+             " {} registrations and {} heartbeats deferred",
+             AGENTS, duration, deferredRegistrations, deferredHeartbeats);
+    assertTrue("no registrations deferred", deferredRegistrations > 0);
+    assertEquals(Integer.toString(deferredRegistrations),
+                 provider.buildProviderStatus()
+                         .get(AgentKeys.INFO_REGISTRATIONS_DEFERRED));
+    assertEquals(Integer.toString(deferredHeartbeats),
+                 provider.buildProviderStatus()
+                         .get(AgentKeys.INFO_HEARTBEATS_DEFERRED));
+    // the registrations beyond the burst were admitted no faster
+    // than the configured rate
+    long minimum = (AGENTS - REGISTRATION_BURST) * 1000L / REGISTRATION_RATE;
+    assertTrue("registrations took " + duration + " ms; expected at least "
+               + minimum, duration >= minimum * 9 / 10);
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hoya.yarn.appmaster.web.rest.agent;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.WebResource;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hoya.HoyaXmlConfKeys;
+import org.apache.hoya.providers.agent.AgentRegistry;
+import org.apache.hoya.providers.agent.State;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.MediaType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Load test of the agent REST API: thousands of simulated agents
+ * register and heartbeat through an in-process HTTP server until their
+ * components are started, then keep heartbeating with nothing to do.
+ */
+public class TestAMAgentWebServicesLoad extends BaseAgentWebServicesLoadTest {
+  protected static final Logger log =
+    LoggerFactory.getLogger(TestAMAgentWebServicesLoad.class);
+
+  public static final String ROLE = "loadrole";
+  public static final int AGENTS = 2000;
+  public static final int THREADS = 32;
+  public static final int IDLE_HEARTBEATS = 5;
+
+  public TestAMAgentWebServicesLoad() throws Exception {
+    super(ROLE, createConfiguration());
+  }
+
+  /**
+   * Admit everything: this test measures the heartbeat handling,
+   * TestAMAgentRegistrationStorm the admission control
+   * @return the configuration
+   */
+  private static Configuration createConfiguration() {
+    Configuration conf = new Configuration();
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_REGISTRATION_RATE, AGENTS * 10);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_REGISTRATION_BURST, AGENTS);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_RATE, AGENTS * 100);
+    conf.setInt(HoyaXmlConfKeys.KEY_AGENT_HEARTBEAT_BURST, AGENTS * 10);
+    return conf;
+  }
+
+  /**
+   * A simulated agent: it registers, reports each command it is given
+   * as completed on its next heartbeat, and stops after a few heartbeats
+   * with nothing to do once its component is started.
+   */
+  private static class SimulatedAgent implements Callable<Integer> {
+    private final Client client;
+    private final String label;
+
+    private SimulatedAgent(Client client, String label) {
+      this.client = client;
+      this.label = label;
+    }
+
+    @Override
+    public Integer call() throws Exception {
+      WebResource register = client.resource(AGENT_URL + "agent/register");
+      Register registration = new Register();
+      registration.setResponseId(-1);
+      registration.setTimestamp(System.currentTimeMillis());
+      registration.setHostname(label);
+      RegistrationResponse registered = register
+        .type(MediaType.APPLICATION_JSON)
+        .post(RegistrationResponse.class, registration);
+      assertEquals(RegistrationStatus.OK, registered.getResponseStatus());
+
+      WebResource heartbeat = client.resource(AGENT_URL + "agent/heartbeat");
+      long responseId = 0;
+      String completed = null;
+      int idle = 0;
+      int heartbeats = 0;
+      while (idle < IDLE_HEARTBEATS) {
+        HeartBeat hb = new HeartBeat();
+        hb.setResponseId(responseId);
+        hb.setTimestamp(System.currentTimeMillis());
+        hb.setHostname(label);
+        if (completed != null) {
+          CommandReport report = new CommandReport();
+          report.setRole(ROLE);
+          report.setRoleCommand(completed);
+          report.setStatus("COMPLETED");
+          hb.setReports(Collections.singletonList(report));
+          completed = null;
+        }
+        HeartBeatResponse response = heartbeat
+          .type(MediaType.APPLICATION_JSON)
+          .post(HeartBeatResponse.class, hb);
+        heartbeats++;
+        responseId = response.getResponseId();
+        List<ExecutionCommand> commands = response.getExecutionCommands();
+        if (commands != null && !commands.isEmpty()) {
+          completed = commands.get(0).getRoleCommand();
+          idle = 0;
+        } else {
+          idle++;
+        }
+      }
+      return heartbeats;
+    }
+  }
+
+  @Test
+  public void testManyAgents() throws Throwable {
+    AgentRegistry registry = provider.getAgentRegistry();
+    List<String> labels = new ArrayList<String>(AGENTS);
+    for (int i = 0; i < AGENTS; i++) {
+      String label = "container_" + i + "___" + ROLE;
+      registry.register(label, ROLE, "container_" + i, "load");
+      labels.add(label);
+    }
+
+    Client client = createTestClient();
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    long start = System.currentTimeMillis();
+    List<Future<Integer>> results = new ArrayList<Future<Integer>>(AGENTS);
+    for (String label : labels) {
+      results.add(executor.submit(new SimulatedAgent(client, label)));
+    }
+    long heartbeats = 0;
+    for (Future<Integer> result : results) {
+      heartbeats += result.get();
+    }
+    long duration = System.currentTimeMillis() - start;
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+
+    log.info("{} agents sent {} heartbeats in {} ms: {} heartbeats/second",
+             AGENTS, heartbeats, duration,
+             duration > 0 ? (heartbeats * 1000 / duration) : heartbeats);
+    for (String label : labels) {
+      assertEquals(State.STARTED,
+                   registry.get(label).getComponentState().getState());
+    }
+    assertTrue(heartbeats >= AGENTS * (2 + IDLE_HEARTBEATS));
+  }
+}